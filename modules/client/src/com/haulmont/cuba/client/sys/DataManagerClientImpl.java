@@ -18,6 +18,7 @@
 package com.haulmont.cuba.client.sys;
 
 import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.KeyValueEntity;
@@ -31,6 +32,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Component(DataManager.NAME)
 public class DataManagerClientImpl implements DataManager {
@@ -53,6 +55,14 @@ public class DataManagerClientImpl implements DataManager {
         return dataService.loadList(context);
     }
 
+    @Override
+    public <E extends Entity> void loadBatches(LoadContext<E> context, int batchSize, Consumer<List<E>> consumer) {
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+        MetaProperty primaryKey = metadata.getTools().getPrimaryKeyProperty(metaClass);
+        boolean keyset = primaryKey != null && !primaryKey.getRange().isClass();
+        BatchLoader.loadBatches(context, batchSize, keyset, dataService::loadList, consumer);
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         return dataService.getCount(context);
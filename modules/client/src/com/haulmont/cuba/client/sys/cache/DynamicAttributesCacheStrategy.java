@@ -18,6 +18,7 @@
 package com.haulmont.cuba.client.sys.cache;
 
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesCache;
+import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesCacheChanges;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesCacheService;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.sys.AppContext;
@@ -86,10 +87,10 @@ public class DynamicAttributesCacheStrategy implements CachingStrategy {
 
     @Override
     public Object loadObject() {
-        DynamicAttributesCache cacheFromServer = AppBeans.get(DynamicAttributesCacheService.NAME, DynamicAttributesCacheService.class)
-                .getCacheIfNewer(dynamicAttributesCache != null ? dynamicAttributesCache.getCreationDate() : null);
-        if (cacheFromServer != null) {
-            dynamicAttributesCache = cacheFromServer;
+        DynamicAttributesCacheChanges changes = AppBeans.get(DynamicAttributesCacheService.NAME, DynamicAttributesCacheService.class)
+                .getCacheChangesIfNewer(dynamicAttributesCache != null ? dynamicAttributesCache.getCreationDate() : null);
+        if (changes != null) {
+            dynamicAttributesCache = changes.applyTo(dynamicAttributesCache);
         }
 
         needToValidateCache = false;
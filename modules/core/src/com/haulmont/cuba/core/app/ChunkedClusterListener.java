@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import java.util.Iterator;
+
+/**
+ * Cluster listener which transfers its state to a joining node in chunks instead of a single byte array.
+ *
+ * <p>Chunks are produced lazily while they are written to the network, so the sending node does not have to hold
+ * the whole serialized state in memory, and the receiving node applies each chunk as soon as it arrives.</p>
+ *
+ * <p>{@link #getState()} and {@link #setState(byte[])} are not used for state transfer if the listener implements
+ * this interface, but they are still used for statistics.</p>
+ *
+ * @param <T> type of message this listener receives
+ */
+public interface ChunkedClusterListener<T> extends ClusterListener<T> {
+
+    /**
+     * Get state of this cluster node split into chunks.
+     *
+     * @param chunkSize maximum number of state entries in a chunk
+     * @return iterator of serialized chunks, each of them can be passed to {@link #setStateChunk(byte[])}
+     */
+    Iterator<byte[]> getStateChunks(int chunkSize);
+
+    /**
+     * Apply a chunk of the state received from other active node.
+     *
+     * @param chunk byte array returned by an iterator obtained from {@link #getStateChunks(int)}
+     */
+    void setStateChunk(byte[] chunk);
+}
@@ -39,6 +39,14 @@ public interface ClusterConfig extends Config {
     @DefaultLong(10000)
     long getStateReceiveTimeout();
 
+    /**
+     * @return max time in milliseconds during which requests of unknown user sessions wait for the cluster state
+     * being received in background. The time is counted from the first such request, so the node waits only once.
+     */
+    @Property("cuba.cluster.stateWaitTimeout")
+    @DefaultLong(1000)
+    long getStateWaitTimeout();
+
     /**
      * @return whether to abort server startup if receiving of the cluster state has failed
      */
@@ -59,4 +67,61 @@ public interface ClusterConfig extends Config {
     @Property("cuba.cluster.messageSendingQueueCapacity")
     @DefaultInt(Integer.MAX_VALUE)
     int getClusterMessageSendingQueueCapacity();
+
+    /**
+     * @return time in milliseconds during which cache invalidation messages are collected and merged before sending
+     * to the cluster. Zero means sending each message immediately.
+     */
+    @Property("cuba.cluster.messageBatchingWindow")
+    @DefaultLong(0)
+    long getClusterMessageBatchingWindow();
+
+    /**
+     * @return maximum number of items collected in a batch. When it is reached, the batch is sent synchronously
+     * by the thread that added the last item.
+     */
+    @Property("cuba.cluster.messageBatchMaxSize")
+    @DefaultInt(1000)
+    int getClusterMessageBatchMaxSize();
+
+    /**
+     * @return number of queued outgoing messages above which sending of collected batches is postponed
+     * until the next batching window
+     */
+    @Property("cuba.cluster.messageBatchingQueueThreshold")
+    @DefaultInt(100)
+    int getClusterMessageBatchingQueueThreshold();
+
+    /**
+     * @return whether registered {@link ClusterMessageCodec}s are used to encode cluster messages.
+     * All nodes of the cluster must have the same value. If disabled, messages are sent in the format of previous
+     * versions, so it can be used during a rolling upgrade.
+     */
+    @Property("cuba.cluster.messageCodecsEnabled")
+    @DefaultBoolean(true)
+    boolean getMessageCodecsEnabled();
+
+    /**
+     * @return size in bytes of a cluster listener state above which the state is compressed when transferred
+     * to a joining node. Zero means no compression.
+     */
+    @Property("cuba.cluster.stateCompressionThreshold")
+    @DefaultInt(0)
+    int getStateCompressionThreshold();
+
+    /**
+     * @return maximum number of entries in a state chunk sent to a joining node by listeners implementing
+     * {@link ChunkedClusterListener}
+     */
+    @Property("cuba.cluster.stateChunkSize")
+    @DefaultInt(1000)
+    int getStateChunkSize();
+
+    /**
+     * @return whether a joining node receives the cluster state in background, without blocking the application
+     * startup. Abort on state receiving failure is not possible in this mode.
+     */
+    @Property("cuba.cluster.stateReceiveAsync")
+    @DefaultBoolean(false)
+    boolean getStateReceiveAsync();
 }
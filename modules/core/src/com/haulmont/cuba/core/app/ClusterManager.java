@@ -34,16 +34,22 @@ import org.slf4j.LoggerFactory;
 import org.springframework.core.Ordered;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.management.MBeanServer;
 import java.io.*;
 import java.lang.management.ManagementFactory;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Standard implementation of middleware clustering based on JGroups.
@@ -70,15 +76,26 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
     @Inject
     protected ClusterConfig clusterConfig;
 
+    @Inject
+    protected List<ClusterMessageCodec> codecs;
+
+    protected Map<String, ClusterMessageCodec> codecsByClass = new HashMap<>();
+
     protected ThreadLocal<Boolean> forceSyncSending = new ThreadLocal<>();
 
     protected Map<String, MessageStat> messagesStat = new ConcurrentHashMap<>();
 
+    protected StateTransferStat stateTransferStat = new StateTransferStat();
+
+    protected volatile CountDownLatch stateLatch = new CountDownLatch(0);
+
     protected static final String STATE_MAGIC = "CUBA_STATE";
 
-    public ClusterManager() {
-        AppContext.addListener(this);
-    }
+    protected static final String CHUNKED_STATE_MAGIC = "CUBA_STATE_C";
+
+    protected static final byte SERIALIZED_MESSAGE = 0;
+
+    protected static final byte ENCODED_MESSAGE = 1;
 
     public JChannel getChannel() {
         return channel;
@@ -86,6 +103,8 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
 
     @PostConstruct
     public void init() {
+        AppContext.addListener(this);
+
         int nThreads = clusterConfig.getClusterMessageSendingThreadPoolSize();
         executor = new ThreadPoolExecutor(nThreads, nThreads,
                 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(clusterConfig.getClusterMessageSendingQueueCapacity()),
@@ -97,6 +116,13 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
                         log.info("Queue capacity is exceeded. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
                     }
                 });
+
+        for (ClusterMessageCodec codec : codecs) {
+            ClusterMessageCodec existing = codecsByClass.put(codec.getMessageClass().getName(), codec);
+            if (existing != null) {
+                log.warn("Cluster message codec {} is replaced by {}", existing, codec);
+            }
+        }
     }
 
     @Override
@@ -121,14 +147,37 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         internalSend(message, true);
     }
 
+    @Override
+    public void sendMerged(Serializable message, int mergedCount, boolean sync) {
+        if (channel == null)
+            return;
+
+        MessageStat stat = messagesStat.get(message.getClass().getName());
+        if (stat != null) {
+            stat.updateMerged(mergedCount);
+        }
+        if (sync) {
+            internalSend(message, true);
+        } else {
+            send(message);
+        }
+    }
+
     protected void internalSend(Serializable message, boolean sync) {
         StopWatch sw = new Log4JStopWatch(String.format("sendClusterMessage(%s)", message.getClass().getSimpleName()));
         try {
-            byte[] bytes = SerializationSupport.serialize(message);
+            long start = System.nanoTime();
+            byte[] bytes;
+            try {
+                bytes = serializeMessage(message);
+            } catch (IOException e) {
+                log.error("Error serializing message " + message, e);
+                return;
+            }
             log.debug("Sending message: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
             MessageStat stat = messagesStat.get(message.getClass().getName());
             if (stat != null) {
-                stat.updateSent(bytes.length);
+                stat.updateSent(bytes.length, System.nanoTime() - start);
             }
             Message msg = new Message(null, null, bytes);
             if (sync) {
@@ -144,6 +193,86 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         }
     }
 
+    @SuppressWarnings("unchecked")
+    protected byte[] serializeMessage(Serializable message) throws IOException {
+        if (!clusterConfig.getMessageCodecsEnabled()) {
+            // the format of nodes without codec support
+            return SerializationSupport.serialize(message);
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        ClusterMessageCodec codec = getCodec(message.getClass().getName());
+        if (codec != null) {
+            out.writeByte(ENCODED_MESSAGE);
+            out.writeUTF(message.getClass().getName());
+            codec.write(message, out);
+        } else {
+            out.writeByte(SERIALIZED_MESSAGE);
+            SerializationSupport.serialize(message, out);
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    protected Serializable deserializeMessage(byte[] bytes) throws IOException {
+        if (!clusterConfig.getMessageCodecsEnabled()) {
+            return (Serializable) SerializationSupport.deserialize(bytes);
+        }
+        if (bytes[0] == ENCODED_MESSAGE) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            String className = in.readUTF();
+            ClusterMessageCodec codec = codecsByClass.get(className);
+            if (codec == null) {
+                throw new IllegalStateException("No cluster message codec for " + className);
+            }
+            return codec.read(in);
+        } else {
+            return (Serializable) SerializationSupport.deserialize(
+                    new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+        }
+    }
+
+    @Nullable
+    protected ClusterMessageCodec getCodec(String className) {
+        return clusterConfig.getMessageCodecsEnabled() ? codecsByClass.get(className) : null;
+    }
+
+    protected byte[] compressState(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                bos.write(buffer, 0, count);
+            }
+            return bos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    protected byte[] decompressState(byte[] data, int length) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int count = inflater.inflate(result, offset, length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Unexpected end of compressed state");
+                }
+                offset += count;
+            }
+            return result;
+        } finally {
+            inflater.end();
+        }
+    }
+
     @Override
     public boolean getSyncSendingForCurrentThread() {
         return forceSyncSending.get() == null ? false : forceSyncSending.get();
@@ -202,14 +331,23 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
             channel.setDiscardOwnMessages(true); // do not receive a copy of our own messages
             channel.setReceiver(new ClusterReceiver());
             channel.connect(getClusterName());
-            try {
-                log.info("Receiving cluster state...");
-                channel.getState(null, clusterConfig.getStateReceiveTimeout());
-            } catch (Exception e) {
-                if (clusterConfig.getAbortOnStateReceivingFailure())
-                    throw e;
-                else {
-                    log.error("Receiving the cluster state has failed", e);
+            stateLatch = new CountDownLatch(1);
+            if (clusterConfig.getStateReceiveAsync()) {
+                Thread thread = new Thread(this::receiveStateAsync, "ClusterStateReceiver");
+                thread.setDaemon(true);
+                thread.start();
+            } else {
+                try {
+                    log.info("Receiving cluster state...");
+                    channel.getState(null, clusterConfig.getStateReceiveTimeout());
+                } catch (Exception e) {
+                    if (clusterConfig.getAbortOnStateReceivingFailure())
+                        throw e;
+                    else {
+                        log.error("Receiving the cluster state has failed", e);
+                    }
+                } finally {
+                    stateLatch.countDown();
                 }
             }
             registerJmxBeans();
@@ -221,6 +359,40 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         }
     }
 
+    protected void receiveStateAsync() {
+        try {
+            log.info("Receiving cluster state in background...");
+            JChannel channel = this.channel;
+            if (channel != null) {
+                channel.getState(null, clusterConfig.getStateReceiveTimeout());
+            }
+        } catch (Exception e) {
+            log.error("Receiving the cluster state has failed", e);
+        } finally {
+            stateLatch.countDown();
+        }
+    }
+
+    @Override
+    public boolean isReceivingState() {
+        return stateLatch.getCount() > 0;
+    }
+
+    @Override
+    public boolean waitForState() {
+        return waitForState(clusterConfig.getStateReceiveTimeout());
+    }
+
+    @Override
+    public boolean waitForState(long timeoutMs) {
+        try {
+            return stateLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     protected void initJGroupsProperties() {
         for (String name : AppContext.getPropertyNames()) {
             if (name.startsWith("jgroups.")) {
@@ -320,12 +492,22 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
                 sw.stop();
             }
             clusterStateStat
-                    .append(String.format("State: %s, size: %s bytes, serialize time: %s ms\n",
+                    .append(String.format("State: %s, size: %s bytes, serialize time: %s ms",
                             entry.getKey(), data != null ? data.length : -1, sw.getElapsedTime()));
+            int compressionThreshold = clusterConfig.getStateCompressionThreshold();
+            if (data != null && compressionThreshold > 0 && data.length >= compressionThreshold) {
+                clusterStateStat.append(String.format(", compressed size: %s bytes", compressState(data).length));
+            }
+            clusterStateStat.append("\n");
         }
         return clusterStateStat.toString();
     }
 
+    @Override
+    public String printStateTransferStat() {
+        return stateTransferStat.print();
+    }
+
     @Override
     public String printMessagesStat() {
         StringBuilder messagesStats = new StringBuilder();
@@ -333,14 +515,25 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
             MessageStat stat = entry.getValue();
             if (stat != null) {
                 messagesStats
-                        .append(String.format("Class: %s; received: %s, %s bytes; sent: %s, %s bytes\n",
-                                entry.getKey(), stat.getReceivedMessages(), stat.getReceivedBytes(),
-                                stat.getSentMessages(), stat.getSentBytes()));
+                        .append(String.format("Class: %s; codec: %s; received: %s, %s bytes, avg %s bytes, deserialize time: %s ms; " +
+                                        "sent: %s, %s bytes, avg %s bytes, serialize time: %s ms; merged: %s\n",
+                                entry.getKey(), getCodec(entry.getKey()) != null,
+                                stat.getReceivedMessages(), stat.getReceivedBytes(),
+                                average(stat.getReceivedBytes(), stat.getReceivedMessages()),
+                                TimeUnit.NANOSECONDS.toMillis(stat.getDeserializationTime()),
+                                stat.getSentMessages(), stat.getSentBytes(),
+                                average(stat.getSentBytes(), stat.getSentMessages()),
+                                TimeUnit.NANOSECONDS.toMillis(stat.getSerializationTime()),
+                                stat.getMergedMessages()));
             }
         }
         return messagesStats.toString();
     }
 
+    protected long average(long total, long count) {
+        return count == 0 ? 0 : total / count;
+    }
+
     @Override
     public long getSentMessages(String className) {
         Preconditions.checkNotNullArgument(className, "Message class is null");
@@ -381,6 +574,16 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         return 0;
     }
 
+    @Override
+    public long getMergedMessages(String className) {
+        Preconditions.checkNotNullArgument(className, "Message class is null");
+        MessageStat stat = messagesStat.get(className);
+        if (stat != null) {
+            return stat.getMergedMessages();
+        }
+        return 0;
+    }
+
     @Override
     public int getOrder() {
         return LOWEST_PLATFORM_PRECEDENCE - 100;
@@ -398,13 +601,21 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
             StopWatch sw = new Log4JStopWatch();
             String simpleClassName = null;
             try {
-                Serializable data = (Serializable) SerializationSupport.deserialize(bytes);
+                long start = System.nanoTime();
+                Serializable data;
+                try {
+                    data = deserializeMessage(bytes);
+                } catch (IOException e) {
+                    log.error("Error deserializing message", e);
+                    return;
+                }
+                long deserializationTime = System.nanoTime() - start;
                 String className = data.getClass().getName();
                 simpleClassName = data.getClass().getSimpleName();
                 log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, bytes.length);
                 MessageStat stat = messagesStat.get(className);
                 if (stat != null) {
-                    stat.updateReceived(bytes.length);
+                    stat.updateReceived(bytes.length, deserializationTime);
                 }
                 ClusterListener listener = listeners.get(className);
                 if (listener != null) {
@@ -424,34 +635,53 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         @Override
         public void getState(OutputStream output) {
             log.debug("Sending state");
+            stateTransferStat.startSending();
             try (DataOutputStream out = new DataOutputStream(output)) {
-                Map<String, byte[]> state = new HashMap<>();
+                out.writeUTF(CHUNKED_STATE_MAGIC);
+                int chunkSize = clusterConfig.getStateChunkSize();
                 for (Map.Entry<String, ClusterListener> entry : listeners.entrySet()) {
-                    byte[] data;
                     StopWatch sw = new Log4JStopWatch(String.format("getClusterState(%s)", entry.getKey()));
                     try {
-                        data = entry.getValue().getState();
+                        ClusterListener listener = entry.getValue();
+                        if (listener instanceof ChunkedClusterListener) {
+                            Iterator<byte[]> chunks = ((ChunkedClusterListener) listener).getStateChunks(chunkSize);
+                            while (chunks.hasNext()) {
+                                writeStateChunk(out, entry.getKey(), chunks.next());
+                            }
+                        } else {
+                            writeStateChunk(out, entry.getKey(), listener.getState());
+                        }
                     } finally {
                         sw.stop();
                     }
-                    if (data != null && data.length > 0) {
-                        state.put(entry.getKey(), data);
-                    }
-                }
-
-                if (state.size() > 0) {
-                    out.writeUTF(STATE_MAGIC);
-                    out.writeInt(state.size());
-                    for (Map.Entry<String, byte[]> entry : state.entrySet()) {
-                        log.debug("Sending state: {} ({} bytes)", entry.getKey(), entry.getValue().length);
-                        out.writeUTF(entry.getKey());
-                        out.writeInt(entry.getValue().length);
-                        out.write(entry.getValue());
-                    }
                 }
+                out.writeBoolean(false);
             } catch (Exception e) {
                 log.error("Error sending state", e);
+            } finally {
+                stateTransferStat.finishSending();
+            }
+        }
+
+        protected void writeStateChunk(DataOutputStream out, String name, byte[] data) throws IOException {
+            if (data == null || data.length == 0) {
+                return;
             }
+            int originalLength = data.length;
+            int compressionThreshold = clusterConfig.getStateCompressionThreshold();
+            boolean compress = compressionThreshold > 0 && data.length >= compressionThreshold;
+            out.writeBoolean(true);
+            out.writeUTF(name);
+            out.writeBoolean(compress);
+            if (compress) {
+                out.writeInt(data.length);
+                data = compressState(data);
+            }
+            log.debug("Sending state: {} ({} bytes)", name, data.length);
+            out.writeInt(data.length);
+            out.write(data);
+            out.flush();
+            stateTransferStat.updateSent(data.length, originalLength);
         }
 
         @Override
@@ -462,40 +692,58 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         @Override
         public void setState(InputStream input) {
             log.debug("Receiving state");
-
+            stateTransferStat.startReceiving();
             try (DataInputStream in = new DataInputStream(input)) {
-                if (input.available() == 0)
-                    return;
-
-                String magic = in.readUTF();
-                if (!STATE_MAGIC.equals(magic)) {
-                    log.debug("Invalid magic in state received");
+                String magic;
+                try {
+                    magic = in.readUTF();
+                } catch (EOFException e) {
+                    log.debug("Empty state received");
                     return;
                 }
-                int count = in.readInt();
-                for (int i = 0; i < count; i++) {
-                    String name = in.readUTF();
-                    int len = in.readInt();
-                    StopWatch sw = new Log4JStopWatch(String.format("setClusterState(%s)", name));
-                    try {
-                        log.debug("Receiving state: {} ({} bytes)", name, len);
-                        byte[] data = new byte[len];
-                        int c = in.read(data);
-                        if (c != len) {
-                            log.error("Error receiving state: invalid data length");
-                            return;
-                        }
-                        ClusterListener listener = listeners.get(name);
-                        if (listener != null) {
-                            listener.setState(data);
-                        }
-                    } finally {
-                        sw.stop();
+                if (CHUNKED_STATE_MAGIC.equals(magic)) {
+                    while (in.readBoolean()) {
+                        String name = in.readUTF();
+                        boolean compressed = in.readBoolean();
+                        int originalLen = compressed ? in.readInt() : -1;
+                        readStateChunk(in, name, in.readInt(), originalLen);
                     }
+                } else if (STATE_MAGIC.equals(magic)) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String name = in.readUTF();
+                        readStateChunk(in, name, in.readInt(), -1);
+                    }
+                } else {
+                    log.debug("Invalid magic in state received");
+                    return;
                 }
                 log.debug("State received");
             } catch (Exception e) {
                 log.error("Error receiving state", e);
+            } finally {
+                stateTransferStat.finishReceiving();
+            }
+        }
+
+        protected void readStateChunk(DataInputStream in, String name, int len, int originalLen) throws Exception {
+            StopWatch sw = new Log4JStopWatch(String.format("setClusterState(%s)", name));
+            try {
+                log.debug("Receiving state: {} ({} bytes)", name, len);
+                byte[] data = new byte[len];
+                in.readFully(data);
+                if (originalLen >= 0) {
+                    data = decompressState(data, originalLen);
+                }
+                stateTransferStat.updateReceived(name, len, data.length);
+                ClusterListener listener = listeners.get(name);
+                if (listener instanceof ChunkedClusterListener) {
+                    ((ChunkedClusterListener) listener).setStateChunk(data);
+                } else if (listener != null) {
+                    listener.setState(data);
+                }
+            } finally {
+                sw.stop();
             }
         }
 
@@ -526,15 +774,24 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         protected LongAdder receivedBytes = new LongAdder();
         protected LongAdder receivedMessages = new LongAdder();
         protected LongAdder sentMessages = new LongAdder();
+        protected LongAdder mergedMessages = new LongAdder();
+        protected LongAdder serializationTime = new LongAdder();
+        protected LongAdder deserializationTime = new LongAdder();
 
-        public void updateReceived(int bytes) {
+        public void updateReceived(int bytes, long nanos) {
             receivedMessages.increment();
             receivedBytes.add(bytes);
+            deserializationTime.add(nanos);
         }
 
-        public void updateSent(int bytes) {
+        public void updateSent(int bytes, long nanos) {
             sentMessages.increment();
             sentBytes.add(bytes);
+            serializationTime.add(nanos);
+        }
+
+        public void updateMerged(int count) {
+            mergedMessages.add(count);
         }
 
         public long getSentBytes() {
@@ -552,5 +809,81 @@ public class ClusterManager implements ClusterManagerAPI, AppContext.Listener, O
         public long getReceivedMessages() {
             return receivedMessages.longValue();
         }
+
+        public long getMergedMessages() {
+            return mergedMessages.longValue();
+        }
+
+        public long getSerializationTime() {
+            return serializationTime.longValue();
+        }
+
+        public long getDeserializationTime() {
+            return deserializationTime.longValue();
+        }
+    }
+
+    protected class StateTransferStat {
+        protected volatile long receiveStartTs;
+        protected volatile long receiveEndTs;
+        protected volatile String receivingListener;
+        protected LongAdder receivedChunks = new LongAdder();
+        protected LongAdder receivedBytes = new LongAdder();
+        protected LongAdder receivedUncompressedBytes = new LongAdder();
+
+        protected AtomicInteger sendingCount = new AtomicInteger();
+        protected LongAdder sentChunks = new LongAdder();
+        protected LongAdder sentBytes = new LongAdder();
+        protected LongAdder sentUncompressedBytes = new LongAdder();
+
+        public void startReceiving() {
+            receiveStartTs = System.currentTimeMillis();
+            receiveEndTs = 0;
+        }
+
+        public void finishReceiving() {
+            receiveEndTs = System.currentTimeMillis();
+            receivingListener = null;
+        }
+
+        public void updateReceived(String listener, int bytes, int uncompressedBytes) {
+            receivingListener = listener;
+            receivedChunks.increment();
+            receivedBytes.add(bytes);
+            receivedUncompressedBytes.add(uncompressedBytes);
+        }
+
+        public void startSending() {
+            sendingCount.incrementAndGet();
+        }
+
+        public void finishSending() {
+            sendingCount.decrementAndGet();
+        }
+
+        public void updateSent(int bytes, int uncompressedBytes) {
+            sentChunks.increment();
+            sentBytes.add(bytes);
+            sentUncompressedBytes.add(uncompressedBytes);
+        }
+
+        public String print() {
+            StringBuilder sb = new StringBuilder();
+            if (receiveStartTs == 0) {
+                sb.append("Received: none");
+            } else {
+                long end = receiveEndTs == 0 ? System.currentTimeMillis() : receiveEndTs;
+                sb.append(String.format("Received: %s chunks, %s bytes (%s bytes uncompressed) in %s ms",
+                        receivedChunks.longValue(), receivedBytes.longValue(), receivedUncompressedBytes.longValue(),
+                        end - receiveStartTs));
+                if (receiveEndTs == 0) {
+                    sb.append(", in progress, current state: ").append(receivingListener);
+                }
+            }
+            sb.append(String.format("\nSent: %s chunks, %s bytes (%s bytes uncompressed), transfers in progress: %s\n",
+                    sentChunks.longValue(), sentBytes.longValue(), sentUncompressedBytes.longValue(),
+                    sendingCount.get()));
+            return sb.toString();
+        }
     }
-}
\ No newline at end of file
+}
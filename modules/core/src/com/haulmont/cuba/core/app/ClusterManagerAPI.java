@@ -39,6 +39,16 @@ public interface ClusterManagerAPI {
      */
     void sendSync(Serializable message);
 
+    /**
+     * Send a message which replaces several logical messages, e.g. combined by {@link ClusterMessageBatcher}.
+     * The number of replaced messages is reported in {@link #getMergedMessages(String)}.
+     *
+     * @param message     serializable message
+     * @param mergedCount number of logical messages combined in this message
+     * @param sync        whether to block the current thread until the message is delivered
+     */
+    void sendMerged(Serializable message, int mergedCount, boolean sync);
+
     /**
      * @return whether the synchronous sending is forced for the current thread
      * @see #setSyncSendingForCurrentThread(boolean)
@@ -100,6 +110,28 @@ public interface ClusterManagerAPI {
      */
     boolean isStarted();
 
+    /**
+     * @return true if the cluster state is being received from other node at the moment
+     */
+    boolean isReceivingState();
+
+    /**
+     * Block the current thread until the cluster state is received from other node, but not longer than
+     * the state receive timeout.
+     *
+     * @return true if the state has been received, false if the timeout has elapsed
+     */
+    boolean waitForState();
+
+    /**
+     * Block the current thread until the cluster state is received from other node, but not longer than
+     * the specified timeout.
+     *
+     * @param timeoutMs max time to wait in milliseconds
+     * @return true if the state has been received, false if the timeout has elapsed
+     */
+    boolean waitForState(long timeoutMs);
+
     /**
      * @return threads count that are actively sending cluster messages
      */
@@ -117,6 +149,13 @@ public interface ClusterManagerAPI {
      */
     String printSharedStateStat();
 
+    /**
+     * State transfer progress statistics
+     *
+     * @return statistics
+     */
+    String printStateTransferStat();
+
     /**
      * Sent/received messages statistics
      *
@@ -151,4 +190,12 @@ public interface ClusterManagerAPI {
      * @return size in bytes
      */
     long getReceivedBytes(String className);
+
+    /**
+     * Get count of logical messages which were combined into the sent messages of the specified class.
+     *
+     * @param className message class
+     * @return merged messages count
+     */
+    long getMergedMessages(String className);
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.core.app;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Collects items of logical cluster messages during a batching window and sends them as a single message.
+ * <p>Items are merged by the collection created by the {@code bufferFactory}, e.g. a set merges equal items.
+ * If the outgoing queue of {@link ClusterManagerAPI} is longer than {@link ClusterConfig#getClusterMessageBatchingQueueThreshold()},
+ * sending is postponed to the next window. When the batch reaches {@link ClusterConfig#getClusterMessageBatchMaxSize()},
+ * it is sent synchronously by the calling thread, which slows down producers that outpace the cluster.
+ * Producers that must not block, e.g. request threads, can hand such a batch to the background thread
+ * by {@link #setSyncFlushWhenFull(boolean)}.
+ * <p>If the window is zero, each item collection is sent immediately as a separate message.
+ */
+public class ClusterMessageBatcher<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterMessageBatcher.class);
+
+    protected final ClusterManagerAPI clusterManager;
+    protected final ClusterConfig clusterConfig;
+    protected final Supplier<Collection<T>> bufferFactory;
+    protected final Function<List<T>, Serializable> messageFactory;
+    protected final LongSupplier window;
+
+    protected Collection<T> buffer;
+    protected int mergedCount;
+    protected ScheduledFuture<?> scheduledFlush;
+    protected boolean immediateFlushScheduled;
+    protected volatile boolean syncFlushWhenFull = true;
+    protected ScheduledExecutorService scheduler;
+
+    /**
+     * @param bufferFactory  creates a collection that accumulates items between sending
+     * @param messageFactory creates a cluster message from the collected items
+     */
+    public ClusterMessageBatcher(ClusterManagerAPI clusterManager, ClusterConfig clusterConfig,
+                                 Supplier<Collection<T>> bufferFactory,
+                                 Function<List<T>, Serializable> messageFactory) {
+        this(clusterManager, clusterConfig, bufferFactory, messageFactory, clusterConfig::getClusterMessageBatchingWindow);
+    }
+
+    /**
+     * @param bufferFactory  creates a collection that accumulates items between sending
+     * @param messageFactory creates a cluster message from the collected items
+     * @param window         supplies the batching window in milliseconds instead of
+     *                       {@link ClusterConfig#getClusterMessageBatchingWindow()}
+     */
+    public ClusterMessageBatcher(ClusterManagerAPI clusterManager, ClusterConfig clusterConfig,
+                                 Supplier<Collection<T>> bufferFactory,
+                                 Function<List<T>, Serializable> messageFactory,
+                                 LongSupplier window) {
+        this.clusterManager = clusterManager;
+        this.clusterConfig = clusterConfig;
+        this.bufferFactory = bufferFactory;
+        this.messageFactory = messageFactory;
+        this.window = window;
+        this.buffer = bufferFactory.get();
+    }
+
+    /**
+     * @param syncFlushWhenFull if true (default), a full batch is sent synchronously by the thread adding items,
+     *                          otherwise it is sent immediately by the background thread
+     * @return this instance for chaining
+     */
+    public ClusterMessageBatcher<T> setSyncFlushWhenFull(boolean syncFlushWhenFull) {
+        this.syncFlushWhenFull = syncFlushWhenFull;
+        return this;
+    }
+
+    /**
+     * Adds items of one logical message to the current batch.
+     */
+    public void add(Collection<? extends T> items) {
+        long window = this.window.getAsLong();
+        if (window <= 0) {
+            clusterManager.send(messageFactory.apply(new ArrayList<>(items)));
+            return;
+        }
+
+        boolean flushNow = false;
+        synchronized (this) {
+            buffer.addAll(items);
+            mergedCount++;
+            boolean full = buffer.size() >= clusterConfig.getClusterMessageBatchMaxSize();
+            if (full && syncFlushWhenFull) {
+                flushNow = true;
+            } else if (full) {
+                if (!immediateFlushScheduled) {
+                    if (scheduledFlush != null) {
+                        scheduledFlush.cancel(false);
+                    }
+                    scheduledFlush = getScheduler().schedule(this::flushImmediate, 0, TimeUnit.MILLISECONDS);
+                    immediateFlushScheduled = true;
+                }
+            } else if (scheduledFlush == null) {
+                scheduledFlush = getScheduler().schedule(this::flushScheduled, window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flushNow) {
+            flush(true);
+        }
+    }
+
+    /**
+     * Sends the collected items immediately.
+     *
+     * @param sync whether to block until the message is delivered
+     */
+    public void flush(boolean sync) {
+        List<T> items;
+        int count;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            immediateFlushScheduled = false;
+            if (buffer.isEmpty())
+                return;
+
+            items = new ArrayList<>(buffer);
+            count = mergedCount;
+            buffer = bufferFactory.get();
+            mergedCount = 0;
+        }
+        log.debug("Sending {} items of {} merged messages", items.size(), count);
+        clusterManager.sendMerged(messageFactory.apply(items), count, sync);
+    }
+
+    /**
+     * Sends the collected items and stops the scheduler.
+     */
+    public void shutdown() {
+        flush(false);
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+                scheduler = null;
+            }
+        }
+    }
+
+    protected void flushScheduled() {
+        synchronized (this) {
+            scheduledFlush = null;
+            if (clusterManager.getMessagesCount() > clusterConfig.getClusterMessageBatchingQueueThreshold()) {
+                log.debug("Outgoing queue is too long, postponing sending of {} items", buffer.size());
+                scheduledFlush = getScheduler().schedule(this::flushScheduled,
+                        window.getAsLong(), TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        try {
+            flush(false);
+        } catch (Exception e) {
+            log.error("Error sending batched cluster message", e);
+        }
+    }
+
+    protected void flushImmediate() {
+        try {
+            flush(false);
+        } catch (Exception e) {
+            log.error("Error sending batched cluster message", e);
+        }
+    }
+
+    protected synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ClusterMessageBatcher-%d").setDaemon(true).build());
+        }
+        return scheduler;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Compact binary encoder/decoder of a particular cluster message class.
+ *
+ * <p>By default, cluster messages are transferred in the form produced by
+ * {@link com.haulmont.cuba.core.sys.serialization.SerializationSupport}. If a Spring bean implementing this interface
+ * exists for a message class, {@link ClusterManager} uses it instead, which is much more compact for small messages
+ * sent frequently.</p>
+ *
+ * <p>All nodes of the cluster must have the same set of codecs.</p>
+ *
+ * @param <T> type of message
+ */
+public interface ClusterMessageCodec<T extends Serializable> {
+
+    /**
+     * @return class of messages encoded by this codec. Subclasses are encoded by standard serialization.
+     */
+    Class<T> getMessageClass();
+
+    /**
+     * Write the message to the output.
+     */
+    void write(T message, DataOutput out) throws IOException;
+
+    /**
+     * Read the message written by {@link #write(Serializable, DataOutput)}.
+     */
+    T read(DataInput in) throws IOException;
+}
@@ -34,6 +34,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component(DataManager.NAME)
 public class DataManagerBean implements DataManager {
@@ -86,6 +87,21 @@ public class DataManagerBean implements DataManager {
         return entities;
     }
 
+    @Override
+    public <E extends Entity> void loadBatches(LoadContext<E> context, int batchSize, Consumer<List<E>> consumer) {
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+        String storeName = metadataTools.getStoreName(metaClass);
+        if (storeName == null) {
+            log.debug("Data store for {} is not defined, nothing to load", metaClass);
+            return;
+        }
+        DataStore storage = storeFactory.get(storeName);
+        storage.loadBatches(context, batchSize, batch -> {
+            readCrossDataStoreReferences(batch, context.getView(), metaClass);
+            consumer.accept(batch);
+        });
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
@@ -267,6 +283,7 @@ public class DataManagerBean implements DataManager {
     protected CommitContext createCommitContext(CommitContext context) {
         CommitContext newCtx = new CommitContext();
         newCtx.setSoftDeletion(context.isSoftDeletion());
+        newCtx.setRemoveSoftDeletion(context.getRemoveSoftDeletion());
         newCtx.setDiscardCommitted(context.isDiscardCommitted());
         return newCtx;
     }
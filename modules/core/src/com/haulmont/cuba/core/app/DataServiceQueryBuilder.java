@@ -17,6 +17,7 @@
 
 package com.haulmont.cuba.core.app;
 
+import com.google.common.collect.Lists;
 import com.haulmont.bali.util.StringHelper;
 import com.haulmont.chile.core.datatypes.impl.EnumClass;
 import com.haulmont.chile.core.model.MetaClass;
@@ -24,6 +25,7 @@ import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.Query;
+import com.haulmont.cuba.core.app.queryresults.QueryResultsManagerAPI;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.QueryMacroHandler;
@@ -45,6 +47,12 @@ public class DataServiceQueryBuilder {
 
     public static final String NAME = "cuba_DataServiceQueryBuilder";
 
+    /**
+     * Max number of values in a single IN expression restricting a query by in-memory previous results.
+     * Oracle does not accept more than 1000.
+     */
+    public static final int MAX_IN_PARAMETER_SIZE = 1000;
+
     private final Logger log = LoggerFactory.getLogger(DataServiceQueryBuilder.class);
 
     protected String queryString;
@@ -58,6 +66,9 @@ public class DataServiceQueryBuilder {
     @Inject
     private PersistenceSecurity security;
 
+    @Inject
+    protected QueryResultsManagerAPI queryResultsManager;
+
     public void init(String queryString, Map<String, Object> queryParams,
                      Object id, String entityName)
     {
@@ -86,6 +97,28 @@ public class DataServiceQueryBuilder {
         MetaProperty primaryKey = metadata.getTools().getPrimaryKeyProperty(metaClass);
         if (primaryKey == null)
             throw new IllegalStateException(String.format("Entity %s has no primary key", entityName));
+
+        List<Object> inMemoryResults = queryResultsManager.getInMemoryResults(sessionId, queryKey);
+        if (inMemoryResults != null) {
+            if (inMemoryResults.isEmpty()) {
+                transformer.addWhere(String.format("{E}.%s is null", primaryKey.getName()));
+            } else {
+                List<List<Object>> chunks = Lists.partition(inMemoryResults, MAX_IN_PARAMETER_SIZE);
+                StringBuilder where = new StringBuilder();
+                for (int i = 0; i < chunks.size(); i++) {
+                    if (i > 0) {
+                        where.append(" or ");
+                    }
+                    String paramName = "_qr_ids" + i;
+                    where.append(String.format("{E}.%s in :%s", primaryKey.getName(), paramName));
+                    this.queryParams.put(paramName, chunks.get(i));
+                }
+                transformer.addWhere(chunks.size() > 1 ? "(" + where + ")" : where.toString());
+            }
+            queryString = transformer.getResult();
+            return;
+        }
+
         Class type = primaryKey.getJavaType();
         String entityIdField;
         if (UUID.class.equals(type)) {
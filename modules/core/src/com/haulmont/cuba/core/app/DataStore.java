@@ -18,6 +18,7 @@ package com.haulmont.cuba.core.app;
 
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.KeyValueEntity;
+import com.haulmont.cuba.core.global.BatchLoader;
 import com.haulmont.cuba.core.global.CommitContext;
 import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.ValueLoadContext;
@@ -25,6 +26,7 @@ import com.haulmont.cuba.core.global.ValueLoadContext;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * INTERNAL.
@@ -45,6 +47,15 @@ public interface DataStore {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads collection of entity instances in batches of the given size, each batch in a separate transaction.
+     * The default implementation loads batches with {@link #loadList(LoadContext)} using offset paging.
+     * @param consumer receives each loaded batch
+     */
+    default <E extends Entity> void loadBatches(LoadContext<E> context, int batchSize, Consumer<List<E>> consumer) {
+        BatchLoader.loadBatches(context, batchSize, false, this::loadList, consumer);
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @return number of instances in the storage
@@ -16,9 +16,13 @@
  */
 package com.haulmont.cuba.core.app;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.entity.AppFolder;
@@ -30,6 +34,7 @@ import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
 import com.haulmont.cuba.security.entity.SearchFolder;
 import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.global.ConstraintData;
 import com.haulmont.cuba.security.global.UserSession;
 import com.thoughtworks.xstream.XStream;
 import groovy.lang.Binding;
@@ -47,13 +52,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
 
 @Service(FoldersService.NAME)
@@ -82,6 +90,26 @@ public class FoldersServiceBean implements FoldersService {
     @Inject
     protected TimeSource timeSource;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
+    /**
+     * Results of quantity scripts by folder, script text and user or equivalent sessions.
+     * Null if caching is disabled.
+     */
+    protected Cache<List<Object>, AppFolderQuantity> quantityCache;
+
+    @PostConstruct
+    protected void init() {
+        int expirationSec = serverConfig.getAppFolderQuantityCacheExpirationSec();
+        if (expirationSec > 0) {
+            quantityCache = CacheBuilder.newBuilder()
+                    .expireAfterWrite(expirationSec, TimeUnit.SECONDS)
+                    .maximumSize(serverConfig.getAppFolderQuantityCacheMaxSize())
+                    .build();
+        }
+    }
+
     @Override
     public List<AppFolder> loadAppFolders() {
         log.debug("Loading AppFolders");
@@ -162,15 +190,19 @@ public class FoldersServiceBean implements FoldersService {
 
         try {
             if (!folders.isEmpty()) {
+                UserSession userSession = userSessionSource.getUserSession();
                 Binding binding = new Binding();
                 binding.setVariable("persistence", persistence);
                 binding.setVariable("metadata", metadata);
-                binding.setProperty("userSession", userSessionSource.getUserSession());
+                binding.setProperty("userSession", userSession);
+
+                // the scope of cached quantities is the same for all folders
+                Object quantityCacheScope = quantityCache != null ? createQuantityCacheScope(userSession) : null;
 
                 for (AppFolder folder : folders) {
                     Transaction tx = persistence.createTransaction();
                     try {
-                        if (loadFolderQuantity(binding, folder)) {
+                        if (loadFolderQuantity(binding, folder, quantityCacheScope)) {
                             tx.commit();
                         }
                     } finally {
@@ -185,27 +217,93 @@ public class FoldersServiceBean implements FoldersService {
         }
     }
 
-    protected boolean loadFolderQuantity(Binding binding, AppFolder folder) {
+    protected boolean loadFolderQuantity(Binding binding, AppFolder folder, @Nullable Object quantityCacheScope) {
         if (!StringUtils.isBlank(folder.getQuantityScript())) {
-            binding.setVariable("folder", folder);
-
-            String styleVariable = "style";
-            binding.setVariable(styleVariable, null);
-
+            AppFolderQuantity quantity;
             try {
-                Number qty = runScript(folder.getQuantityScript(), binding);
-                folder.setItemStyle((String) binding.getVariable(styleVariable));
-                folder.setQuantity(qty == null ? null : qty.intValue());
+                if (quantityCache != null) {
+                    // concurrent requests for the same key wait for the single evaluation
+                    quantity = quantityCache.get(createQuantityCacheKey(folder, quantityCacheScope),
+                            () -> evaluateFolderQuantity(binding, folder));
+                } else {
+                    quantity = evaluateFolderQuantity(binding, folder);
+                }
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                log.warn("Unable to evaluate AppFolder quantity script for folder: id: {} , name: {}",
+                        folder.getId(), folder.getName(), e.getCause());
+                return false;
             } catch (Exception e) {
                 log.warn("Unable to evaluate AppFolder quantity script for folder: id: {} , name: {}",
                         folder.getId(), folder.getName(), e);
                 return false;
             }
+            folder.setItemStyle(quantity.getStyle());
+            folder.setQuantity(quantity.getQuantity());
         }
 
         return true;
     }
 
+    protected AppFolderQuantity evaluateFolderQuantity(Binding binding, AppFolder folder) {
+        binding.setVariable("folder", folder);
+
+        String styleVariable = "style";
+        binding.setVariable(styleVariable, null);
+
+        Number qty = runScript(folder.getQuantityScript(), binding);
+        return new AppFolderQuantity(qty == null ? null : qty.intValue(), (String) binding.getVariable(styleVariable));
+    }
+
+    protected List<Object> createQuantityCacheKey(AppFolder folder, Object quantityCacheScope) {
+        return Arrays.asList(folder.getId(), folder.getQuantityScript(), quantityCacheScope);
+    }
+
+    /**
+     * Results are cached per user by default. If sharing between users is enabled, sessions having the same
+     * access group, roles and session attributes get the same scope, unless the constraints of the session depend
+     * on the user itself, see {@link #hasUserSpecificConstraints(UserSession)}.
+     */
+    protected Object createQuantityCacheScope(UserSession userSession) {
+        User user = userSession.getCurrentOrSubstitutedUser();
+        if (serverConfig.getAppFolderQuantityCacheSharedBetweenUsers() && user.getGroup() != null
+                && !hasUserSpecificConstraints(userSession)) {
+            Map<String, Object> attributes = new HashMap<>();
+            for (String name : userSession.getAttributeNames()) {
+                attributes.put(name, userSession.getAttribute(name));
+            }
+            return Arrays.asList(user.getGroup().getId(), new TreeSet<>(userSession.getRoles()), attributes);
+        }
+        return user.getId();
+    }
+
+    /**
+     * @return true if any constraint of the session uses the {@code session$userId} or {@code session$userLogin}
+     * parameters, or refers to the user session in its Groovy script, so its results differ between users
+     * of the same group
+     */
+    protected boolean hasUserSpecificConstraints(UserSession userSession) {
+        if (!userSession.hasConstraints()) {
+            return false;
+        }
+        for (List<ConstraintData> entityConstraints : userSession.getConstraints().values()) {
+            for (ConstraintData constraint : entityConstraints) {
+                if (isUserSpecific(constraint.getJoin())
+                        || isUserSpecific(constraint.getWhereClause())
+                        || isUserSpecific(constraint.getGroovyScript())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected boolean isUserSpecific(@Nullable String constraintText) {
+        return constraintText != null
+                && (constraintText.contains(PersistenceSecurity.CONSTRAINT_PARAM_SESSION_ATTR + "userId")
+                || constraintText.contains(PersistenceSecurity.CONSTRAINT_PARAM_SESSION_ATTR + "userLogin")
+                || constraintText.contains("userSession"));
+    }
+
     @Override
     public List<SearchFolder> loadSearchFolders() {
         log.debug("Loading SearchFolders");
@@ -351,4 +449,24 @@ public class FoldersServiceBean implements FoldersService {
         zipEntry.setCrc(crc32.getValue());
         return zipEntry;
     }
+
+    protected static class AppFolderQuantity {
+        protected final Integer quantity;
+        protected final String style;
+
+        public AppFolderQuantity(@Nullable Integer quantity, @Nullable String style) {
+            this.quantity = quantity;
+            this.style = style;
+        }
+
+        @Nullable
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        @Nullable
+        public String getStyle() {
+            return style;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.global.LockInfo;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.security.entity.User;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Cluster codec of {@link LockInfo} messages. Only identifier, login and name of the lock owner are transferred,
+ * which is what lock notifications and the lock browser display, so {@link LockInfo#getUser()} on other nodes
+ * is a partially filled instance.
+ */
+@Component(LockInfoCodec.NAME)
+public class LockInfoCodec extends AbstractClusterMessageCodec<LockInfo> {
+
+    public static final String NAME = "cuba_LockInfoCodec";
+
+    @Inject
+    protected Metadata metadata;
+
+    @Override
+    public Class<LockInfo> getMessageClass() {
+        return LockInfo.class;
+    }
+
+    @Override
+    public void write(LockInfo message, DataOutput out) throws IOException {
+        writeUuid(message.getId(), out);
+        out.writeUTF(message.getEntityName());
+        writeString(message.getEntityId(), out);
+        out.writeLong(message.getSince().getTime());
+
+        User user = message.getUser();
+        out.writeBoolean(user != null);
+        if (user != null) {
+            writeUuid(user.getId(), out);
+            writeString(user.getLogin(), out);
+            writeString(user.getName(), out);
+        }
+    }
+
+    @Override
+    public LockInfo read(DataInput in) throws IOException {
+        UUID id = readUuid(in);
+        String entityName = in.readUTF();
+        String entityId = readString(in);
+        Date since = new Date(in.readLong());
+
+        User user = null;
+        if (in.readBoolean()) {
+            user = metadata.create(User.class);
+            user.setId(readUuid(in));
+            user.setLogin(readString(in));
+            user.setName(readString(in));
+        }
+        return new LockInfo(id, user, entityName, entityId, since);
+    }
+}
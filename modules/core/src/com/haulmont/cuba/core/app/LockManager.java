@@ -16,6 +16,7 @@
  */
 package com.haulmont.cuba.core.app;
 
+import com.google.common.collect.Iterators;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.EntityManager;
@@ -35,12 +36,13 @@ import javax.inject.Inject;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component(LockManagerAPI.NAME)
-public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
+public class LockManager implements LockManagerAPI, ChunkedClusterListener<LockInfo> {
 
     private static class LockKey {
         
@@ -237,8 +239,21 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
 
     @Override
     public byte[] getState() {
-        List<LockInfo> list = new ArrayList<>(locks.values());
+        return serializeLocks(new ArrayList<>(locks.values()));
+    }
+
+    @Override
+    public Iterator<byte[]> getStateChunks(int chunkSize) {
+        return Iterators.transform(Iterators.partition(locks.values().iterator(), chunkSize),
+                list -> serializeLocks(new ArrayList<>(list)));
+    }
+
+    @Override
+    public void setStateChunk(byte[] chunk) {
+        setState(chunk);
+    }
 
+    protected byte[] serializeLocks(ArrayList<LockInfo> list) {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
             ObjectOutputStream oos = new ObjectOutputStream(bos);
@@ -16,6 +16,9 @@
 
 package com.haulmont.cuba.core.app;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -29,6 +32,7 @@ import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.EntityFetcher;
+import com.haulmont.cuba.core.sys.QueryTransformationCache;
 import com.haulmont.cuba.security.entity.ConstraintOperationType;
 import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
@@ -40,8 +44,10 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.persistence.FlushModeType;
 import javax.persistence.NoResultException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -57,6 +63,9 @@ public class RdbmsStore implements DataStore {
 
     public static final String NAME = "cuba_RdbmsStore";
 
+    protected static final String KEYSET_SORT_VALUE_PARAM = "_keysetSortValue";
+    protected static final String KEYSET_ID_PARAM = "_keysetId";
+
     private Logger log = LoggerFactory.getLogger(RdbmsStore.class);
 
     @Inject
@@ -95,6 +104,9 @@ public class RdbmsStore implements DataStore {
     @Inject
     protected EntityFetcher entityFetcher;
 
+    @Inject
+    protected QueryTransformationCache queryTransformationCache;
+
     protected String storeName;
 
     public RdbmsStore(String storeName) {
@@ -187,6 +199,88 @@ public class RdbmsStore implements DataStore {
 
         queryResultsManager.savePreviousQueryResults(context);
 
+        return loadListInternal(context);
+    }
+
+    @Override
+    public <E extends Entity> void loadBatches(LoadContext<E> context, int batchSize, Consumer<List<E>> consumer) {
+        Preconditions.checkNotNullArgument(context.getQuery(), "query is null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("loadBatches: metaClass=" + context.getMetaClass() + ", view=" + context.getView()
+                    + ", query=" + DataServiceQueryBuilder.printQuery(context.getQuery().getQueryString())
+                    + ", batchSize=" + batchSize);
+
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+
+        if (!isEntityOpPermitted(metaClass, EntityOp.READ)) {
+            log.debug("reading of {} not permitted, nothing to load", metaClass);
+            return;
+        }
+
+        queryResultsManager.savePreviousQueryResults(context);
+
+        boolean keyset = hasSimplePrimaryKey(metaClass);
+        if (!keyset) {
+            log.debug("{} has no simple primary key, loading batches using offset", metaClass);
+        }
+        BatchLoader.loadBatches(context, batchSize, keyset, this::loadListInternal, consumer);
+    }
+
+    protected boolean hasSimplePrimaryKey(MetaClass metaClass) {
+        MetaProperty primaryKey = metadata.getTools().getPrimaryKeyProperty(metaClass);
+        return primaryKey != null && !primaryKey.getRange().isClass();
+    }
+
+    /**
+     * Replaces the cursor of the query by ordering and conditions on the sort property and primary key.
+     * @return a copy of the context with transformed query
+     */
+    protected <E extends Entity> LoadContext<E> applyCursor(LoadContext<E> context) {
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+        if (!hasSimplePrimaryKey(metaClass)) {
+            throw new UnsupportedOperationException("Keyset pagination is not supported for " + metaClass
+                    + " because it has no simple primary key");
+        }
+        String pkName = metadata.getTools().getPrimaryKeyName(metaClass);
+
+        //noinspection unchecked
+        LoadContext<E> cursorContext = (LoadContext<E>) context.copy();
+        LoadContext.Query query = cursorContext.getQuery();
+        KeysetCursor cursor = query.getCursor();
+        String sortProperty = cursor.getSortProperty();
+
+        QueryTransformer transformer = queryTransformerFactory.transformer(query.getQueryString());
+        if (sortProperty != null) {
+            transformer.replaceOrderBy(cursor.isDesc(), sortProperty, pkName);
+        } else {
+            transformer.replaceOrderBy(cursor.isDesc(), pkName);
+        }
+        if (!cursor.isFirst()) {
+            String op = cursor.isDesc() ? "<" : ">";
+            if (sortProperty != null) {
+                transformer.addWhere(String.format("({E}.%1$s %2$s :%3$s or ({E}.%1$s = :%3$s and {E}.%4$s %2$s :%5$s))",
+                        sortProperty, op, KEYSET_SORT_VALUE_PARAM, pkName, KEYSET_ID_PARAM));
+                query.setParameter(KEYSET_SORT_VALUE_PARAM, cursor.getSortValue());
+            } else {
+                transformer.addWhere(String.format("{E}.%s %s :%s", pkName, op, KEYSET_ID_PARAM));
+            }
+            query.setParameter(KEYSET_ID_PARAM, cursor.getId());
+        }
+        query.setQueryString(transformer.getResult());
+        query.setFirstResult(0);
+        query.setCursor(null);
+        return cursorContext;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <E extends Entity> List<E> loadListInternal(LoadContext<E> context) {
+        if (context.getQuery() != null && context.getQuery().getCursor() != null) {
+            context = applyCursor(context);
+        }
         List<E> resultList;
         boolean needToApplyConstraints = needToApplyConstraints(context);
         try (Transaction tx = createLoadTransaction()) {
@@ -196,11 +290,10 @@ public class RdbmsStore implements DataStore {
 
             boolean ensureDistinct = false;
             if (serverConfig.getInMemoryDistinct() && context.getQuery() != null) {
-                QueryTransformer transformer = queryTransformerFactory.transformer(
-                        context.getQuery().getQueryString());
-                ensureDistinct = transformer.removeDistinct();
+                QueryTransformationCache.Result result = removeDistinct(context.getQuery().getQueryString());
+                ensureDistinct = result.isChanged();
                 if (ensureDistinct) {
-                    context.getQuery().setQueryString(transformer.getResult());
+                    context.getQuery().setQueryString(result.getQuery());
                 }
             }
             View view = createRestrictedView(context);
@@ -250,38 +343,11 @@ public class RdbmsStore implements DataStore {
         queryResultsManager.savePreviousQueryResults(context);
 
         if (security.hasInMemoryConstraints(metaClass, ConstraintOperationType.READ, ConstraintOperationType.ALL)) {
-            context = context.copy();
-            List resultList;
-            try (Transaction tx = createLoadTransaction()) {
-                EntityManager em = persistence.getEntityManager(storeName);
-                em.setSoftDeletion(context.isSoftDeletion());
-                persistence.getEntityManagerContext(storeName).setDbHints(context.getDbHints());
-
-                boolean ensureDistinct = false;
-                if (serverConfig.getInMemoryDistinct() && context.getQuery() != null) {
-                    QueryTransformer transformer = QueryTransformerFactory.createTransformer(
-                            context.getQuery().getQueryString());
-                    ensureDistinct = transformer.removeDistinct();
-                    if (ensureDistinct) {
-                        context.getQuery().setQueryString(transformer.getResult());
-                    }
-                }
-                context.getQuery().setFirstResult(0);
-                context.getQuery().setMaxResults(0);
-
-                Query query = createQuery(em, context, false);
-                query.setView(createRestrictedView(context));
-
-                resultList = getResultList(context, query, ensureDistinct);
-
-                tx.commit();
-            }
-            return resultList.size();
+            return getCountWithInMemoryConstraints(context, metaClass);
         } else {
-            QueryTransformer transformer = QueryTransformerFactory.createTransformer(context.getQuery().getQueryString());
-            transformer.replaceWithCount();
+            String countQuery = replaceWithCount(context.getQuery().getQueryString());
             context = context.copy();
-            context.getQuery().setQueryString(transformer.getResult());
+            context.getQuery().setQueryString(countQuery);
 
             Number result;
             try (Transaction tx = createLoadTransaction()) {
@@ -320,6 +386,10 @@ public class RdbmsStore implements DataStore {
 
             persistence.getEntityManagerContext(storeName).setDbHints(context.getDbHints());
 
+            if (context.isBulkMode()) {
+                preloadInstances(em, context);
+            }
+
             List<BaseGenericIdEntity> entitiesToStoreDynamicAttributes = new ArrayList<>();
 
             // persist new
@@ -367,11 +437,12 @@ public class RdbmsStore implements DataStore {
                 }
             }
 
-            for (BaseGenericIdEntity entity : entitiesToStoreDynamicAttributes) {
-                dynamicAttributesManagerAPI.storeDynamicAttributes(entity);
-            }
+            dynamicAttributesManagerAPI.storeDynamicAttributes(entitiesToStoreDynamicAttributes);
 
             // remove
+            if (context.getRemoveSoftDeletion() != null) {
+                em.setSoftDeletion(context.getRemoveSoftDeletion());
+            }
             for (Entity entity : context.getRemoveInstances()) {
                 security.restoreSecurityStateAndFilteredData(entity);
 
@@ -408,10 +479,11 @@ public class RdbmsStore implements DataStore {
                         }
                     }
                 }
+            }
 
-                if (!context.isDiscardCommitted() && isAuthorizationRequired() && userSessionSource.getUserSession().hasConstraints()) {
-                    security.filterByConstraints(res);
-                }
+            if (!context.getRemoveInstances().isEmpty()
+                    && !context.isDiscardCommitted() && isAuthorizationRequired() && userSessionSource.getUserSession().hasConstraints()) {
+                security.filterByConstraints(res);
             }
 
             tx.commit();
@@ -428,9 +500,7 @@ public class RdbmsStore implements DataStore {
         }
 
         try (Transaction tx = persistence.createTransaction(storeName)) {
-            for (BaseGenericIdEntity entity : identityEntitiesToStoreDynamicAttributes) {
-                dynamicAttributesManagerAPI.storeDynamicAttributes(entity);
-            }
+            dynamicAttributesManagerAPI.storeDynamicAttributes(identityEntitiesToStoreDynamicAttributes);
             tx.commit();
         }
 
@@ -439,8 +509,10 @@ public class RdbmsStore implements DataStore {
         }
 
         if (!context.isDiscardCommitted()) {
+            Set<Entity> persistedSet = Sets.newIdentityHashSet();
+            persistedSet.addAll(persisted);
             for (Entity entity : res) {
-                if (!persisted.contains(entity)) {
+                if (!persistedSet.contains(entity)) {
                     attributeSecurity.afterCommit(entity);
                 }
             }
@@ -450,6 +522,59 @@ public class RdbmsStore implements DataStore {
         return res;
     }
 
+    /**
+     * Loads the detached instances to be merged or removed into the persistence context by a few queries per
+     * entity class and view, so that the subsequent merge operations do not read them from the database one by one.
+     */
+    protected void preloadInstances(EntityManager em, CommitContext context) {
+        Map<MetaClass, Map<View, List<Object>>> idsByClass = new LinkedHashMap<>();
+        for (Entity entity : Iterables.concat(context.getCommitInstances(), context.getRemoveInstances())) {
+            if (!PersistenceHelper.isDetached(entity))
+                continue;
+
+            MetaClass metaClass = metadata.getExtendedEntities().getEffectiveMetaClass(entity.getMetaClass());
+            if (!hasSimplePrimaryKey(metaClass))
+                continue;
+
+            Object id = entity.getId();
+            if (id instanceof IdProxy) {
+                id = ((IdProxy) id).get();
+            }
+            if (id == null)
+                continue;
+
+            idsByClass.computeIfAbsent(metaClass, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(context.getViews().get(entity), k -> new ArrayList<>())
+                    .add(id);
+        }
+
+        int batchSize = serverConfig.getBulkCommitPreloadBatchSize();
+        for (Map.Entry<MetaClass, Map<View, List<Object>>> classEntry : idsByClass.entrySet()) {
+            MetaClass metaClass = classEntry.getKey();
+            String queryString = String.format("select e from %s e where e.%s in :ids",
+                    metaClass.getName(), metadata.getTools().getPrimaryKeyName(metaClass));
+
+            for (Map.Entry<View, List<Object>> viewEntry : classEntry.getValue().entrySet()) {
+                View view = viewEntry.getKey() != null ? viewEntry.getKey() : viewRepository.getView(metaClass, View.LOCAL);
+                view = attributeSecurity.createRestrictedView(view);
+                if (view.loadPartialEntities()) {
+                    // partially loaded instances would be read again on merge
+                    view = null;
+                }
+                for (List<Object> ids : Lists.partition(viewEntry.getValue(), batchSize)) {
+                    log.debug("preloading {} instances of {}", ids.size(), metaClass);
+                    Query query = em.createQuery(queryString)
+                            .setParameter("ids", ids)
+                            .setFlushMode(FlushModeType.COMMIT);
+                    if (view != null) {
+                        query.setView(view);
+                    }
+                    query.getResultList();
+                }
+            }
+        }
+    }
+
     @Override
     public List<KeyValueEntity> loadValues(ValueLoadContext context) {
         Preconditions.checkNotNullArgument(context, "context is null");
@@ -584,6 +709,129 @@ public class RdbmsStore implements DataStore {
         return query;
     }
 
+    /**
+     * Counts entities having in-memory read constraints by loading them in batches, each in a separate transaction,
+     * so only one batch is kept in memory. Stops at the limit configured for the entity, returning the limit.
+     * <p>
+     * Entities with a simple primary key are loaded in the order of the key using keyset pagination, so batches
+     * do not depend on the order of the query and rows inserted or deleted concurrently do not shift them. Repeated
+     * rows of the same instance are adjacent in this order and are counted once. Entities with a composite key are
+     * loaded using offset pagination.
+     */
+    @SuppressWarnings("unchecked")
+    protected long getCountWithInMemoryConstraints(LoadContext<? extends Entity> context, MetaClass metaClass) {
+        context = context.copy();
+
+        boolean ensureDistinct = false;
+        if (serverConfig.getInMemoryDistinct() && context.getQuery() != null) {
+            QueryTransformationCache.Result result = removeDistinct(context.getQuery().getQueryString());
+            ensureDistinct = result.isChanged();
+            if (ensureDistinct) {
+                context.getQuery().setQueryString(result.getQuery());
+            }
+        }
+
+        View view = createRestrictedView(context);
+        int batchSize = Math.max(serverConfig.getInMemoryConstraintsCountBatchSize(), 1);
+        boolean needApplyConstraints = needToApplyInMemoryReadConstraints(context);
+        long limit = getInMemoryConstraintsCountLimit(metaClass);
+        boolean keyset = hasSimplePrimaryKey(metaClass);
+        Set<Object> countedIds = ensureDistinct && !keyset ? new HashSet<>() : null;
+
+        context.getQuery().setMaxResults(batchSize);
+        KeysetCursor cursor = keyset ? KeysetCursor.first(null, false) : null;
+        Object lastId = null;
+        long count = 0;
+        int firstResult = 0;
+        int loaded;
+        do {
+            LoadContext<? extends Entity> batchContext;
+            if (keyset) {
+                context.getQuery().setCursor(cursor);
+                batchContext = applyCursor(context);
+            } else {
+                context.getQuery().setFirstResult(firstResult);
+                batchContext = context;
+            }
+            try (Transaction tx = createLoadTransaction()) {
+                EntityManager em = persistence.getEntityManager(storeName);
+                em.setSoftDeletion(batchContext.isSoftDeletion());
+                persistence.getEntityManagerContext(storeName).setDbHints(batchContext.getDbHints());
+
+                Query query = createQuery(em, batchContext, false);
+                query.setView(view);
+
+                List<Entity> batch = executeQuery(query, false);
+                loaded = batch.size();
+                if (keyset && loaded > 0) {
+                    cursor = cursor.next(batch.get(loaded - 1));
+                }
+                if (needApplyConstraints) {
+                    security.filterByConstraints(batch);
+                }
+                for (Entity entity : batch) {
+                    Object id = getIdValue(entity);
+                    if (keyset) {
+                        if (!id.equals(lastId)) {
+                            count++;
+                        }
+                        lastId = id;
+                    } else if (countedIds == null || countedIds.add(id)) {
+                        count++;
+                    }
+                }
+
+                tx.commit();
+            }
+
+            if (limit > 0 && count >= limit) {
+                log.debug("getCount: limit {} of counting {} with in-memory constraints is reached", limit, metaClass);
+                return limit;
+            }
+            firstResult += loaded;
+        } while (loaded == batchSize);
+
+        return count;
+    }
+
+    protected long getInMemoryConstraintsCountLimit(MetaClass metaClass) {
+        List<String> limits = serverConfig.getInMemoryConstraintsCountLimits();
+        if (limits != null) {
+            for (String item : limits) {
+                String[] parts = item.split(":");
+                if (parts.length == 2 && metaClass.getName().equals(parts[0].trim())) {
+                    try {
+                        return Long.parseLong(parts[1].trim());
+                    } catch (NumberFormatException e) {
+                        log.warn("Invalid limit of counting entities with in-memory constraints: {}", item);
+                    }
+                }
+            }
+        }
+        return serverConfig.getInMemoryConstraintsCountLimit();
+    }
+
+    protected Object getIdValue(Entity entity) {
+        Object id = entity.getId();
+        return id instanceof IdProxy ? ((IdProxy) id).get() : id;
+    }
+
+    protected QueryTransformationCache.Result removeDistinct(String queryString) {
+        return queryTransformationCache.get(queryString, QueryTransformationCache.Operation.REMOVE_DISTINCT, null, () -> {
+            QueryTransformer transformer = queryTransformerFactory.transformer(queryString);
+            boolean removed = transformer.removeDistinct();
+            return new QueryTransformationCache.Result(removed ? transformer.getResult() : queryString, removed);
+        });
+    }
+
+    protected String replaceWithCount(String queryString) {
+        return queryTransformationCache.get(queryString, QueryTransformationCache.Operation.COUNT, null, () -> {
+            QueryTransformer transformer = queryTransformerFactory.transformer(queryString);
+            transformer.replaceWithCount();
+            return new QueryTransformationCache.Result(transformer.getResult(), true);
+        }).getQuery();
+    }
+
     protected View createRestrictedView(LoadContext context) {
         View view = context.getView() != null ? context.getView() :
                 viewRepository.getView(metadata.getClassNN(context.getMetaClass()), View.LOCAL);
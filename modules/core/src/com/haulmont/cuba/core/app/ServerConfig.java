@@ -21,6 +21,10 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.*;
+import com.haulmont.cuba.core.config.type.CommaSeparatedStringListTypeFactory;
+import com.haulmont.cuba.core.config.type.Factory;
+
+import java.util.List;
 
 /**
  * Configuration parameters interface used by the CORE layer.
@@ -143,6 +147,47 @@ public interface ServerConfig extends Config {
     boolean getInMemoryDistinct();
     void setInMemoryDistinct(boolean value);
 
+    /**
+     * @return number of entities loaded by one query when counting entities having in-memory read constraints
+     */
+    @Property("cuba.inMemoryConstraintsCountBatchSize")
+    @DefaultInt(1000)
+    int getInMemoryConstraintsCountBatchSize();
+
+    /**
+     * @return max count of entities having in-memory read constraints. When this number of entities passing
+     * the constraints is found, counting stops and the limit is returned as the count. 0 means no limit.
+     */
+    @Property("cuba.inMemoryConstraintsCountLimit")
+    @DefaultInt(0)
+    int getInMemoryConstraintsCountLimit();
+
+    /**
+     * @return limits of counting entities having in-memory read constraints for particular entities, overriding
+     * {@link #getInMemoryConstraintsCountLimit()}. Items are in the {@code entityName:limit} format,
+     * e.g. {@code sales$Order:10000}
+     */
+    @Property("cuba.inMemoryConstraintsCountLimits")
+    @Factory(factory = CommaSeparatedStringListTypeFactory.class)
+    List<String> getInMemoryConstraintsCountLimits();
+
+    /**
+     * @return the maximum number of transformed queries kept in
+     * {@link com.haulmont.cuba.core.sys.QueryTransformationCache}. Zero disables caching.
+     */
+    @Property("cuba.queryTransformationCacheMaxSize")
+    @DefaultInt(1000)
+    int getQueryTransformationCacheMaxSize();
+
+    /**
+     * @return maximum number of identifiers passed to a single query when the instances committed in bulk mode
+     * are loaded into the persistence context
+     * @see com.haulmont.cuba.core.global.CommitContext#setBulkMode(boolean)
+     */
+    @Property("cuba.bulkCommitPreloadBatchSize")
+    @DefaultInt(500)
+    int getBulkCommitPreloadBatchSize();
+
     /**
      * @return Default database query timeout in seconds. If 0, middleware doesn't apply any timeout to queries.
      */
@@ -261,4 +306,115 @@ public interface ServerConfig extends Config {
     @Source(type = SourceType.DATABASE)
     @DefaultBoolean(false)
     boolean getRestStoreTokensInDb();
-}
\ No newline at end of file
+
+    /**
+     * @return max number of REST API tokens kept in memory of the middleware if tokens are stored in the database.
+     * Other tokens are loaded from the database on demand
+     */
+    @Property("cuba.rest.tokenCacheMaxSize")
+    @DefaultInt(10000)
+    int getRestTokenCacheMaxSize();
+
+    /**
+     * @return time in seconds after which an unused REST API token is evicted from memory if tokens are stored in the
+     * database
+     */
+    @Property("cuba.rest.tokenCacheExpirationSec")
+    @DefaultInt(600)
+    int getRestTokenCacheExpirationSec();
+
+    /**
+     * @return delay in milliseconds after which new REST API tokens are written to the database in a batch
+     */
+    @Property("cuba.rest.tokenWriteDelayMs")
+    @DefaultInt(100)
+    int getRestTokenWriteDelayMs();
+
+    /**
+     * @return max number of REST API tokens written to the database in one transaction
+     */
+    @Property("cuba.rest.tokenWriteBatchSize")
+    @DefaultInt(100)
+    int getRestTokenWriteBatchSize();
+
+    /**
+     * @return delay in milliseconds before retrying to write REST API tokens to the database after a failure
+     */
+    @Property("cuba.rest.tokenWriteRetryDelayMs")
+    @DefaultInt(5000)
+    int getRestTokenWriteRetryDelayMs();
+
+    /**
+     * @return whether identifiers of previous query results used by "search in results" filters are kept in memory
+     * of the middleware instead of the SYS_QUERY_RESULT table. Results are stored on the node that executed the query,
+     * so use it only with a single middleware node or when a client always works with the same node.
+     */
+    @Property("cuba.queryResults.inMemory")
+    @DefaultBoolean(false)
+    boolean getQueryResultsInMemory();
+
+    /**
+     * @return maximum number of identifiers of a single query result kept in memory. Larger results are
+     * stored in the SYS_QUERY_RESULT table.
+     */
+    @Property("cuba.queryResults.inMemoryMaxIds")
+    @DefaultInt(500)
+    int getQueryResultsInMemoryMaxIds();
+
+    /**
+     * @return maximum total number of identifiers of all query results kept in memory. When it is exceeded,
+     * the oldest results are moved to the SYS_QUERY_RESULT table.
+     */
+    @Property("cuba.queryResults.inMemoryMaxTotalIds")
+    @DefaultInt(1000000)
+    int getQueryResultsInMemoryMaxTotalIds();
+
+    /**
+     * @return max number of entities whose dynamic attribute values are loaded by one query
+     */
+    @Property("cuba.dynamicAttributes.fetchBatchSize")
+    @DefaultInt(500)
+    int getDynamicAttributesFetchBatchSize();
+
+    /**
+     * @return whether dynamic attribute values of versioned entities are cached in memory of the middleware.
+     * A cached value is used while the entity version stays the same and is invalidated on the whole cluster
+     * when dynamic attributes of the entity are stored.
+     */
+    @Property("cuba.dynamicAttributes.valuesCacheEnabled")
+    @DefaultBoolean(false)
+    boolean getDynamicAttributesValuesCacheEnabled();
+
+    /**
+     * @return max number of entities whose dynamic attribute values are cached
+     */
+    @Property("cuba.dynamicAttributes.valuesCacheMaxSize")
+    @DefaultInt(10000)
+    int getDynamicAttributesValuesCacheMaxSize();
+
+    /**
+     * @return time in seconds during which a result of an application folder quantity script is reused
+     * instead of evaluating the script again. 0 disables caching.
+     */
+    @Property("cuba.appFolders.quantityCacheExpirationSec")
+    @DefaultInt(0)
+    int getAppFolderQuantityCacheExpirationSec();
+
+    /**
+     * @return max number of cached results of application folder quantity scripts
+     */
+    @Property("cuba.appFolders.quantityCacheMaxSize")
+    @DefaultInt(10000)
+    int getAppFolderQuantityCacheMaxSize();
+
+    /**
+     * @return whether cached results of application folder quantity scripts are shared between users having
+     * the same access group, roles and session attributes, i.e. the same constraints and permissions.
+     * Results are still cached per user for sessions having constraints that depend on the user, e.g. use the
+     * {@code session$userId} or {@code session$userLogin} parameters.
+     * Must be false if quantity scripts depend on the current user itself.
+     */
+    @Property("cuba.appFolders.quantityCacheSharedBetweenUsers")
+    @DefaultBoolean(false)
+    boolean getAppFolderQuantityCacheSharedBetweenUsers();
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.dynamicattributes;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManager.CategoriesChangedMsg;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Cluster codec of messages containing identifiers of changed dynamic attributes categories.
+ */
+@Component(CategoriesChangedMsgCodec.NAME)
+public class CategoriesChangedMsgCodec extends AbstractClusterMessageCodec<CategoriesChangedMsg> {
+
+    public static final String NAME = "cuba_DynamicAttributesCategoriesChangedMsgCodec";
+
+    @Override
+    public Class<CategoriesChangedMsg> getMessageClass() {
+        return CategoriesChangedMsg.class;
+    }
+
+    @Override
+    public void write(CategoriesChangedMsg message, DataOutput out) throws IOException {
+        out.writeInt(message.getCategoryIds().size());
+        for (UUID categoryId : message.getCategoryIds()) {
+            writeUuid(categoryId, out);
+        }
+    }
+
+    @Override
+    public CategoriesChangedMsg read(DataInput in) throws IOException {
+        int size = in.readInt();
+        Set<UUID> categoryIds = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            categoryIds.add(readUuid(in));
+        }
+        return new CategoriesChangedMsg(categoryIds);
+    }
+}
@@ -36,4 +36,9 @@ public class DynamicAttributesCacheServiceBean implements DynamicAttributesCache
     public DynamicAttributesCache getCacheIfNewer(Date clientCacheDate) {
         return dynamicAttributesManagerAPI.getCacheIfNewer(clientCacheDate);
     }
+
+    @Override
+    public DynamicAttributesCacheChanges getCacheChangesIfNewer(Date clientCacheDate) {
+        return dynamicAttributesManagerAPI.getCacheChangesIfNewer(clientCacheDate);
+    }
 }
\ No newline at end of file
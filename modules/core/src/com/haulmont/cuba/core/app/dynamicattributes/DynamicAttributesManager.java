@@ -17,7 +17,10 @@
 
 package com.haulmont.cuba.core.app.dynamicattributes;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -27,19 +30,26 @@ import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.BooleanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.persistence.FlushModeType;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -48,6 +58,7 @@ import static java.lang.String.format;
 @Component(DynamicAttributesManagerAPI.NAME)
 public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
     public static final int MAX_ENTITIES_FOR_ATTRIBUTE_VALUES_BATCH = 100;
+    public static final int MAX_CACHE_CHANGES_HISTORY_SIZE = 100;
 
     protected Logger log = LoggerFactory.getLogger(DynamicAttributesManager.class);
 
@@ -66,12 +77,33 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
     @Inject
     protected ReferenceToEntitySupport referenceToEntitySupport;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
     protected ClusterManagerAPI clusterManager;
 
     protected ReentrantLock loadCacheLock = new ReentrantLock();
 
     protected volatile DynamicAttributesCache dynamicAttributesCache;
 
+    //guarded by loadCacheLock
+    protected Map<UUID, String> categoryFingerprints = Collections.emptyMap();
+
+    //guarded by loadCacheLock
+    protected Deque<CacheChange> cacheChanges = new ArrayDeque<>();
+
+    protected Cache<String, CachedAttributeValues> attributeValuesCache;
+
+    //incremented on each invalidation, so values loaded before an invalidation are not put to the cache after it
+    protected final AtomicLong attributeValuesCacheGeneration = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        attributeValuesCache = CacheBuilder.newBuilder()
+                .maximumSize(serverConfig.getDynamicAttributesValuesCacheMaxSize())
+                .build();
+    }
+
     @Inject
     public void setClusterManager(ClusterManagerAPI clusterManager) {
         this.clusterManager = clusterManager;
@@ -81,11 +113,27 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
                 doLoadCache(false, false);
             }
         });
+        clusterManager.addListener(CategoriesChangedMsg.class, new ClusterListenerAdapter<CategoriesChangedMsg>() {
+            @Override
+            public void receive(CategoriesChangedMsg message) {
+                doUpdateCache(message.getCategoryIds(), false);
+            }
+        });
+        clusterManager.addListener(InvalidateValuesCacheMsg.class, new ClusterListenerAdapter<InvalidateValuesCacheMsg>() {
+            @Override
+            public void receive(InvalidateValuesCacheMsg message) {
+                doInvalidateCachedAttributeValues(message.getKeys());
+            }
+        });
     }
 
     @Override
     public void loadCache() {
-        doLoadCache(true, false);
+        if (dynamicAttributesCache == null) {
+            doLoadCache(true, false);
+        } else {
+            doUpdateCache(Collections.emptySet(), true);
+        }
     }
 
     protected void doLoadCache(boolean sendClusterMessage, boolean stopIfNotNull) {
@@ -105,7 +153,7 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
             Map<String, Map<String, CategoryAttribute>> attributesCache = new LinkedHashMap<>();
 
             for (Category category : resultList) {
-                MetaClass metaClass = resolveTargetMetaClass(metadata.getSession().getClass(category.getEntityType()));
+                MetaClass metaClass = resolveCategoryMetaClass(category);
                 if (metaClass != null) {
                     categoriesCache.put(metaClass.getName(), category);
                     Map<String, CategoryAttribute> attributes = attributesCache.get(metaClass.getName());
@@ -117,14 +165,17 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
                     for (CategoryAttribute categoryAttribute : category.getCategoryAttrs()) {
                         attributes.put(categoryAttribute.getCode(), categoryAttribute);
                     }
-                } else {
-                    log.warn(format("Could not resolve meta class name [%s] for the category [%s].",
-                            category.getEntityType(), category.getName()));
                 }
             }
+            categoryFingerprints = loadCategoryFingerprints();
             tx.commit();
 
             dynamicAttributesCache = new DynamicAttributesCache(categoriesCache, attributesCache, timeSource.currentTimestamp());
+            //clients get the whole new cache
+            cacheChanges.clear();
+            //cached values contain attributes of the previous version
+            attributeValuesCacheGeneration.incrementAndGet();
+            attributeValuesCache.invalidateAll();
             if (sendClusterMessage) {
                 clusterManager.send(new ReloadCacheMsg());
             }
@@ -134,6 +185,130 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
         }
     }
 
+    /**
+     * Reloads changed categories and creates a new version of the cache containing them. Categories are considered
+     * changed if versions of the categories or their attributes differ from the ones read on the previous load.
+     *
+     * @param categoryIds        identifiers of categories known to be changed, e.g. on another cluster node
+     * @param sendClusterMessage whether to send identifiers of the changed categories to other nodes
+     */
+    protected void doUpdateCache(Set<UUID> categoryIds, boolean sendClusterMessage) {
+        loadCacheLock.lock();
+        Transaction tx = persistence.createTransaction();
+        try {
+            DynamicAttributesCache cache = dynamicAttributesCache;
+            if (cache == null) {
+                //the whole cache will be loaded on the first access
+                return;
+            }
+
+            Map<UUID, String> fingerprints = loadCategoryFingerprints();
+            Set<UUID> changedCategoryIds = findChangedCategories(categoryFingerprints, fingerprints);
+            changedCategoryIds.addAll(categoryIds);
+            categoryFingerprints = fingerprints;
+            if (changedCategoryIds.isEmpty()) {
+                tx.commit();
+                return;
+            }
+
+            EntityManager entityManager = persistence.getEntityManager();
+            TypedQuery<Category> query = entityManager.createQuery("select c from sys$Category c where c.id in :ids", Category.class);
+            query.setParameter("ids", new ArrayList<>(changedCategoryIds));
+            query.setViewName("for.cache");
+            List<Category> resultList = query.getResultList();
+
+            Multimap<String, Category> changedCategories = HashMultimap.create();
+            Set<UUID> removedCategoryIds = new HashSet<>(changedCategoryIds);
+            for (Category category : resultList) {
+                MetaClass metaClass = resolveCategoryMetaClass(category);
+                if (metaClass != null) {
+                    changedCategories.put(metaClass.getName(), category);
+                    removedCategoryIds.remove(category.getId());
+                }
+            }
+            tx.commit();
+
+            Date previousCreationDate = cache.getCreationDate();
+            Date creationDate = timeSource.currentTimestamp();
+            //clients distinguish versions of the cache by creation dates
+            if (previousCreationDate != null && creationDate.getTime() <= previousCreationDate.getTime()) {
+                creationDate = new Date(previousCreationDate.getTime() + 1);
+            }
+            dynamicAttributesCache = cache.withChanges(
+                    new DynamicAttributesCacheChanges(changedCategories, removedCategoryIds, creationDate));
+
+            if (previousCreationDate != null) {
+                cacheChanges.addLast(new CacheChange(previousCreationDate, changedCategoryIds));
+                if (cacheChanges.size() > MAX_CACHE_CHANGES_HISTORY_SIZE) {
+                    cacheChanges.removeFirst();
+                }
+            }
+
+            //cached values contain attributes of the previous version
+            attributeValuesCacheGeneration.incrementAndGet();
+            attributeValuesCache.invalidateAll();
+            if (sendClusterMessage) {
+                clusterManager.send(new CategoriesChangedMsg(changedCategoryIds));
+            }
+        } finally {
+            loadCacheLock.unlock();
+            tx.end();
+        }
+    }
+
+    /**
+     * Loads versions of all categories and their attributes as a string per category.
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<UUID, String> loadCategoryFingerprints() {
+        EntityManager entityManager = persistence.getEntityManager();
+
+        Map<UUID, StringBuilder> fingerprints = new HashMap<>();
+        List<Object[]> categories = entityManager.createQuery("select c.id, c.version from sys$Category c")
+                .getResultList();
+        for (Object[] row : categories) {
+            fingerprints.put((UUID) row[0], new StringBuilder().append(row[1]));
+        }
+
+        List<Object[]> attributes = entityManager.createQuery("select a.category.id, a.id, a.version " +
+                "from sys$CategoryAttribute a order by a.id")
+                .getResultList();
+        for (Object[] row : attributes) {
+            StringBuilder fingerprint = fingerprints.get((UUID) row[0]);
+            if (fingerprint != null) {
+                fingerprint.append(';').append(row[1]).append(':').append(row[2]);
+            }
+        }
+
+        return fingerprints.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().toString()));
+    }
+
+    protected Set<UUID> findChangedCategories(Map<UUID, String> previousFingerprints, Map<UUID, String> fingerprints) {
+        Set<UUID> changedCategoryIds = new HashSet<>();
+        for (Map.Entry<UUID, String> entry : fingerprints.entrySet()) {
+            if (!entry.getValue().equals(previousFingerprints.get(entry.getKey()))) {
+                changedCategoryIds.add(entry.getKey());
+            }
+        }
+        for (UUID categoryId : previousFingerprints.keySet()) {
+            if (!fingerprints.containsKey(categoryId)) {
+                changedCategoryIds.add(categoryId);
+            }
+        }
+        return changedCategoryIds;
+    }
+
+    @Nullable
+    protected MetaClass resolveCategoryMetaClass(Category category) {
+        MetaClass metaClass = resolveTargetMetaClass(metadata.getSession().getClass(category.getEntityType()));
+        if (metaClass == null) {
+            log.warn(format("Could not resolve meta class name [%s] for the category [%s].",
+                    category.getEntityType(), category.getName()));
+        }
+        return metaClass;
+    }
+
     @Override
     public Collection<Category> getCategoriesForMetaClass(MetaClass metaClass) {
         return cache().getCategoriesForMetaClass(metaClass);
@@ -162,6 +337,43 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
         }
     }
 
+    @Override
+    public DynamicAttributesCacheChanges getCacheChangesIfNewer(@Nullable Date clientCacheDate) {
+        loadCacheLock.lock();
+        try {
+            DynamicAttributesCache cache = cache();
+            if (clientCacheDate != null
+                    && cache.getCreationDate() != null
+                    && !clientCacheDate.before(cache.getCreationDate())) {
+                return null;
+            }
+
+            Set<UUID> changedCategoryIds = clientCacheDate != null ? getChangedCategoryIds(clientCacheDate) : null;
+            return changedCategoryIds != null ? cache.getChanges(changedCategoryIds) : new DynamicAttributesCacheChanges(cache);
+        } finally {
+            loadCacheLock.unlock();
+        }
+    }
+
+    /**
+     * @return identifiers of categories changed after the cache version with the given creation date or null if the
+     * version is not known to this node
+     */
+    @Nullable
+    protected Set<UUID> getChangedCategoryIds(Date cacheCreationDate) {
+        Set<UUID> changedCategoryIds = null;
+        for (CacheChange cacheChange : cacheChanges) {
+            if (changedCategoryIds == null
+                    && cacheChange.getPreviousCreationDate().getTime() == cacheCreationDate.getTime()) {
+                changedCategoryIds = new HashSet<>();
+            }
+            if (changedCategoryIds != null) {
+                changedCategoryIds.addAll(cacheChange.getCategoryIds());
+            }
+        }
+        return changedCategoryIds;
+    }
+
     protected DynamicAttributesCache cache() {
         if (this.dynamicAttributesCache == null) {
             doLoadCache(true, true);
@@ -186,10 +398,54 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
     public void storeDynamicAttributes(BaseGenericIdEntity entity) {
         try (Transaction tx = persistence.getTransaction()) {
             doStoreDynamicAttributes(entity);
+            invalidateCachedAttributeValues(Collections.singletonList(entity));
             tx.commit();
         }
     }
 
+    @Override
+    public void storeDynamicAttributes(Collection<? extends BaseGenericIdEntity> entities) {
+        if (entities.isEmpty())
+            return;
+
+        try (Transaction tx = persistence.getTransaction()) {
+            preloadAttributeValues(entities);
+            for (BaseGenericIdEntity entity : entities) {
+                doStoreDynamicAttributes(entity);
+            }
+            invalidateCachedAttributeValues(entities);
+            tx.commit();
+        }
+    }
+
+    /**
+     * Loads existing attribute values of the entities into the persistence context, so that they are not read
+     * one by one when merged.
+     */
+    protected void preloadAttributeValues(Collection<? extends BaseGenericIdEntity> entities) {
+        List<Object> ids = new ArrayList<>();
+        for (BaseGenericIdEntity entity : entities) {
+            Map<String, CategoryAttributeValue> dynamicAttributes = entity.getDynamicAttributes();
+            if (dynamicAttributes != null) {
+                for (CategoryAttributeValue attributeValue : dynamicAttributes.values()) {
+                    if (PersistenceHelper.isDetached(attributeValue)) {
+                        ids.add(attributeValue.getId());
+                    }
+                }
+            }
+        }
+        if (ids.isEmpty())
+            return;
+
+        EntityManager em = persistence.getEntityManager();
+        for (List<Object> batch : Lists.partition(ids, MAX_ENTITIES_FOR_ATTRIBUTE_VALUES_BATCH)) {
+            em.createQuery("select v from sys$CategoryAttributeValue v where v.id in :ids", CategoryAttributeValue.class)
+                    .setParameter("ids", batch)
+                    .setFlushMode(FlushModeType.COMMIT)
+                    .getResultList();
+        }
+    }
+
     @Override
     public <E extends BaseGenericIdEntity> void fetchDynamicAttributes(List<E> entities, @Nonnull Set<Class> dependentClasses) {
         Set<BaseGenericIdEntity> toProcess = new HashSet<>();
@@ -216,17 +472,125 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
         if (toProcess.isEmpty())
             return;
 
+        boolean cacheEnabled = serverConfig.getDynamicAttributesValuesCacheEnabled();
+        long cacheGeneration = attributeValuesCacheGeneration.get();
+        Collection<BaseGenericIdEntity> toLoad = cacheEnabled ? fetchDynamicAttributesFromCache(toProcess) : toProcess;
+        if (toLoad.isEmpty())
+            return;
+
         try (Transaction tx = persistence.getTransaction()) {
-            Multimap<String, BaseGenericIdEntity> entitiesByType = HashMultimap.create();
-            toProcess.forEach(e -> entitiesByType.put(e.getMetaClass().getName(), e));
-            entitiesByType.keySet().forEach(entityType -> {
-                MetaClass metaClass = metadata.getExtendedEntities().getOriginalOrThisMetaClass(metadata.getClass(entityType));
-                doFetchDynamicAttributes(metaClass, entitiesByType.get(entityType));
-            });
+            doFetchDynamicAttributes(toLoad);
+            if (cacheEnabled) {
+                putDynamicAttributesToCache(toLoad, cacheGeneration);
+            }
             tx.commit();
         }
     }
 
+    /**
+     * Sets cached dynamic attributes to the entities having the same version as when the values were cached.
+     *
+     * @return entities whose dynamic attributes are not found in the cache
+     */
+    protected Collection<BaseGenericIdEntity> fetchDynamicAttributesFromCache(Collection<BaseGenericIdEntity> entities) {
+        List<BaseGenericIdEntity> notCached = new ArrayList<>();
+        for (BaseGenericIdEntity entity : entities) {
+            Integer version = entity instanceof Versioned ? ((Versioned) entity).getVersion() : null;
+            String key = getAttributeValuesCacheKey(entity);
+            CachedAttributeValues cached = version != null && key != null ? attributeValuesCache.getIfPresent(key) : null;
+            if (cached != null && version.equals(cached.getVersion())) {
+                setDynamicAttributes(entity, copyAttributeValues(cached.getAttributeValues()));
+            } else {
+                notCached.add(entity);
+            }
+        }
+        return notCached;
+    }
+
+    protected void putDynamicAttributesToCache(Collection<BaseGenericIdEntity> entities, long cacheGeneration) {
+        for (BaseGenericIdEntity entity : entities) {
+            Integer version = entity instanceof Versioned ? ((Versioned) entity).getVersion() : null;
+            String key = getAttributeValuesCacheKey(entity);
+            if (version != null && key != null && entity.getDynamicAttributes() != null) {
+                if (attributeValuesCacheGeneration.get() != cacheGeneration) {
+                    return;
+                }
+                byte[] attributeValues = SerializationSupport.serialize(new ArrayList<>(entity.getDynamicAttributes().values()));
+                attributeValuesCache.put(key, new CachedAttributeValues(version, attributeValues));
+            }
+        }
+    }
+
+    /**
+     * Creates instances of cached attribute values. The instances do not belong to any persistence context,
+     * so they are marked as detached like the values loaded from the database after the transaction end.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<CategoryAttributeValue> copyAttributeValues(byte[] cachedAttributeValues) {
+        List<CategoryAttributeValue> attributeValues =
+                (List<CategoryAttributeValue>) SerializationSupport.deserialize(cachedAttributeValues);
+        for (CategoryAttributeValue attributeValue : attributeValues) {
+            BaseEntityInternalAccess.setDetached(attributeValue, true);
+            metadata.getTools().traverseAttributes(attributeValue, (entity, property) -> {
+                if (entity instanceof BaseGenericIdEntity) {
+                    BaseEntityInternalAccess.setDetached((BaseGenericIdEntity) entity, true);
+                }
+                if (entity instanceof CategoryAttributeValue) {
+                    BaseGenericIdEntity entityValue = ((CategoryAttributeValue) entity).getTransientEntityValue();
+                    if (entityValue != null) {
+                        BaseEntityInternalAccess.setDetached(entityValue, true);
+                    }
+                }
+            });
+        }
+        return attributeValues;
+    }
+
+    /**
+     * Removes cached values of the entities on all cluster nodes after the current transaction is committed.
+     */
+    protected void invalidateCachedAttributeValues(Collection<? extends BaseGenericIdEntity> entities) {
+        if (!serverConfig.getDynamicAttributesValuesCacheEnabled())
+            return;
+
+        Set<String> keys = new HashSet<>();
+        for (BaseGenericIdEntity entity : entities) {
+            String key = getAttributeValuesCacheKey(entity);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        if (keys.isEmpty())
+            return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    doInvalidateCachedAttributeValues(keys);
+                    clusterManager.send(new InvalidateValuesCacheMsg(keys));
+                }
+            });
+        } else {
+            doInvalidateCachedAttributeValues(keys);
+            clusterManager.send(new InvalidateValuesCacheMsg(keys));
+        }
+    }
+
+    protected void doInvalidateCachedAttributeValues(Collection<String> keys) {
+        attributeValuesCacheGeneration.incrementAndGet();
+        attributeValuesCache.invalidateAll(keys);
+    }
+
+    @Nullable
+    protected String getAttributeValuesCacheKey(BaseGenericIdEntity entity) {
+        Object referenceId = referenceToEntitySupport.getReferenceId(entity);
+        if (referenceId == null)
+            return null;
+        MetaClass metaClass = metadata.getExtendedEntities().getOriginalOrThisMetaClass(entity.getMetaClass());
+        return metaClass.getName() + "-" + referenceId;
+    }
+
     @SuppressWarnings("unchecked")
     protected void doStoreDynamicAttributes(BaseGenericIdEntity entity) {
         final EntityManager em = persistence.getEntityManager();
@@ -316,113 +680,127 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
         });
     }
 
-    protected void doFetchDynamicAttributes(MetaClass metaClass, Collection<BaseGenericIdEntity> entities) {
-        List<Object> ids = entities.stream()
-                .map(e -> referenceToEntitySupport.getReferenceId(e))
-                .collect(Collectors.toList());
-
-        Multimap<Object, CategoryAttributeValue> allAttributeValues = HashMultimap.create();
+    protected void doFetchDynamicAttributes(Collection<BaseGenericIdEntity> entities) {
+        Map<String, AttributeValuesGroup> groups = new LinkedHashMap<>();
+        for (BaseGenericIdEntity entity : entities) {
+            MetaClass metaClass = metadata.getExtendedEntities().getOriginalOrThisMetaClass(entity.getMetaClass());
+            String idPropertyName = referenceToEntitySupport.getReferenceIdPropertyName(metaClass);
+            //values of entities having UUID are found by the identifier only, so entities of all such classes
+            //are loaded by the same queries
+            String entityType = HasUuid.class.isAssignableFrom(metaClass.getJavaClass()) ? null : metaClass.getName();
+            groups.computeIfAbsent(idPropertyName + "|" + entityType, key -> new AttributeValuesGroup(idPropertyName, entityType))
+                    .entities.add(entity);
+        }
 
-        List<Object> currentIds = new ArrayList<>();
-        for (Object id : ids) {
-            currentIds.add(id);
-            if (currentIds.size() >= MAX_ENTITIES_FOR_ATTRIBUTE_VALUES_BATCH) {
-                handleAttributeValuesForIds(metaClass, currentIds, allAttributeValues);
-                currentIds = new ArrayList<>();
+        int batchSize = serverConfig.getDynamicAttributesFetchBatchSize();
+        List<CategoryAttributeValue> allAttributeValues = new ArrayList<>();
+        for (AttributeValuesGroup group : groups.values()) {
+            List<Object> ids = group.entities.stream()
+                    .map(e -> referenceToEntitySupport.getReferenceId(e))
+                    .distinct()
+                    .collect(Collectors.toList());
+            for (List<Object> batchIds : Lists.partition(ids, batchSize)) {
+                List<CategoryAttributeValue> attributeValues = loadAttributeValues(group.idPropertyName, group.entityType, batchIds);
+                group.attributeValues.addAll(attributeValues);
+                allAttributeValues.addAll(attributeValues);
             }
         }
-        handleAttributeValuesForIds(metaClass, currentIds, allAttributeValues);
 
-        for (BaseGenericIdEntity entity : entities) {
-            Collection<CategoryAttributeValue> entityAttributeValues = allAttributeValues.get(referenceToEntitySupport.getReferenceId(entity));
-            Map<String, CategoryAttributeValue> map = new HashMap<>();
-            entity.setDynamicAttributes(map);
-            if (CollectionUtils.isNotEmpty(entityAttributeValues)) {
-                for (CategoryAttributeValue categoryAttributeValue : entityAttributeValues) {
-                    CategoryAttribute attribute = categoryAttributeValue.getCategoryAttribute();
-                    if (attribute != null) {
-                        map.put(attribute.getCode(), categoryAttributeValue);
-                    }
-                }
+        Map<UUID, CategoryAttributeValue> reloadedAttributeValues = loadAttributeValuesContent(allAttributeValues);
+
+        for (AttributeValuesGroup group : groups.values()) {
+            Multimap<Object, CategoryAttributeValue> attributeValuesById = HashMultimap.create();
+            for (CategoryAttributeValue attributeValue : group.attributeValues) {
+                attributeValuesById.put(attributeValue.getObjectEntityId(),
+                        reloadedAttributeValues.getOrDefault(attributeValue.getId(), attributeValue));
+            }
+            for (BaseGenericIdEntity entity : group.entities) {
+                setDynamicAttributes(entity, attributeValuesById.get(referenceToEntitySupport.getReferenceId(entity)));
             }
         }
     }
 
-    protected void handleAttributeValuesForIds(MetaClass metaClass, List<Object> currentIds, Multimap<Object, CategoryAttributeValue> attributeValuesForEntity) {
-        if (CollectionUtils.isNotEmpty(currentIds)) {
-            for (CategoryAttributeValue attributeValue : loadAttributeValues(metaClass, currentIds)) {
-                attributeValuesForEntity.put(attributeValue.getObjectEntityId(), attributeValue);
+    protected void setDynamicAttributes(BaseGenericIdEntity entity, Collection<CategoryAttributeValue> entityAttributeValues) {
+        Map<String, CategoryAttributeValue> map = new HashMap<>();
+        entity.setDynamicAttributes(map);
+        if (CollectionUtils.isNotEmpty(entityAttributeValues)) {
+            for (CategoryAttributeValue categoryAttributeValue : entityAttributeValues) {
+                CategoryAttribute attribute = categoryAttributeValue.getCategoryAttribute();
+                if (attribute != null) {
+                    map.put(attribute.getCode(), categoryAttributeValue);
+                }
             }
         }
     }
 
-    protected List<CategoryAttributeValue> loadAttributeValues(MetaClass metaClass, List<Object> entityIds) {
-        List<CategoryAttributeValue> attributeValues = new ArrayList<>();
-        try (Transaction tx = persistence.getTransaction()) {
-            EntityManager em = persistence.getEntityManager();
-
-            View view = new View(viewRepository.getView(CategoryAttributeValue.class, View.LOCAL), null, false)
-                    .addProperty("categoryAttribute", new View(viewRepository.getView(CategoryAttribute.class, View.LOCAL), null, false)
-                            .addProperty("category")
-                            .addProperty("defaultEntity", viewRepository.getView(ReferenceToEntity.class, View.LOCAL)));
-
-            TypedQuery<CategoryAttributeValue> query;
-            if (HasUuid.class.isAssignableFrom(metaClass.getJavaClass())) {
-                query = em.createQuery(format("select cav from sys$CategoryAttributeValue cav where cav.entity.%s in :ids and cav.parent is null",
-                        referenceToEntitySupport.getReferenceIdPropertyName(metaClass)),
-                        CategoryAttributeValue.class);
-            } else {
-                query = em.createQuery(format("select cav from sys$CategoryAttributeValue cav where cav.entity.%s in :ids " +
-                                "and cav.categoryAttribute.categoryEntityType = :entityType and cav.parent is null",
-                        referenceToEntitySupport.getReferenceIdPropertyName(metaClass)),
-                        CategoryAttributeValue.class);
-                query.setParameter("entityType", metaClass.getName());
-            }
-            query.setParameter("ids", entityIds);
-            query.setView(view);
-            List<CategoryAttributeValue> resultList = query.getResultList();
-
-            List<CategoryAttributeValue> cavsOfEntityType = resultList.stream()
-                    .filter(cav -> cav.getObjectEntityValueId() != null)
-                    .collect(Collectors.toList());
+    protected List<CategoryAttributeValue> loadAttributeValues(String idPropertyName, @Nullable String entityType,
+                                                               List<Object> entityIds) {
+        EntityManager em = persistence.getEntityManager();
 
-            List<CategoryAttributeValue> cavsOfCollectionType = resultList.stream()
-                    .filter(cav -> cav.getCategoryAttribute().getIsCollection())
-                    .collect(Collectors.toList());
+        View view = new View(viewRepository.getView(CategoryAttributeValue.class, View.LOCAL), null, false)
+                .addProperty("categoryAttribute", new View(viewRepository.getView(CategoryAttribute.class, View.LOCAL), null, false)
+                        .addProperty("category")
+                        .addProperty("defaultEntity", viewRepository.getView(ReferenceToEntity.class, View.LOCAL)));
 
-            if (cavsOfCollectionType.isEmpty()) {
-                loadEntityValues(cavsOfEntityType);
-                attributeValues.addAll(resultList);
-            } else {
-                List<CategoryAttributeValue> cavsOfCollectionTypeWithChildren = reloadCategoryAttributeValuesWithChildren(cavsOfCollectionType);
+        TypedQuery<CategoryAttributeValue> query;
+        if (entityType == null) {
+            query = em.createQuery(format("select cav from sys$CategoryAttributeValue cav where cav.entity.%s in :ids and cav.parent is null",
+                    idPropertyName),
+                    CategoryAttributeValue.class);
+        } else {
+            query = em.createQuery(format("select cav from sys$CategoryAttributeValue cav where cav.entity.%s in :ids " +
+                            "and cav.categoryAttribute.categoryEntityType = :entityType and cav.parent is null",
+                    idPropertyName),
+                    CategoryAttributeValue.class);
+            query.setParameter("entityType", entityType);
+        }
+        query.setParameter("ids", entityIds);
+        query.setView(view);
+        return query.getResultList();
+    }
 
-                //add nested collection values to the cavsOfEntityType collection, because this collection will later be
-                //used for loading entity values
-                cavsOfCollectionTypeWithChildren.stream()
-                        .filter(cav -> cav.getCategoryAttribute().getDataType() == PropertyType.ENTITY && cav.getChildValues() != null)
-                        .forEach(cav -> cavsOfEntityType.addAll(cav.getChildValues()));
+    /**
+     * Loads child values of collection attribute values and entities referenced by attribute values of entity type.
+     *
+     * @return attribute values of collection type reloaded with children by their identifiers
+     */
+    protected Map<UUID, CategoryAttributeValue> loadAttributeValuesContent(List<CategoryAttributeValue> attributeValues) {
+        List<CategoryAttributeValue> cavsOfEntityType = attributeValues.stream()
+                .filter(cav -> cav.getObjectEntityValueId() != null)
+                .collect(Collectors.toList());
 
-                loadEntityValues(cavsOfEntityType);
+        List<CategoryAttributeValue> cavsOfCollectionType = attributeValues.stream()
+                .filter(cav -> cav.getCategoryAttribute().getIsCollection())
+                .collect(Collectors.toList());
 
-                cavsOfCollectionTypeWithChildren.stream()
-                        .filter(cav -> cav.getChildValues() != null)
-                        .forEach(cav -> {
-                            List<Object> value = cav.getChildValues().stream()
-                                    .map(CategoryAttributeValue::getValue)
-                                    .collect(Collectors.toList());
-                            cav.setTransientCollectionValue(value);
-                        });
+        Map<UUID, CategoryAttributeValue> reloadedAttributeValues = new HashMap<>();
+        if (!cavsOfCollectionType.isEmpty()) {
+            List<CategoryAttributeValue> cavsOfCollectionTypeWithChildren = new ArrayList<>();
+            for (List<CategoryAttributeValue> batch : Lists.partition(cavsOfCollectionType, serverConfig.getDynamicAttributesFetchBatchSize())) {
+                cavsOfCollectionTypeWithChildren.addAll(reloadCategoryAttributeValuesWithChildren(batch));
+            }
 
-                attributeValues.addAll(resultList.stream()
-                        .filter(cav -> !cavsOfCollectionTypeWithChildren.contains(cav))
-                        .collect(Collectors.toList()));
+            //add nested collection values to the cavsOfEntityType collection, because this collection will later be
+            //used for loading entity values
+            cavsOfCollectionTypeWithChildren.stream()
+                    .filter(cav -> cav.getCategoryAttribute().getDataType() == PropertyType.ENTITY && cav.getChildValues() != null)
+                    .forEach(cav -> cavsOfEntityType.addAll(cav.getChildValues()));
 
-                attributeValues.addAll(cavsOfCollectionTypeWithChildren);
-            }
+            loadEntityValues(cavsOfEntityType);
 
-            tx.commit();
+            cavsOfCollectionTypeWithChildren.forEach(cav -> {
+                if (cav.getChildValues() != null) {
+                    List<Object> value = cav.getChildValues().stream()
+                            .map(CategoryAttributeValue::getValue)
+                            .collect(Collectors.toList());
+                    cav.setTransientCollectionValue(value);
+                }
+                reloadedAttributeValues.put(cav.getId(), cav);
+            });
+        } else {
+            loadEntityValues(cavsOfEntityType);
         }
-        return attributeValues;
+        return reloadedAttributeValues;
     }
 
     /**
@@ -455,13 +833,15 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
 
             if (!ids.isEmpty()) {
                 String pkName = referenceToEntitySupport.getPrimaryKeyForLoadingEntity(metaClass);
-                List<BaseGenericIdEntity> entitiesValues = em.createQuery(format("select e from %s e where e.%s in :ids", metaClass.getName(), pkName))
-                        .setParameter("ids", ids)
-                        .setView(metaClass.getJavaClass(), View.MINIMAL)
-                        .getResultList();
-
-                for (BaseGenericIdEntity entity : entitiesValues) {
-                    idToEntityMap.put(entity.getId(), entity);
+                for (List<Object> batchIds : Lists.partition(new ArrayList<>(ids), serverConfig.getDynamicAttributesFetchBatchSize())) {
+                    List<BaseGenericIdEntity> entitiesValues = em.createQuery(format("select e from %s e where e.%s in :ids", metaClass.getName(), pkName))
+                            .setParameter("ids", batchIds)
+                            .setView(metaClass.getJavaClass(), View.MINIMAL)
+                            .getResultList();
+
+                    for (BaseGenericIdEntity entity : entitiesValues) {
+                        idToEntityMap.put(entity.getId(), entity);
+                    }
                 }
             }
 
@@ -491,7 +871,86 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
                 .getResultList();
     }
 
-    private static class ReloadCacheMsg implements Serializable {
+    protected static class ReloadCacheMsg implements Serializable {
         private static final long serialVersionUID = -3116358584797500962L;
     }
+
+    protected static class CategoriesChangedMsg implements Serializable {
+        private static final long serialVersionUID = 2386528400427387331L;
+
+        private final Set<UUID> categoryIds;
+
+        public CategoriesChangedMsg(Set<UUID> categoryIds) {
+            this.categoryIds = categoryIds;
+        }
+
+        public Set<UUID> getCategoryIds() {
+            return categoryIds;
+        }
+    }
+
+    protected static class CacheChange {
+        private final Date previousCreationDate;
+        private final Set<UUID> categoryIds;
+
+        public CacheChange(Date previousCreationDate, Set<UUID> categoryIds) {
+            this.previousCreationDate = previousCreationDate;
+            this.categoryIds = categoryIds;
+        }
+
+        public Date getPreviousCreationDate() {
+            return previousCreationDate;
+        }
+
+        public Set<UUID> getCategoryIds() {
+            return categoryIds;
+        }
+    }
+
+    protected static class InvalidateValuesCacheMsg implements Serializable {
+        private static final long serialVersionUID = 4315406637383712466L;
+
+        private final Set<String> keys;
+
+        public InvalidateValuesCacheMsg(Set<String> keys) {
+            this.keys = keys;
+        }
+
+        public Set<String> getKeys() {
+            return keys;
+        }
+    }
+
+    protected static class CachedAttributeValues {
+        private final Integer version;
+        private final byte[] attributeValues;
+
+        public CachedAttributeValues(Integer version, byte[] attributeValues) {
+            this.version = version;
+            this.attributeValues = attributeValues;
+        }
+
+        public Integer getVersion() {
+            return version;
+        }
+
+        public byte[] getAttributeValues() {
+            return attributeValues;
+        }
+    }
+
+    /**
+     * Entities whose attribute values are loaded by the same queries.
+     */
+    protected static class AttributeValuesGroup {
+        protected final String idPropertyName;
+        protected final String entityType;
+        protected final List<BaseGenericIdEntity> entities = new ArrayList<>();
+        protected final List<CategoryAttributeValue> attributeValues = new ArrayList<>();
+
+        public AttributeValuesGroup(String idPropertyName, @Nullable String entityType) {
+            this.idPropertyName = idPropertyName;
+            this.entityType = entityType;
+        }
+    }
 }
\ No newline at end of file
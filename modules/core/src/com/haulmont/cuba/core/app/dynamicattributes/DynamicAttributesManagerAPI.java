@@ -56,6 +56,15 @@ public interface DynamicAttributesManagerAPI {
     @Nullable
     DynamicAttributesCache getCacheIfNewer(Date clientCacheDate);
 
+    /**
+     * Get changes of the cache made after the client cache creation date. If the changes since this date are not
+     * known, e.g. the client cache was created by another cluster node, the whole cache is returned.
+     *
+     * @return null if the client cache is up to date
+     */
+    @Nullable
+    DynamicAttributesCacheChanges getCacheChangesIfNewer(@Nullable Date clientCacheDate);
+
     /**
      *  Fetch dynamic attributes from database for each entity
      */
@@ -65,4 +74,10 @@ public interface DynamicAttributesManagerAPI {
      * Store dynamic attributes from the entity to database
      */
     void storeDynamicAttributes(BaseGenericIdEntity entity);
+
+    /**
+     * Store dynamic attributes from the entities to database. Existing attribute values are loaded by a few queries
+     * instead of a query per value.
+     */
+    void storeDynamicAttributes(Collection<? extends BaseGenericIdEntity> entities);
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.dynamicattributes;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManager.InvalidateValuesCacheMsg;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Cluster codec of messages invalidating cached dynamic attribute values of entities.
+ */
+@Component(InvalidateValuesCacheMsgCodec.NAME)
+public class InvalidateValuesCacheMsgCodec extends AbstractClusterMessageCodec<InvalidateValuesCacheMsg> {
+
+    public static final String NAME = "cuba_DynamicAttributesInvalidateValuesCacheMsgCodec";
+
+    @Override
+    public Class<InvalidateValuesCacheMsg> getMessageClass() {
+        return InvalidateValuesCacheMsg.class;
+    }
+
+    @Override
+    public void write(InvalidateValuesCacheMsg message, DataOutput out) throws IOException {
+        out.writeInt(message.getKeys().size());
+        for (String key : message.getKeys()) {
+            out.writeUTF(key);
+        }
+    }
+
+    @Override
+    public InvalidateValuesCacheMsg read(DataInput in) throws IOException {
+        int size = in.readInt();
+        Set<String> keys = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(in.readUTF());
+        }
+        return new InvalidateValuesCacheMsg(keys);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.dynamicattributes;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManager.ReloadCacheMsg;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+/**
+ * Cluster codec of dynamic attributes cache reload messages. The message has no content, so only its type is sent.
+ */
+@Component(ReloadCacheMsgCodec.NAME)
+public class ReloadCacheMsgCodec extends AbstractClusterMessageCodec<ReloadCacheMsg> {
+
+    public static final String NAME = "cuba_DynamicAttributesReloadCacheMsgCodec";
+
+    @Override
+    public Class<ReloadCacheMsg> getMessageClass() {
+        return ReloadCacheMsg.class;
+    }
+
+    @Override
+    public void write(ReloadCacheMsg message, DataOutput out) {
+    }
+
+    @Override
+    public ReloadCacheMsg read(DataInput in) {
+        return new ReloadCacheMsg();
+    }
+}
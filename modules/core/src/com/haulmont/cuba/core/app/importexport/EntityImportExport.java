@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.app.importexport;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -29,6 +30,7 @@ import com.haulmont.cuba.core.app.DataStore;
 import com.haulmont.cuba.core.app.RdbmsStore;
 import com.haulmont.cuba.core.app.StoreFactory;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManagerAPI;
+import com.haulmont.cuba.core.app.serialization.EntityJsonArrayWriter;
 import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
 import com.haulmont.cuba.core.app.serialization.EntitySerializationOption;
 import com.haulmont.cuba.core.entity.*;
@@ -41,6 +43,8 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
@@ -48,11 +52,11 @@ import javax.inject.Inject;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 import javax.validation.groups.Default;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.zip.CRC32;
 
@@ -61,6 +65,13 @@ import static java.lang.String.format;
 @Component(EntityImportExportAPI.NAME)
 public class EntityImportExport implements EntityImportExportAPI {
 
+    private static final Logger log = LoggerFactory.getLogger(EntityImportExport.class);
+
+    /**
+     * Max number of ids in one "in" clause when existing entities are loaded for import.
+     */
+    protected static final int LOAD_IDS_CHUNK_SIZE = 500;
+
     @Inject
     protected EntitySerializationAPI entitySerialization;
 
@@ -118,6 +129,33 @@ public class EntityImportExport implements EntityImportExportAPI {
         return byteArrayOutputStream.toByteArray();
     }
 
+    @Override
+    public void exportEntitiesToZIP(LoadContext<? extends Entity> loadContext, OutputStream outputStream, int batchSize) {
+        ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+        zipOutputStream.setEncoding(StandardCharsets.UTF_8.name());
+        try {
+            // the size is unknown in advance, so the entry is deflated and followed by a data descriptor
+            zipOutputStream.putArchiveEntry(new ZipArchiveEntry("entities.json"));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(zipOutputStream, StandardCharsets.UTF_8));
+            EntityJsonArrayWriter jsonWriter = entitySerialization.createJsonArrayWriter(writer, null,
+                    EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+            dataManager.loadBatches(loadContext, batchSize, batch -> {
+                for (Entity entity : batch) {
+                    try {
+                        jsonWriter.write(entity);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error on creating zip archive during entities export", e);
+                    }
+                }
+            });
+            jsonWriter.close();
+            zipOutputStream.closeArchiveEntry();
+            zipOutputStream.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("Error on creating zip archive during entities export", e);
+        }
+    }
+
     @Override
     public String exportEntitiesToJSON(Collection<? extends Entity> entities, View view) {
         return exportEntitiesToJSON(reloadEntities(entities, view));
@@ -192,6 +230,31 @@ public class EntityImportExport implements EntityImportExportAPI {
         return IOUtils.toByteArray(archiveReader);
     }
 
+    @Override
+    public EntityImportProgress importEntitiesFromJson(InputStream inputStream, EntityImportView view, int batchSize,
+                                                       boolean validate,
+                                                       @Nullable Consumer<EntityImportProgress> progressListener) {
+        BatchImport batchImport = new BatchImport(view, batchSize, validate, progressListener);
+        batchImport.importJson(inputStream);
+        return batchImport.finish();
+    }
+
+    @Override
+    public EntityImportProgress importEntitiesFromZIP(InputStream inputStream, EntityImportView view, int batchSize,
+                                                      boolean validate,
+                                                      @Nullable Consumer<EntityImportProgress> progressListener) {
+        BatchImport batchImport = new BatchImport(view, batchSize, validate, progressListener);
+        ZipArchiveInputStream archiveReader = new ZipArchiveInputStream(inputStream);
+        try {
+            while (archiveReader.getNextZipEntry() != null) {
+                batchImport.importJson(archiveReader);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Exception occurred while importing entities", e);
+        }
+        return batchImport.finish();
+    }
+
     @Override
     public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView) {
         return importEntities(entities, importView, false);
@@ -199,32 +262,57 @@ public class EntityImportExport implements EntityImportExportAPI {
 
     @Override
     public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate) {
-        List<ReferenceInfo> referenceInfoList = new ArrayList<>();
         CommitContext commitContext = new CommitContext();
         commitContext.setSoftDeletion(false);
+        return importEntities(Collections.singletonMap(importView, entities), commitContext, validate);
+    }
+
+    @Override
+    public Collection<Entity> importEntities(Map<Entity, EntityImportView> entities, Collection<? extends Entity> entitiesToRemove,
+                                             boolean validate) {
+        //entities sharing the same import view are loaded from the database together
+        Map<EntityImportView, List<Entity>> entitiesByImportView = new IdentityHashMap<>();
+        for (Map.Entry<Entity, EntityImportView> entry : entities.entrySet()) {
+            entitiesByImportView.computeIfAbsent(entry.getValue(), importView -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        CommitContext commitContext = new CommitContext();
+        //imported entities are merged without soft deletion as in other import methods, while removed entities are
+        //soft deleted in the same transaction, the same way as DataManager.remove() does it
+        commitContext.setSoftDeletion(false);
+        commitContext.setRemoveSoftDeletion(true);
+        for (Entity entity : entitiesToRemove) {
+            commitContext.addInstanceToRemove(entity);
+        }
+        return importEntities(entitiesByImportView, commitContext, validate);
+    }
+
+    protected Collection<Entity> importEntities(Map<EntityImportView, ? extends Collection<? extends Entity>> entitiesByImportView,
+                                                CommitContext commitContext,
+                                                boolean validate) {
+        List<ReferenceInfo> referenceInfoList = new ArrayList<>();
 
         //import is performed in two steps. We have to do so, because imported entity may have a reference to
         //the reference that is imported in the same batch.
         //
         //1. entities that should be persisted are processed first, fields that should be references to existing entities
         //are stored in the referenceInfoList variable
-        for (Entity srcEntity : entities) {
+        for (Map.Entry<EntityImportView, ? extends Collection<? extends Entity>> entry : entitiesByImportView.entrySet()) {
+            EntityImportView importView = entry.getKey();
+            Collection<? extends Entity> entities = entry.getValue();
             View regularView = buildViewFromImportView(importView);
-            //set softDeletion to false because we can import deleted entity, so we'll restore it and update
-            LoadContext<? extends Entity> ctx = LoadContext.create(srcEntity.getClass())
-                    .setSoftDeletion(false)
-                    .setView(regularView)
-                    .setId(srcEntity.getId());
-            Entity dstEntity = dataManager.secure().load(ctx);
-
-            importEntity(srcEntity, dstEntity, importView, regularView, commitContext, referenceInfoList);
+            Map<Entity, Entity> dstEntities = loadEntities(dataManager.secure(), entities, metaClass -> regularView);
+            for (Entity srcEntity : entities) {
+                Entity dstEntity = dstEntities.get(srcEntity);
+                importEntity(srcEntity, dstEntity, importView, regularView, commitContext, referenceInfoList);
+            }
         }
 
         //2. references to existing entities are processed
 
-        //store a list of loaded entities in the collection to prevent unnecessary database requests for searching the
-        //same instance
-        Set<Entity> loadedEntities = new HashSet<>();
+        //store loaded entities and instances to commit in the map to prevent unnecessary database requests and
+        //collection scans when searching the same instance
+        Map<Entity, Entity> loadedEntities = loadReferences(referenceInfoList, commitContext);
         for (ReferenceInfo referenceInfo : referenceInfoList) {
             processReferenceInfo(referenceInfo, commitContext, loadedEntities);
         }
@@ -528,7 +616,7 @@ public class EntityImportExport implements EntityImportExportAPI {
      * Method finds and set a reference value to the entity or throws EntityImportException if ERROR_ON_MISSING policy
      * is violated
      */
-    protected void processReferenceInfo(ReferenceInfo referenceInfo, CommitContext commitContext, Set<Entity> loadedEntities) {
+    protected void processReferenceInfo(ReferenceInfo referenceInfo, CommitContext commitContext, Map<Entity, Entity> loadedEntities) {
         Entity entity = referenceInfo.getEntity();
         String propertyName = referenceInfo.getViewProperty().getName();
         MetaProperty metaProperty = entity.getMetaClass().getPropertyNN(propertyName);
@@ -547,7 +635,7 @@ public class EntityImportExport implements EntityImportExportAPI {
             }
 
             for (Entity childEntity : propertyValue) {
-                Entity entityFromLoadedEntities = findEntityInCollection(loadedEntities, childEntity);
+                Entity entityFromLoadedEntities = loadedEntities.get(childEntity);
                 if (entityFromLoadedEntities != null) {
                     collection.add(entityFromLoadedEntities);
                 } else {
@@ -566,7 +654,7 @@ public class EntityImportExport implements EntityImportExportAPI {
                             }
                         } else {
                             collection.add(loadedReference);
-                            loadedEntities.add(loadedReference);
+                            loadedEntities.put(loadedReference, loadedReference);
                         }
                     }
                 }
@@ -603,7 +691,7 @@ public class EntityImportExport implements EntityImportExportAPI {
             if (propertyValue == null) {
                 entity.setValue(propertyName, null);
             } else {
-                Entity entityFromLoadedEntities = findEntityInCollection(loadedEntities, propertyValue);
+                Entity entityFromLoadedEntities = loadedEntities.get(propertyValue);
                 if (entityFromLoadedEntities != null) {
                     entity.setValue(propertyName, entityFromLoadedEntities);
                 } else {
@@ -615,7 +703,6 @@ public class EntityImportExport implements EntityImportExportAPI {
                         LoadContext<? extends Entity> ctx = LoadContext.create(propertyValue.getClass())
                                 .setSoftDeletion(false)
                                 .setId(propertyValue.getId());
-                        dataManager.load(ctx);
                         Entity loadedReference = dataManager.load(ctx);
                         if (loadedReference == null) {
                             if (referenceInfo.getViewProperty().getReferenceImportBehaviour() == ReferenceImportBehaviour.ERROR_ON_MISSING) {
@@ -623,12 +710,111 @@ public class EntityImportExport implements EntityImportExportAPI {
                             }
                         } else {
                             entity.setValue(propertyName, loadedReference);
-                            loadedEntities.add(loadedReference);
+                            loadedEntities.put(loadedReference, loadedReference);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads all existing references collected on the first step of import with as few database requests as possible.
+     * Instances that are going to be committed are put to the result map as well.
+     *
+     * @return map of entities where each entity is mapped to itself, so it can be found by an equal instance
+     */
+    protected Map<Entity, Entity> loadReferences(List<ReferenceInfo> referenceInfoList, CommitContext commitContext) {
+        Map<Entity, Entity> commitInstances = new HashMap<>();
+        for (Entity commitInstance : commitContext.getCommitInstances()) {
+            commitInstances.put(commitInstance, commitInstance);
+        }
+
+        Set<Entity> collectionReferences = new LinkedHashSet<>();
+        Set<Entity> references = new LinkedHashSet<>();
+        for (ReferenceInfo referenceInfo : referenceInfoList) {
+            MetaProperty metaProperty = referenceInfo.getEntity().getMetaClass()
+                    .getPropertyNN(referenceInfo.getViewProperty().getName());
+            if (metaProperty.getRange().getCardinality() == Range.Cardinality.MANY_TO_MANY) {
+                Collection<?> propertyValue = (Collection<?>) referenceInfo.getPropertyValue();
+                if (propertyValue != null) {
+                    for (Object item : propertyValue) {
+                        if (!commitInstances.containsKey(item)) {
+                            collectionReferences.add((Entity) item);
                         }
                     }
                 }
+            } else {
+                Entity propertyValue = (Entity) referenceInfo.getPropertyValue();
+                if (propertyValue != null && !commitInstances.containsKey(propertyValue)) {
+                    references.add(propertyValue);
+                }
+            }
+        }
+
+        Map<Entity, Entity> result = new HashMap<>();
+        result.putAll(loadEntities(dataManager, collectionReferences,
+                metaClass -> viewRepository.getView(metaClass, View.MINIMAL)));
+        for (Entity loaded : loadEntities(dataManager, references, metaClass -> null).values()) {
+            result.putIfAbsent(loaded, loaded);
+        }
+        result.putAll(commitInstances);
+        return result;
+    }
+
+    /**
+     * Loads instances equal to the given entities, including soft deleted ones. Instances of RDBMS entities with
+     * a simple primary key are loaded by a single query per entity class and chunk of ids, others are loaded one
+     * by one.
+     *
+     * @param dataManager  secure or unconstrained data manager
+     * @param entities     entities containing ids to load
+     * @param viewProvider returns a view to load instances of the given class with, or null for the default view
+     * @return map of loaded entities where each entity is mapped to itself, so it can be found by an equal instance
+     */
+    protected Map<Entity, Entity> loadEntities(DataManager dataManager, Collection<? extends Entity> entities,
+                                               Function<MetaClass, View> viewProvider) {
+        Map<Entity, Entity> result = new HashMap<>();
+        Map<Class<? extends Entity>, Set<Object>> idsByClass = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            if (entity.getId() != null) {
+                idsByClass.computeIfAbsent(entity.getClass(), k -> new LinkedHashSet<>()).add(entity.getId());
+            }
+        }
+
+        for (Map.Entry<Class<? extends Entity>, Set<Object>> entry : idsByClass.entrySet()) {
+            Class<? extends Entity> entityClass = entry.getKey();
+            MetaClass metaClass = metadata.getClassNN(entityClass);
+            View entityView = viewProvider.apply(metaClass);
+            String primaryKeyName = metadata.getTools().getPrimaryKeyName(metaClass);
+            DataStore dataStore = storeFactory.get(metadata.getTools().getStoreName(metaClass));
+
+            if (primaryKeyName == null || metadata.getTools().hasCompositePrimaryKey(metaClass)
+                    || !(dataStore instanceof RdbmsStore)) {
+                for (Object id : entry.getValue()) {
+                    LoadContext<? extends Entity> ctx = LoadContext.create(entityClass)
+                            .setSoftDeletion(false)
+                            .setView(entityView)
+                            .setId(id);
+                    Entity loaded = dataManager.load(ctx);
+                    if (loaded != null) {
+                        result.put(loaded, loaded);
+                    }
+                }
+            } else {
+                String queryString = format("select e from %s e where e.%s in :ids", metaClass.getName(), primaryKeyName);
+                for (List<Object> ids : Lists.partition(new ArrayList<>(entry.getValue()), LOAD_IDS_CHUNK_SIZE)) {
+                    LoadContext<? extends Entity> ctx = LoadContext.create(entityClass)
+                            .setSoftDeletion(false)
+                            .setView(entityView)
+                            .setQuery(LoadContext.createQuery(queryString).setParameter("ids", ids));
+                    for (Entity loaded : dataManager.loadList(ctx)) {
+                        result.put(loaded, loaded);
+                    }
+                }
             }
         }
+        return result;
     }
 
     /**
@@ -663,6 +849,72 @@ public class EntityImportExport implements EntityImportExportAPI {
         return null;
     }
 
+    /**
+     * Collects entities read from a stream and imports them in batches.
+     */
+    protected class BatchImport {
+        protected final EntityImportView view;
+        protected final int batchSize;
+        protected final boolean validate;
+        protected final Consumer<EntityImportProgress> progressListener;
+        protected final List<Entity> batch;
+        protected final long startTime = System.currentTimeMillis();
+        protected long importedCount;
+        protected int batchCount;
+
+        public BatchImport(EntityImportView view, int batchSize, boolean validate,
+                           @Nullable Consumer<EntityImportProgress> progressListener) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize must be positive");
+            }
+            this.view = view;
+            this.batchSize = batchSize;
+            this.validate = validate;
+            this.progressListener = progressListener;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        public void importJson(InputStream inputStream) {
+            Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            entitySerialization.entitiesFromJson(reader, null, this::add,
+                    EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+        }
+
+        public void add(Entity entity) {
+            batch.add(entity);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        public EntityImportProgress finish() {
+            flush();
+            EntityImportProgress progress = getProgress();
+            log.info("Import finished: {}", progress);
+            return progress;
+        }
+
+        protected void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            importEntities(batch, view, validate);
+            importedCount += batch.size();
+            batchCount++;
+            batch.clear();
+
+            EntityImportProgress progress = getProgress();
+            log.debug("Import batch committed: {}", progress);
+            if (progressListener != null) {
+                progressListener.accept(progress);
+            }
+        }
+
+        protected EntityImportProgress getProgress() {
+            return new EntityImportProgress(importedCount, batchCount, System.currentTimeMillis() - startTime);
+        }
+    }
+
     protected class ReferenceInfo {
         protected Entity entity;
         protected EntityImportViewProperty viewProperty;
@@ -18,9 +18,15 @@
 package com.haulmont.cuba.core.app.importexport;
 
 import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.View;
 
+import javax.annotation.Nullable;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Class that is used for exporting a collection of entities and importing them. See full javadocs in the {@link
@@ -69,4 +75,54 @@ public interface EntityImportExportAPI {
      * See documentation for {@link EntityImportExportService#importEntities(Collection, EntityImportView, boolean)}
      */
     Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate);
+
+    /**
+     * See documentation for {@link EntityImportExportService#importEntities(Map, Collection, boolean)}
+     */
+    Collection<Entity> importEntities(Map<Entity, EntityImportView> entities, Collection<? extends Entity> entitiesToRemove,
+                                      boolean validate);
+
+    /**
+     * Exports all entities returned by the load context to a ZIP archive written to the output stream. Entities are
+     * loaded in batches of the given size and serialized to the archive as they are loaded, so the whole result is
+     * never kept in memory. The output stream is not closed.
+     *
+     * @param loadContext  defines which entities to export and the view to load them with
+     * @param outputStream receives the ZIP archive
+     * @param batchSize    number of entities loaded in one transaction
+     */
+    void exportEntitiesToZIP(LoadContext<? extends Entity> loadContext, OutputStream outputStream, int batchSize);
+
+    /**
+     * Imports entities from a JSON array read from the input stream. The array is parsed incrementally and entities
+     * are imported in batches of the given size, each batch being committed in a separate transaction. Entities of
+     * a committed batch are not kept in memory.
+     * <p>
+     * Each array element is read independently, as it is written by
+     * {@link #exportEntitiesToZIP(LoadContext, OutputStream, int)}. JSON created by {@link #exportEntitiesToJSON} or
+     * {@link #exportEntitiesToZIP(Collection)} compacts entities repeated in different elements, so it should be
+     * imported with {@link #importEntitiesFromJson(String, EntityImportView)} or
+     * {@link #importEntitiesFromZIP(byte[], EntityImportView)}.
+     * <p>
+     * If an error occurs, batches that have been committed before remain in the database.
+     *
+     * @param inputStream      UTF-8 encoded JSON array of entities, is not closed by the method
+     * @param view             import view
+     * @param batchSize        number of entities committed in one transaction
+     * @param validate         whether the entities should be validated before commit
+     * @param progressListener optional listener that is notified after each committed batch
+     * @return final import statistics
+     */
+    EntityImportProgress importEntitiesFromJson(InputStream inputStream, EntityImportView view, int batchSize,
+                                                boolean validate,
+                                                @Nullable Consumer<EntityImportProgress> progressListener);
+
+    /**
+     * Imports entities from a ZIP archive read from the input stream, for example one created by
+     * {@link #exportEntitiesToZIP(LoadContext, OutputStream, int)}. Works like
+     * {@link #importEntitiesFromJson(InputStream, EntityImportView, int, boolean, Consumer)} for each archive entry.
+     */
+    EntityImportProgress importEntitiesFromZIP(InputStream inputStream, EntityImportView view, int batchSize,
+                                               boolean validate,
+                                               @Nullable Consumer<EntityImportProgress> progressListener);
 }
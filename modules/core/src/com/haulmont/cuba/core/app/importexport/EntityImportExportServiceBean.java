@@ -23,6 +23,7 @@ import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
 import java.util.Collection;
+import java.util.Map;
 
 @Service(EntityImportExportService.NAME)
 public class EntityImportExportServiceBean implements EntityImportExportService {
@@ -69,4 +70,10 @@ public class EntityImportExportServiceBean implements EntityImportExportService
     public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate) {
         return entityImportExport.importEntities(entities, importView, validate);
     }
+
+    @Override
+    public Collection<Entity> importEntities(Map<Entity, EntityImportView> entities, Collection<? extends Entity> entitiesToRemove,
+                                             boolean validate) {
+        return entityImportExport.importEntities(entities, entitiesToRemove, validate);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.importexport;
+
+/**
+ * Immutable snapshot of the state of a batched import started by one of the streaming methods of
+ * {@link EntityImportExportAPI}.
+ */
+public class EntityImportProgress {
+
+    protected final long importedCount;
+    protected final int batchCount;
+    protected final long elapsedTime;
+
+    public EntityImportProgress(long importedCount, int batchCount, long elapsedTime) {
+        this.importedCount = importedCount;
+        this.batchCount = batchCount;
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * @return number of entities committed so far
+     */
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * @return number of committed batches
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * @return time in milliseconds since the import was started
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * @return average number of entities imported per second
+     */
+    public double getThroughput() {
+        return elapsedTime > 0 ? importedCount * 1000.0 / elapsedTime : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("imported %d entities in %d batches, %d ms, %.1f entities/s",
+                importedCount, batchCount, elapsedTime, getThroughput());
+    }
+}
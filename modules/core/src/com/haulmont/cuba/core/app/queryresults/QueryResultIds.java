@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.queryresults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact immutable list of entity identifiers kept by {@link QueryResultsManager} in memory.
+ * Identifiers of UUID, Long and Integer types are stored in primitive arrays, other types as is.
+ */
+public abstract class QueryResultIds {
+
+    /**
+     * Creates a compact representation of the given identifiers. All identifiers must be of the same type.
+     */
+    public static QueryResultIds of(List<?> ids) {
+        if (ids.isEmpty()) {
+            return new ObjectIds(new Object[0]);
+        }
+        Object first = ids.get(0);
+        if (first instanceof UUID) {
+            long[] mostSigBits = new long[ids.size()];
+            long[] leastSigBits = new long[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                UUID id = (UUID) ids.get(i);
+                mostSigBits[i] = id.getMostSignificantBits();
+                leastSigBits[i] = id.getLeastSignificantBits();
+            }
+            return new Uuids(mostSigBits, leastSigBits);
+        } else if (first instanceof Long) {
+            long[] values = new long[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                values[i] = (Long) ids.get(i);
+            }
+            return new Longs(values);
+        } else if (first instanceof Integer) {
+            int[] values = new int[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                values[i] = (Integer) ids.get(i);
+            }
+            return new Integers(values);
+        } else {
+            return new ObjectIds(ids.toArray());
+        }
+    }
+
+    /**
+     * @return number of identifiers
+     */
+    public abstract int size();
+
+    /**
+     * @return identifiers as a list of objects suitable for a query parameter
+     */
+    public abstract List<Object> toList();
+
+    protected static class Uuids extends QueryResultIds {
+        protected final long[] mostSigBits;
+        protected final long[] leastSigBits;
+
+        protected Uuids(long[] mostSigBits, long[] leastSigBits) {
+            this.mostSigBits = mostSigBits;
+            this.leastSigBits = leastSigBits;
+        }
+
+        @Override
+        public int size() {
+            return mostSigBits.length;
+        }
+
+        @Override
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(mostSigBits.length);
+            for (int i = 0; i < mostSigBits.length; i++) {
+                list.add(new UUID(mostSigBits[i], leastSigBits[i]));
+            }
+            return list;
+        }
+    }
+
+    protected static class Longs extends QueryResultIds {
+        protected final long[] values;
+
+        protected Longs(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(values.length);
+            for (long value : values) {
+                list.add(value);
+            }
+            return list;
+        }
+    }
+
+    protected static class Integers extends QueryResultIds {
+        protected final int[] values;
+
+        protected Integers(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(values.length);
+            for (int value : values) {
+                list.add(value);
+            }
+            return list;
+        }
+    }
+
+    protected static class ObjectIds extends QueryResultIds {
+        protected final Object[] values;
+
+        protected ObjectIds(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(values.length);
+            for (Object value : values) {
+                list.add(value);
+            }
+            return list;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.haulmont.cuba.core.app.queryresults;
 
+import com.google.common.util.concurrent.Striped;
 import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
@@ -24,6 +25,7 @@ import com.haulmont.cuba.core.Query;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.app.DataServiceQueryBuilder;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.QueryHolder;
@@ -34,9 +36,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Supports functionality that allows queries from previously selected results.
@@ -66,6 +75,28 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     private static final int BATCH_SIZE = 100;
 
+    protected ServerConfig serverConfig;
+
+    /**
+     * Results kept in memory in the order of storing. Guarded by itself, together with {@link #inMemoryTotalIds}.
+     */
+    protected final LinkedHashMap<ResultsKey, QueryResultIds> inMemoryResults = new LinkedHashMap<>();
+
+    protected long inMemoryTotalIds;
+
+    protected Set<ResultsKey> spilledResults = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Serialize storing, moving to the database, reading and deleting results of the same key, so a reader
+     * always finds the results either in memory or in the database.
+     */
+    protected Striped<Lock> resultsLocks = Striped.lock(64);
+
+    @PostConstruct
+    public void init() {
+        serverConfig = configuration.getConfig(ServerConfig.class);
+    }
+
     @Override
     public void savePreviousQueryResults(LoadContext loadContext) {
         List<LoadContext.Query> prevQueries = loadContext.getPrevQueries();
@@ -114,8 +145,117 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
             tx.end();
         }
 
-        delete(queryKey);
-        insert(queryKey, idList);
+        store(userSessionSource.getUserSession().getId(), queryKey, idList);
+    }
+
+    protected void store(UUID userSessionId, int queryKey, List idList) {
+        ResultsKey key = new ResultsKey(userSessionId, queryKey);
+        boolean inMemory = serverConfig.getQueryResultsInMemory()
+                && idList.size() <= serverConfig.getQueryResultsInMemoryMaxIds();
+        Lock lock = resultsLocks.get(key);
+        lock.lock();
+        try {
+            if (inMemory) {
+                if (spilledResults.remove(key)) {
+                    delete(userSessionId, queryKey);
+                }
+                putInMemory(key, QueryResultIds.of(idList));
+                log.debug("Stored {} query results for {} / {} in memory", idList.size(), userSessionId, queryKey);
+            } else {
+                removeInMemory(key);
+                delete(userSessionId, queryKey);
+                insert(userSessionId, queryKey, idList);
+                if (serverConfig.getQueryResultsInMemory()) {
+                    spilledResults.add(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (inMemory) {
+            moveExcessResultsToDatabase();
+        }
+    }
+
+    protected void putInMemory(ResultsKey key, QueryResultIds ids) {
+        synchronized (inMemoryResults) {
+            // remove first to move the key to the end of the order
+            QueryResultIds oldIds = inMemoryResults.remove(key);
+            if (oldIds != null) {
+                inMemoryTotalIds -= weight(oldIds);
+            }
+            inMemoryResults.put(key, ids);
+            inMemoryTotalIds += weight(ids);
+        }
+    }
+
+    protected void removeInMemory(ResultsKey key) {
+        synchronized (inMemoryResults) {
+            QueryResultIds oldIds = inMemoryResults.remove(key);
+            if (oldIds != null) {
+                inMemoryTotalIds -= weight(oldIds);
+            }
+        }
+    }
+
+    protected int weight(QueryResultIds ids) {
+        return Math.max(ids.size(), 1);
+    }
+
+    /**
+     * Moves the oldest results to the SYS_QUERY_RESULT table while the total number of identifiers in memory
+     * exceeds {@link ServerConfig#getQueryResultsInMemoryMaxTotalIds()}. Results are inserted into the table
+     * before they are removed from memory, under the lock of their key.
+     */
+    protected void moveExcessResultsToDatabase() {
+        while (true) {
+            ResultsKey key;
+            QueryResultIds ids;
+            synchronized (inMemoryResults) {
+                if (inMemoryTotalIds <= serverConfig.getQueryResultsInMemoryMaxTotalIds() || inMemoryResults.isEmpty())
+                    return;
+                Map.Entry<ResultsKey, QueryResultIds> eldest = inMemoryResults.entrySet().iterator().next();
+                key = eldest.getKey();
+                ids = eldest.getValue();
+            }
+
+            Lock lock = resultsLocks.get(key);
+            lock.lock();
+            try {
+                synchronized (inMemoryResults) {
+                    // stored again or moved by another thread
+                    if (inMemoryResults.get(key) != ids)
+                        continue;
+                }
+                log.debug("Moving query results for {} / {} to the database", key.userSessionId, key.queryKey);
+                try {
+                    insert(key.userSessionId, key.queryKey, ids.toList());
+                    spilledResults.add(key);
+                } catch (Exception e) {
+                    log.error("Unable to store query results in the database", e);
+                }
+                removeInMemory(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public List<Object> getInMemoryResults(UUID userSessionId, int queryKey) {
+        ResultsKey key = new ResultsKey(userSessionId, queryKey);
+        QueryResultIds ids;
+        Lock lock = resultsLocks.get(key);
+        lock.lock();
+        try {
+            synchronized (inMemoryResults) {
+                ids = inMemoryResults.get(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return ids != null ? ids.toList() : null;
     }
 
     private boolean resultsAlreadySaved(Integer queryKey, LoadContext.Query query) {
@@ -144,10 +284,13 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void insert(int queryKey, List idList) {
+        store(userSessionSource.getUserSession().getId(), queryKey, idList);
+    }
+
+    protected void insert(UUID userSessionId, int queryKey, List idList) {
         if (idList.isEmpty())
             return;
 
-        UUID userSessionId = userSessionSource.getUserSession().getId();
         long start = System.currentTimeMillis();
         String logMsg = "Insert " + idList.size() + " query results for " + userSessionId + " / " + queryKey;
         log.debug(logMsg);
@@ -195,6 +338,38 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
     @Override
     public void delete(int queryKey) {
         UUID userSessionId = userSessionSource.getUserSession().getId();
+        ResultsKey key = new ResultsKey(userSessionId, queryKey);
+        Lock lock = resultsLocks.get(key);
+        lock.lock();
+        try {
+            removeInMemory(key);
+            spilledResults.remove(key);
+            delete(userSessionId, queryKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void removeInMemory(Predicate<UUID> userSessionIdPredicate) {
+        List<ResultsKey> keys;
+        synchronized (inMemoryResults) {
+            keys = inMemoryResults.keySet().stream()
+                    .filter(key -> userSessionIdPredicate.test(key.userSessionId))
+                    .collect(Collectors.toList());
+        }
+        for (ResultsKey key : keys) {
+            Lock lock = resultsLocks.get(key);
+            lock.lock();
+            try {
+                removeInMemory(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+        spilledResults.removeIf(key -> userSessionIdPredicate.test(key.userSessionId));
+    }
+
+    protected void delete(UUID userSessionId, int queryKey) {
         long start = System.currentTimeMillis();
         String logMsg = "Delete query results for " + userSessionId + " / " + queryKey;
         log.debug(logMsg);
@@ -213,6 +388,9 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void deleteForCurrentSession() {
+        UUID userSessionId = userSessionSource.getUserSession().getId();
+        removeInMemory(userSessionId::equals);
+
         QueryRunner runner = new QueryRunner(persistence.getDataSource());
         try {
             runner.update("delete from SYS_QUERY_RESULT where SESSION_ID = '"
@@ -224,14 +402,22 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void deleteForInactiveSessions() {
-        if (!AppContext.isStarted() || !clusterManager.isMaster()
-                || !configuration.getConfig(GlobalConfig.class).getAllowQueryFromSelected())
+        if (!AppContext.isStarted() || !configuration.getConfig(GlobalConfig.class).getAllowQueryFromSelected())
+            return;
+
+        Collection<UserSessionEntity> userSessionEntities = userSessions.getUserSessionInfo();
+
+        Set<UUID> activeSessionIds = userSessionEntities.stream()
+                .map(UserSessionEntity::getId)
+                .collect(Collectors.toSet());
+        removeInMemory(userSessionId -> !activeSessionIds.contains(userSessionId));
+
+        if (!clusterManager.isMaster())
             return;
 
         log.debug("Delete query results for inactive user sessions");
 
         StringBuilder sb = new StringBuilder("delete from SYS_QUERY_RESULT");
-        Collection<UserSessionEntity> userSessionEntities = userSessions.getUserSessionInfo();
         if (!userSessionEntities.isEmpty()) {
             sb.append(" where SESSION_ID not in (");
             for (Iterator<UserSessionEntity> it = userSessionEntities.iterator(); it.hasNext(); ) {
@@ -249,4 +435,27 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    protected static class ResultsKey {
+        protected final UUID userSessionId;
+        protected final int queryKey;
+
+        public ResultsKey(UUID userSessionId, int queryKey) {
+            this.userSessionId = userSessionId;
+            this.queryKey = queryKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ResultsKey that = (ResultsKey) o;
+            return queryKey == that.queryKey && userSessionId.equals(that.userSessionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * userSessionId.hashCode() + queryKey;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.haulmont.cuba.core.app.queryresults;
 
 import com.haulmont.cuba.core.global.LoadContext;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,6 +33,13 @@ public interface QueryResultsManagerAPI {
 
     void savePreviousQueryResults(LoadContext loadContext);
 
+    /**
+     * @return identifiers of the previous query results if they are kept in memory of this node,
+     * or null if they are stored in the SYS_QUERY_RESULT table
+     */
+    @Nullable
+    List<Object> getInMemoryResults(UUID userSessionId, int queryKey);
+
     void insert(int queryKey, List idList);
 
     void delete(int queryKey);
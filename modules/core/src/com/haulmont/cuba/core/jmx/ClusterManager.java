@@ -87,6 +87,16 @@ public class ClusterManager implements ClusterManagerMBean {
         return clusterManager.printSharedStateStat();
     }
 
+    @Override
+    public boolean isReceivingState() {
+        return clusterManager.isReceivingState();
+    }
+
+    @Override
+    public String printStateTransferStat() {
+        return clusterManager.printStateTransferStat();
+    }
+
     @Override
     public String printMessagesStat() {
         return clusterManager.printMessagesStat();
@@ -111,4 +121,9 @@ public class ClusterManager implements ClusterManagerMBean {
     public long getReceivedBytes(String className) {
         return className == null ? -1 : clusterManager.getReceivedBytes(className);
     }
+
+    @Override
+    public long getMergedMessages(String className) {
+        return className == null ? -1 : clusterManager.getMergedMessages(className);
+    }
 }
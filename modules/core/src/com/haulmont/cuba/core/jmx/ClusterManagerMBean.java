@@ -64,6 +64,15 @@ public interface ClusterManagerMBean {
     @ManagedOperation(description = "Shared state statistics")
     String printSharedStateStat();
 
+    /**
+     * @return true if the cluster state is being received at the moment
+     * @see com.haulmont.cuba.core.app.ClusterManagerAPI#isReceivingState()
+     */
+    boolean isReceivingState();
+
+    @ManagedOperation(description = "State transfer progress statistics")
+    String printStateTransferStat();
+
     @ManagedOperation(description = "Sent/received messages statistics")
     String printMessagesStat();
 
@@ -78,4 +87,7 @@ public interface ClusterManagerMBean {
 
     @ManagedOperation(description = "Get received bytes for specified class")
     long getReceivedBytes(String className);
+
+    @ManagedOperation(description = "Get count of messages merged into sent messages for specified class")
+    long getMergedMessages(String className);
 }
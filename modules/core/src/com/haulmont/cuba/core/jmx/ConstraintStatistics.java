@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import com.haulmont.cuba.core.sys.ConstraintScripts;
+import com.haulmont.cuba.core.sys.ConstraintScripts.CompiledScript;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Component("cuba_ConstraintStatisticsMBean")
+public class ConstraintStatistics implements ConstraintStatisticsMBean {
+
+    @Inject
+    protected ConstraintScripts constraintScripts;
+
+    @Override
+    public int getCompiledScriptsCount() {
+        return constraintScripts.getCompiledScripts().size();
+    }
+
+    @Override
+    public String printStatistics() {
+        List<CompiledScript> compiledScripts = constraintScripts.getCompiledScripts().stream()
+                .sorted(Comparator.comparingLong(CompiledScript::getEvaluationTime).reversed())
+                .collect(Collectors.toList());
+        if (compiledScripts.isEmpty()) {
+            return "No constraint scripts evaluated";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (CompiledScript compiledScript : compiledScripts) {
+            long count = compiledScript.getEvaluationCount();
+            long time = compiledScript.getEvaluationTime();
+            sb.append("evaluations: ").append(count)
+                    .append(", total time, ms: ").append(TimeUnit.NANOSECONDS.toMillis(time))
+                    .append(", average time, us: ").append(count > 0 ? TimeUnit.NANOSECONDS.toMicros(time / count) : 0)
+                    .append("\n    ").append(compiledScript.getText())
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String resetStatistics() {
+        constraintScripts.resetStatistics();
+        return "Done";
+    }
+
+    @Override
+    public String clear() {
+        constraintScripts.clear();
+        return "Done";
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Provides statistics of in-memory security constraints evaluation")
+public interface ConstraintStatisticsMBean {
+
+    @ManagedAttribute(description = "Number of constraint scripts having statistics")
+    int getCompiledScriptsCount();
+
+    @ManagedOperation(description = "Print number of evaluations and evaluation time of each constraint script")
+    String printStatistics();
+
+    @ManagedOperation(description = "Reset evaluation statistics")
+    String resetStatistics();
+
+    @ManagedOperation(description = "Discard statistics of all constraint scripts")
+    String clear();
+}
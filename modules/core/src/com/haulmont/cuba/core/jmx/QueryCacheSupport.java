@@ -18,7 +18,6 @@ package com.haulmont.cuba.core.jmx;
 
 import com.google.common.base.Strings;
 import com.haulmont.cuba.core.global.UuidProvider;
-import com.haulmont.cuba.core.sys.entitycache.QueryCache;
 import com.haulmont.cuba.core.sys.entitycache.QueryCacheManager;
 import com.haulmont.cuba.core.sys.entitycache.QueryKey;
 import com.haulmont.cuba.core.sys.entitycache.QueryResult;
@@ -30,19 +29,17 @@ import java.util.UUID;
 
 @Component("cuba_QueryCacheSupportMBean")
 public class QueryCacheSupport implements QueryCacheSupportMBean {
-    @Inject
-    protected QueryCache queryCache;
     @Inject
     protected QueryCacheManager queryCacheMgr;
 
     @Override
     public long getMaxSize() {
-        return queryCache.getMaxSize();
+        return queryCacheMgr.getQueryCache().getMaxSize();
     }
 
     @Override
     public long getSize() {
-        return queryCache.size();
+        return queryCacheMgr.getQueryCache().size();
     }
 
     @Override
@@ -77,7 +74,7 @@ public class QueryCacheSupport implements QueryCacheSupportMBean {
 
     @Override
     public String printCacheContent() {
-        Map<QueryKey, QueryResult> map = queryCache.asMap();
+        Map<QueryKey, QueryResult> map = queryCacheMgr.getQueryCache().asMap();
         StringBuilder builder = new StringBuilder();
         for (Map.Entry<QueryKey, QueryResult> entry : map.entrySet()) {
             QueryResult queryResult = entry.getValue();
@@ -97,9 +94,9 @@ public class QueryCacheSupport implements QueryCacheSupportMBean {
         UUID uuid;
         try {
             uuid = UuidProvider.fromString(queryId);
-            QueryKey queryKey = queryCache.findQueryKeyById(uuid);
+            QueryKey queryKey = queryCacheMgr.getQueryCache().findQueryKeyById(uuid);
             if (queryKey != null) {
-                QueryResult queryResult = queryCache.get(queryKey);
+                QueryResult queryResult = queryCacheMgr.getQueryCache().get(queryKey);
                 if (queryResult != null) {
                     return queryResult.getResult() == null ? "[]" : queryResult.getResult().toString();
                 }
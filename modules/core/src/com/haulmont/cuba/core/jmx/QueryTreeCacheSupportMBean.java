@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Manages caches of parsed and transformed JPQL queries")
+public interface QueryTreeCacheSupportMBean {
+
+    @ManagedAttribute(description = "Maximum number of cached query trees")
+    int getMaxSize();
+
+    @ManagedAttribute(description = "Current number of cached query trees")
+    long getSize();
+
+    @ManagedAttribute(description = "Number of requests served from the cache")
+    long getHitCount();
+
+    @ManagedAttribute(description = "Number of requests which required parsing")
+    long getMissCount();
+
+    @ManagedAttribute(description = "Ratio of cache hits to all requests")
+    double getHitRate();
+
+    @ManagedAttribute(description = "Number of queries parsed")
+    long getParseCount();
+
+    @ManagedAttribute(description = "Average query parse time, microseconds")
+    long getAverageParseTime();
+
+    @ManagedAttribute(description = "Current number of cached query transformation results")
+    long getTransformationCacheSize();
+
+    @ManagedAttribute(description = "Ratio of query transformations served from the cache")
+    double getTransformationCacheHitRate();
+
+    @ManagedOperation(description = "Discard all cached query trees and transformation results")
+    String clear();
+}
@@ -18,6 +18,7 @@ package com.haulmont.cuba.core.jmx;
 
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.AbstractScripting;
 import com.haulmont.cuba.security.app.Authenticated;
 import groovy.lang.Binding;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -26,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
 
 @Component("cuba_ScriptingManagerMBean")
 public class ScriptingManager implements ScriptingManagerMBean {
@@ -68,4 +70,62 @@ public class ScriptingManager implements ScriptingManagerMBean {
             return ExceptionUtils.getStackTrace(e);
         }
     }
+
+    @Override
+    public long getCompilationCount() {
+        return getAbstractScripting().getCompilationCount();
+    }
+
+    @Override
+    public long getCompilationTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(getAbstractScripting().getCompilationTime());
+    }
+
+    @Override
+    public long getEvaluationCount() {
+        return getAbstractScripting().getEvaluationCount();
+    }
+
+    @Override
+    public long getEvaluationTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(getAbstractScripting().getEvaluationTime());
+    }
+
+    @Override
+    public long getExpressionCacheSize() {
+        return getAbstractScripting().getExpressionCacheSize();
+    }
+
+    @Override
+    public long getExpressionCacheHitCount() {
+        return getAbstractScripting().getExpressionCacheStats().hitCount();
+    }
+
+    @Override
+    public long getExpressionCacheMissCount() {
+        return getAbstractScripting().getExpressionCacheStats().missCount();
+    }
+
+    @Override
+    public long getExpressionCacheEvictionCount() {
+        return getAbstractScripting().getExpressionCacheStats().evictionCount();
+    }
+
+    @Override
+    public long getCachedBytecodeSize() {
+        return getAbstractScripting().getCachedBytecodeSize();
+    }
+
+    @Override
+    public String resetStatistics() {
+        getAbstractScripting().resetStatistics();
+        return "Done";
+    }
+
+    protected AbstractScripting getAbstractScripting() {
+        if (!(scripting instanceof AbstractScripting)) {
+            throw new IllegalStateException("Statistics are not supported by " + scripting.getClass().getName());
+        }
+        return (AbstractScripting) scripting;
+    }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
  */
 package com.haulmont.cuba.core.jmx;
 
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedOperationParameter;
 import org.springframework.jmx.export.annotation.ManagedOperationParameters;
@@ -35,4 +36,34 @@ public interface ScriptingManagerMBean {
             {@ManagedOperationParameter(name = "scriptName",
                     description = "path to the script relative to conf dir or to the classpath root")})
     String runGroovyScript(String scriptName);
+
+    @ManagedAttribute(description = "Number of Groovy expressions compiled since start or statistics reset")
+    long getCompilationCount();
+
+    @ManagedAttribute(description = "Total time of compiling Groovy expressions, ms")
+    long getCompilationTimeMs();
+
+    @ManagedAttribute(description = "Number of evaluated Groovy expressions")
+    long getEvaluationCount();
+
+    @ManagedAttribute(description = "Total time of evaluating Groovy expressions excluding compilation, ms")
+    long getEvaluationTimeMs();
+
+    @ManagedAttribute(description = "Current number of compiled expressions in the cache")
+    long getExpressionCacheSize();
+
+    @ManagedAttribute(description = "Number of times a compiled expression was found in the cache")
+    long getExpressionCacheHitCount();
+
+    @ManagedAttribute(description = "Number of times an expression was not found in the cache and was compiled")
+    long getExpressionCacheMissCount();
+
+    @ManagedAttribute(description = "Number of compiled expressions evicted from the cache")
+    long getExpressionCacheEvictionCount();
+
+    @ManagedAttribute(description = "Total bytecode size of cached compiled expressions, bytes")
+    long getCachedBytecodeSize();
+
+    @ManagedOperation(description = "Reset statistics of compilation and evaluation of Groovy expressions")
+    String resetStatistics();
 }
@@ -63,6 +63,9 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     @Inject
     protected AttributeSecuritySupport attributeSecuritySupport;
 
+    @Inject
+    protected QueryTransformationCache queryTransformationCache;
+
     @Override
     public boolean applyConstraints(Query query) {
         QueryParser parser = QueryTransformerFactory.createParser(query.getQueryString());
@@ -76,14 +79,20 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
         if (constraints.isEmpty())
             return false;
 
-        QueryTransformer transformer = QueryTransformerFactory.createTransformer(query.getQueryString());
-
-        for (ConstraintData constraint : constraints) {
-            processConstraint(transformer, constraint, entityName);
-        }
-        query.setQueryString(transformer.getResult());
+        String queryString = query.getQueryString();
+        QueryTransformationCache.Result result = queryTransformationCache.get(queryString,
+                QueryTransformationCache.Operation.CONSTRAINTS, queryTransformationCache.getFingerprint(constraints),
+                () -> {
+                    QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+                    for (ConstraintData constraint : constraints) {
+                        processConstraint(transformer, constraint, entityName);
+                    }
+                    return new QueryTransformationCache.Result(transformer.getResult(), true,
+                            new HashSet<>(transformer.getAddedParams()));
+                });
+        query.setQueryString(result.getQuery());
 
-        for (String paramName : transformer.getAddedParams()) {
+        for (String paramName : result.getAddedParams()) {
             setQueryParam(query, paramName);
         }
         return true;
@@ -123,10 +132,11 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
 
     @Override
     public boolean filterByConstraints(Collection<Entity> entities) {
+        InMemoryConstraintsChecker checker = createReadConstraintsChecker();
         boolean filtered = false;
         for (Iterator<Entity> iterator = entities.iterator(); iterator.hasNext(); ) {
             Entity entity = iterator.next();
-            if (!isPermittedInMemory(entity)) {
+            if (!checker.isPermitted(entity)) {
                 //we ignore situations when the collection is immutable
                 iterator.remove();
                 filtered = true;
@@ -153,13 +163,18 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
 
     @Override
     public void calculateFilteredData(Entity entity) {
-        calculateFilteredData(entity, new HashSet<>(), false);
+        List<Entity> tokenized = new ArrayList<>();
+        calculateFilteredData(entity, new HashSet<>(), false, createReadConstraintsChecker(), tokenized);
+        securityTokenManager.writeSecurityTokens(tokenized);
     }
 
     @Override
     public void calculateFilteredData(Collection<Entity> entities) {
         Set<EntityId> handled = new LinkedHashSet<>();
-        entities.forEach(entity -> calculateFilteredData(entity, handled, false));
+        InMemoryConstraintsChecker checker = createReadConstraintsChecker();
+        List<Entity> tokenized = new ArrayList<>();
+        entities.forEach(entity -> calculateFilteredData(entity, handled, false, checker, tokenized));
+        securityTokenManager.writeSecurityTokens(tokenized);
     }
 
     @Override
@@ -299,9 +314,10 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     }
 
     @SuppressWarnings("unchecked")
-    protected boolean calculateFilteredData(Entity entity, Set<EntityId> handled, boolean checkPermitted) {
+    protected boolean calculateFilteredData(Entity entity, Set<EntityId> handled, boolean checkPermitted,
+                                            InMemoryConstraintsChecker checker, Collection<Entity> tokenized) {
         MetaClass metaClass = entity.getMetaClass();
-        if (!isPermittedInMemory(entity) && checkPermitted) {
+        if (!checker.isPermitted(entity) && checkPermitted) {
             return true;
         }
         EntityId entityId = new EntityId(referenceToEntitySupport.getReferenceId(entity), metaClass.getName());
@@ -317,7 +333,7 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
                     if (value instanceof Collection) {
                         Set filtered = new LinkedHashSet();
                         for (Entity item : (Collection<Entity>) value) {
-                            if (calculateFilteredData(item, handled, true)) {
+                            if (calculateFilteredData(item, handled, true, checker, tokenized)) {
                                 filtered.add(referenceToEntitySupport.getReferenceId(item));
                             }
                         }
@@ -326,20 +342,24 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
                         }
                     } else if (value instanceof Entity) {
                         Entity valueEntity = (Entity) value;
-                        if (calculateFilteredData(valueEntity, handled, true)) {
+                        if (calculateFilteredData(valueEntity, handled, true, checker, tokenized)) {
                             securityTokenManager.addFiltered(baseGenericIdEntity, property.getName(),
                                     referenceToEntitySupport.getReferenceId(valueEntity));
                         }
                     }
                 }
             }
-            securityTokenManager.writeSecurityToken(baseGenericIdEntity);
+            tokenized.add(baseGenericIdEntity);
         }
         return false;
     }
 
     protected boolean isPermittedInMemory(Entity entity) {
-        return isPermitted(entity, constraint ->
+        return createReadConstraintsChecker().isPermitted(entity);
+    }
+
+    protected InMemoryConstraintsChecker createReadConstraintsChecker() {
+        return createInMemoryConstraintsChecker(constraint ->
                 constraint.getCheckType().memory()
                         && (constraint.getOperationType() == ConstraintOperationType.READ
                         || constraint.getOperationType() == ConstraintOperationType.ALL));
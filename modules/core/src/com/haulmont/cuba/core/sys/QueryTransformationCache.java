@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.security.global.ConstraintData;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes results of JPQL transformations performed on each data load: count replacement, distinct removal and
+ * applying row-level constraints.
+ * <p>
+ * A result is identified by the source query, the kind of transformation and the fingerprint of constraints
+ * which were applied. The fingerprint contains the JPQL text of constraints, so edited constraints
+ * produce new entries.
+ */
+@Component(QueryTransformationCache.NAME)
+public class QueryTransformationCache {
+
+    public static final String NAME = "cuba_QueryTransformationCache";
+
+    public enum Operation {
+        COUNT,
+        REMOVE_DISTINCT,
+        CONSTRAINTS
+    }
+
+    @Inject
+    protected ServerConfig serverConfig;
+
+    protected Cache<Key, Result> results;
+
+    @PostConstruct
+    protected void init() {
+        results = CacheBuilder.newBuilder()
+                .maximumSize(serverConfig.getQueryTransformationCacheMaxSize())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached result of the transformation or performs it and caches the result.
+     *
+     * @param query                  source query
+     * @param operation              kind of the transformation
+     * @param constraintsFingerprint fingerprint of applied constraints, see {@link #getFingerprint(Collection)}
+     * @param transformation         performs the transformation if the result is not cached
+     */
+    public Result get(String query, Operation operation, @Nullable String constraintsFingerprint,
+                      Supplier<Result> transformation) {
+        Key key = new Key(query, operation, constraintsFingerprint);
+        Result result = results.getIfPresent(key);
+        if (result == null) {
+            result = transformation.get();
+            results.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fingerprint of constraints which identifies the result of applying them to a query.
+     */
+    public String getFingerprint(Collection<ConstraintData> constraints) {
+        StringBuilder sb = new StringBuilder();
+        for (ConstraintData constraint : constraints) {
+            sb.append(Objects.toString(constraint.getJoin(), "")).append('\u0000')
+                    .append(Objects.toString(constraint.getWhereClause(), "")).append('\u0001');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    public long getSize() {
+        return results.size();
+    }
+
+    public CacheStats getStats() {
+        return results.stats();
+    }
+
+    /**
+     * Result of a query transformation.
+     */
+    public static class Result {
+
+        protected final String query;
+        protected final boolean changed;
+        protected final Set<String> addedParams;
+
+        public Result(String query, boolean changed) {
+            this(query, changed, Collections.emptySet());
+        }
+
+        public Result(String query, boolean changed, Set<String> addedParams) {
+            this.query = query;
+            this.changed = changed;
+            this.addedParams = Collections.unmodifiableSet(addedParams);
+        }
+
+        /**
+         * @return transformed query
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * @return false if the transformation didn't change the query
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+
+        /**
+         * @return parameters added to the query by the transformation
+         */
+        public Set<String> getAddedParams() {
+            return addedParams;
+        }
+    }
+
+    protected static class Key {
+
+        protected final String query;
+        protected final Operation operation;
+        protected final String constraintsFingerprint;
+        protected final int hashCode;
+
+        public Key(String query, Operation operation, @Nullable String constraintsFingerprint) {
+            this.query = query;
+            this.operation = operation;
+            this.constraintsFingerprint = constraintsFingerprint;
+            this.hashCode = Objects.hash(query, operation, constraintsFingerprint);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return hashCode == key.hashCode
+                    && operation == key.operation
+                    && query.equals(key.query)
+                    && Objects.equals(constraintsFingerprint, key.constraintsFingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -31,9 +31,11 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static com.haulmont.cuba.core.entity.BaseEntityInternalAccess.*;
 import static org.apache.commons.lang.StringUtils.rightPad;
@@ -53,42 +55,104 @@ public class SecurityTokenManager {
     protected static final String HIDDEN_ATTRIBUTES_KEY = "__hiddenAttributes";
     protected static final Set SYSTEM_ATTRIBUTE_KEYS = Sets.newHashSet(READ_ONLY_ATTRIBUTES_KEY,
             REQUIRED_ATTRIBUTES_KEY, HIDDEN_ATTRIBUTES_KEY);
+
+    /**
+     * First byte of the binary token. Tokens written by previous versions are JSON objects starting with '{'.
+     * Previous versions cannot read binary tokens, so all nodes of a cluster must be upgraded together.
+     */
+    protected static final byte BINARY_TOKEN_FORMAT = 1;
+
+    protected static final byte UUID_ID = 1;
+    protected static final byte LONG_ID = 2;
+    protected static final byte INTEGER_ID = 3;
+    protected static final byte STRING_ID = 4;
+
+    protected final Queue<TokenCodec> codecPool = new ConcurrentLinkedQueue<>();
+
     /**
      * Encrypt filtered data and write the result to the security token
      */
     public void writeSecurityToken(Entity entity) {
+        TokenCodec codec = borrowCodec();
+        try {
+            writeSecurityToken(entity, codec);
+        } finally {
+            releaseCodec(codec);
+        }
+    }
+
+    /**
+     * Encrypt filtered data and write the result to the security tokens of the given entities
+     */
+    public void writeSecurityTokens(Collection<? extends Entity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        TokenCodec codec = borrowCodec();
+        try {
+            for (Entity entity : entities) {
+                writeSecurityToken(entity, codec);
+            }
+        } finally {
+            releaseCodec(codec);
+        }
+    }
+
+    /**
+     * Decrypt security token and read filtered data
+     */
+    public void readSecurityToken(Entity entity) {
+        if (getSecurityToken(entity) == null) {
+            return;
+        }
+        TokenCodec codec = borrowCodec();
+        try {
+            readSecurityToken(entity, codec);
+        } finally {
+            releaseCodec(codec);
+        }
+    }
+
+    protected void writeSecurityToken(Entity entity, TokenCodec codec) {
         SecurityState securityState = getOrCreateSecurityState(entity);
         if (securityState != null) {
-            JSONObject jsonObject = new JSONObject();
+            TokenOutput output = codec.output;
+            output.reset();
+            output.writeByte(BINARY_TOKEN_FORMAT);
+
             Multimap<String, Object> filtered = getFilteredData(securityState);
             if (filtered != null) {
                 Set<Map.Entry<String, Collection<Object>>> entries = filtered.asMap().entrySet();
                 String[] filteredAttributes = new String[entries.size()];
+                List<Map.Entry<String, Collection<Object>>> owningSideEntries = new ArrayList<>(entries.size());
                 int i = 0;
                 for (Map.Entry<String, Collection<Object>> entry : entries) {
                     MetaProperty metaProperty = entity.getMetaClass().getPropertyNN(entry.getKey());
                     if (metadata.getTools().isOwningSide(metaProperty)) {
-                        jsonObject.put(entry.getKey(), entry.getValue());
+                        owningSideEntries.add(entry);
                     }
                     filteredAttributes[i++] = entry.getKey();
                 }
                 setFilteredAttributes(securityState, filteredAttributes);
+
+                output.writeVarInt(owningSideEntries.size());
+                for (Map.Entry<String, Collection<Object>> entry : owningSideEntries) {
+                    output.writeString(entry.getKey());
+                    output.writeVarInt(entry.getValue().size());
+                    for (Object id : entry.getValue()) {
+                        writeId(output, id);
+                    }
+                }
+            } else {
+                output.writeVarInt(0);
             }
-            if (!securityState.getReadonlyAttributes().isEmpty()) {
-                jsonObject.put(READ_ONLY_ATTRIBUTES_KEY, securityState.getReadonlyAttributes());
-            }
-            if (!securityState.getHiddenAttributes().isEmpty()) {
-                jsonObject.put(HIDDEN_ATTRIBUTES_KEY, securityState.getHiddenAttributes());
-            }
-            if (!securityState.getRequiredAttributes().isEmpty()) {
-                jsonObject.put(REQUIRED_ATTRIBUTES_KEY, securityState.getRequiredAttributes());
-            }
+            writeAttributes(output, securityState.getReadonlyAttributes());
+            writeAttributes(output, securityState.getHiddenAttributes());
+            writeAttributes(output, securityState.getRequiredAttributes());
 
-            String json = jsonObject.toString();
             byte[] encrypted;
-            Cipher cipher = getCipher(Cipher.ENCRYPT_MODE);
             try {
-                encrypted = cipher.doFinal(json.getBytes(StandardCharsets.UTF_8));
+                encrypted = codec.encryptCipher.doFinal(output.buffer, 0, output.size);
             } catch (Exception e) {
                 throw new RuntimeException("An error occurred while generating security token", e);
             }
@@ -96,53 +160,169 @@ public class SecurityTokenManager {
         }
     }
 
-    /**
-     * Decrypt security token and read filtered data
-     */
-    public void readSecurityToken(Entity entity) {
+    protected void readSecurityToken(Entity entity, TokenCodec codec) {
         SecurityState securityState = getSecurityState(entity);
-        if (getSecurityToken(entity) == null) {
-            return;
-        }
         Multimap<String, Object> filteredData = ArrayListMultimap.create();
         BaseEntityInternalAccess.setFilteredData(securityState, filteredData);
-        Cipher cipher = getCipher(Cipher.DECRYPT_MODE);
         try {
-            byte[] decrypted = cipher.doFinal(getSecurityToken(securityState));
-            String json = new String(decrypted, StandardCharsets.UTF_8);
-            JSONObject jsonObject = new JSONObject(json);
-            for (Object key : jsonObject.keySet()) {
-                if (!SYSTEM_ATTRIBUTE_KEYS.contains(key)) {
-                    String elementName = String.valueOf(key);
-                    JSONArray jsonArray = jsonObject.getJSONArray(elementName);
-                    MetaProperty metaProperty = entity.getMetaClass().getPropertyNN(elementName);
-                    for (int i = 0; i < jsonArray.length(); i++) {
-                        Object id = jsonArray.get(i);
-                        filteredData.put(elementName, convertId(id, metaProperty));
-                    }
-                }
+            byte[] decrypted = codec.decryptCipher.doFinal(getSecurityToken(securityState));
+            if (decrypted.length > 0 && decrypted[0] == BINARY_TOKEN_FORMAT) {
+                readBinarySecurityToken(entity, securityState, filteredData, new TokenInput(decrypted, 1));
+            } else {
+                readJsonSecurityToken(entity, securityState, filteredData,
+                        new String(decrypted, StandardCharsets.UTF_8));
             }
-            if (jsonObject.has(READ_ONLY_ATTRIBUTES_KEY)) {
-                BaseEntityInternalAccess.setReadonlyAttributes(securityState, parseJsonArrayAsStrings(
-                        jsonObject.getJSONArray(READ_ONLY_ATTRIBUTES_KEY)));
+        } catch (Exception e) {
+            throw new RuntimeException("An error occurred while reading security token", e);
+        }
+    }
+
+    protected void readBinarySecurityToken(Entity entity, SecurityState securityState,
+                                           Multimap<String, Object> filteredData, TokenInput input) {
+        int filteredCount = input.readVarInt();
+        for (int i = 0; i < filteredCount; i++) {
+            String attribute = input.readString();
+            int idsCount = input.readVarInt();
+            for (int j = 0; j < idsCount; j++) {
+                filteredData.put(attribute, readId(input));
             }
-            if (jsonObject.has(HIDDEN_ATTRIBUTES_KEY)) {
-                BaseEntityInternalAccess.setHiddenAttributes(securityState, parseJsonArrayAsStrings(
-                        jsonObject.getJSONArray(HIDDEN_ATTRIBUTES_KEY)));
+        }
+        String[] readonlyAttributes = readAttributes(input);
+        if (readonlyAttributes != null) {
+            BaseEntityInternalAccess.setReadonlyAttributes(securityState, readonlyAttributes);
+        }
+        String[] hiddenAttributes = readAttributes(input);
+        if (hiddenAttributes != null) {
+            BaseEntityInternalAccess.setHiddenAttributes(securityState, hiddenAttributes);
+        }
+        String[] requiredAttributes = readAttributes(input);
+        if (requiredAttributes != null) {
+            BaseEntityInternalAccess.setRequiredAttributes(securityState, requiredAttributes);
+        }
+    }
+
+    protected void readJsonSecurityToken(Entity entity, SecurityState securityState,
+                                         Multimap<String, Object> filteredData, String json) {
+        JSONObject jsonObject = new JSONObject(json);
+        for (Object key : jsonObject.keySet()) {
+            if (!SYSTEM_ATTRIBUTE_KEYS.contains(key)) {
+                String elementName = String.valueOf(key);
+                JSONArray jsonArray = jsonObject.getJSONArray(elementName);
+                MetaProperty metaProperty = entity.getMetaClass().getPropertyNN(elementName);
+                for (int i = 0; i < jsonArray.length(); i++) {
+                    Object id = jsonArray.get(i);
+                    filteredData.put(elementName, convertId(id, metaProperty));
+                }
             }
-            if (jsonObject.has(REQUIRED_ATTRIBUTES_KEY)) {
-                BaseEntityInternalAccess.setRequiredAttributes(securityState, parseJsonArrayAsStrings(
-                        jsonObject.getJSONArray(REQUIRED_ATTRIBUTES_KEY)));
+        }
+        if (jsonObject.has(READ_ONLY_ATTRIBUTES_KEY)) {
+            BaseEntityInternalAccess.setReadonlyAttributes(securityState, parseJsonArrayAsStrings(
+                    jsonObject.getJSONArray(READ_ONLY_ATTRIBUTES_KEY)));
+        }
+        if (jsonObject.has(HIDDEN_ATTRIBUTES_KEY)) {
+            BaseEntityInternalAccess.setHiddenAttributes(securityState, parseJsonArrayAsStrings(
+                    jsonObject.getJSONArray(HIDDEN_ATTRIBUTES_KEY)));
+        }
+        if (jsonObject.has(REQUIRED_ATTRIBUTES_KEY)) {
+            BaseEntityInternalAccess.setRequiredAttributes(securityState, parseJsonArrayAsStrings(
+                    jsonObject.getJSONArray(REQUIRED_ATTRIBUTES_KEY)));
+        }
+    }
+
+    /**
+     * Attributes are written by name, so a token stays valid when the entity model changes between redeploys.
+     */
+    protected void writeAttributes(TokenOutput output, Collection<String> attributes) {
+        output.writeVarInt(attributes.size());
+        for (String attribute : attributes) {
+            output.writeString(attribute);
+        }
+    }
+
+    @Nullable
+    protected String[] readAttributes(TokenInput input) {
+        int size = input.readVarInt();
+        if (size == 0) {
+            return null;
+        }
+        String[] attributes = new String[size];
+        for (int i = 0; i < size; i++) {
+            attributes[i] = input.readString();
+        }
+        return attributes;
+    }
+
+    protected void writeId(TokenOutput output, Object id) {
+        if (id instanceof IdProxy) {
+            id = ((IdProxy) id).get();
+        }
+        if (id instanceof UUID) {
+            output.writeByte(UUID_ID);
+            output.writeLong(((UUID) id).getMostSignificantBits());
+            output.writeLong(((UUID) id).getLeastSignificantBits());
+        } else if (id instanceof Long) {
+            output.writeByte(LONG_ID);
+            output.writeVarLong(zigZag((Long) id));
+        } else if (id instanceof Integer) {
+            output.writeByte(INTEGER_ID);
+            output.writeVarLong(zigZag((Integer) id));
+        } else if (id instanceof String) {
+            output.writeByte(STRING_ID);
+            output.writeString((String) id);
+        } else {
+            throw new IllegalStateException(String.format("Unsupported id type: %s",
+                    id == null ? null : id.getClass().getSimpleName()));
+        }
+    }
+
+    protected Object readId(TokenInput input) {
+        byte type = input.readByte();
+        switch (type) {
+            case UUID_ID:
+                return new UUID(input.readLong(), input.readLong());
+            case LONG_ID:
+                return unZigZag(input.readVarLong());
+            case INTEGER_ID:
+                return (int) unZigZag(input.readVarLong());
+            case STRING_ID:
+                return input.readString();
+            default:
+                throw new IllegalStateException("Unknown id type in security token: " + type);
+        }
+    }
+
+    protected static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    protected static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    protected TokenCodec borrowCodec() {
+        String key = config.getKeyForSecurityTokenEncryption();
+        TokenCodec codec;
+        while ((codec = codecPool.poll()) != null) {
+            if (Objects.equals(codec.key, key)) {
+                return codec;
             }
-        } catch (Exception e) {
-            throw new RuntimeException("An error occurred while reading security token", e);
         }
+        return new TokenCodec(key, getCipher(Cipher.ENCRYPT_MODE, key), getCipher(Cipher.DECRYPT_MODE, key));
+    }
+
+    protected void releaseCodec(TokenCodec codec) {
+        codec.output.release();
+        codecPool.offer(codec);
     }
 
     protected Cipher getCipher(int mode) {
+        return getCipher(mode, config.getKeyForSecurityTokenEncryption());
+    }
+
+    protected Cipher getCipher(int mode, String key) {
         try {
             Cipher cipher = Cipher.getInstance("AES");
-            byte[] encryptionKey = rightPad(substring(config.getKeyForSecurityTokenEncryption(), 0, 16), 16)
+            byte[] encryptionKey = rightPad(substring(key, 0, 16), 16)
                     .getBytes(StandardCharsets.UTF_8);
 
             SecretKeySpec sKeySpec = new SecretKeySpec(encryptionKey, "AES");
@@ -209,4 +389,123 @@ public class SecurityTokenManager {
         }
         getFilteredData(securityState).putAll(property, ids);
     }
+
+    /**
+     * Initialized ciphers and output buffer. Instances are pooled and used by one thread at a time.
+     */
+    protected static class TokenCodec {
+        protected final String key;
+        protected final Cipher encryptCipher;
+        protected final Cipher decryptCipher;
+        protected final TokenOutput output = new TokenOutput();
+
+        protected TokenCodec(String key, Cipher encryptCipher, Cipher decryptCipher) {
+            this.key = key;
+            this.encryptCipher = encryptCipher;
+            this.decryptCipher = decryptCipher;
+        }
+    }
+
+    protected static class TokenOutput {
+        protected static final int INITIAL_SIZE = 256;
+        protected static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+        protected byte[] buffer = new byte[INITIAL_SIZE];
+        protected int size;
+
+        protected void reset() {
+            size = 0;
+        }
+
+        protected void release() {
+            size = 0;
+            if (buffer.length > MAX_RETAINED_SIZE) {
+                buffer = new byte[INITIAL_SIZE];
+            }
+        }
+
+        protected void ensureCapacity(int additional) {
+            if (size + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+            }
+        }
+
+        protected void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[size++] = value;
+        }
+
+        protected void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        protected void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        protected void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        protected void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+    }
+
+    protected static class TokenInput {
+        protected final byte[] buffer;
+        protected int position;
+
+        protected TokenInput(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        protected byte readByte() {
+            return buffer[position++];
+        }
+
+        protected int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        protected long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalStateException("Malformed variable-length number in security token");
+        }
+
+        protected long readLong() {
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | (buffer[position++] & 0xFF);
+            }
+            return result;
+        }
+
+        protected String readString() {
+            int length = readVarInt();
+            String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return result;
+        }
+    }
 }
\ No newline at end of file
@@ -19,9 +19,12 @@ package com.haulmont.cuba.core.sys.entitycache;
 
 import com.haulmont.bali.util.ReflectionHelper;
 import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.app.ClusterConfig;
 import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ClusterMessageBatcher;
 import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Configuration;
 import com.haulmont.cuba.core.global.Metadata;
 import org.eclipse.persistence.internal.helper.Helper;
 import org.eclipse.persistence.internal.sessions.UnitOfWorkChangeSet;
@@ -30,20 +33,23 @@ import org.eclipse.persistence.sessions.coordination.MergeChangeSetCommand;
 import org.eclipse.persistence.sessions.coordination.RemoteCommandManager;
 
 import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 public class EntityCacheConnection extends BroadcastRemoteConnection {
 
     protected Metadata metadata;
     protected QueryCacheManager queryCacheManager;
     protected ClusterManagerAPI clusterManager;
+    protected ClusterMessageBatcher<Object> commandBatcher;
 
     public EntityCacheConnection(RemoteCommandManager rcm, ClusterManagerAPI clusterManager) {
         super(rcm);
         this.metadata = AppBeans.get(Metadata.NAME);
         this.queryCacheManager = AppBeans.get(QueryCacheManager.NAME);
         this.clusterManager = clusterManager;
+        ClusterConfig clusterConfig = AppBeans.get(Configuration.class).getConfig(ClusterConfig.class);
+        this.commandBatcher = new ClusterMessageBatcher<>(clusterManager, clusterConfig, ArrayList::new,
+                commands -> commands.size() == 1 ? new Message(commands.get(0)) : new MessageBatch(commands));
         rcm.logDebug("creating_broadcast_connection", getInfo());
         try {
             this.clusterManager.addListener(Message.class, new ClusterListenerAdapter<Message>() {
@@ -52,6 +58,12 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
                     onMessage(message);
                 }
             });
+            this.clusterManager.addListener(MessageBatch.class, new ClusterListenerAdapter<MessageBatch>() {
+                @Override
+                public void receive(MessageBatch batch) {
+                    onMessageBatch(batch);
+                }
+            });
             rcm.logDebug("broadcast_connection_created", getInfo());
         } catch (RuntimeException ex) {
             rcm.logDebug("failed_to_create_broadcast_connection", getInfo());
@@ -70,8 +82,6 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
 
     @Override
     protected Object executeCommandInternal(Object command) throws Exception {
-        Message message = new Message(command);
-
         Object[] debugInfo = null;
         if (this.rcm.shouldLogDebugMessage()) {
             debugInfo = logDebugBeforePublish(null);
@@ -80,7 +90,7 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
         if (queryCacheManager.isEnabled()) {
             invalidateQueryCache(command);
         }
-        this.clusterManager.send(message);
+        commandBatcher.add(Collections.singletonList(command));
 
         if (debugInfo != null) {
             logDebugAfterPublish(debugInfo, null);
@@ -102,6 +112,23 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
         }
     }
 
+    public void onMessageBatch(MessageBatch batch) {
+        if (rcm.shouldLogDebugMessage()) {
+            logDebugOnReceiveMessage(null);
+        }
+        List<Object> commands = batch.getObjects();
+        if (queryCacheManager.isEnabled()) {
+            Set<String> typeNames = new HashSet<>();
+            for (Object command : commands) {
+                typeNames.addAll(getChangedTypeNames(command));
+            }
+            queryCacheManager.invalidate(typeNames, false);
+        }
+        for (Object command : commands) {
+            processReceivedObject(command, "");
+        }
+    }
+
     @Override
     protected boolean areAllResourcesFreedOnClose() {
         return !isLocal();
@@ -109,6 +136,9 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
 
     @Override
     protected void closeInternal() {
+        if (commandBatcher != null) {
+            commandBatcher.shutdown();
+        }
     }
 
     @Override
@@ -122,11 +152,17 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
     }
 
     protected void invalidateQueryCache(Object command) {
+        if (command instanceof MergeChangeSetCommand) {
+            queryCacheManager.invalidate(getChangedTypeNames(command), false);
+        }
+    }
+
+    protected Set<String> getChangedTypeNames(Object command) {
+        Set<String> typeNames = new HashSet<>();
         if (command instanceof MergeChangeSetCommand) {
             MergeChangeSetCommand changeSetCommand = (MergeChangeSetCommand) command;
             UnitOfWorkChangeSet changeSet = changeSetCommand.getChangeSet(null);
             if (changeSet != null && changeSet.getAllChangeSets() != null) {
-                Set<String> typeNames = new HashSet<>();
                 changeSet.getAllChangeSets().values().stream().filter(obj -> obj.getClassName() != null).forEach(obj -> {
                     MetaClass metaClass = metadata.getClass(ReflectionHelper.getClass(obj.getClassName()));
                     if (metaClass != null) {
@@ -134,9 +170,9 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
                         typeNames.add(metaClass.getName());
                     }
                 });
-                queryCacheManager.invalidate(typeNames, false);
             }
         }
+        return typeNames;
     }
 
     public static class Message implements Serializable {
@@ -156,4 +192,24 @@ public class EntityCacheConnection extends BroadcastRemoteConnection {
             return String.format("Message{object=%s}", object);
         }
     }
+
+    public static class MessageBatch implements Serializable {
+
+        private static final long serialVersionUID = 3046372735960307402L;
+
+        private List<Object> objects;
+
+        public MessageBatch(List<Object> objects) {
+            this.objects = objects;
+        }
+
+        public List<Object> getObjects() {
+            return objects;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("MessageBatch{objects=%s}", objects.size());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.core.sys.entitycache.QueryCacheManager.InvalidateQueryCacheMsg;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Cluster codec of query cache invalidation messages.
+ */
+@Component(InvalidateQueryCacheMsgCodec.NAME)
+public class InvalidateQueryCacheMsgCodec extends AbstractClusterMessageCodec<InvalidateQueryCacheMsg> {
+
+    public static final String NAME = "cuba_InvalidateQueryCacheMsgCodec";
+
+    protected static final byte INVALIDATE_ALL = 0;
+    protected static final byte INVALIDATE_TYPES = 1;
+    protected static final byte INVALIDATE_QUERY = 2;
+
+    @Override
+    public Class<InvalidateQueryCacheMsg> getMessageClass() {
+        return InvalidateQueryCacheMsg.class;
+    }
+
+    @Override
+    public void write(InvalidateQueryCacheMsg message, DataOutput out) throws IOException {
+        if (message.invalidateAll) {
+            out.writeByte(INVALIDATE_ALL);
+        } else if (message.queryKey != null) {
+            out.writeByte(INVALIDATE_QUERY);
+            writeObject(message.queryKey, out);
+        } else {
+            out.writeByte(INVALIDATE_TYPES);
+            Set<String> typeNames = message.typeNames;
+            out.writeInt(typeNames != null ? typeNames.size() : 0);
+            if (typeNames != null) {
+                for (String typeName : typeNames) {
+                    out.writeUTF(typeName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public InvalidateQueryCacheMsg read(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case INVALIDATE_ALL:
+                return new InvalidateQueryCacheMsg(true);
+            case INVALIDATE_QUERY:
+                return new InvalidateQueryCacheMsg((QueryKey) readObject(in));
+            case INVALIDATE_TYPES:
+                int size = in.readInt();
+                Set<String> typeNames = new HashSet<>(size);
+                for (int i = 0; i < size; i++) {
+                    typeNames.add(in.readUTF());
+                }
+                return new InvalidateQueryCacheMsg(typeNames);
+            default:
+                throw new IOException("Unknown query cache invalidation kind: " + kind);
+        }
+    }
+}
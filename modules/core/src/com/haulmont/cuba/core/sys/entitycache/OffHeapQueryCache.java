@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Striped;
+import com.haulmont.cuba.core.entity.IdProxy;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Query cache that keeps identifiers of query results in direct byte buffers outside of the Java heap.
+ * <p>Only query keys and small entry descriptors stay on heap. Entries are evicted by the total size of the buffers
+ * ({@link QueryCacheConfig#getQueryCacheOffHeapMaxSizeMb()}) or by count if the size is not limited, and expire
+ * after {@link QueryCacheConfig#getQueryCacheTtlSec()}. The type index is a concurrent map of concurrent key sets,
+ * so neither put nor invalidation copies or locks the whole index.
+ * <p>Indexes of a key are updated under a lock of this key: put adds the key to the indexes together with storing
+ * the entry, and a removed entry is dropped from the indexes only for types the current entry of the key does not
+ * have. Removal notifications are queued by the cache and processed after the cache operation, so the cache never
+ * calls back into a key lock.
+ * <p>The memory of a buffer is released as soon as its entry is removed from the cache, if the JVM allows
+ * to do it explicitly. Otherwise it is released when the buffer is garbage collected.
+ * <p>Is created by {@link QueryCacheManager} instead of using the {@link StandardQueryCache} bean
+ * if {@code cuba.queryCache.implementation} is set to {@value #NAME}. It is not a bean itself,
+ * so {@link QueryCache} can still be injected by type.
+ */
+public class OffHeapQueryCache implements QueryCache {
+
+    public static final String NAME = "cuba_OffHeapQueryCache";
+
+    protected static final byte UUID_ID = 1;
+    protected static final byte LONG_ID = 2;
+    protected static final byte INTEGER_ID = 3;
+    protected static final byte STRING_ID = 4;
+    protected static final byte SERIALIZED_ID = 5;
+
+    protected static final Method CLEANER_METHOD;
+    protected static final Method CLEAN_METHOD;
+
+    static {
+        Method cleanerMethod = null;
+        Method cleanMethod = null;
+        try {
+            cleanerMethod = ByteBuffer.allocateDirect(1).getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            cleanMethod = cleanerMethod.getReturnType().getMethod("clean");
+            cleanMethod.setAccessible(true);
+        } catch (Exception e) {
+            // direct buffers are released by GC only
+            cleanerMethod = null;
+            cleanMethod = null;
+        }
+        CLEANER_METHOD = cleanerMethod;
+        CLEAN_METHOD = cleanMethod;
+    }
+
+    protected Cache<QueryKey, Entry> data;
+    protected ConcurrentMap<String, Set<QueryKey>> typeIndex = new ConcurrentHashMap<>();
+    protected ConcurrentMap<UUID, QueryKey> idIndex = new ConcurrentHashMap<>();
+    protected Striped<Lock> keyLocks = Striped.lock(64);
+    protected Queue<RemovalNotification<QueryKey, Entry>> removals = new ConcurrentLinkedQueue<>();
+
+    protected QueryCacheConfig queryCacheConfig;
+
+    protected static final Logger log = LoggerFactory.getLogger(QueryCache.class);
+
+    public OffHeapQueryCache(QueryCacheConfig queryCacheConfig) {
+        this.queryCacheConfig = queryCacheConfig;
+        init();
+    }
+
+    protected void init() {
+        CacheBuilder<QueryKey, Entry> builder = CacheBuilder.newBuilder()
+                .removalListener(this::onRemoval);
+
+        long maxBytes = queryCacheConfig.getQueryCacheOffHeapMaxSizeMb() * 1024L * 1024L;
+        if (maxBytes > 0) {
+            builder.maximumWeight(maxBytes).weigher((QueryKey key, Entry entry) -> entry.getWeight());
+        } else {
+            builder.maximumSize(queryCacheConfig.getQueryCacheMaxSize());
+        }
+
+        int ttl = queryCacheConfig.getQueryCacheTtlSec();
+        if (ttl > 0) {
+            builder.expireAfterWrite(ttl, TimeUnit.SECONDS);
+        }
+        data = builder.build();
+    }
+
+    @Override
+    public QueryResult get(QueryKey queryKey) {
+        Entry entry = data.getIfPresent(queryKey);
+        // the read can expire entries
+        processRemovals();
+        return entry != null ? entry.toQueryResult() : null;
+    }
+
+    @Override
+    public void put(QueryKey queryKey, QueryResult queryResult) {
+        Entry entry = new Entry(queryResult);
+        Lock lock = keyLocks.get(queryKey);
+        lock.lock();
+        try {
+            if (entry.relatedTypes != null) {
+                for (String type : entry.relatedTypes) {
+                    typeIndex.compute(type, (t, keys) -> {
+                        if (keys == null) {
+                            keys = ConcurrentHashMap.newKeySet();
+                        }
+                        keys.add(queryKey);
+                        return keys;
+                    });
+                }
+            }
+            idIndex.put(queryKey.getId(), queryKey);
+            data.put(queryKey, entry);
+        } finally {
+            lock.unlock();
+        }
+        processRemovals();
+    }
+
+    @Override
+    public QueryKey findQueryKeyById(UUID queryId) {
+        QueryKey queryKey = idIndex.get(queryId);
+        return queryKey != null && data.getIfPresent(queryKey) != null ? queryKey : null;
+    }
+
+    @Override
+    public QueryKey invalidate(UUID queryId) {
+        QueryKey queryKey = findQueryKeyById(queryId);
+        if (queryKey != null) {
+            log.debug("Invalidate query by identifier {}", queryId);
+            data.invalidate(queryKey);
+            processRemovals();
+        }
+        return queryKey;
+    }
+
+    @Override
+    public void invalidate(QueryKey queryKey) {
+        log.debug("Invalidate query by key {}", queryKey.printDescription());
+        data.invalidate(queryKey);
+        processRemovals();
+    }
+
+    @Override
+    public void invalidate(String typeName) {
+        Set<QueryKey> keys = typeIndex.get(typeName);
+        if (keys == null) return;
+        log.debug("Invalidate cache for type {}", typeName);
+        data.invalidateAll(new ArrayList<>(keys));
+        processRemovals();
+    }
+
+    @Override
+    public void invalidate(Set<String> typeNames) {
+        typeNames.forEach(this::invalidate);
+    }
+
+    @Override
+    public void invalidateAll() {
+        log.debug("Invalidate all cache");
+        data.invalidateAll();
+        processRemovals();
+    }
+
+    @Override
+    public long size() {
+        return data.size();
+    }
+
+    @Override
+    public long getMaxSize() {
+        return queryCacheConfig.getQueryCacheMaxSize();
+    }
+
+    @Override
+    public Map<QueryKey, QueryResult> asMap() {
+        Map<QueryKey, QueryResult> map = new HashMap<>();
+        data.asMap().forEach((key, entry) -> {
+            QueryResult queryResult = entry.toQueryResult();
+            if (queryResult != null) {
+                map.put(key, queryResult);
+            }
+        });
+        return map;
+    }
+
+    protected void onRemoval(RemovalNotification<QueryKey, Entry> notification) {
+        Entry entry = notification.getValue();
+        if (entry != null) {
+            entry.release();
+        }
+        if (notification.getKey() != null && entry != null) {
+            removals.add(notification);
+        }
+    }
+
+    /**
+     * Removes keys of removed entries from the indexes. Must be called without holding a key lock.
+     */
+    protected void processRemovals() {
+        RemovalNotification<QueryKey, Entry> notification;
+        while ((notification = removals.poll()) != null) {
+            QueryKey queryKey = notification.getKey();
+            Lock lock = keyLocks.get(queryKey);
+            lock.lock();
+            try {
+                removeFromIndexes(queryKey, notification.getValue());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the key from the indexes it has been added to for the removed entry, except those the current entry
+     * of the key still needs. Is called under the key lock.
+     */
+    protected void removeFromIndexes(QueryKey queryKey, Entry removed) {
+        Entry current = data.asMap().get(queryKey);
+        if (current == null) {
+            idIndex.remove(queryKey.getId(), queryKey);
+        }
+        if (removed.relatedTypes != null) {
+            for (String type : removed.relatedTypes) {
+                if (current != null && current.relatedTypes != null && current.relatedTypes.contains(type))
+                    continue;
+                typeIndex.computeIfPresent(type, (t, keys) -> {
+                    keys.remove(queryKey);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+
+    /**
+     * Writes identifiers to a direct buffer of the exact size, so the data is copied off-heap only once.
+     */
+    protected static ByteBuffer writeIds(List ids) {
+        // variable-length values are encoded before allocating the buffer, fixed-length ones have null here
+        List<byte[]> values = new ArrayList<>(ids.size());
+        int size = 4;
+        for (Object id : ids) {
+            id = unwrapId(id);
+            byte[] value = null;
+            if (id instanceof UUID) {
+                size += 1 + 16;
+            } else if (id instanceof Long) {
+                size += 1 + 8;
+            } else if (id instanceof Integer) {
+                size += 1 + 4;
+            } else {
+                value = id instanceof String ?
+                        ((String) id).getBytes(StandardCharsets.UTF_8) : SerializationSupport.serialize(id);
+                size += 1 + 4 + value.length;
+            }
+            values.add(value);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.putInt(ids.size());
+        Iterator<byte[]> valuesIterator = values.iterator();
+        for (Object id : ids) {
+            id = unwrapId(id);
+            byte[] value = valuesIterator.next();
+            if (id instanceof UUID) {
+                buffer.put(UUID_ID);
+                buffer.putLong(((UUID) id).getMostSignificantBits());
+                buffer.putLong(((UUID) id).getLeastSignificantBits());
+            } else if (id instanceof Long) {
+                buffer.put(LONG_ID);
+                buffer.putLong((Long) id);
+            } else if (id instanceof Integer) {
+                buffer.put(INTEGER_ID);
+                buffer.putInt((Integer) id);
+            } else {
+                buffer.put(id instanceof String ? STRING_ID : SERIALIZED_ID);
+                buffer.putInt(value.length);
+                buffer.put(value);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    protected static Object unwrapId(Object id) {
+        return id instanceof IdProxy ? ((IdProxy) id).getNN() : id;
+    }
+
+    /**
+     * Frees the memory of a direct buffer immediately if the JVM allows it. The buffer must not be used afterwards.
+     */
+    protected static void releaseBuffer(ByteBuffer buffer) {
+        if (CLEANER_METHOD == null)
+            return;
+        try {
+            Object cleaner = CLEANER_METHOD.invoke(buffer);
+            if (cleaner != null) {
+                CLEAN_METHOD.invoke(cleaner);
+            }
+        } catch (Exception e) {
+            log.trace("Unable to release direct buffer, it will be released by GC", e);
+        }
+    }
+
+    protected static List<Object> readIds(ByteBuffer source) {
+        ByteBuffer buffer = source.duplicate();
+        int size = buffer.getInt();
+        List<Object> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte type = buffer.get();
+            switch (type) {
+                case UUID_ID:
+                    ids.add(new UUID(buffer.getLong(), buffer.getLong()));
+                    break;
+                case LONG_ID:
+                    ids.add(buffer.getLong());
+                    break;
+                case INTEGER_ID:
+                    ids.add(buffer.getInt());
+                    break;
+                case STRING_ID:
+                case SERIALIZED_ID:
+                    byte[] value = new byte[buffer.getInt()];
+                    buffer.get(value);
+                    ids.add(type == STRING_ID ? new String(value, StandardCharsets.UTF_8) : SerializationSupport.deserialize(value));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown identifier type " + type);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * On-heap descriptor of a cached query result. Identifiers are stored in an off-heap buffer, which is
+     * released when the entry is removed from the cache. Reading and releasing are guarded by a lock,
+     * so a concurrent reader never accesses released memory.
+     */
+    protected static class Entry {
+        protected final ByteBuffer ids;
+        protected final String type;
+        protected final Set<String> relatedTypes;
+        protected final RuntimeException exception;
+        protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+        protected boolean released;
+
+        protected Entry(QueryResult queryResult) {
+            this.ids = writeIds(queryResult.getResult());
+            this.type = queryResult.getType();
+            this.relatedTypes = queryResult.getRelatedTypes();
+            this.exception = queryResult.getException();
+        }
+
+        protected int getWeight() {
+            return ids.capacity();
+        }
+
+        /**
+         * @return query result or null if the entry has been removed from the cache concurrently
+         */
+        protected QueryResult toQueryResult() {
+            lock.readLock().lock();
+            try {
+                if (released)
+                    return null;
+                return new QueryResult(readIds(ids), type, relatedTypes, exception);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        protected void release() {
+            lock.writeLock().lock();
+            try {
+                if (!released) {
+                    released = true;
+                    releaseBuffer(ids);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
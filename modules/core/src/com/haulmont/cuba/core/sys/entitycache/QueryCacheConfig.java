@@ -20,6 +20,7 @@ import com.haulmont.cuba.core.config.Config;
 import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
+import com.haulmont.cuba.core.config.defaults.Default;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
 import com.haulmont.cuba.core.config.defaults.DefaultInt;
 
@@ -34,4 +35,28 @@ public interface QueryCacheConfig extends Config {
     @Property("cuba.queryCache.maxSize")
     @DefaultInt(100)
     int getQueryCacheMaxSize();
+
+    /**
+     * @return name of the {@link QueryCache} bean used by {@link QueryCacheManager}:
+     * {@value QueryCache#NAME} for {@link StandardQueryCache}, or {@value OffHeapQueryCache#NAME}
+     * to create {@link OffHeapQueryCache}
+     */
+    @Property("cuba.queryCache.implementation")
+    @Default(QueryCache.NAME)
+    String getQueryCacheImplementation();
+
+    /**
+     * @return maximum total size of query results kept off-heap by {@link OffHeapQueryCache}, in megabytes.
+     * If zero, the number of results is limited by {@link #getQueryCacheMaxSize()} instead.
+     */
+    @Property("cuba.queryCache.offHeapMaxSizeMb")
+    @DefaultInt(0)
+    int getQueryCacheOffHeapMaxSizeMb();
+
+    /**
+     * @return time in seconds after which results are evicted from {@link OffHeapQueryCache}. Zero means no expiration.
+     */
+    @Property("cuba.queryCache.ttlSec")
+    @DefaultInt(0)
+    int getQueryCacheTtlSec();
 }
@@ -17,13 +17,14 @@
 package com.haulmont.cuba.core.sys.entitycache;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Sets;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetadataObject;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.app.ClusterListenerAdapter;
+import com.haulmont.cuba.core.app.ClusterConfig;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ClusterMessageBatcher;
 import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
 import com.haulmont.cuba.core.global.Metadata;
 import com.haulmont.cuba.core.global.View;
@@ -32,6 +33,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.TypedQuery;
@@ -49,16 +51,35 @@ public class QueryCacheManager {
     @Inject
     protected ClusterManagerAPI clusterManager;
     @Inject
+    protected ClusterConfig clusterConfig;
+    @Inject
     protected Persistence persistence;
     @Inject
-    protected QueryCache queryCache;
+    protected Map<String, QueryCache> queryCaches;
     @Inject
     protected Metadata metadata;
 
+    protected QueryCache queryCache;
+
+    protected ClusterMessageBatcher<String> invalidationBatcher;
+
     protected static final Logger log = LoggerFactory.getLogger(QueryCacheManager.class);
 
     @PostConstruct
     public void init() {
+        String implementation = queryCacheConfig.getQueryCacheImplementation();
+        if (OffHeapQueryCache.NAME.equals(implementation)) {
+            queryCache = new OffHeapQueryCache(queryCacheConfig);
+        } else {
+            queryCache = queryCaches.get(implementation);
+            if (queryCache == null) {
+                throw new IllegalStateException("QueryCache bean not found: " + implementation);
+            }
+        }
+        log.debug("Using {} query cache", implementation);
+
+        invalidationBatcher = new ClusterMessageBatcher<>(clusterManager, clusterConfig, LinkedHashSet::new,
+                typeNames -> new InvalidateQueryCacheMsg(new HashSet<>(typeNames)));
         clusterManager.addListener(InvalidateQueryCacheMsg.class, new ClusterListenerAdapter<InvalidateQueryCacheMsg>() {
             @Override
             public void receive(InvalidateQueryCacheMsg message) {
@@ -73,6 +94,18 @@ public class QueryCacheManager {
         });
     }
 
+    @PreDestroy
+    public void destroy() {
+        invalidationBatcher.shutdown();
+    }
+
+    /**
+     * Returns the query cache implementation selected by {@link QueryCacheConfig#getQueryCacheImplementation()}
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
     /**
      * Returns true if query cache enabled
      */
@@ -189,7 +222,7 @@ public class QueryCacheManager {
     public void invalidate(String typeName, boolean sendInCluster) {
         queryCache.invalidate(typeName);
         if (sendInCluster) {
-            clusterManager.send(new InvalidateQueryCacheMsg(Sets.newHashSet(typeName)));
+            invalidationBatcher.add(Collections.singleton(typeName));
         }
     }
 
@@ -201,7 +234,7 @@ public class QueryCacheManager {
         if (typeNames != null && typeNames.size() > 0) {
             queryCache.invalidate(typeNames);
             if (sendInCluster) {
-                clusterManager.send(new InvalidateQueryCacheMsg(typeNames));
+                invalidationBatcher.add(typeNames);
             }
         }
     }
@@ -16,6 +16,12 @@
 
 package com.haulmont.cuba.restapi;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.Transaction;
@@ -39,17 +45,21 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+/**
+ * Keeps a single record per token in memory. New tokens are sent to all nodes of the cluster. If tokens are stored
+ * in the database, the memory is a bounded cache of recently used tokens, missing tokens are loaded from the database
+ * and new tokens are written to the database asynchronously in batches, failed batches are retried. Tokens waiting
+ * to be written are found by all lookups even if they have been evicted from the cache.
+ * Otherwise all tokens are kept in memory.
+ */
 @Component(ServerTokenStore.NAME)
 public class ServerTokenStoreImpl implements ServerTokenStore {
 
@@ -76,59 +86,69 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
 
     protected Logger log = LoggerFactory.getLogger(ServerTokenStoreImpl.class);
 
-    protected ReadWriteLock lock = new ReentrantReadWriteLock();
+    protected volatile Cache<String, TokenRecord> tokens;
+
+    protected final ConcurrentHashMap<String, String> authenticationKeyToTokenValue = new ConcurrentHashMap<>();
+
+    //sessions of tokens evicted from the cache, restored when a token is loaded from the database again
+    protected Cache<String, TokenSession> evictedTokenSessions;
+
+    //tokens waiting to be written to the database by token value
+    protected final ConcurrentMap<String, TokenRecord> pendingWrites = new ConcurrentHashMap<>();
 
-    private ConcurrentHashMap<String, byte[]> tokenValueToAccessTokenStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, byte[]> tokenValueToAuthenticationStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, byte[]> authenticationToAccessTokenStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, UUID> tokenValueToSessionIdStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, String> tokenValueToAuthenticationKeyStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, String> tokenValueToUserLoginStore = new ConcurrentHashMap<>();
+    protected final AtomicBoolean writeScheduled = new AtomicBoolean();
 
-    private final DelayQueue<TokenExpiry> expiryQueue = new DelayQueue<>();
+    //guards database writes of new tokens and deletions of revoked tokens, so a revoked token cannot be written after
+    //it has been deleted
+    protected final Object databaseLock = new Object();
+
+    protected ScheduledExecutorService writeExecutor;
 
     @PostConstruct
     public void init() {
+        evictedTokenSessions = CacheBuilder.newBuilder()
+                .maximumSize(serverConfig.getRestTokenCacheMaxSize())
+                .build();
+        writeExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ServerTokenStoreWriter-%d").setDaemon(true).build());
         initClusterListeners();
     }
 
+    @PreDestroy
+    public void shutdown() {
+        writeExecutor.shutdown();
+        if (!writePendingTokens()) {
+            log.error("{} REST API tokens are not stored in the database on shutdown", pendingWrites.size());
+        }
+    }
+
     protected void initClusterListeners() {
         clusterManagerAPI.addListener(TokenStoreAddTokenMsg.class, new ClusterListener<TokenStoreAddTokenMsg>() {
             @Override
             public void receive(TokenStoreAddTokenMsg message) {
-                storeAccessTokenToMemory(message.getTokenValue(),
+                storeAccessTokenToMemory(new TokenRecord(message.getTokenValue(),
                         message.getAccessTokenBytes(),
                         message.getAuthenticationKey(),
                         message.getAuthenticationBytes(),
                         message.getTokenExpiry(),
-                        message.getUserLogin());
+                        message.getUserLogin()));
             }
 
             @Override
             public byte[] getState() {
-                if (tokenValueToAccessTokenStore.isEmpty() && tokenValueToAuthenticationStore.isEmpty() && authenticationToAccessTokenStore.isEmpty()
-                        && tokenValueToSessionIdStore.isEmpty() && tokenValueToAuthenticationKeyStore.isEmpty()
-                        && tokenValueToUserLoginStore.isEmpty()) {
+                //nodes load tokens stored in the database on demand
+                if (serverConfig.getRestStoreTokensInDb() || getTokens().size() == 0) {
                     return new byte[0];
                 }
 
                 ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-                lock.readLock().lock();
                 try {
                     ObjectOutputStream oos = new ObjectOutputStream(bos);
-                    oos.writeObject(tokenValueToAccessTokenStore);
-                    oos.writeObject(tokenValueToAuthenticationStore);
-                    oos.writeObject(authenticationToAccessTokenStore);
-                    oos.writeObject(tokenValueToSessionIdStore);
-                    oos.writeObject(tokenValueToAuthenticationKeyStore);
-                    oos.writeObject(tokenValueToUserLoginStore);
+                    oos.writeObject(new ArrayList<>(getTokens().asMap().values()));
+                    oos.flush();
                 } catch (IOException e) {
                     throw new RuntimeException("Unable to serialize ServerTokenStore fields for cluster state", e);
-                } finally {
-                    lock.readLock().unlock();
                 }
-
                 return bos.toByteArray();
             }
 
@@ -140,19 +160,12 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
                 }
 
                 ByteArrayInputStream bis = new ByteArrayInputStream(state);
-                lock.writeLock().lock();
                 try {
                     ObjectInputStream ois = new ObjectInputStream(bis);
-                    tokenValueToAccessTokenStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    tokenValueToAuthenticationStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    authenticationToAccessTokenStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    tokenValueToSessionIdStore = (ConcurrentHashMap<String, UUID>) ois.readObject();
-                    tokenValueToAuthenticationKeyStore = (ConcurrentHashMap<String, String>) ois.readObject();
-                    tokenValueToUserLoginStore = (ConcurrentHashMap<String, String>) ois.readObject();
+                    List<TokenRecord> records = (List<TokenRecord>) ois.readObject();
+                    records.forEach(ServerTokenStoreImpl.this::storeAccessTokenToMemory);
                 } catch (IOException | ClassNotFoundException e) {
                     log.error("Error receiving state", e);
-                } finally {
-                    lock.writeLock().unlock();
                 }
             }
         });
@@ -172,22 +185,64 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
         });
     }
 
+    protected Cache<String, TokenRecord> getTokens() {
+        Cache<String, TokenRecord> result = tokens;
+        if (result == null) {
+            synchronized (this) {
+                result = tokens;
+                if (result == null) {
+                    result = createTokensCache();
+                    tokens = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    protected Cache<String, TokenRecord> createTokensCache() {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (serverConfig.getRestStoreTokensInDb()) {
+            builder.maximumSize(serverConfig.getRestTokenCacheMaxSize())
+                    .expireAfterAccess(serverConfig.getRestTokenCacheExpirationSec(), TimeUnit.SECONDS);
+        }
+        return builder
+                .removalListener((RemovalListener<String, TokenRecord>) notification -> {
+                    TokenRecord record = notification.getValue();
+                    if (record != null && notification.getCause() != RemovalCause.REPLACED) {
+                        authenticationKeyToTokenValue.remove(record.getAuthenticationKey(), record.getTokenValue());
+                        if (notification.wasEvicted() && record.getSessionId() != null) {
+                            evictedTokenSessions.put(record.getTokenValue(),
+                                    new TokenSession(record.getSessionId(), record.getExpiry()));
+                        }
+                    }
+                })
+                .build();
+    }
+
     @Override
     public byte[] getAccessTokenByAuthentication(String authenticationKey) {
-        byte[] accessTokenBytes;
-        accessTokenBytes = getAccessTokenByAuthenticationFromMemory(authenticationKey);
-        if (accessTokenBytes == null && serverConfig.getRestStoreTokensInDb()) {
-            RestApiToken restApiToken = getRestApiTokenByAuthenticationKeyFromDatabase(authenticationKey);
-            if (restApiToken != null) {
-                accessTokenBytes = restApiToken.getAccessTokenBytes();
-                restoreInMemoryTokenData(restApiToken);
+        TokenRecord record = getTokenByAuthenticationFromMemory(authenticationKey);
+        if (record == null && serverConfig.getRestStoreTokensInDb()) {
+            TokenRecord pendingRecord = pendingWrites.values().stream()
+                    .filter(r -> authenticationKey.equals(r.getAuthenticationKey()))
+                    .findFirst()
+                    .orElse(null);
+            if (pendingRecord != null) {
+                record = restoreTokenToMemory(pendingRecord);
+            } else {
+                RestApiToken restApiToken = getRestApiTokenByAuthenticationKeyFromDatabase(authenticationKey);
+                if (restApiToken != null) {
+                    record = restoreInMemoryTokenData(restApiToken);
+                }
             }
         }
-        return accessTokenBytes;
+        return record != null ? record.getAccessTokenBytes() : null;
     }
 
-    protected byte[] getAccessTokenByAuthenticationFromMemory(String authenticationKey) {
-        return authenticationToAccessTokenStore.get(authenticationKey);
+    @Nullable
+    protected TokenRecord getTokenByAuthenticationFromMemory(String authenticationKey) {
+        String tokenValue = authenticationKeyToTokenValue.get(authenticationKey);
+        return tokenValue != null ? getTokens().getIfPresent(tokenValue) : null;
     }
 
     @Override
@@ -200,10 +255,17 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected Set<String> getTokenValuesByUserLoginFromMemory(String userLogin) {
-        return tokenValueToUserLoginStore.entrySet().stream()
-                .filter(entry -> userLogin.equals(entry.getValue()))
-                .map(Map.Entry::getKey)
+        Set<String> tokenValues = getTokens().asMap().values().stream()
+                .filter(record -> userLogin.equals(record.getUserLogin()))
+                .map(TokenRecord::getTokenValue)
                 .collect(Collectors.toSet());
+        //tokens waiting to be written could be already evicted from memory
+        for (TokenRecord record : pendingWrites.values()) {
+            if (userLogin.equals(record.getUserLogin())) {
+                tokenValues.add(record.getTokenValue());
+            }
+        }
+        return tokenValues;
     }
 
     protected Set<String> getTokenValuesByUserLoginFromDatabase(String userLogin) {
@@ -224,94 +286,118 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
                                  byte[] authenticationBytes,
                                  Date tokenExpiry,
                                  String userLogin) {
-        storeAccessTokenToMemory(tokenValue, accessTokenBytes, authenticationKey, authenticationBytes, tokenExpiry, userLogin);
+        TokenRecord record = new TokenRecord(tokenValue, accessTokenBytes, authenticationKey, authenticationBytes,
+                tokenExpiry, userLogin);
+        storeAccessTokenToMemory(record);
         if (serverConfig.getRestStoreTokensInDb()) {
-            try (Transaction tx = persistence.getTransaction()) {
-                removeAccessTokenFromDatabase(tokenValue);
-                storeAccessTokenToDatabase(tokenValue, accessTokenBytes, authenticationKey, authenticationBytes, tokenExpiry, userLogin);
-                tx.commit();
-            }
+            scheduleWrite(record);
         }
-        clusterManagerAPI.send(new TokenStoreAddTokenMsg(tokenValue, accessTokenBytes, authenticationKey, authenticationBytes, tokenExpiry, userLogin));
+        //other nodes must know the token before it is written to the database
+        clusterManagerAPI.send(new TokenStoreAddTokenMsg(tokenValue, accessTokenBytes, authenticationKey,
+                authenticationBytes, tokenExpiry, userLogin));
+    }
+
+    protected void storeAccessTokenToMemory(TokenRecord record) {
+        getTokens().put(record.getTokenValue(), record);
+        authenticationKeyToTokenValue.put(record.getAuthenticationKey(), record.getTokenValue());
+    }
+
+    protected void scheduleWrite(TokenRecord record) {
+        pendingWrites.put(record.getTokenValue(), record);
+        scheduleWritePendingTokens(serverConfig.getRestTokenWriteDelayMs());
     }
 
-    protected void storeAccessTokenToMemory(String tokenValue,
-                                            byte[] accessTokenBytes,
-                                            String authenticationKey,
-                                            byte[] authenticationBytes,
-                                            Date tokenExpiry,
-                                            String userLogin) {
-        lock.writeLock().lock();
-        try {
-            tokenValueToAccessTokenStore.put(tokenValue, accessTokenBytes);
-            authenticationToAccessTokenStore.put(authenticationKey, accessTokenBytes);
-            tokenValueToAuthenticationStore.put(tokenValue, authenticationBytes);
-            tokenValueToAuthenticationKeyStore.put(tokenValue, authenticationKey);
-            tokenValueToUserLoginStore.put(tokenValue, userLogin);
-        } finally {
-            lock.writeLock().unlock();
+    protected void scheduleWritePendingTokens(long delayMs) {
+        if (writeScheduled.compareAndSet(false, true)) {
+            try {
+                writeExecutor.schedule(this::writePendingTokens, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                //the store is shutting down, pending tokens are written by shutdown()
+                writeScheduled.set(false);
+            }
         }
+    }
 
-        if (tokenExpiry != null) {
-            TokenExpiry expiry = new TokenExpiry(tokenValue, tokenExpiry);
-            this.expiryQueue.put(expiry);
+    /**
+     * Writes tokens waiting to be written to the database in batches. Tokens stay pending until their batch is
+     * stored. If a batch fails, the write is retried after {@link ServerConfig#getRestTokenWriteRetryDelayMs()}.
+     *
+     * @return true if all tokens are written
+     */
+    protected boolean writePendingTokens() {
+        writeScheduled.set(false);
+        int batchSize = serverConfig.getRestTokenWriteBatchSize();
+        synchronized (databaseLock) {
+            for (List<TokenRecord> batch : Lists.partition(new ArrayList<>(pendingWrites.values()), batchSize)) {
+                if (!storeAccessTokensToDatabase(batch)) {
+                    scheduleWritePendingTokens(serverConfig.getRestTokenWriteRetryDelayMs());
+                    return false;
+                }
+                for (TokenRecord record : batch) {
+                    pendingWrites.remove(record.getTokenValue(), record);
+                }
+            }
+            return true;
         }
     }
 
-    protected void storeAccessTokenToDatabase(String tokenValue,
-                                              byte[] accessTokenBytes,
-                                              String authenticationKey,
-                                              byte[] authenticationBytes,
-                                              Date tokenExpiry,
-                                              String userLogin) {
-        try (Transaction tx = persistence.getTransaction()) {
+    /**
+     * @return true if the tokens are stored, false if the transaction failed
+     */
+    protected boolean storeAccessTokensToDatabase(List<TokenRecord> records) {
+        List<String> tokenValues = records.stream()
+                .map(TokenRecord::getTokenValue)
+                .collect(Collectors.toList());
+        try (Transaction tx = persistence.createTransaction()) {
             EntityManager em = persistence.getEntityManager();
-            RestApiToken restApiToken = metadata.create(RestApiToken.class);
-            restApiToken.setAccessTokenValue(tokenValue);
-            restApiToken.setAccessTokenBytes(accessTokenBytes);
-            restApiToken.setAuthenticationKey(authenticationKey);
-            restApiToken.setAuthenticationBytes(authenticationBytes);
-            restApiToken.setExpiry(tokenExpiry);
-            restApiToken.setUserLogin(userLogin);
-            em.persist(restApiToken);
+            em.createQuery("delete from sys$RestApiToken t where t.accessTokenValue in :accessTokenValues")
+                    .setParameter("accessTokenValues", tokenValues)
+                    .executeUpdate();
+            for (TokenRecord record : records) {
+                RestApiToken restApiToken = metadata.create(RestApiToken.class);
+                restApiToken.setAccessTokenValue(record.getTokenValue());
+                restApiToken.setAccessTokenBytes(record.getAccessTokenBytes());
+                restApiToken.setAuthenticationKey(record.getAuthenticationKey());
+                restApiToken.setAuthenticationBytes(record.getAuthenticationBytes());
+                restApiToken.setExpiry(record.getExpiry());
+                restApiToken.setUserLogin(record.getUserLogin());
+                em.persist(restApiToken);
+            }
             tx.commit();
+            return true;
+        } catch (Exception e) {
+            log.error("Unable to store {} REST API tokens in the database, the write will be retried", records.size(), e);
+            return false;
         }
     }
 
     @Override
     public byte[] getAccessTokenByTokenValue(String accessTokenValue) {
-        byte[] accessTokenBytes;
-        accessTokenBytes = getAccessTokenByTokenValueFromMemory(accessTokenValue);
-        if (accessTokenBytes == null && serverConfig.getRestStoreTokensInDb()) {
-            RestApiToken restApiToken = getRestApiTokenByTokenValueFromDatabase(accessTokenValue);
-            if (restApiToken != null) {
-                accessTokenBytes = restApiToken.getAccessTokenBytes();
-                restoreInMemoryTokenData(restApiToken);
-            }
-        }
-        return accessTokenBytes;
-    }
-
-    protected byte[] getAccessTokenByTokenValueFromMemory(String tokenValue) {
-        return tokenValueToAccessTokenStore.get(tokenValue);
+        TokenRecord record = getToken(accessTokenValue);
+        return record != null ? record.getAccessTokenBytes() : null;
     }
 
     @Override
     public byte[] getAuthenticationByTokenValue(String tokenValue) {
-        byte[] authenticationBytes;
-        authenticationBytes = getAuthenticationByTokenValueFromMemory(tokenValue);
-        if (authenticationBytes == null && serverConfig.getRestStoreTokensInDb()) {
+        TokenRecord record = getToken(tokenValue);
+        return record != null ? record.getAuthenticationBytes() : null;
+    }
+
+    @Nullable
+    protected TokenRecord getToken(String tokenValue) {
+        TokenRecord record = getTokens().getIfPresent(tokenValue);
+        if (record == null && serverConfig.getRestStoreTokensInDb()) {
+            //the token could be evicted from memory before it is written to the database
+            TokenRecord pendingRecord = pendingWrites.get(tokenValue);
+            if (pendingRecord != null) {
+                return restoreTokenToMemory(pendingRecord);
+            }
             RestApiToken restApiToken = getRestApiTokenByTokenValueFromDatabase(tokenValue);
             if (restApiToken != null) {
-                authenticationBytes = restApiToken.getAuthenticationBytes();
-                restoreInMemoryTokenData(restApiToken);
+                record = restoreInMemoryTokenData(restApiToken);
             }
         }
-        return authenticationBytes;
-    }
-
-    protected byte[] getAuthenticationByTokenValueFromMemory(String tokenValue) {
-        return tokenValueToAuthenticationStore.get(tokenValue);
+        return record;
     }
 
     @Nullable
@@ -343,39 +429,65 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     /**
-     * Method fills in-memory maps from the {@link RestApiToken} object got from the database
+     * Puts the token record created from the {@link RestApiToken} object got from the database to memory
      */
-    protected void restoreInMemoryTokenData(RestApiToken restApiToken) {
-        lock.writeLock().lock();
-        try {
-            tokenValueToAccessTokenStore.put(restApiToken.getAccessTokenValue(), restApiToken.getAccessTokenBytes());
-            authenticationToAccessTokenStore.put(restApiToken.getAuthenticationKey(), restApiToken.getAccessTokenBytes());
-            tokenValueToAuthenticationStore.put(restApiToken.getAccessTokenValue(), restApiToken.getAuthenticationBytes());
-            tokenValueToAuthenticationKeyStore.put(restApiToken.getAccessTokenValue(), restApiToken.getAuthenticationKey());
-        } finally {
-            lock.writeLock().unlock();
+    protected TokenRecord restoreInMemoryTokenData(RestApiToken restApiToken) {
+        TokenRecord record = new TokenRecord(restApiToken.getAccessTokenValue(),
+                restApiToken.getAccessTokenBytes(),
+                restApiToken.getAuthenticationKey(),
+                restApiToken.getAuthenticationBytes(),
+                restApiToken.getExpiry(),
+                restApiToken.getUserLogin());
+        return restoreTokenToMemory(record);
+    }
+
+    /**
+     * Puts the token record loaded from the database or waiting to be written to it back to memory, together with
+     * the session the token had when it was evicted
+     */
+    protected TokenRecord restoreTokenToMemory(TokenRecord record) {
+        TokenSession tokenSession = evictedTokenSessions.asMap().remove(record.getTokenValue());
+        if (tokenSession != null) {
+            record.setSessionId(tokenSession.getSessionId());
         }
+        storeAccessTokenToMemory(record);
+        return record;
     }
 
     @Override
     public UUID getSessionIdByTokenValue(String tokenValue) {
-        return tokenValueToSessionIdStore.get(tokenValue);
+        TokenRecord record = getTokens().getIfPresent(tokenValue);
+        if (record != null) {
+            return record.getSessionId();
+        }
+        TokenSession tokenSession = evictedTokenSessions.getIfPresent(tokenValue);
+        return tokenSession != null ? tokenSession.getSessionId() : null;
     }
 
     @Override
     public UUID putSessionId(String tokenValue, UUID sessionId) {
-        UUID uuid = _putSessionId(tokenValue, sessionId);
-        clusterManagerAPI.send(new TokenStorePutSessionMsg(tokenValue, sessionId));
-        return uuid;
+        UUID previousSessionId = _putSessionId(tokenValue, sessionId);
+        //the session is put on each request authenticated by the token, but other nodes are notified only if it changes
+        if (!Objects.equals(previousSessionId, sessionId)) {
+            clusterManagerAPI.send(new TokenStorePutSessionMsg(tokenValue, sessionId));
+        }
+        return previousSessionId;
     }
 
+    @Nullable
     protected UUID _putSessionId(String tokenValue, UUID sessionId) {
-        lock.writeLock().lock();
-        try {
-            return tokenValueToSessionIdStore.put(tokenValue, sessionId);
-        } finally {
-            lock.writeLock().unlock();
+        TokenRecord record = getTokens().getIfPresent(tokenValue);
+        if (record == null) {
+            TokenSession tokenSession = evictedTokenSessions.getIfPresent(tokenValue);
+            if (tokenSession != null) {
+                evictedTokenSessions.put(tokenValue, new TokenSession(sessionId, tokenSession.getExpiry()));
+                return tokenSession.getSessionId();
+            }
+            return null;
         }
+        UUID previousSessionId = record.getSessionId();
+        record.setSessionId(sessionId);
+        return previousSessionId;
     }
 
     @Override
@@ -388,20 +500,13 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected void removeAccessTokenFromMemory(String tokenValue) {
-        UUID sessionId;
-        lock.writeLock().lock();
-        try {
-            tokenValueToAccessTokenStore.remove(tokenValue);
-            tokenValueToAuthenticationStore.remove(tokenValue);
-            tokenValueToUserLoginStore.remove(tokenValue);
-            String authenticationKey = tokenValueToAuthenticationKeyStore.remove(tokenValue);
-            if (authenticationKey != null) {
-                authenticationToAccessTokenStore.remove(authenticationKey);
-            }
-            sessionId = tokenValueToSessionIdStore.remove(tokenValue);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        Cache<String, TokenRecord> tokens = getTokens();
+        TokenRecord record = tokens.getIfPresent(tokenValue);
+        tokens.invalidate(tokenValue);
+        TokenSession evictedSession = evictedTokenSessions.asMap().remove(tokenValue);
+
+        UUID sessionId = record != null ? record.getSessionId() :
+                evictedSession != null ? evictedSession.getSessionId() : null;
         if (sessionId != null) {
             try {
                 UserSession session = userSessionManager.findSession(sessionId);
@@ -419,12 +524,15 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected void removeAccessTokenFromDatabase(String accessTokenValue) {
-        try (Transaction tx = persistence.getTransaction()) {
-            EntityManager em = persistence.getEntityManager();
-            em.createQuery("delete from sys$RestApiToken t where t.accessTokenValue = :accessTokenValue")
-                    .setParameter("accessTokenValue", accessTokenValue)
-                    .executeUpdate();
-            tx.commit();
+        synchronized (databaseLock) {
+            pendingWrites.remove(accessTokenValue);
+            try (Transaction tx = persistence.getTransaction()) {
+                EntityManager em = persistence.getEntityManager();
+                em.createQuery("delete from sys$RestApiToken t where t.accessTokenValue = :accessTokenValue")
+                        .setParameter("accessTokenValue", accessTokenValue)
+                        .executeUpdate();
+                tx.commit();
+            }
         }
     }
 
@@ -436,12 +544,22 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
         }
     }
 
+    /**
+     * Removes expired tokens from memory of the current node. Other nodes do the same by their own schedule, so no
+     * cluster messages are sent.
+     */
     protected void deleteExpiredTokensInMemory() {
-        TokenExpiry expiry = expiryQueue.poll();
-        while (expiry != null) {
-            removeAccessToken(expiry.getValue());
-            expiry = expiryQueue.poll();
-        }
+        long now = timeSource.currentTimeMillis();
+        List<String> expiredTokenValues = getTokens().asMap().values().stream()
+                .filter(record -> record.getExpiry() != null && record.getExpiry().getTime() < now)
+                .map(TokenRecord::getTokenValue)
+                .collect(Collectors.toList());
+        evictedTokenSessions.asMap().forEach((tokenValue, tokenSession) -> {
+            if (tokenSession.getExpiry() != null && tokenSession.getExpiry().getTime() < now) {
+                expiredTokenValues.add(tokenValue);
+            }
+        });
+        expiredTokenValues.forEach(this::removeAccessTokenFromMemory);
     }
 
     protected void deleteExpiredTokensInDatabase() {
@@ -453,33 +571,83 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
         }
     }
 
-    protected static class TokenExpiry implements Delayed {
+    /**
+     * All data of a token kept in memory.
+     */
+    protected static class TokenRecord implements Serializable {
+
+        private static final long serialVersionUID = -3306472545432218917L;
+
+        protected final String tokenValue;
+        protected final byte[] accessTokenBytes;
+        protected final String authenticationKey;
+        protected final byte[] authenticationBytes;
+        protected final Date expiry;
+        protected final String userLogin;
+        protected volatile UUID sessionId;
+
+        public TokenRecord(String tokenValue, byte[] accessTokenBytes, String authenticationKey,
+                           byte[] authenticationBytes, Date expiry, String userLogin) {
+            this.tokenValue = tokenValue;
+            this.accessTokenBytes = accessTokenBytes;
+            this.authenticationKey = authenticationKey;
+            this.authenticationBytes = authenticationBytes;
+            this.expiry = expiry;
+            this.userLogin = userLogin;
+        }
 
-        private final long expiry;
+        public String getTokenValue() {
+            return tokenValue;
+        }
 
-        private final String value;
+        public byte[] getAccessTokenBytes() {
+            return accessTokenBytes;
+        }
 
-        public TokenExpiry(String value, Date date) {
-            this.value = value;
-            this.expiry = date.getTime();
+        public String getAuthenticationKey() {
+            return authenticationKey;
         }
 
-        @Override
-        public int compareTo(Delayed other) {
-            if (this == other) {
-                return 0;
-            }
-            long diff = getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS);
-            return (diff == 0 ? 0 : ((diff < 0) ? -1 : 1));
+        public byte[] getAuthenticationBytes() {
+            return authenticationBytes;
+        }
+
+        public Date getExpiry() {
+            return expiry;
+        }
+
+        public String getUserLogin() {
+            return userLogin;
+        }
+
+        public UUID getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(UUID sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+
+    /**
+     * Session of a token evicted from memory.
+     */
+    protected static class TokenSession {
+
+        protected final UUID sessionId;
+        protected final Date expiry;
+
+        public TokenSession(UUID sessionId, Date expiry) {
+            this.sessionId = sessionId;
+            this.expiry = expiry;
         }
 
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return expiry - System.currentTimeMillis();
+        public UUID getSessionId() {
+            return sessionId;
         }
 
-        public String getValue() {
-            return value;
+        public Date getExpiry() {
+            return expiry;
         }
     }
 }
\ No newline at end of file
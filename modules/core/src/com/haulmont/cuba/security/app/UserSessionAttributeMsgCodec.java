@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionAttributeMsg;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Cluster codec of user session attribute change messages. String values are written directly,
+ * other values by standard serialization.
+ */
+@Component(UserSessionAttributeMsgCodec.NAME)
+public class UserSessionAttributeMsgCodec extends AbstractClusterMessageCodec<UserSessionAttributeMsg> {
+
+    public static final String NAME = "cuba_UserSessionAttributeMsgCodec";
+
+    @Override
+    public Class<UserSessionAttributeMsg> getMessageClass() {
+        return UserSessionAttributeMsg.class;
+    }
+
+    @Override
+    public void write(UserSessionAttributeMsg message, DataOutput out) throws IOException {
+        writeUuid(message.sessionId, out);
+        out.writeLong(message.lastUsedTs);
+        out.writeUTF(message.name);
+        boolean stringValue = message.value instanceof String;
+        out.writeBoolean(stringValue);
+        if (stringValue) {
+            out.writeUTF((String) message.value);
+        } else {
+            writeObject(message.value, out);
+        }
+    }
+
+    @Override
+    public UserSessionAttributeMsg read(DataInput in) throws IOException {
+        UUID sessionId = readUuid(in);
+        long lastUsedTs = in.readLong();
+        String name = in.readUTF();
+        Serializable value = in.readBoolean() ? in.readUTF() : (Serializable) readObject(in);
+        return new UserSessionAttributeMsg(sessionId, lastUsedTs, name, value);
+    }
+}
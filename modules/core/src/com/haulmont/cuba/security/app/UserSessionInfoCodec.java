@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionInfo;
+import com.haulmont.cuba.security.entity.PermissionType;
+import com.haulmont.cuba.security.entity.RoleType;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.global.ConstraintData;
+import com.haulmont.cuba.security.global.UserSession;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Cluster codec of user session propagation messages.
+ * <p>Roles, locale and permissions, which make up most of a session, are written field by field. Users,
+ * constraints and attributes are written by standard serialization, as they are entities or arbitrary objects.
+ * Sessions of classes other than {@link UserSession} are serialized as a whole.</p>
+ */
+@Component(UserSessionInfoCodec.NAME)
+public class UserSessionInfoCodec extends AbstractClusterMessageCodec<UserSessionInfo> {
+
+    public static final String NAME = "cuba_UserSessionInfoCodec";
+
+    @Override
+    public Class<UserSessionInfo> getMessageClass() {
+        return UserSessionInfo.class;
+    }
+
+    @Override
+    public void write(UserSessionInfo message, DataOutput out) throws IOException {
+        out.writeLong(message.since);
+        out.writeLong(message.lastUsedTs);
+
+        UserSession session = message.session;
+        boolean encoded = session.getClass() == UserSession.class;
+        out.writeBoolean(encoded);
+        if (encoded) {
+            writeSession(session, out);
+        } else {
+            writeObject(session, out);
+        }
+    }
+
+    @Override
+    public UserSessionInfo read(DataInput in) throws IOException {
+        long since = in.readLong();
+        long lastUsedTs = in.readLong();
+        UserSession session = in.readBoolean() ? readSession(in) : (UserSession) readObject(in);
+        return new UserSessionInfo(session, since, lastUsedTs);
+    }
+
+    protected void writeSession(UserSession session, DataOutput out) throws IOException {
+        writeUuid(session.getId(), out);
+        writeObject(session.getUser(), out);
+        writeObject(session.getSubstitutedUser(), out);
+
+        Collection<String> roles = session.getRoles();
+        out.writeInt(roles.size());
+        for (String role : roles) {
+            out.writeUTF(role);
+        }
+        Collection<RoleType> roleTypes = session.getRoleTypes();
+        out.writeInt(roleTypes.size());
+        for (RoleType roleType : roleTypes) {
+            out.writeUTF(roleType.name());
+        }
+
+        Locale locale = session.getLocale();
+        writeString(locale != null ? locale.toLanguageTag() : null, out);
+        TimeZone timeZone = session.getTimeZone();
+        writeString(timeZone != null ? timeZone.getID() : null, out);
+        writeString(session.getAddress(), out);
+        writeString(session.getClientInfo(), out);
+        out.writeBoolean(session.isSystem());
+
+        for (PermissionType type : PermissionType.values()) {
+            Map<String, Integer> permissions = session.getPermissionsByType(type);
+            out.writeInt(permissions.size());
+            for (Map.Entry<String, Integer> entry : permissions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        }
+
+        writeObject(new HashMap<>(session.getConstraints()), out);
+
+        HashMap<String, Serializable> attributes = new HashMap<>();
+        for (String name : session.getAttributeNames()) {
+            attributes.put(name, session.getAttribute(name));
+        }
+        writeObject(attributes, out);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected UserSession readSession(DataInput in) throws IOException {
+        UUID id = readUuid(in);
+        User user = (User) readObject(in);
+        User substitutedUser = (User) readObject(in);
+
+        int rolesCount = in.readInt();
+        List<String> roles = new ArrayList<>(rolesCount);
+        for (int i = 0; i < rolesCount; i++) {
+            roles.add(in.readUTF());
+        }
+        int roleTypesCount = in.readInt();
+        List<RoleType> roleTypes = new ArrayList<>(roleTypesCount);
+        for (int i = 0; i < roleTypesCount; i++) {
+            roleTypes.add(RoleType.valueOf(in.readUTF()));
+        }
+
+        String languageTag = readString(in);
+        String timeZoneId = readString(in);
+        String address = readString(in);
+        String clientInfo = readString(in);
+        boolean system = in.readBoolean();
+
+        Map<PermissionType, Map<String, Integer>> permissions = new EnumMap<>(PermissionType.class);
+        for (PermissionType type : PermissionType.values()) {
+            int count = in.readInt();
+            Map<String, Integer> map = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                map.put(in.readUTF(), in.readInt());
+            }
+            permissions.put(type, map);
+        }
+
+        Map<String, List<ConstraintData>> constraints = (Map<String, List<ConstraintData>>) readObject(in);
+        Map<String, Serializable> attributes = (Map<String, Serializable>) readObject(in);
+
+        UserSession session = new UserSession(id, user, substitutedUser, roles, roleTypes,
+                languageTag != null ? Locale.forLanguageTag(languageTag) : null,
+                timeZoneId != null ? TimeZone.getTimeZone(timeZoneId) : null,
+                system, constraints);
+        session.setAddress(address);
+        session.setClientInfo(clientInfo);
+        permissions.forEach((type, map) ->
+                map.forEach((target, value) -> session.addPermission(type, target, null, value)));
+        attributes.forEach(session::setAttribute);
+        return session;
+    }
+}
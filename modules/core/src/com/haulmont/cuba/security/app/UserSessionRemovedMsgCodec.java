@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionRemovedMsg;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Cluster codec of user session removal messages.
+ */
+@Component(UserSessionRemovedMsgCodec.NAME)
+public class UserSessionRemovedMsgCodec extends AbstractClusterMessageCodec<UserSessionRemovedMsg> {
+
+    public static final String NAME = "cuba_UserSessionRemovedMsgCodec";
+
+    @Override
+    public Class<UserSessionRemovedMsg> getMessageClass() {
+        return UserSessionRemovedMsg.class;
+    }
+
+    @Override
+    public void write(UserSessionRemovedMsg message, DataOutput out) throws IOException {
+        writeUuid(message.sessionId, out);
+    }
+
+    @Override
+    public UserSessionRemovedMsg read(DataInput in) throws IOException {
+        return new UserSessionRemovedMsg(readUuid(in));
+    }
+}
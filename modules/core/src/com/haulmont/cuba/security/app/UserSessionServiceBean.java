@@ -69,14 +69,14 @@ public class UserSessionServiceBean implements UserSessionService {
     public void setSessionAttribute(UUID sessionId, String name, Serializable value) {
         UserSession userSession = userSessionManager.getSession(sessionId);
         userSession.setAttribute(name, value);
-        userSessions.propagate(sessionId);
+        userSessions.propagateAttribute(sessionId, name);
     }
 
     @Override
     public void removeSessionAttribute(UUID sessionId, String name) {
         UserSession userSession = userSessionManager.getSession(sessionId);
         userSession.removeAttribute(name);
-        userSessions.propagate(sessionId);
+        userSessions.propagateAttribute(sessionId, name);
     }
 
     @Override
@@ -126,7 +126,7 @@ public class UserSessionServiceBean implements UserSessionService {
             UserSession userSession = userSessionManager.findSession(sessionId);
             if (userSession != null) {
                 userSession.setAttribute(MESSAGE_ATTR_PREFIX + time, message);
-                userSessions.propagate(sessionId);
+                userSessions.propagateAttribute(sessionId, MESSAGE_ATTR_PREFIX + time);
             }
         }
     }
@@ -16,10 +16,9 @@
  */
 package com.haulmont.cuba.security.app;
 
+import com.google.common.collect.Iterators;
 import com.haulmont.bali.util.Preconditions;
-import com.haulmont.cuba.core.app.ClusterListener;
-import com.haulmont.cuba.core.app.ClusterManagerAPI;
-import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.app.*;
 import com.haulmont.cuba.core.global.Configuration;
 import com.haulmont.cuba.core.global.Metadata;
 import com.haulmont.cuba.core.global.TimeSource;
@@ -33,10 +32,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -50,7 +52,7 @@ public class UserSessions implements UserSessionsAPI {
 
         protected final UserSession session;
         protected final long since;
-        protected volatile long lastUsedTs; // set to 0 when propagating removal to cluster
+        protected volatile long lastUsedTs;
         protected volatile long lastSentTs;
 
         public UserSessionInfo(UserSession session, long now) {
@@ -60,6 +62,13 @@ public class UserSessions implements UserSessionsAPI {
             this.lastSentTs = now;
         }
 
+        public UserSessionInfo(UserSession session, long since, long lastUsedTs) {
+            this.session = session;
+            this.since = since;
+            this.lastUsedTs = lastUsedTs;
+            this.lastSentTs = lastUsedTs;
+        }
+
         public UserSession getSession() {
             return session;
         }
@@ -83,6 +92,65 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    /**
+     * "Last used" timestamps of several sessions propagated together.
+     */
+    protected static class UserSessionsHeartbeatMsg implements Serializable {
+        private static final long serialVersionUID = 3719534305981378296L;
+
+        protected final UUID[] sessionIds;
+        protected final long[] lastUsedTs;
+
+        public UserSessionsHeartbeatMsg(UUID[] sessionIds, long[] lastUsedTs) {
+            this.sessionIds = sessionIds;
+            this.lastUsedTs = lastUsedTs;
+        }
+
+        @Override
+        public String toString() {
+            return "heartbeat of " + sessionIds.length + " sessions";
+        }
+    }
+
+    /**
+     * Change of a session attribute. Null value means the attribute is removed.
+     */
+    protected static class UserSessionAttributeMsg implements Serializable {
+        private static final long serialVersionUID = -2302357745880484532L;
+
+        protected final UUID sessionId;
+        protected final long lastUsedTs;
+        protected final String name;
+        protected final Serializable value;
+
+        public UserSessionAttributeMsg(UUID sessionId, long lastUsedTs, String name, @Nullable Serializable value) {
+            this.sessionId = sessionId;
+            this.lastUsedTs = lastUsedTs;
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return "session " + sessionId + ", attribute " + name;
+        }
+    }
+
+    protected static class UserSessionRemovedMsg implements Serializable {
+        private static final long serialVersionUID = 1587269651349513014L;
+
+        protected final UUID sessionId;
+
+        public UserSessionRemovedMsg(UUID sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public String toString() {
+            return "removed session " + sessionId;
+        }
+    }
+
     private Logger log = LoggerFactory.getLogger(UserSessions.class);
 
     protected Map<UUID, UserSessionInfo> cache = new ConcurrentHashMap<>();
@@ -97,6 +165,13 @@ public class UserSessions implements UserSessionsAPI {
 
     protected ServerConfig serverConfig;
 
+    protected ClusterConfig clusterConfig;
+
+    protected ClusterMessageBatcher<UUID> heartbeatBatcher;
+
+    //time until which requests of unknown sessions wait for the cluster state, set by the first such request
+    protected final AtomicLong stateWaitDeadline = new AtomicLong();
+
     @Inject
     protected TimeSource timeSource;
 
@@ -122,6 +197,7 @@ public class UserSessions implements UserSessionsAPI {
     @Inject
     public void setConfiguration(Configuration configuration) {
         serverConfig = configuration.getConfig(ServerConfig.class);
+        clusterConfig = configuration.getConfig(ClusterConfig.class);
         setExpirationTimeoutSec(serverConfig.getUserSessionExpirationTimeoutSec());
         setSendTimeoutSec(serverConfig.getUserSessionSendTimeoutSec());
     }
@@ -131,19 +207,14 @@ public class UserSessions implements UserSessionsAPI {
         this.clusterManager = clusterManager;
         this.clusterManager.addListener(
                 UserSessionInfo.class,
-                new ClusterListener<UserSessionInfo>() {
+                new ChunkedClusterListener<UserSessionInfo>() {
 
                     @Override
                     public void receive(UserSessionInfo message) {
                         UUID id = message.session.getId();
-                        if (message.lastUsedTs == 0) {
-                            log.debug("Removing session due to cluster message: {}", message);
-                            cache.remove(id);
-                        } else {
-                            UserSessionInfo usi = cache.get(id);
-                            if (usi == null || usi.lastUsedTs < message.lastUsedTs) {
-                                cache.put(id, message);
-                            }
+                        UserSessionInfo usi = cache.get(id);
+                        if (usi == null || usi.lastUsedTs < message.lastUsedTs) {
+                            cache.put(id, message);
                         }
                     }
 
@@ -152,13 +223,30 @@ public class UserSessions implements UserSessionsAPI {
                         if (cache.isEmpty())
                             return new byte[0];
 
+                        return serializeSessions(new ArrayList<>(cache.values()));
+                    }
+
+                    @Override
+                    public Iterator<byte[]> getStateChunks(int chunkSize) {
+                        return Iterators.transform(
+                                Iterators.partition(cache.values().iterator(), chunkSize),
+                                sessions -> serializeSessions(sessions));
+                    }
+
+                    @Override
+                    public void setStateChunk(byte[] chunk) {
+                        setState(chunk);
+                    }
+
+                    protected byte[] serializeSessions(List<UserSessionInfo> sessions) {
                         ByteArrayOutputStream bos = new ByteArrayOutputStream();
                         try {
                             ObjectOutputStream oos = new ObjectOutputStream(bos);
-                            oos.writeInt(cache.size());
-                            for (UserSessionInfo usi : cache.values()) {
+                            oos.writeInt(sessions.size());
+                            for (UserSessionInfo usi : sessions) {
                                 oos.writeObject(usi);
                             }
+                            oos.flush();
                         } catch (IOException e) {
                             throw new RuntimeException(e);
                         }
@@ -186,6 +274,73 @@ public class UserSessions implements UserSessionsAPI {
         );
     }
 
+    @PostConstruct
+    public void init() {
+        // heartbeats are added by request threads, which must not wait for the cluster
+        heartbeatBatcher = new ClusterMessageBatcher<>(clusterManager, clusterConfig, LinkedHashSet::new,
+                this::createHeartbeatMsg, () -> sendTimeout * 1000L)
+                .setSyncFlushWhenFull(false);
+
+        clusterManager.addListener(UserSessionsHeartbeatMsg.class, new ClusterListenerAdapter<UserSessionsHeartbeatMsg>() {
+            @Override
+            public void receive(UserSessionsHeartbeatMsg message) {
+                for (int i = 0; i < message.sessionIds.length; i++) {
+                    UserSessionInfo usi = cache.get(message.sessionIds[i]);
+                    if (usi != null && usi.lastUsedTs < message.lastUsedTs[i]) {
+                        usi.lastUsedTs = message.lastUsedTs[i];
+                    }
+                }
+            }
+        });
+        clusterManager.addListener(UserSessionAttributeMsg.class, new ClusterListenerAdapter<UserSessionAttributeMsg>() {
+            @Override
+            public void receive(UserSessionAttributeMsg message) {
+                UserSessionInfo usi = cache.get(message.sessionId);
+                if (usi == null) {
+                    log.debug("Session not found for cluster message: {}", message);
+                    return;
+                }
+                if (message.value == null) {
+                    usi.session.removeAttribute(message.name);
+                } else {
+                    usi.session.setAttribute(message.name, message.value);
+                }
+                if (usi.lastUsedTs < message.lastUsedTs) {
+                    usi.lastUsedTs = message.lastUsedTs;
+                }
+            }
+        });
+        clusterManager.addListener(UserSessionRemovedMsg.class, new ClusterListenerAdapter<UserSessionRemovedMsg>() {
+            @Override
+            public void receive(UserSessionRemovedMsg message) {
+                log.debug("Removing session due to cluster message: {}", message);
+                cache.remove(message.sessionId);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatBatcher.shutdown();
+    }
+
+    protected Serializable createHeartbeatMsg(List<UUID> ids) {
+        List<UUID> sessionIds = new ArrayList<>(ids.size());
+        List<Long> timestamps = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            UserSessionInfo usi = cache.get(id);
+            if (usi != null) {
+                sessionIds.add(id);
+                timestamps.add(usi.lastUsedTs);
+            }
+        }
+        long[] lastUsedTs = new long[timestamps.size()];
+        for (int i = 0; i < lastUsedTs.length; i++) {
+            lastUsedTs[i] = timestamps.get(i);
+        }
+        return new UserSessionsHeartbeatMsg(sessionIds.toArray(new UUID[0]), lastUsedTs);
+    }
+
     @Override
     public void add(UserSession session) {
         UserSessionInfo usi = new UserSessionInfo(session, timeSource.currentTimeMillis());
@@ -204,8 +359,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Removed session: {}", usi);
             if (!session.isSystem()) {
-                usi.lastUsedTs = 0;
-                clusterManager.send(usi);
+                clusterManager.send(new UserSessionRemovedMsg(session.getId()));
             }
         }
     }
@@ -223,13 +377,16 @@ public class UserSessions implements UserSessionsAPI {
             return NO_USER_SESSION;
 
         UserSessionInfo usi = cache.get(id);
+        if (usi == null && clusterManager.isReceivingState()) {
+            usi = waitForSessionFromState(id);
+        }
         if (usi != null) {
             long now = timeSource.currentTimeMillis();
             usi.lastUsedTs = now;
             if (propagate && !usi.session.isSystem()) {
                 if (now > (usi.lastSentTs + sendTimeout * 1000)) {
                     usi.lastSentTs = now;
-                    clusterManager.send(usi);
+                    heartbeatBatcher.add(Collections.singletonList(id));
                 }
             }
             return usi.session;
@@ -237,6 +394,23 @@ public class UserSessions implements UserSessionsAPI {
         return null;
     }
 
+    /**
+     * Waits for the session which can arrive with the rest of the cluster state. Unknown or forged session ids must
+     * not block request threads for the whole transfer, so all requests wait only until the same deadline, counted
+     * from the first request, and afterwards get sessions received so far.
+     */
+    @Nullable
+    protected UserSessionInfo waitForSessionFromState(UUID id) {
+        long now = System.currentTimeMillis();
+        stateWaitDeadline.compareAndSet(0, now + clusterConfig.getStateWaitTimeout());
+        long timeout = stateWaitDeadline.get() - now;
+        if (timeout > 0) {
+            log.debug("Session {} not found, waiting for the cluster state", id);
+            clusterManager.waitForState(timeout);
+        }
+        return cache.get(id);
+    }
+
     @Override
     public void propagate(UUID id) {
         UserSessionInfo usi = cache.get(id);
@@ -248,6 +422,17 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    @Override
+    public void propagateAttribute(UUID id, String name) {
+        UserSessionInfo usi = cache.get(id);
+        if (usi != null && !usi.session.isSystem()) {
+            long now = timeSource.currentTimeMillis();
+            usi.lastUsedTs = now;
+            usi.lastSentTs = now;
+            clusterManager.send(new UserSessionAttributeMsg(id, now, name, usi.session.getAttribute(name)));
+        }
+    }
+
     @Override
     public int getExpirationTimeoutSec() {
         return expirationTimeout;
@@ -302,8 +487,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Killed session: {}", usi);
 
-            usi.lastUsedTs = 0;
-            clusterManager.send(usi);
+            clusterManager.send(new UserSessionRemovedMsg(id));
         }
     }
 
@@ -337,8 +521,7 @@ public class UserSessions implements UserSessionsAPI {
                 userSessionLog.updateSessionLogRecord(usi.getSession(), SessionAction.EXPIRATION);
                 it.remove();
 
-                usi.lastUsedTs = 0;
-                clusterManager.send(usi);
+                clusterManager.send(new UserSessionRemovedMsg(usi.session.getId()));
             }
         }
     }
@@ -60,6 +60,15 @@ public interface UserSessionsAPI {
      */
     void propagate(UUID id);
 
+    /**
+     * Propagates a change of the user session attribute to the cluster. Unlike {@link #propagate(UUID)}, only
+     * the attribute value is sent, not the whole session.
+     *
+     * @param id   session id. If session with this id is not found, does nothing.
+     * @param name attribute name. If the session does not contain the attribute, it is removed on other nodes.
+     */
+    void propagateAttribute(UUID id, String name);
+
     /**
      * @return collection of all active sessions
      */
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.core.app.AbstractClusterMessageCodec;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionsHeartbeatMsg;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Cluster codec of user sessions heartbeat messages.
+ */
+@Component(UserSessionsHeartbeatMsgCodec.NAME)
+public class UserSessionsHeartbeatMsgCodec extends AbstractClusterMessageCodec<UserSessionsHeartbeatMsg> {
+
+    public static final String NAME = "cuba_UserSessionsHeartbeatMsgCodec";
+
+    @Override
+    public Class<UserSessionsHeartbeatMsg> getMessageClass() {
+        return UserSessionsHeartbeatMsg.class;
+    }
+
+    @Override
+    public void write(UserSessionsHeartbeatMsg message, DataOutput out) throws IOException {
+        out.writeInt(message.sessionIds.length);
+        for (int i = 0; i < message.sessionIds.length; i++) {
+            out.writeLong(message.sessionIds[i].getMostSignificantBits());
+            out.writeLong(message.sessionIds[i].getLeastSignificantBits());
+            out.writeLong(message.lastUsedTs[i]);
+        }
+    }
+
+    @Override
+    public UserSessionsHeartbeatMsg read(DataInput in) throws IOException {
+        int size = in.readInt();
+        UUID[] sessionIds = new UUID[size];
+        long[] lastUsedTs = new long[size];
+        for (int i = 0; i < size; i++) {
+            sessionIds[i] = new UUID(in.readLong(), in.readLong());
+            lastUsedTs[i] = in.readLong();
+        }
+        return new UserSessionsHeartbeatMsg(sessionIds, lastUsedTs);
+    }
+}
@@ -24,6 +24,7 @@ import com.haulmont.cuba.security.entity.Group;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.testsupport.TestContainer;
 import org.apache.commons.lang.time.DateUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -48,6 +49,12 @@ public class DataManagerTest {
         runner.update("delete from SYS_SERVER");
     }
 
+    @After
+    public void tearDown() throws Exception {
+        QueryRunner runner = new QueryRunner(cont.persistence().getDataSource());
+        runner.update("delete from SYS_SERVER");
+    }
+
     @Test
     public void test() {
         Server server = new Server();
@@ -96,6 +103,108 @@ public class DataManagerTest {
         assertTrue(list.size() > 0);
     }
 
+    @Test
+    public void testLoadBatches() {
+        Set<UUID> ids = new HashSet<>();
+        CommitContext commitContext = new CommitContext();
+        for (int i = 0; i < 25; i++) {
+            Server server = new Server();
+            server.setName("batch-" + i);
+            commitContext.addInstanceToCommit(server);
+            ids.add(server.getId());
+        }
+        dataManager.commit(commitContext);
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        loadContext.setQueryString("select s from sys$Server s where s.name like :name order by s.name")
+                .setParameter("name", "batch-%");
+
+        List<Integer> batchSizes = new ArrayList<>();
+        Set<UUID> loadedIds = new HashSet<>();
+        dataManager.loadBatches(loadContext, 10, batch -> {
+            batchSizes.add(batch.size());
+            for (Server server : batch) {
+                assertTrue(loadedIds.add(server.getId()));
+            }
+        });
+
+        assertEquals(Arrays.asList(10, 10, 5), batchSizes);
+        assertEquals(ids, loadedIds);
+    }
+
+    @Test
+    public void testBulkCommit() {
+        CommitContext commitContext = new CommitContext();
+        for (int i = 0; i < 10; i++) {
+            Server server = new Server();
+            server.setName("bulk-" + i);
+            commitContext.addInstanceToCommit(server);
+        }
+        commitContext.setBulkMode(true);
+        Set<Entity> committed = dataManager.commit(commitContext);
+        assertEquals(10, committed.size());
+
+        CommitContext updateContext = new CommitContext();
+        updateContext.setBulkMode(true);
+        for (Entity entity : committed) {
+            Server server = (Server) entity;
+            server.setName(server.getName() + "-updated");
+            updateContext.addInstanceToCommit(server);
+        }
+        Server removed = new Server();
+        removed.setName("bulk-removed");
+        removed = dataManager.commit(removed);
+        updateContext.addInstanceToRemove(removed);
+
+        Set<Entity> updated = dataManager.commit(updateContext);
+        assertEquals(11, updated.size());
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        loadContext.setQueryString("select s from sys$Server s where s.name like :name")
+                .setParameter("name", "bulk-%");
+        List<Server> servers = dataManager.loadList(loadContext);
+        assertEquals(10, servers.size());
+        for (Server server : servers) {
+            assertTrue(server.getName().endsWith("-updated"));
+        }
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        CommitContext commitContext = new CommitContext();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Server server = new Server();
+            server.setName(String.format("keyset-%02d", i));
+            commitContext.addInstanceToCommit(server);
+            names.add(server.getName());
+        }
+        dataManager.commit(commitContext);
+        Collections.reverse(names);
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        LoadContext.Query query = loadContext.setQueryString("select s from sys$Server s where s.name like :name")
+                .setParameter("name", "keyset-%")
+                .setMaxResults(5)
+                .setCursor(KeysetCursor.first("name", true));
+
+        List<String> loadedNames = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        while (true) {
+            List<Server> page = dataManager.loadList(loadContext);
+            pageSizes.add(page.size());
+            page.forEach(server -> loadedNames.add(server.getName()));
+            if (page.size() < 5) {
+                break;
+            }
+            query.setCursor(query.getCursor().next(page.get(page.size() - 1)));
+        }
+
+        assertEquals(Arrays.asList(5, 5, 2), pageSizes);
+        assertEquals(names, loadedNames);
+        assertEquals(12, dataManager.getCount(loadContext));
+    }
+
     @Test
     public void testLoadListById() {
         Server server = new Server();
@@ -23,6 +23,7 @@ import com.haulmont.cuba.core.app.dynamicattributes.PropertyType;
 import com.haulmont.cuba.core.entity.Category;
 import com.haulmont.cuba.core.entity.CategoryAttribute;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.entity.Group;
 import com.haulmont.cuba.security.entity.Role;
 import com.haulmont.cuba.security.entity.User;
@@ -33,6 +34,7 @@ import org.junit.*;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 public class DynamicAttributesTest {
@@ -253,6 +255,59 @@ public class DynamicAttributesTest {
         assertTrue(intCollection.contains(3));
     }
 
+    @Test
+    public void testFetchInSeveralBatches() {
+        AppContext.setProperty("cuba.dynamicAttributes.fetchBatchSize", "1");
+        try {
+            LoadContext<User> ctx = LoadContext.create(User.class).setLoadDynamicAttributes(true);
+            ctx.setQueryString("select u from sec$User u where u.login like 'user%' order by u.login");
+            List<User> users = dataManager.loadList(ctx);
+            assertEquals(2, users.size());
+            for (User loadedUser : users) {
+                assertEquals("userName", loadedUser.getValue("+userAttribute"));
+                assertEquals(group, loadedUser.getValue("+userGroupAttribute"));
+            }
+
+            List<Group> groupCollection = users.get(0).getValue("+userGroupCollectionAttribute");
+            assertNotNull(groupCollection);
+            assertEquals(2, groupCollection.size());
+            assertTrue(groupCollection.contains(group));
+            assertTrue(groupCollection.contains(group2));
+        } finally {
+            AppContext.setProperty("cuba.dynamicAttributes.fetchBatchSize", null);
+        }
+    }
+
+    @Test
+    public void testValuesCache() throws Exception {
+        AppContext.setProperty("cuba.dynamicAttributes.valuesCacheEnabled", "true");
+        try {
+            User loadedUser = dataManager.load(LoadContext.create(User.class).setId(user.getId()).setLoadDynamicAttributes(true));
+            assertEquals("userName", loadedUser.getValue("+userAttribute"));
+
+            QueryRunner runner = new QueryRunner(cont.persistence().getDataSource());
+            runner.update("update SYS_ATTR_VALUE set STRING_VALUE = 'changedInDb' where STRING_VALUE = 'userName'");
+
+            // values of an unchanged entity are taken from the cache
+            loadedUser = dataManager.load(LoadContext.create(User.class).setId(user.getId()).setLoadDynamicAttributes(true));
+            assertEquals("userName", loadedUser.getValue("+userAttribute"));
+            assertEquals(group, loadedUser.getValue("+userGroupAttribute"));
+
+            User loadedUser2 = dataManager.load(LoadContext.create(User.class).setId(user2.getId()).setLoadDynamicAttributes(true));
+            assertEquals("changedInDb", loadedUser2.getValue("+userAttribute"));
+
+            // committing the entity invalidates its cached values
+            loadedUser.setValue("+userAttribute", "newName");
+            dataManager.commit(loadedUser);
+
+            loadedUser = dataManager.load(LoadContext.create(User.class).setId(user.getId()).setLoadDynamicAttributes(true));
+            assertEquals("newName", loadedUser.getValue("+userAttribute"));
+            assertEquals(group, loadedUser.getValue("+userGroupAttribute"));
+        } finally {
+            AppContext.setProperty("cuba.dynamicAttributes.valuesCacheEnabled", null);
+        }
+    }
+
     @Test
     public void testPropertyChangeListener() {
         User loadedUser = dataManager.load(LoadContext.create(User.class).setId(user.getId()).setLoadDynamicAttributes(true));
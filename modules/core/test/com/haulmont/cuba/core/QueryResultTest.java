@@ -20,11 +20,13 @@ package com.haulmont.cuba.core;
 import com.haulmont.bali.db.MapListHandler;
 import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.cuba.core.app.DataService;
+import com.haulmont.cuba.core.app.queryresults.QueryResultsManagerAPI;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.QueryResult;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.entity.Group;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.testsupport.TestContainer;
@@ -218,6 +220,90 @@ public class QueryResultTest {
         assertEquals(5, entities.size());
     }
 
+    @Test
+    public void testInMemoryResults() throws SQLException {
+        AppContext.setProperty("cuba.queryResults.inMemory", "true");
+        try {
+            DataService dataService = AppBeans.get(DataService.class);
+            LoadContext context;
+            List<Entity> entities;
+
+            context = new LoadContext(User.class).setView(View.LOCAL);
+            LoadContext.Query query1 = context.setQueryString("select u from sec$User u where u.email like :email")
+                    .setParameter("email", "%aaa.com");
+            entities = dataService.loadList(context);
+            assertEquals(20, entities.size());
+
+            context = new LoadContext(User.class).setView(View.LOCAL);
+            LoadContext.Query query2 = context.setQueryString("select u from sec$User u where u.name like :name")
+                    .setParameter("name", "A-%");
+            context.getPrevQueries().add(query1);
+            context.setQueryKey(112);
+
+            entities = dataService.loadList(context);
+            assertEquals(10, entities.size());
+            assertEquals(0, getQueryResults().size());
+
+            context = new LoadContext(User.class).setView(View.LOCAL);
+            context.setQueryString("select u from sec$User u where u.firstName like :firstName")
+                    .setParameter("firstName", "C-%");
+            context.getPrevQueries().add(query1);
+            context.getPrevQueries().add(query2);
+            context.setQueryKey(112);
+
+            entities = dataService.loadList(context);
+            assertEquals(5, entities.size());
+            assertEquals(0, getQueryResults().size());
+        } finally {
+            AppBeans.get(QueryResultsManagerAPI.class).delete(112);
+            AppContext.setProperty("cuba.queryResults.inMemory", null);
+        }
+    }
+
+    @Test
+    public void testInMemoryResultsMovedToDatabase() throws SQLException {
+        AppContext.setProperty("cuba.queryResults.inMemory", "true");
+        AppContext.setProperty("cuba.queryResults.inMemoryMaxTotalIds", "10");
+        try {
+            DataService dataService = AppBeans.get(DataService.class);
+            LoadContext context;
+            List<Entity> entities;
+
+            context = new LoadContext(User.class).setView(View.LOCAL);
+            LoadContext.Query query1 = context.setQueryString("select u from sec$User u where u.email like :email")
+                    .setParameter("email", "%aaa.com");
+            entities = dataService.loadList(context);
+            assertEquals(20, entities.size());
+
+            context = new LoadContext(User.class).setView(View.LOCAL);
+            LoadContext.Query query2 = context.setQueryString("select u from sec$User u where u.name like :name")
+                    .setParameter("name", "A-%");
+            context.getPrevQueries().add(query1);
+            context.setQueryKey(113);
+
+            entities = dataService.loadList(context);
+            assertEquals(10, entities.size());
+            // 20 identifiers exceed the total limit, so they are moved to the table
+            assertEquals(20, getQueryResults().size());
+
+            context = new LoadContext(User.class).setView(View.LOCAL);
+            context.setQueryString("select u from sec$User u where u.firstName like :firstName")
+                    .setParameter("firstName", "C-%");
+            context.getPrevQueries().add(query1);
+            context.getPrevQueries().add(query2);
+            context.setQueryKey(113);
+
+            entities = dataService.loadList(context);
+            assertEquals(5, entities.size());
+            // 10 identifiers fit, so the table rows are replaced by the in-memory results
+            assertEquals(0, getQueryResults().size());
+        } finally {
+            AppBeans.get(QueryResultsManagerAPI.class).delete(113);
+            AppContext.setProperty("cuba.queryResults.inMemory", null);
+            AppContext.setProperty("cuba.queryResults.inMemoryMaxTotalIds", null);
+        }
+    }
+
     private List<Map<String, Object>> getQueryResults() throws SQLException {
         QueryRunner queryRunner = new QueryRunner(cont.persistence().getDataSource());
         return queryRunner.query("select * from SYS_QUERY_RESULT", new MapListHandler());
@@ -18,10 +18,13 @@
 package com.haulmont.cuba.core;
 
 import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.PersistenceHelper;
 import com.haulmont.cuba.core.global.Scripting;
+import com.haulmont.cuba.core.sys.AbstractScripting;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.testsupport.TestContainer;
 import groovy.lang.Binding;
+import groovy.lang.Script;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -74,4 +77,43 @@ public class ScriptingTest {
                                        "return PersistenceHelper.isNew(instance)", binding);
         assertTrue(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompileGroovy() throws Exception {
+        Class<? extends Script> scriptClass = scripting.compileGroovy("return PersistenceHelper.isNew(instance)");
+
+        Script script = scriptClass.newInstance();
+        Binding binding = new Binding();
+        script.setBinding(binding);
+
+        binding.setVariable("instance", new User());
+        assertEquals(Boolean.TRUE, script.run());
+
+        User user = new User();
+        PersistenceHelper.makeDetached(user);
+        binding.setVariable("instance", user);
+        assertEquals(Boolean.FALSE, script.run());
+    }
+
+    @Test
+    public void testCompiledExpressionCache() throws Exception {
+        AbstractScripting abstractScripting = (AbstractScripting) scripting;
+        String text = "a + " + System.nanoTime();
+
+        long compilationCount = abstractScripting.getCompilationCount();
+        long hitCount = abstractScripting.getExpressionCacheStats().hitCount();
+
+        Binding binding = new Binding();
+        binding.setVariable("a", 1L);
+        Long result1 = scripting.evaluateGroovy(text, binding);
+
+        binding = new Binding();
+        binding.setVariable("a", 2L);
+        Long result2 = scripting.evaluateGroovy("  " + text + "\n", binding);
+
+        assertEquals(result1 + 1, (long) result2);
+        assertEquals(compilationCount + 1, abstractScripting.getCompilationCount());
+        assertEquals(hitCount + 1, abstractScripting.getExpressionCacheStats().hitCount());
+        assertTrue(abstractScripting.getCachedBytecodeSize() > 0);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ClusterManagerCodecTest {
+
+    private ClusterManager clusterManager;
+    private boolean codecsEnabled;
+
+    @Before
+    public void setUp() throws Exception {
+        clusterManager = new ClusterManager();
+        clusterManager.clusterConfig = new MockUp<ClusterConfig>() {
+            @Mock
+            boolean getMessageCodecsEnabled() {
+                return codecsEnabled;
+            }
+        }.getMockInstance();
+        clusterManager.codecsByClass.put(TestMessage.class.getName(), new TestMessageCodec());
+    }
+
+    @Test
+    public void testEncodedMessage() throws Exception {
+        codecsEnabled = true;
+        TestMessage message = new TestMessage("abc", 42);
+
+        byte[] encoded = clusterManager.serializeMessage(message);
+        assertEquals(ClusterManager.ENCODED_MESSAGE, encoded[0]);
+
+        TestMessage decoded = (TestMessage) clusterManager.deserializeMessage(encoded);
+        assertEquals("abc", decoded.name);
+        assertEquals(42, decoded.value);
+
+        byte[] serialized = clusterManager.serializeMessage("abc");
+        assertEquals(ClusterManager.SERIALIZED_MESSAGE, serialized[0]);
+        assertEquals("abc", clusterManager.deserializeMessage(serialized));
+    }
+
+    @Test
+    public void testCodecsDisabled() throws Exception {
+        codecsEnabled = false;
+        TestMessage message = new TestMessage("abc", 42);
+
+        byte[] serialized = clusterManager.serializeMessage(message);
+        assertTrue(Arrays.equals(SerializationSupport.serialize(message), serialized));
+
+        TestMessage decoded = (TestMessage) clusterManager.deserializeMessage(serialized);
+        assertEquals("abc", decoded.name);
+        assertEquals(42, decoded.value);
+    }
+
+    @Test
+    public void testStateCompression() throws Exception {
+        byte[] state = new byte[100000];
+        Random random = new Random(1);
+        for (int i = 0; i < state.length; i++) {
+            state[i] = (byte) random.nextInt(8);
+        }
+
+        byte[] compressed = clusterManager.compressState(state);
+        assertTrue(compressed.length < state.length);
+        assertTrue(Arrays.equals(state, clusterManager.decompressState(compressed, state.length)));
+    }
+
+    public static class TestMessage implements Serializable {
+
+        private static final long serialVersionUID = 2404618413946411337L;
+
+        private final String name;
+        private final int value;
+
+        public TestMessage(String name, int value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    public static class TestMessageCodec extends AbstractClusterMessageCodec<TestMessage> {
+
+        @Override
+        public Class<TestMessage> getMessageClass() {
+            return TestMessage.class;
+        }
+
+        @Override
+        public void write(TestMessage message, DataOutput out) throws IOException {
+            writeString(message.name, out);
+            out.writeInt(message.value);
+        }
+
+        @Override
+        public TestMessage read(DataInput in) throws IOException {
+            return new TestMessage(readString(in), in.readInt());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.core.app;
+
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterMessageBatcherTest {
+
+    private List<Serializable> sent = Collections.synchronizedList(new ArrayList<>());
+    private List<Integer> mergedCounts = Collections.synchronizedList(new ArrayList<>());
+    private long window;
+
+    private ClusterManagerAPI clusterManager;
+    private ClusterConfig clusterConfig;
+
+    @Before
+    public void setUp() throws Exception {
+        clusterManager = new MockUp<ClusterManagerAPI>() {
+            @Mock
+            void send(Serializable message) {
+                sent.add(message);
+                mergedCounts.add(1);
+            }
+
+            @Mock
+            void sendMerged(Serializable message, int mergedCount, boolean sync) {
+                sent.add(message);
+                mergedCounts.add(mergedCount);
+            }
+
+            @Mock
+            int getMessagesCount() {
+                return 0;
+            }
+        }.getMockInstance();
+
+        clusterConfig = new MockUp<ClusterConfig>() {
+            @Mock
+            long getClusterMessageBatchingWindow() {
+                return window;
+            }
+
+            @Mock
+            int getClusterMessageBatchMaxSize() {
+                return 3;
+            }
+
+            @Mock
+            int getClusterMessageBatchingQueueThreshold() {
+                return 100;
+            }
+        }.getMockInstance();
+    }
+
+    @Test
+    public void testNoWindow() throws Exception {
+        window = 0;
+        ClusterMessageBatcher<String> batcher = createBatcher();
+        batcher.add(Collections.singleton("a"));
+        batcher.add(Collections.singleton("a"));
+
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        window = 60000;
+        ClusterMessageBatcher<String> batcher = createBatcher();
+        batcher.add(Collections.singleton("a"));
+        batcher.add(Arrays.asList("a", "b"));
+        assertTrue(sent.isEmpty());
+
+        batcher.flush(false);
+        assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList("a", "b"))), sent);
+        assertEquals(Collections.singletonList(2), mergedCounts);
+
+        batcher.flush(false);
+        assertEquals(1, sent.size());
+        batcher.shutdown();
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        window = 60000;
+        ClusterMessageBatcher<String> batcher = createBatcher();
+        batcher.add(Arrays.asList("a", "b"));
+        batcher.add(Arrays.asList("c", "d"));
+
+        assertEquals(1, sent.size());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d")), sent.get(0));
+        batcher.shutdown();
+    }
+
+    @Test
+    public void testMaxSizeInBackground() throws Exception {
+        window = 60000;
+        ClusterMessageBatcher<String> batcher = createBatcher().setSyncFlushWhenFull(false);
+        batcher.add(Arrays.asList("a", "b"));
+        batcher.add(Arrays.asList("c", "d"));
+
+        for (int i = 0; i < 100 && sent.isEmpty(); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, sent.size());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d")), sent.get(0));
+        assertEquals(Collections.singletonList(2), mergedCounts);
+        batcher.shutdown();
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        window = 50;
+        ClusterMessageBatcher<String> batcher = createBatcher();
+        batcher.add(Collections.singleton("a"));
+        batcher.add(Collections.singleton("b"));
+
+        for (int i = 0; i < 100 && sent.isEmpty(); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, sent.size());
+        assertEquals(Collections.singletonList(2), mergedCounts);
+        batcher.shutdown();
+    }
+
+    private ClusterMessageBatcher<String> createBatcher() {
+        return new ClusterMessageBatcher<>(clusterManager, clusterConfig, LinkedHashSet::new, HashSet::new);
+    }
+}
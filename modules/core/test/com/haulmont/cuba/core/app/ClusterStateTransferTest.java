@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.google.common.collect.Iterators;
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterStateTransferTest {
+
+    private int compressionThreshold;
+
+    @Test
+    public void testChunkedState() throws Exception {
+        checkTransfer();
+    }
+
+    @Test
+    public void testCompressedChunkedState() throws Exception {
+        compressionThreshold = 10;
+        checkTransfer();
+    }
+
+    private void checkTransfer() throws Exception {
+        TestListener sourceListener = new TestListener();
+        for (int i = 0; i < 25; i++) {
+            sourceListener.entries.add("entry-" + i);
+        }
+        ClusterManager source = createClusterManager(sourceListener);
+
+        TestListener targetListener = new TestListener();
+        ClusterManager target = createClusterManager(targetListener);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        source.new ClusterReceiver().getState(bos);
+        target.new ClusterReceiver().setState(new ByteArrayInputStream(bos.toByteArray()));
+
+        assertEquals(sourceListener.entries, targetListener.entries);
+        assertEquals(3, targetListener.chunks);
+        assertTrue(target.printStateTransferStat().startsWith("Received: 3 chunks"));
+        assertTrue(source.printStateTransferStat().contains("Sent: 3 chunks"));
+    }
+
+    private ClusterManager createClusterManager(TestListener listener) {
+        ClusterManager clusterManager = new ClusterManager();
+        clusterManager.clusterConfig = new MockUp<ClusterConfig>() {
+            @Mock
+            int getStateChunkSize() {
+                return 10;
+            }
+
+            @Mock
+            int getStateCompressionThreshold() {
+                return compressionThreshold;
+            }
+        }.getMockInstance();
+        clusterManager.listeners.put("test", listener);
+        return clusterManager;
+    }
+
+    private static class TestListener extends ClusterListenerAdapter<String> implements ChunkedClusterListener<String> {
+
+        private List<String> entries = new ArrayList<>();
+        private int chunks;
+
+        @Override
+        public void receive(String message) {
+            entries.add(message);
+        }
+
+        @Override
+        public Iterator<byte[]> getStateChunks(int chunkSize) {
+            return Iterators.transform(Iterators.partition(entries.iterator(), chunkSize),
+                    list -> String.join("\n", list).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void setStateChunk(byte[] chunk) {
+            chunks++;
+            entries.addAll(Arrays.asList(new String(chunk, StandardCharsets.UTF_8).split("\n")));
+        }
+    }
+}
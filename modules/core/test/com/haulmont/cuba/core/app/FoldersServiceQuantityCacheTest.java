@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.entity.AppFolder;
+import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.security.entity.*;
+import com.haulmont.cuba.security.global.UserSession;
+import com.haulmont.cuba.testsupport.TestContainer;
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FoldersServiceQuantityCacheTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    public static final AtomicInteger evaluations = new AtomicInteger();
+
+    private FoldersServiceBean foldersService;
+    private UserSession currentSession;
+    private AppFolder folder;
+
+    @Before
+    public void setUp() throws Exception {
+        evaluations.set(0);
+
+        foldersService = new FoldersServiceBean();
+        foldersService.metadata = AppBeans.get(Metadata.class);
+        foldersService.persistence = cont.persistence();
+        foldersService.scripting = AppBeans.get(Scripting.class);
+        foldersService.resources = AppBeans.get(Resources.class);
+        foldersService.userSessionSource = new MockUp<UserSessionSource>() {
+            @Mock
+            UserSession getUserSession() {
+                return currentSession;
+            }
+        }.getMockInstance();
+        foldersService.serverConfig = new MockUp<ServerConfig>() {
+            @Mock
+            int getAppFolderQuantityCacheExpirationSec() {
+                return 600;
+            }
+
+            @Mock
+            int getAppFolderQuantityCacheMaxSize() {
+                return 100;
+            }
+
+            @Mock
+            boolean getAppFolderQuantityCacheSharedBetweenUsers() {
+                return true;
+            }
+        }.getMockInstance();
+        foldersService.init();
+
+        folder = new AppFolder();
+        folder.setName("folder");
+        folder.setQuantityScript(FoldersServiceQuantityCacheTest.class.getName() + ".evaluations.incrementAndGet()");
+    }
+
+    @Test
+    public void testQuantityIsSharedBetweenUsersOfGroup() throws Exception {
+        Group group = new Group();
+        UserSession session1 = createSession("user1", group);
+        UserSession session2 = createSession("user2", group);
+
+        assertEquals(1, loadQuantity(session1));
+        assertEquals(1, loadQuantity(session1));
+        assertEquals(1, loadQuantity(session2));
+        assertEquals(1, evaluations.get());
+
+        folder.setQuantityScript(folder.getQuantityScript() + " * 10");
+        assertEquals(20, loadQuantity(session1));
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    public void testSessionsWithUserSpecificConstraintsDoNotShareQuantity() throws Exception {
+        Group group = new Group();
+        UserSession session1 = createSession("user1", group);
+        UserSession session2 = createSession("user2", group);
+        addConstraint(session1, "{E}.login = :session$userLogin");
+        addConstraint(session2, "{E}.login = :session$userLogin");
+
+        int quantity1 = loadQuantity(session1);
+        int quantity2 = loadQuantity(session2);
+        assertNotEquals(quantity1, quantity2);
+        assertEquals(quantity1, loadQuantity(session1));
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    public void testSessionsOfDifferentGroupsDoNotShareQuantity() throws Exception {
+        UserSession session1 = createSession("user1", new Group());
+        UserSession session2 = createSession("user2", new Group());
+
+        assertEquals(1, loadQuantity(session1));
+        assertEquals(2, loadQuantity(session2));
+    }
+
+    private int loadQuantity(UserSession session) {
+        currentSession = session;
+        foldersService.reloadAppFolders(Collections.singletonList(folder));
+        return folder.getQuantity();
+    }
+
+    private UserSession createSession(String login, Group group) {
+        User user = new User();
+        user.setLogin(login);
+        user.setGroup(group);
+        return new UserSession(UUID.randomUUID(), user, Collections.emptyList(), Locale.ENGLISH, false);
+    }
+
+    private void addConstraint(UserSession session, String whereClause) {
+        Constraint constraint = new Constraint();
+        constraint.setEntityName("sec$User");
+        constraint.setCheckType(ConstraintCheckType.DATABASE);
+        constraint.setOperationType(ConstraintOperationType.READ);
+        constraint.setWhereClause(whereClause);
+        session.addConstraint(constraint);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.importexport;
+
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class EntityImportRemoveTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private EntityImportExportAPI entityImportExport;
+    private UUID groupId = UUID.fromString("0fa2b1a5-1d68-4d69-9fbd-dff348347f93");
+    private UUID importedUserId;
+    private UUID removedUserId;
+
+    @Before
+    public void setUp() throws Exception {
+        entityImportExport = AppBeans.get(EntityImportExportAPI.class);
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+            Group group = em.find(Group.class, groupId);
+
+            User importedUser = createUser(group, "importedUser");
+            importedUserId = importedUser.getId();
+            em.persist(importedUser);
+
+            User removedUser = createUser(group, "removedUser");
+            removedUserId = removedUser.getId();
+            em.persist(removedUser);
+
+            tx.commit();
+        }
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+            em.remove(em.find(User.class, importedUserId));
+            tx.commit();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cont.deleteRecord("SEC_USER", importedUserId, removedUserId);
+    }
+
+    @Test
+    public void testImportAndRemoveInOneCommit() throws Exception {
+        User importedUser = new User();
+        importedUser.setId(importedUserId);
+        importedUser.setName("importedUser-changed");
+
+        User removedUser = new User();
+        removedUser.setId(removedUserId);
+
+        EntityImportView importView = new EntityImportView(User.class).addLocalProperty("name");
+        Map<Entity, EntityImportView> entities = Collections.singletonMap(importedUser, importView);
+        entityImportExport.importEntities(entities, Collections.singletonList(removedUser), false);
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+            em.setSoftDeletion(false);
+
+            //the imported instance is restored and updated, soft deletion is not applied to it
+            User user = em.find(User.class, importedUserId);
+            assertNotNull(user);
+            assertFalse(user.isDeleted());
+            assertEquals("importedUser-changed", user.getName());
+
+            //the removed instance is soft deleted, the row is still in the database
+            user = em.find(User.class, removedUserId);
+            assertNotNull(user);
+            assertTrue(user.isDeleted());
+
+            tx.commit();
+        }
+    }
+
+    private User createUser(Group group, String name) {
+        User user = new User();
+        user.setName(name);
+        user.setLogin(name + user.getId());
+        user.setPassword("000");
+        user.setGroup(group);
+        return user;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.serialization;
+
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntityJsonStreamTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private EntitySerializationAPI entitySerialization;
+    private Metadata metadata;
+
+    @Before
+    public void setUp() throws Exception {
+        entitySerialization = AppBeans.get(EntitySerializationAPI.class);
+        metadata = AppBeans.get(Metadata.class);
+    }
+
+    @Test
+    public void testContextIsClearedBetweenElements() throws Exception {
+        Group group = metadata.create(Group.class);
+        group.setName("streamGroup");
+
+        User user1 = createUser(group, "user1");
+        User user2 = createUser(group, "user2");
+
+        StringWriter writer = new StringWriter();
+        EntityJsonArrayWriter jsonArrayWriter = entitySerialization.createJsonArrayWriter(writer, null,
+                EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+        jsonArrayWriter.write(user1);
+        jsonArrayWriter.write(user2);
+        jsonArrayWriter.close();
+        String json = writer.toString();
+
+        //the group is written completely in each element instead of being compacted in the second one
+        assertEquals(2, StringUtils.countMatches(json, "streamGroup"));
+
+        List<User> users = new ArrayList<>();
+        entitySerialization.<User>entitiesFromJson(new StringReader(json), null, users::add,
+                EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
+
+        assertEquals(2, users.size());
+        assertEquals("streamGroup", users.get(0).getGroup().getName());
+        assertEquals("streamGroup", users.get(1).getGroup().getName());
+        //entities read from different elements are not shared
+        assertNotSame(users.get(0).getGroup(), users.get(1).getGroup());
+        assertEquals(group, users.get(1).getGroup());
+    }
+
+    private User createUser(Group group, String login) {
+        User user = metadata.create(User.class);
+        user.setLogin(login);
+        user.setGroup(group);
+        return user;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.serialization;
+
+import com.google.gson.JsonParser;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntitySerializationCacheTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private EntitySerializationAPI entitySerialization;
+    private Metadata metadata;
+
+    @Before
+    public void setUp() throws Exception {
+        entitySerialization = AppBeans.get(EntitySerializationAPI.class);
+        metadata = AppBeans.get(Metadata.class);
+    }
+
+    @Test
+    public void testViewsAreNotMixedUp() throws Exception {
+        User user = createUser("login1", "name1");
+        View loginView = new View(User.class).addProperty("login");
+        View nameView = new View(User.class).addProperty("name");
+
+        String json = entitySerialization.toJson(user, loginView);
+        assertTrue(json.contains("login1"));
+        assertFalse(json.contains("name1"));
+
+        json = entitySerialization.toJson(user, nameView);
+        assertFalse(json.contains("login1"));
+        assertTrue(json.contains("name1"));
+
+        assertEquals(entitySerialization.toJson(user, loginView), entitySerialization.toJson(user, loginView));
+        assertFalse(entitySerialization.toJson(user, loginView).contains("name1"));
+    }
+
+    @Test
+    public void testOptionsAreNotMixedUp() throws Exception {
+        User user = createUser("login1", "name1");
+
+        assertTrue(entitySerialization.toJson(user, null, EntitySerializationOption.PRETTY_PRINT).contains("\n"));
+        assertFalse(entitySerialization.toJson(user, null).contains("\n"));
+        assertFalse(entitySerialization.toJson(user, null, EntitySerializationOption.SERIALIZE_INSTANCE_NAME).contains("\n"));
+        assertTrue(entitySerialization.toJson(user, null,
+                EntitySerializationOption.SERIALIZE_INSTANCE_NAME, EntitySerializationOption.PRETTY_PRINT).contains("\n"));
+        assertTrue(entitySerialization.toJson(user, null,
+                EntitySerializationOption.PRETTY_PRINT, EntitySerializationOption.SERIALIZE_INSTANCE_NAME).contains("\n"));
+    }
+
+    @Test
+    public void testWriteJsonProducesSameArray() throws Exception {
+        List<User> users = Arrays.asList(createUser("login1", "name1"), createUser("login2", "name2"));
+
+        StringWriter writer = new StringWriter();
+        entitySerialization.writeJson(users, null, writer);
+
+        JsonParser parser = new JsonParser();
+        assertEquals(parser.parse(entitySerialization.toJson(users)), parser.parse(writer.toString()));
+    }
+
+    @Test
+    public void testReadEntitiesAreIndependent() throws Exception {
+        User user1 = createUser("login1", "name1");
+        User user2 = createUser("login2", null);
+
+        User read1 = (User) entitySerialization.entityFromJson(entitySerialization.toJson(user1), null);
+        User read2 = (User) entitySerialization.entityFromJson(entitySerialization.toJson(user2), null);
+
+        assertEquals("name1", read1.getName());
+        assertEquals("login2", read2.getLogin());
+        assertNull(read2.getName());
+        assertEquals("login1", read1.getLogin());
+    }
+
+    private User createUser(String login, String name) {
+        User user = metadata.create(User.class);
+        user.setLogin(login);
+        user.setName(name);
+        return user;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.sys.jpql.DomainModel;
+import com.haulmont.cuba.core.sys.jpql.QueryTreeCache;
+import com.haulmont.cuba.core.sys.jpql.model.EntityBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.JpqlEntityModel;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTransformerAstBased;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryTreeCacheTest {
+
+    private DomainModel model;
+    private QueryTreeCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        EntityBuilder builder = new EntityBuilder();
+        JpqlEntityModel teamEntity = builder.produceImmediately("Team", "name");
+        builder.startNewEntity("Player");
+        builder.addStringAttribute("name");
+        builder.addReferenceAttribute("team", "Team");
+        JpqlEntityModel playerEntity = builder.produce();
+        model = new DomainModel(playerEntity, teamEntity);
+
+        cache = new QueryTreeCache() {
+            {
+                maxSize = 10;
+                trees = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+            }
+        };
+    }
+
+    @Test
+    public void testTransformationsDoNotAffectCachedTree() throws Exception {
+        String query = "select p from Player p where p.name = :name";
+
+        QueryTransformerAstBased transformer = new QueryTransformerAstBased(model, query, cache);
+        transformer.addWhere("{E}.team.name = :teamName");
+        transformer.replaceWithCount();
+        transformer.getResult();
+
+        transformer = new QueryTransformerAstBased(model, query, cache);
+        assertEquals(query, transformer.getResult());
+
+        transformer = new QueryTransformerAstBased(model, query, cache);
+        transformer.removeDistinct();
+        assertEquals(query, transformer.getResult());
+
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getParseCount());
+        assertEquals(2, cache.getStats().hitCount());
+    }
+
+    @Test
+    public void testNormalizedQueryText() throws Exception {
+        new QueryTransformerAstBased(model, "select p from Player p\nwhere p.name = :name", cache).getResult();
+        new QueryTransformerAstBased(model, "select p from Player p where p.name = :name", cache).getResult();
+
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getParseCount());
+    }
+
+    @Test
+    public void testSameResultAsWithoutCache() throws Exception {
+        String query = "select p from Player p join p.team t where t.name = :name";
+
+        QueryTransformerAstBased cached = new QueryTransformerAstBased(model, query, cache);
+        cached.addWhere("{E}.name like :playerName");
+        QueryTransformerAstBased notCached = new QueryTransformerAstBased(model, query);
+        notCached.addWhere("{E}.name like :playerName");
+
+        assertEquals(notCached.getResult(), cached.getResult());
+        assertEquals(notCached.getAddedParams(), cached.getAddedParams());
+    }
+}
@@ -18,22 +18,29 @@
 package com.haulmont.cuba.core.sys;
 
 import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
+import com.haulmont.cuba.core.entity.SecurityState;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.testsupport.TestContainer;
+import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.UUID;
+import javax.crypto.Cipher;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 public class SecurityTokenManagerTest {
 
     @ClassRule
     public static TestContainer testContainer = TestContainer.Common.INSTANCE;
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityTokenManagerTest.class);
+
     @Test
     @Ignore
     public void testSecurityToken() throws Exception {
@@ -58,4 +65,111 @@ public class SecurityTokenManagerTest {
         Assert.assertEquals(id3, userRoles.get(2));
         Assert.assertEquals(id4, userRoles.get(3));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBinarySecurityToken() throws Exception {
+        SecurityTokenManager securityTokenManager = AppBeans.get(SecurityTokenManager.class);
+        User user = new User();
+        UUID groupId = UUID.randomUUID();
+        securityTokenManager.addFiltered(user, "group", groupId);
+        SecurityState state = BaseEntityInternalAccess.getOrCreateSecurityState(user);
+        BaseEntityInternalAccess.addReadonlyAttributes(state, new String[]{"login", "+dynamicAttribute"});
+        BaseEntityInternalAccess.addHiddenAttributes(state, new String[]{"password"});
+
+        securityTokenManager.writeSecurityToken(user);
+        BaseEntityInternalAccess.setFilteredData(state, null);
+        BaseEntityInternalAccess.setReadonlyAttributes(state, new String[0]);
+        BaseEntityInternalAccess.setHiddenAttributes(state, new String[0]);
+        securityTokenManager.readSecurityToken(user);
+
+        Assert.assertEquals(Collections.singletonList(groupId),
+                BaseEntityInternalAccess.getFilteredData(user).get("group"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("login", "+dynamicAttribute")),
+                new HashSet<>(state.getReadonlyAttributes()));
+        Assert.assertEquals(Collections.singleton("password"), new HashSet<>(state.getHiddenAttributes()));
+        Assert.assertTrue(state.getRequiredAttributes().isEmpty());
+    }
+
+    @Test
+    public void testJsonSecurityTokenIsReadable() throws Exception {
+        SecurityTokenManager securityTokenManager = AppBeans.get(SecurityTokenManager.class);
+        User user = new User();
+        UUID groupId = UUID.randomUUID();
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("group", Collections.singletonList(groupId.toString()));
+        jsonObject.put(SecurityTokenManager.READ_ONLY_ATTRIBUTES_KEY, Collections.singletonList("login"));
+        Cipher cipher = securityTokenManager.getCipher(Cipher.ENCRYPT_MODE);
+        BaseEntityInternalAccess.setSecurityToken(BaseEntityInternalAccess.getOrCreateSecurityState(user),
+                cipher.doFinal(jsonObject.toString().getBytes(StandardCharsets.UTF_8)));
+
+        securityTokenManager.readSecurityToken(user);
+
+        Assert.assertEquals(Collections.singletonList(groupId),
+                BaseEntityInternalAccess.getFilteredData(user).get("group"));
+        Assert.assertEquals(Collections.singletonList("login"),
+                new ArrayList<>(BaseEntityInternalAccess.getSecurityState(user).getReadonlyAttributes()));
+    }
+
+    /**
+     * Compares writing of binary tokens with pooled ciphers to the previous JSON format with a new cipher for each
+     * entity. Is ignored because it depends on timing, results are logged.
+     */
+    @Test
+    @Ignore
+    public void testSecurityTokenPerformance() throws Exception {
+        SecurityTokenManager securityTokenManager = AppBeans.get(SecurityTokenManager.class);
+        int count = 10000;
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            securityTokenManager.addFiltered(user, "group", UUID.randomUUID());
+            BaseEntityInternalAccess.addReadonlyAttributes(BaseEntityInternalAccess.getOrCreateSecurityState(user),
+                    new String[]{"login", "name", "email"});
+            users.add(user);
+        }
+
+        long jsonTime = 0, jsonSize = 0, binaryTime = 0, binarySize = 0, readTime = 0;
+        // the first rounds warm up the JIT
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            jsonSize = 0;
+            for (User user : users) {
+                jsonSize += writeJsonSecurityToken(securityTokenManager, user).length;
+            }
+            jsonTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            securityTokenManager.writeSecurityTokens(users);
+            binaryTime = System.nanoTime() - start;
+            binarySize = 0;
+            for (User user : users) {
+                binarySize += BaseEntityInternalAccess.getSecurityToken(user).length;
+            }
+
+            start = System.nanoTime();
+            for (User user : users) {
+                securityTokenManager.readSecurityToken(user);
+            }
+            readTime = System.nanoTime() - start;
+
+            log.info("JSON: {} ms, {} bytes; binary: write {} ms, read {} ms, {} bytes",
+                    jsonTime / 1000000, jsonSize, binaryTime / 1000000, readTime / 1000000, binarySize);
+        }
+
+        Assert.assertTrue(binarySize < jsonSize);
+        Assert.assertTrue(binaryTime < jsonTime);
+    }
+
+    /**
+     * Token generation as it was done before the binary format: JSON text and a new cipher for each entity.
+     */
+    protected byte[] writeJsonSecurityToken(SecurityTokenManager securityTokenManager, User user) throws Exception {
+        SecurityState state = BaseEntityInternalAccess.getSecurityState(user);
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("group", BaseEntityInternalAccess.getFilteredData(state).get("group"));
+        jsonObject.put(SecurityTokenManager.READ_ONLY_ATTRIBUTES_KEY, state.getReadonlyAttributes());
+        Cipher cipher = securityTokenManager.getCipher(Cipher.ENCRYPT_MODE);
+        return cipher.doFinal(jsonObject.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OffHeapQueryCacheTest {
+
+    private OffHeapQueryCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new OffHeapQueryCache(new QueryCacheConfig() {
+            @Override
+            public boolean getQueryCacheEnabled() {
+                return true;
+            }
+
+            @Override
+            public int getQueryCacheMaxSize() {
+                return 2;
+            }
+
+            @Override
+            public String getQueryCacheImplementation() {
+                return OffHeapQueryCache.NAME;
+            }
+
+            @Override
+            public int getQueryCacheOffHeapMaxSizeMb() {
+                return 0;
+            }
+
+            @Override
+            public int getQueryCacheTtlSec() {
+                return 0;
+            }
+        });
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        List<Object> ids = Arrays.asList(uuid, 10L, 20, "code", new Date(0));
+        QueryKey key = createKey("select u from sec$User u");
+        cache.put(key, new QueryResult(ids, "sec$User", Sets.newHashSet("sec$User")));
+
+        QueryResult result = cache.get(createKey("select u from sec$User u"));
+        assertNotNull(result);
+        assertEquals(ids, result.getResult());
+        assertEquals("sec$User", result.getType());
+        assertEquals(key, cache.findQueryKeyById(key.getId()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidateByType() throws Exception {
+        QueryKey userKey = createKey("select u from sec$User u");
+        QueryKey groupKey = createKey("select g from sec$Group g");
+        cache.put(userKey, new QueryResult(Collections.singletonList(1L), "sec$User", Sets.newHashSet("sec$User", "sec$Group")));
+        cache.put(groupKey, new QueryResult(Collections.singletonList(2L), "sec$Group", Sets.newHashSet("sec$Group")));
+
+        cache.invalidate("sec$User");
+        assertNull(cache.get(userKey));
+        assertNotNull(cache.get(groupKey));
+
+        cache.put(userKey, new QueryResult(Collections.singletonList(1L), "sec$User", Sets.newHashSet("sec$User", "sec$Group")));
+        cache.invalidate(Collections.singleton("sec$Group"));
+        assertEquals(0, cache.size());
+        assertNull(cache.findQueryKeyById(userKey.getId()));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            cache.put(createKey("select u from sec$User u where u.id = " + i),
+                    new QueryResult(Collections.singletonList((long) i), "sec$User", Sets.newHashSet("sec$User")));
+        }
+        assertTrue(cache.size() <= 2);
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRemovedEntryIsReleased() throws Exception {
+        QueryKey key = createKey("select u from sec$User u");
+        cache.put(key, new QueryResult(Collections.singletonList(1L), "sec$User", Sets.newHashSet("sec$User")));
+        OffHeapQueryCache.Entry replaced = cache.data.getIfPresent(key);
+
+        cache.put(key, new QueryResult(Collections.singletonList(2L), "sec$User", Sets.newHashSet("sec$User")));
+        assertNull(replaced.toQueryResult());
+        assertEquals(Collections.singletonList(2L), cache.get(key).getResult());
+        assertEquals(key, cache.findQueryKeyById(key.getId()));
+
+        OffHeapQueryCache.Entry removed = cache.data.getIfPresent(key);
+        cache.invalidate(key);
+        assertNull(removed.toQueryResult());
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testIndexesFollowCurrentEntry() throws Exception {
+        QueryKey key = createKey("select u from sec$User u");
+        cache.put(key, new QueryResult(Collections.singletonList(1L), "sec$User", Sets.newHashSet("sec$User", "sec$Role")));
+        cache.put(key, new QueryResult(Collections.singletonList(2L), "sec$User", Sets.newHashSet("sec$User", "sec$Group")));
+        assertFalse(cache.typeIndex.containsKey("sec$Role"));
+
+        cache.invalidate("sec$Role");
+        assertNotNull(cache.get(key));
+
+        cache.invalidate("sec$Group");
+        assertNull(cache.get(key));
+        assertTrue(cache.typeIndex.isEmpty());
+        assertTrue(cache.idIndex.isEmpty());
+
+        cache.put(key, new QueryResult(Collections.singletonList(1L), "sec$User", Sets.newHashSet("sec$User")));
+        cache.put(createKey("select g from sec$Group g"),
+                new QueryResult(Collections.singletonList(2L), "sec$Group", Sets.newHashSet("sec$Group")));
+        cache.invalidateAll();
+        assertTrue(cache.typeIndex.isEmpty());
+        assertTrue(cache.idIndex.isEmpty());
+    }
+
+    private QueryKey createKey(String queryString) {
+        return new QueryKey(queryString, 0, 0, true, false, null, null);
+    }
+}
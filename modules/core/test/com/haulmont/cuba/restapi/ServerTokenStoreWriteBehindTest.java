@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.restapi;
+
+import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.entity.RestApiToken;
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ServerTokenStoreWriteBehindTest {
+
+    private List<Serializable> sent = Collections.synchronizedList(new ArrayList<>());
+    private Map<String, RestApiToken> database = new ConcurrentHashMap<>();
+    private List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private AtomicInteger failuresLeft = new AtomicInteger();
+
+    private TestTokenStore tokenStore;
+
+    @Before
+    public void setUp() throws Exception {
+        tokenStore = new TestTokenStore();
+        tokenStore.clusterManagerAPI = new MockUp<ClusterManagerAPI>() {
+            @Mock
+            void send(Serializable message) {
+                sent.add(message);
+            }
+        }.getMockInstance();
+        tokenStore.serverConfig = new MockUp<ServerConfig>() {
+            @Mock
+            boolean getRestStoreTokensInDb() {
+                return true;
+            }
+
+            @Mock
+            int getRestTokenCacheMaxSize() {
+                return 2;
+            }
+
+            @Mock
+            int getRestTokenCacheExpirationSec() {
+                return 600;
+            }
+
+            @Mock
+            int getRestTokenWriteDelayMs() {
+                return 10;
+            }
+
+            @Mock
+            int getRestTokenWriteRetryDelayMs() {
+                return 10;
+            }
+
+            @Mock
+            int getRestTokenWriteBatchSize() {
+                return 2;
+            }
+        }.getMockInstance();
+        tokenStore.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tokenStore.writeExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testTokensAreSentAndWrittenInBatches() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            storeToken("token" + i);
+        }
+
+        assertEquals(3, sent.size());
+        assertTrue(sent.stream().allMatch(message -> message instanceof TokenStoreAddTokenMsg));
+
+        waitForDatabase(3);
+        assertEquals(Arrays.asList(2, 1), batchSizes);
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() throws Exception {
+        failuresLeft.set(2);
+        storeToken("token1");
+        storeToken("token2");
+
+        waitForDatabase(2);
+        assertEquals(0, failuresLeft.get());
+        assertTrue(tokenStore.pendingWrites.isEmpty());
+    }
+
+    @Test
+    public void testRevokedTokenIsNotWritten() throws Exception {
+        failuresLeft.set(1);
+        storeToken("token1");
+        storeToken("token2");
+        tokenStore.removeAccessToken("token1");
+
+        waitForDatabase(1);
+        assertFalse(database.containsKey("token1"));
+        assertTrue(database.containsKey("token2"));
+    }
+
+    @Test
+    public void testSessionIsKeptAfterEviction() throws Exception {
+        storeToken("token1");
+        UUID sessionId = UUID.randomUUID();
+        tokenStore.putSessionId("token1", sessionId);
+        waitForDatabase(1);
+
+        storeToken("token2");
+        storeToken("token3");
+        storeToken("token4");
+        assertNull(tokenStore.getTokens().getIfPresent("token1"));
+        assertEquals(sessionId, tokenStore.getSessionIdByTokenValue("token1"));
+
+        assertNotNull(tokenStore.getAccessTokenByTokenValue("token1"));
+        assertEquals(sessionId, tokenStore.getTokens().getIfPresent("token1").getSessionId());
+        assertFalse(tokenStore.evictedTokenSessions.asMap().containsKey("token1"));
+    }
+
+    @Test
+    public void testPendingTokenIsFoundAfterEviction() throws Exception {
+        failuresLeft.set(Integer.MAX_VALUE);
+        for (int i = 1; i <= 4; i++) {
+            storeToken("token" + i);
+        }
+        assertNull(tokenStore.getTokens().getIfPresent("token1"));
+        assertNull(tokenStore.getTokens().getIfPresent("token2"));
+
+        assertNotNull(tokenStore.getAccessTokenByTokenValue("token1"));
+        assertNotNull(tokenStore.getAuthenticationByTokenValue("token1"));
+        assertNotNull(tokenStore.getAccessTokenByAuthentication("token2-key"));
+
+        failuresLeft.set(0);
+        waitForDatabase(4);
+    }
+
+    @Test
+    public void testEvictedSessionsAreBounded() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            storeToken("token" + i);
+            tokenStore.putSessionId("token" + i, UUID.randomUUID());
+        }
+        assertTrue(tokenStore.evictedTokenSessions.size() <= 2);
+    }
+
+    private void storeToken(String tokenValue) {
+        tokenStore.storeAccessToken(tokenValue, new byte[]{1}, tokenValue + "-key", new byte[]{2},
+                new Date(System.currentTimeMillis() + 60000), "admin");
+    }
+
+    private void waitForDatabase(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (database.size() < size || !tokenStore.pendingWrites.isEmpty()) {
+            assertTrue("Tokens are not written", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private class TestTokenStore extends ServerTokenStoreImpl {
+
+        @Override
+        protected boolean storeAccessTokensToDatabase(List<TokenRecord> records) {
+            if (failuresLeft.getAndUpdate(value -> Math.max(value - 1, 0)) > 0) {
+                return false;
+            }
+            for (TokenRecord record : records) {
+                RestApiToken restApiToken = new RestApiToken();
+                restApiToken.setAccessTokenValue(record.getTokenValue());
+                restApiToken.setAccessTokenBytes(record.getAccessTokenBytes());
+                restApiToken.setAuthenticationKey(record.getAuthenticationKey());
+                restApiToken.setAuthenticationBytes(record.getAuthenticationBytes());
+                restApiToken.setExpiry(record.getExpiry());
+                restApiToken.setUserLogin(record.getUserLogin());
+                database.put(record.getTokenValue(), restApiToken);
+            }
+            batchSizes.add(records.size());
+            return true;
+        }
+
+        @Override
+        protected RestApiToken getRestApiTokenByTokenValueFromDatabase(String accessTokenValue) {
+            return database.get(accessTokenValue);
+        }
+
+        @Override
+        protected void removeAccessTokenFromDatabase(String accessTokenValue) {
+            synchronized (databaseLock) {
+                pendingWrites.remove(accessTokenValue);
+                database.remove(accessTokenValue);
+            }
+        }
+    }
+}
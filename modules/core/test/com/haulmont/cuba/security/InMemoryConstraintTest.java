@@ -19,6 +19,7 @@ package com.haulmont.cuba.security;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.app.LoginWorker;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.security.global.LoginException;
@@ -252,6 +253,33 @@ public class InMemoryConstraintTest {
         }
     }
 
+    @Test
+    public void testCountInSeveralBatches() throws LoginException {
+        LoginWorker lw = AppBeans.get(LoginWorker.NAME);
+
+        UserSession userSession = lw.login("constraintUser3", passwordEncryption.getPlainHash(PASSWORD), Locale.getDefault());
+        assertNotNull(userSession);
+
+        UserSessionSource uss = AppBeans.get(UserSessionSource.class);
+        UserSession savedUserSession = uss.getUserSession();
+        ((TestUserSessionSource) uss).setUserSession(userSession);
+        AppContext.setProperty("cuba.inMemoryConstraintsCountBatchSize", "7");
+        try {
+            DataManager dataManager = AppBeans.get(DataManager.NAME);
+            dataManager = dataManager.secure();
+            LoadContext loadContext = new LoadContext(User.class).setView(View.LOCAL);
+            loadContext.setQuery(new LoadContext.Query("select distinct u from sec$User u where (u.login like 'user%' or u.login like 'constraintUser%') order by u.login desc"));
+            assertEquals(38, dataManager.getCount(loadContext));
+
+            AppContext.setProperty("cuba.inMemoryConstraintsCountLimits", "sec$User:20");
+            assertEquals(20, dataManager.getCount(loadContext));
+        } finally {
+            AppContext.setProperty("cuba.inMemoryConstraintsCountBatchSize", null);
+            AppContext.setProperty("cuba.inMemoryConstraintsCountLimits", null);
+            ((TestUserSessionSource) uss).setUserSession(savedUserSession);
+        }
+    }
+
     @Test
     public void testLoadingLastPage() throws LoginException {
         LoginWorker lw = AppBeans.get(LoginWorker.NAME);
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.core.app.ClusterMessageCodec;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionAttributeMsg;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionInfo;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionRemovedMsg;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionsHeartbeatMsg;
+import com.haulmont.cuba.security.entity.*;
+import com.haulmont.cuba.security.global.ConstraintData;
+import com.haulmont.cuba.security.global.UserSession;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class UserSessionsClusterMessagesTest {
+
+    @Test
+    public void testHeartbeat() throws Exception {
+        UUID[] ids = {UUID.randomUUID(), UUID.randomUUID()};
+        long[] timestamps = {1000L, 2000L};
+
+        UserSessionsHeartbeatMsg msg = roundTrip(new UserSessionsHeartbeatMsgCodec(),
+                new UserSessionsHeartbeatMsg(ids, timestamps));
+
+        assertArrayEquals(ids, msg.sessionIds);
+        assertArrayEquals(timestamps, msg.lastUsedTs);
+    }
+
+    @Test
+    public void testAttribute() throws Exception {
+        UUID id = UUID.randomUUID();
+        UserSessionAttributeMsgCodec codec = new UserSessionAttributeMsgCodec();
+
+        UserSessionAttributeMsg msg = roundTrip(codec, new UserSessionAttributeMsg(id, 1000L, "attr", "value"));
+        assertEquals(id, msg.sessionId);
+        assertEquals(1000L, msg.lastUsedTs);
+        assertEquals("attr", msg.name);
+        assertEquals("value", msg.value);
+
+        Date date = new Date();
+        msg = roundTrip(codec, new UserSessionAttributeMsg(id, 1000L, "attr", date));
+        assertEquals(date, msg.value);
+
+        msg = roundTrip(codec, new UserSessionAttributeMsg(id, 1000L, "attr", null));
+        assertNull(msg.value);
+    }
+
+    @Test
+    public void testRemoved() throws Exception {
+        UUID id = UUID.randomUUID();
+        UserSessionRemovedMsg msg = roundTrip(new UserSessionRemovedMsgCodec(), new UserSessionRemovedMsg(id));
+        assertEquals(id, msg.sessionId);
+    }
+
+    @Test
+    public void testSessionInfo() throws Exception {
+        User user = new User();
+        user.setLogin("admin");
+        user.setTimeZone("Europe/Berlin");
+
+        Role role = new Role();
+        role.setName("Readonly");
+        role.setType(RoleType.READONLY);
+
+        Constraint constraint = new Constraint();
+        constraint.setEntityName("sec$User");
+        constraint.setCheckType(ConstraintCheckType.DATABASE);
+        constraint.setOperationType(ConstraintOperationType.READ);
+        constraint.setWhereClause("{E}.login = :session$userLogin");
+
+        UserSession session = new UserSession(UUID.randomUUID(), user, Collections.singletonList(role),
+                Locale.forLanguageTag("en-US"), false);
+        session.setAddress("127.0.0.1");
+        session.addPermission(PermissionType.SCREEN, "sec$User.browse", null, 0);
+        session.addPermission(PermissionType.ENTITY_OP, "sec$User:read", null, 1);
+        session.addConstraint(constraint);
+        session.setAttribute("attr", 10);
+
+        UserSessionInfo info = roundTrip(new UserSessionInfoCodec(), new UserSessionInfo(session, 1000L, 2000L));
+        assertEquals(1000L, info.since);
+        assertEquals(2000L, info.lastUsedTs);
+
+        UserSession restored = info.session;
+        assertEquals(session.getId(), restored.getId());
+        assertEquals("admin", restored.getUser().getLogin());
+        assertNull(restored.getSubstitutedUser());
+        assertEquals(Collections.singletonList("Readonly"), new ArrayList<>(restored.getRoles()));
+        assertEquals(Collections.singleton(RoleType.READONLY), new HashSet<>(restored.getRoleTypes()));
+        assertEquals(Locale.forLanguageTag("en-US"), restored.getLocale());
+        assertEquals(TimeZone.getTimeZone("Europe/Berlin"), restored.getTimeZone());
+        assertEquals("127.0.0.1", restored.getAddress());
+        assertFalse(restored.isSystem());
+        for (PermissionType type : PermissionType.values()) {
+            assertEquals(session.getPermissionsByType(type), restored.getPermissionsByType(type));
+        }
+        List<ConstraintData> constraints = restored.getConstraints("sec$User");
+        assertEquals(1, constraints.size());
+        assertEquals(constraint.getWhereClause(), constraints.get(0).getWhereClause());
+        assertEquals(Integer.valueOf(10), restored.getAttribute("attr"));
+    }
+
+    private <T extends Serializable> T roundTrip(ClusterMessageCodec<T> codec, T message) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        codec.write(message, new DataOutputStream(bos));
+        return codec.read(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+    }
+}
@@ -19,6 +19,7 @@ package com.haulmont.cuba.core.app.dynamicattributes;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.Category;
@@ -78,6 +79,59 @@ public class DynamicAttributesCache implements Serializable {
         return null;
     }
 
+    /**
+     * @param categoryIds identifiers of changed categories
+     * @return changes containing the current state of the categories, absent categories are considered removed
+     */
+    public DynamicAttributesCacheChanges getChanges(Collection<UUID> categoryIds) {
+        Multimap<String, Category> changedCategories = HashMultimap.create();
+        Set<UUID> removedCategoryIds = new HashSet<>(categoryIds);
+        for (Map.Entry<String, Category> entry : categoriesCache.entries()) {
+            if (removedCategoryIds.remove(entry.getValue().getId())) {
+                changedCategories.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new DynamicAttributesCacheChanges(changedCategories, removedCategoryIds, creationDate);
+    }
+
+    /**
+     * Creates a new version of the cache. Attributes are rebuilt only for entities whose categories are changed.
+     */
+    public DynamicAttributesCache withChanges(DynamicAttributesCacheChanges changes) {
+        Set<UUID> replacedCategoryIds = new HashSet<>(changes.getRemovedCategoryIds());
+        for (Category category : changes.getChangedCategories().values()) {
+            replacedCategoryIds.add(category.getId());
+        }
+
+        Set<String> changedEntityTypes = new HashSet<>(changes.getChangedCategories().keySet());
+        Multimap<String, Category> newCategoriesCache = HashMultimap.create();
+        for (Map.Entry<String, Category> entry : categoriesCache.entries()) {
+            if (replacedCategoryIds.contains(entry.getValue().getId())) {
+                changedEntityTypes.add(entry.getKey());
+            } else {
+                newCategoriesCache.put(entry.getKey(), entry.getValue());
+            }
+        }
+        newCategoriesCache.putAll(changes.getChangedCategories());
+
+        Map<String, Map<String, CategoryAttribute>> newAttributesCache = new LinkedHashMap<>(attributesCache);
+        for (String entityType : changedEntityTypes) {
+            if (newCategoriesCache.containsKey(entityType)) {
+                Map<String, CategoryAttribute> attributes = new LinkedHashMap<>();
+                for (Category category : newCategoriesCache.get(entityType)) {
+                    for (CategoryAttribute categoryAttribute : category.getCategoryAttrs()) {
+                        attributes.put(categoryAttribute.getCode(), categoryAttribute);
+                    }
+                }
+                newAttributesCache.put(entityType, attributes);
+            } else {
+                newAttributesCache.remove(entityType);
+            }
+        }
+
+        return new DynamicAttributesCache(newCategoriesCache, newAttributesCache, changes.getCreationDate());
+    }
+
     protected MetaClass resolveTargetMetaClass(MetaClass metaClass) {
         if (metaClass == null) {
             return null;
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.dynamicattributes;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.haulmont.cuba.core.entity.Category;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Changes of {@link DynamicAttributesCache} made since some previous version of the cache. Contains either changed
+ * and removed categories, or the whole cache if the changes since the previous version are unknown.
+ */
+@Immutable
+public class DynamicAttributesCacheChanges implements Serializable {
+
+    private static final long serialVersionUID = -6046307531207325592L;
+
+    protected final Multimap<String, Category> changedCategories;
+    protected final Set<UUID> removedCategoryIds;
+    protected final Date creationDate;
+    protected final DynamicAttributesCache cache;
+
+    /**
+     * @param changedCategories  added or changed categories by names of their entities
+     * @param removedCategoryIds identifiers of removed categories
+     * @param creationDate       creation date of the cache version containing the changes
+     */
+    public DynamicAttributesCacheChanges(Multimap<String, Category> changedCategories,
+                                         Set<UUID> removedCategoryIds,
+                                         Date creationDate) {
+        this.changedCategories = changedCategories;
+        this.removedCategoryIds = removedCategoryIds;
+        this.creationDate = creationDate;
+        this.cache = null;
+    }
+
+    /**
+     * @param cache the whole cache replacing the previous version
+     */
+    public DynamicAttributesCacheChanges(DynamicAttributesCache cache) {
+        this.changedCategories = HashMultimap.create();
+        this.removedCategoryIds = Collections.emptySet();
+        this.creationDate = cache.getCreationDate();
+        this.cache = cache;
+    }
+
+    public Multimap<String, Category> getChangedCategories() {
+        return changedCategories;
+    }
+
+    public Set<UUID> getRemovedCategoryIds() {
+        return removedCategoryIds;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    /**
+     * @return the whole cache if the changes since the previous version are unknown, null otherwise
+     */
+    @Nullable
+    public DynamicAttributesCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param previousCache the cache version the changes were requested for
+     * @return the new version of the cache
+     */
+    public DynamicAttributesCache applyTo(@Nullable DynamicAttributesCache previousCache) {
+        if (cache != null) {
+            return cache;
+        }
+        if (previousCache == null) {
+            throw new IllegalStateException("Unable to apply dynamic attributes changes to an empty cache");
+        }
+        return previousCache.withChanges(this);
+    }
+}
@@ -30,4 +30,13 @@ public interface DynamicAttributesCacheService {
 
     @Nullable
     DynamicAttributesCache getCacheIfNewer(Date clientCacheDate);
+
+    /**
+     * Get changes of dynamic attributes cache made after the client cache creation date.
+     *
+     * @param clientCacheDate creation date of the client cache, null if the client has no cache
+     * @return null if the client cache is up to date
+     */
+    @Nullable
+    DynamicAttributesCacheChanges getCacheChangesIfNewer(@Nullable Date clientCacheDate);
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.View;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Service that is used for exporting a collection of entities and importing them.
@@ -120,4 +121,21 @@ public interface EntityImportExportService {
      * @return a collection of entities that have been imported
      */
     Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate);
+
+    /**
+     * Persists entities according to the rules, described by the import view of each entity, and removes the passed
+     * entities. All changes are committed in a single transaction, so either all of them are saved or none.
+     * <p>
+     * Unlike other import methods, removed entities and composition members that are absent in the passed entities are
+     * deleted softly if the batch contains entities to remove, the same way as {@code DataManager.remove()} does it.
+     *
+     * @param entities         entities to persist mapped to {@code EntityImportView}s describing how they should be
+     *                         persisted
+     * @param entitiesToRemove entities to remove
+     * @param validate         whether the persisted entities should be validated by the
+     *                         {@link com.haulmont.cuba.core.global.BeanValidation} mechanism
+     * @return a collection of entities that have been imported or removed
+     */
+    Collection<Entity> importEntities(Map<Entity, EntityImportView> entities, Collection<? extends Entity> entitiesToRemove,
+                                      boolean validate);
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.serialization;
+
+import com.haulmont.cuba.core.entity.Entity;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes entities to an underlying {@link java.io.Writer} as elements of a single JSON array, one at a time.
+ * <p>
+ * Each entity is written with its own serialization context, so the
+ * {@link EntitySerializationOption#COMPACT_REPEATED_ENTITIES} option compacts repeated entities only inside the
+ * object graph of one array element, and the memory used by the writer does not grow with the array length.
+ * <p>
+ * Instances are not thread-safe. Use {@link EntitySerializationAPI#createJsonArrayWriter} to obtain one.
+ */
+public interface EntityJsonArrayWriter extends Closeable {
+
+    /**
+     * Appends an entity to the JSON array.
+     *
+     * @param entity an entity to be serialized
+     */
+    void write(Entity entity) throws IOException;
+
+    /**
+     * Closes the JSON array and flushes the underlying writer. The underlying writer itself is not closed.
+     */
+    @Override
+    void close() throws IOException;
+}
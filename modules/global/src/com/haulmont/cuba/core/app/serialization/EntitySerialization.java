@@ -18,10 +18,15 @@
 package com.haulmont.cuba.core.app.serialization;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.haulmont.chile.core.datatypes.Datatype;
 import com.haulmont.chile.core.datatypes.Datatypes;
 import com.haulmont.chile.core.model.MetaClass;
@@ -43,11 +48,17 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.haulmont.cuba.core.entity.BaseEntityInternalAccess.*;
@@ -72,6 +83,45 @@ public class EntitySerialization implements EntitySerializationAPI {
     protected ThreadLocal<EntitySerializationContext> context =
             ThreadLocal.withInitial(EntitySerializationContext::new);
 
+    /**
+     * Gson instances are thread-safe and the type adapters keep no state except the thread-local context, so they
+     * are reused for the same view and options.
+     */
+    protected Cache<GsonKey, Gson> serializationGsonCache = CacheBuilder.newBuilder().maximumSize(200).build();
+
+    protected Cache<GsonKey, Gson> deserializationGsonCache = CacheBuilder.newBuilder().maximumSize(200).build();
+
+    protected Map<MetaClass, List<MetaProperty>> serializablePropertiesCache = new ConcurrentHashMap<>();
+
+    protected Map<Class, List<Field>> clearableFieldsCache = new ConcurrentHashMap<>();
+
+    /**
+     * Key of the cached Gson instances. Views are compared by identity because they are mutable.
+     */
+    protected static class GsonKey {
+        protected final Object target;
+        protected final Set<EntitySerializationOption> options;
+
+        protected GsonKey(@Nullable Object target, EntitySerializationOption... options) {
+            this.target = target;
+            this.options = options == null || options.length == 0 ?
+                    Collections.emptySet() : EnumSet.copyOf(Arrays.asList(options));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            GsonKey that = (GsonKey) o;
+            return target == that.target && options.equals(that.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(target) + options.hashCode();
+        }
+    }
+
     /**
      * Class is used for storing a collection of entities already processed during the serialization.
      */
@@ -93,7 +143,7 @@ public class EntitySerialization implements EntitySerializationAPI {
                          @Nullable View view,
                          EntitySerializationOption... options) {
         context.remove();
-        return createGsonForSerialization(view, options).toJson(entity);
+        return getGsonForSerialization(view, options).toJson(entity);
     }
 
     @Override
@@ -106,13 +156,13 @@ public class EntitySerialization implements EntitySerializationAPI {
                          @Nullable View view,
                          EntitySerializationOption... options) {
         context.remove();
-        return createGsonForSerialization(view, options).toJson(entities);
+        return getGsonForSerialization(view, options).toJson(entities);
     }
 
     @Override
     public String objectToJson(Object object, EntitySerializationOption... options) {
         context.remove();
-        return createGsonForSerialization(null, options).toJson(object);
+        return getGsonForSerialization(null, options).toJson(object);
     }
 
     @Override
@@ -120,7 +170,7 @@ public class EntitySerialization implements EntitySerializationAPI {
                                  @Nullable MetaClass metaClass,
                                  EntitySerializationOption... options) {
         context.remove();
-        return createGsonForDeserialization(metaClass, options).fromJson(json, Entity.class);
+        return getGsonForDeserialization(metaClass, options).fromJson(json, Entity.class);
     }
 
     @Override
@@ -130,13 +180,155 @@ public class EntitySerialization implements EntitySerializationAPI {
         context.remove();
         Type collectionType = new TypeToken<Collection<Entity>>() {
         }.getType();
-        return createGsonForDeserialization(metaClass, options).fromJson(json, collectionType);
+        return getGsonForDeserialization(metaClass, options).fromJson(json, collectionType);
     }
 
     @Override
     public <T> T objectFromJson(String json, Class<T> clazz, EntitySerializationOption... options) {
         context.remove();
-        return createGsonForDeserialization(null, options).fromJson(json, clazz);
+        return getGsonForDeserialization(null, options).fromJson(json, clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Entity> void entitiesFromJson(Reader reader,
+                                                    @Nullable MetaClass metaClass,
+                                                    Consumer<T> consumer,
+                                                    EntitySerializationOption... options) {
+        Gson gson = getGsonForDeserialization(metaClass, options);
+        try {
+            JsonReader jsonReader = new JsonReader(reader);
+            if (jsonReader.peek() == JsonToken.END_DOCUMENT) {
+                return;
+            }
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                // each element is read with a new context, so processed entities are not accumulated for the whole stream
+                context.remove();
+                T entity = gson.fromJson(jsonReader, Entity.class);
+                consumer.accept(entity);
+            }
+            jsonReader.endArray();
+        } catch (IOException | JsonParseException e) {
+            throw new EntitySerializationException("Unable to read JSON array of entities", e);
+        } finally {
+            context.remove();
+        }
+    }
+
+    @Override
+    public EntityJsonArrayWriter createJsonArrayWriter(Writer writer,
+                                                       @Nullable View view,
+                                                       EntitySerializationOption... options) {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        if (ArrayUtils.contains(options, EntitySerializationOption.PRETTY_PRINT)) {
+            jsonWriter.setIndent("  ");
+        }
+        return new GsonEntityJsonArrayWriter(jsonWriter, getGsonForSerialization(view, options));
+    }
+
+    @Override
+    public void writeJson(Collection<? extends Entity> entities,
+                          @Nullable View view,
+                          Writer writer,
+                          EntitySerializationOption... options) {
+        try {
+            EntityJsonArrayWriter jsonArrayWriter = createJsonArrayWriter(writer, view, options);
+            for (Entity entity : entities) {
+                jsonArrayWriter.write(entity);
+            }
+            jsonArrayWriter.close();
+        } catch (IOException e) {
+            throw new EntitySerializationException("Unable to write JSON array of entities", e);
+        }
+    }
+
+    protected class GsonEntityJsonArrayWriter implements EntityJsonArrayWriter {
+
+        protected final Gson gson;
+        protected final JsonWriter jsonWriter;
+        protected boolean started;
+
+        protected GsonEntityJsonArrayWriter(JsonWriter jsonWriter, Gson gson) {
+            this.gson = gson;
+            this.jsonWriter = jsonWriter;
+        }
+
+        @Override
+        public void write(Entity entity) throws IOException {
+            beginArray();
+            // each element is written with a new context, so processed entities are not accumulated for the whole stream
+            context.remove();
+            try {
+                gson.toJson(entity, Entity.class, jsonWriter);
+            } catch (JsonIOException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+            } finally {
+                context.remove();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            beginArray();
+            jsonWriter.endArray();
+            jsonWriter.flush();
+        }
+
+        protected void beginArray() throws IOException {
+            if (!started) {
+                jsonWriter.beginArray();
+                started = true;
+            }
+        }
+    }
+
+    protected Gson getGsonForSerialization(@Nullable View view, EntitySerializationOption... options) {
+        try {
+            return serializationGsonCache.get(new GsonKey(view, options),
+                    () -> createGsonForSerialization(view, options));
+        } catch (ExecutionException e) {
+            throw new EntitySerializationException(e.getCause());
+        }
+    }
+
+    protected Gson getGsonForDeserialization(@Nullable MetaClass metaClass, EntitySerializationOption... options) {
+        try {
+            return deserializationGsonCache.get(new GsonKey(metaClass, options),
+                    () -> createGsonForDeserialization(metaClass, options));
+        } catch (ExecutionException e) {
+            throw new EntitySerializationException(e.getCause());
+        }
+    }
+
+    /**
+     * @return properties of the meta class that may be written to JSON, except the identifier
+     */
+    protected List<MetaProperty> getSerializableProperties(MetaClass metaClass) {
+        return serializablePropertiesCache.computeIfAbsent(metaClass, mc ->
+                mc.getProperties().stream()
+                        .filter(metaProperty -> !"id".equals(metaProperty.getName()))
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return accessible fields of the entity class that must be cleared before an entity is read from JSON
+     */
+    protected List<Field> getClearableFields(Class entityClass, MetaClass metaClass) {
+        return clearableFieldsCache.computeIfAbsent(entityClass, clazz -> {
+            List<Field> fields = new ArrayList<>();
+            boolean hasUuid = HasUuid.class.isAssignableFrom(clazz);
+            for (MetaProperty metaProperty : metaClass.getProperties()) {
+                if ("id".equals(metaProperty.getName()) || (hasUuid && "uuid".equals(metaProperty.getName())))
+                    continue;
+                Field field = getField(clazz, metaProperty.getName());
+                if (field != null) {
+                    makeFieldAccessible(field);
+                    fields.add(field);
+                }
+            }
+            return Collections.unmodifiableList(fields);
+        });
     }
 
     protected Gson createGsonForSerialization(@Nullable View view, EntitySerializationOption... options) {
@@ -269,8 +461,9 @@ public class EntitySerialization implements EntitySerializationAPI {
         }
 
         protected void writeFields(Entity entity, JsonObject jsonObject, @Nullable View view, Set<Entity> cyclicReferences) {
-            Collection<MetaProperty> properties = new ArrayList<>(entity.getMetaClass().getProperties());
+            Collection<MetaProperty> properties = getSerializableProperties(entity.getMetaClass());
             if (entity instanceof BaseGenericIdEntity && ((BaseGenericIdEntity) entity).getDynamicAttributes() != null) {
+                properties = new ArrayList<>(properties);
                 List<MetaProperty> dynamicProperties = dynamicAttributes.getAttributesForMetaClass(entity.getMetaClass()).stream()
                         .map(categoryAttribute -> DynamicAttributesUtils.getMetaPropertyPath(entity.getMetaClass(), categoryAttribute).getMetaProperty())
                         .collect(Collectors.toList());
@@ -596,17 +789,11 @@ public class EntitySerialization implements EntitySerializationAPI {
         }
 
         protected void clearFields(Entity entity) {
-            for (MetaProperty metaProperty : entity.getMetaClass().getProperties()) {
-                if ("id".equals(metaProperty.getName()) ||
-                        (entity instanceof HasUuid && "uuid".equals(metaProperty.getName()))) continue;
-                Field field = getField(entity.getClass(), metaProperty.getName());
-                if (field != null) {
-                    makeFieldAccessible(field);
-                    try {
-                        field.set(entity, null);
-                    } catch (IllegalAccessException e) {
-                        throw new EntitySerializationException("Can't get access to field " + field.getName() + " of class " + entity.getClass().getName(), e);
-                    }
+            for (Field field : getClearableFields(entity.getClass(), entity.getMetaClass())) {
+                try {
+                    field.set(entity, null);
+                } catch (IllegalAccessException e) {
+                    throw new EntitySerializationException("Can't get access to field " + field.getName() + " of class " + entity.getClass().getName(), e);
                 }
             }
         }
@@ -22,7 +22,10 @@ import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.View;
 
 import javax.annotation.Nullable;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * Class that is used for serialization and deserialization of entities to JSON.
@@ -124,6 +127,58 @@ public interface EntitySerializationAPI {
                                                                 @Nullable MetaClass metaClass,
                                                                 EntitySerializationOption... options);
 
+    /**
+     * Deserializes a JSON array of objects read from the {@code reader}, passing entities to the {@code consumer} one by
+     * one as soon as they are parsed. Unlike {@link #entitiesCollectionFromJson(String, MetaClass,
+     * EntitySerializationOption...)}, the whole array is never kept in memory, so the method is suitable for large
+     * inputs.
+     * <p>
+     * Each array element is read with its own context, so an element cannot refer to an entity that was fully
+     * serialized in a previous element with the {@link EntitySerializationOption#COMPACT_REPEATED_ENTITIES} option.
+     * Arrays written by {@link #createJsonArrayWriter(Writer, View, EntitySerializationOption...)} satisfy this.
+     * <p>
+     * The reader is not closed by this method.
+     *
+     * @param reader    a reader positioned at the beginning of a JSON array of objects
+     * @param metaClass a metaClass of the entities that will be created
+     * @param consumer  receives deserialized entities in the order they appear in the array
+     * @param options   options specifying how a JSON object graph was serialized
+     */
+    <T extends Entity> void entitiesFromJson(Reader reader,
+                                             @Nullable MetaClass metaClass,
+                                             Consumer<T> consumer,
+                                             EntitySerializationOption... options);
+
+    /**
+     * Creates a writer that serializes entities to the JSON array incrementally. Entities are serialized like in the
+     * {@link #toJson(Collection, View, EntitySerializationOption...)} method, but are written to the {@code writer}
+     * as soon as they are passed to {@link EntityJsonArrayWriter#write(Entity)}. Repeated entities are compacted only
+     * inside the object graph of each array element.
+     *
+     * @param writer  a writer that receives JSON
+     * @param view    a view that defines which entity properties should be added to the result JSON objects
+     * @param options options specifying how entities should be serialized
+     * @return the array writer; it must be closed to complete the JSON array
+     */
+    EntityJsonArrayWriter createJsonArrayWriter(Writer writer,
+                                                @Nullable View view,
+                                                EntitySerializationOption... options);
+
+    /**
+     * Serializes a collection of entities to the JSON array written to the {@code writer}. Works like the {@link
+     * #toJson(Collection, View, EntitySerializationOption...)} method, but doesn't build the whole result in memory.
+     * The writer is flushed but not closed.
+     *
+     * @param entities a collection of entities to be serialized
+     * @param view     a view that defines which entity properties should be added to the result JSON objects
+     * @param writer   a writer that receives JSON
+     * @param options  options specifying how entities should be serialized
+     */
+    void writeJson(Collection<? extends Entity> entities,
+                   @Nullable View view,
+                   Writer writer,
+                   EntitySerializationOption... options);
+
     /**
      * Deserializes an object of any class from JSON. Date fields are deserialized according to the {@link
      * com.haulmont.chile.core.datatypes.impl.DateTimeDatatype} format, entities object and fields of Entity type are
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.haulmont.bali.util.Preconditions;
+import com.haulmont.cuba.core.entity.Entity;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Paging loop of {@link DataManager#loadBatches(LoadContext, int, Consumer)} shared by its implementations
+ * and by data stores.
+ */
+public final class BatchLoader {
+
+    private BatchLoader() {
+    }
+
+    /**
+     * Loads all entity instances returned by the query in batches and passes each batch to the consumer.
+     * <p>If {@code keyset} is true, batches are loaded using the {@link KeysetCursor} of the query, or in the order
+     * of the primary key if the query has no cursor. Otherwise batches are loaded using offset paging in the order
+     * of the query.</p>
+     *
+     * @param context   defines the query, is not modified
+     * @param batchSize maximum number of instances in a batch
+     * @param keyset    whether the entity has a simple primary key, so keyset pagination can be used
+     * @param loader    loads a batch of instances for the context with paging parameters set
+     * @param consumer  receives each loaded batch
+     */
+    public static <E extends Entity> void loadBatches(LoadContext<E> context, int batchSize, boolean keyset,
+                                                      Function<LoadContext<E>, List<E>> loader,
+                                                      Consumer<List<E>> consumer) {
+        Preconditions.checkNotNullArgument(context.getQuery(), "query is null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+
+        @SuppressWarnings("unchecked")
+        LoadContext<E> batchContext = (LoadContext<E>) context.copy();
+        LoadContext.Query query = batchContext.getQuery();
+        // the loader can transform the query string, so it is restored before each batch
+        String queryString = query.getQueryString();
+        query.setFirstResult(0);
+        query.setMaxResults(batchSize);
+
+        if (keyset) {
+            KeysetCursor cursor = query.getCursor() != null ? query.getCursor() : KeysetCursor.first(null, false);
+            while (true) {
+                query.setQueryString(queryString);
+                query.setCursor(cursor);
+                List<E> batch = loader.apply(batchContext);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                boolean lastBatch = batch.size() < batchSize;
+                cursor = cursor.next(batch.get(batch.size() - 1));
+
+                consumer.accept(batch);
+
+                if (lastBatch) {
+                    break;
+                }
+            }
+        } else {
+            query.setCursor(null);
+            for (int first = 0; ; first += batchSize) {
+                query.setQueryString(queryString);
+                query.setFirstResult(first);
+                List<E> batch = loader.apply(batchContext);
+                if (!batch.isEmpty()) {
+                    consumer.accept(batch);
+                }
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -37,7 +37,9 @@ public class CommitContext implements Serializable {
     protected Map<Object, View> views = new HashMap<>();
 
     protected boolean softDeletion = true;
+    protected Boolean removeSoftDeletion;
     protected boolean discardCommitted;
+    protected boolean bulkMode;
     protected Map<String, Object> dbHints = new HashMap<>();
 
     /**
@@ -175,6 +177,24 @@ public class CommitContext implements Serializable {
         this.softDeletion = softDeletion;
     }
 
+    /**
+     * @return whether to use soft deletion for removed instances, or null if {@link #isSoftDeletion()} applies to them
+     */
+    @Nullable
+    public Boolean getRemoveSoftDeletion() {
+        return removeSoftDeletion;
+    }
+
+    /**
+     * Overrides {@link #setSoftDeletion(boolean)} for removed instances only. For example, imported instances are
+     * merged without soft deletion, while instances removed in the same commit are soft deleted.
+     *
+     * @param removeSoftDeletion whether to use soft deletion for removed instances, null to use the commit setting
+     */
+    public void setRemoveSoftDeletion(@Nullable Boolean removeSoftDeletion) {
+        this.removeSoftDeletion = removeSoftDeletion;
+    }
+
     /**
      * @return true if calling code does not need committed instances, which allows for performance optimization
      */
@@ -189,6 +209,22 @@ public class CommitContext implements Serializable {
         this.discardCommitted = discardCommitted;
     }
 
+    /**
+     * @return true if the instances are committed in bulk mode
+     */
+    public boolean isBulkMode() {
+        return bulkMode;
+    }
+
+    /**
+     * Set to true when committing a large number of instances, e.g. on data import. In this mode the existing instances
+     * are loaded from the database by a few queries per entity class and view before they are merged or removed,
+     * instead of a query per instance.
+     */
+    public void setBulkMode(boolean bulkMode) {
+        this.bulkMode = bulkMode;
+    }
+
     private View getViewFromRepository(Entity entity, String viewName) {
         Metadata metadata = AppBeans.get(Metadata.NAME);
         return metadata.getViewRepository().getView(metadata.getClass(entity.getClass()), viewName);
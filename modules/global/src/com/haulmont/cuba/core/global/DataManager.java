@@ -24,6 +24,7 @@ import com.haulmont.cuba.core.entity.KeyValueEntity;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Central interface to provide CRUD functionality. Can be used on both middle and client tiers.
@@ -59,6 +60,22 @@ public interface DataManager {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads all entity instances returned by the query in batches of fixed size and passes each batch to the consumer.
+     * <p>Each batch is loaded in a separate transaction and contains detached instances with the same security
+     * restrictions and dynamic attributes as {@link #loadList(LoadContext)} would return, so memory consumption
+     * does not depend on the total number of instances.</p>
+     * <p>Paging parameters and ordering of the query are ignored: instances are returned ordered by the primary key.</p>
+     * <p>The default implementation loads batches with {@link #loadList(LoadContext)} using offset paging in the
+     * order of the query, it is overridden by the platform implementations.</p>
+     * @param context   {@link LoadContext} object, defining what and how to load
+     * @param batchSize maximum number of instances in a batch
+     * @param consumer  receives each loaded batch
+     */
+    default <E extends Entity> void loadBatches(LoadContext<E> context, int batchSize, Consumer<List<E>> consumer) {
+        BatchLoader.loadBatches(context, batchSize, false, this::loadList, consumer);
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @param context   defines the query
@@ -147,6 +147,14 @@ public interface GlobalConfig extends Config {
     @DefaultBoolean(true)
     boolean getUseAstBasedJpqlTransformer();
 
+    /**
+     * @return the maximum number of parsed JPQL query trees kept in {@link com.haulmont.cuba.core.sys.jpql.QueryTreeCache}.
+     * Zero disables caching, so each transformer parses its query again.
+     */
+    @Property("cuba.jpqlQueryTreeCacheMaxSize")
+    @DefaultInt(1000)
+    int getJpqlQueryTreeCacheMaxSize();
+
     /**
      * @return Overridden AppFolderEditWindow class name
      */
@@ -176,11 +184,20 @@ public interface GlobalConfig extends Config {
     /**
      * @return the maximum number of idle instances of compiled groovy expressions in {@code Scripting.evaluateGroovy()}
      * @see GenericKeyedObjectPoolConfig#setMaxIdlePerKey(int)
+     * @deprecated script instances are not pooled anymore, see {@link #getGroovyEvaluationCacheMaxSize()}
      */
+    @Deprecated
     @Property("cuba.groovyEvaluationPoolMaxIdle")
     @DefaultInt(8)
     int getGroovyEvaluationPoolMaxIdle();
 
+    /**
+     * @return the maximum number of classes of compiled groovy expressions cached by {@code Scripting.evaluateGroovy()}
+     */
+    @Property("cuba.groovyEvaluationCacheMaxSize")
+    @DefaultInt(1000)
+    int getGroovyEvaluationCacheMaxSize();
+
     @Property("cuba.numberIdCacheSize")
     @DefaultInt(100)
     int getNumberIdCacheSize();
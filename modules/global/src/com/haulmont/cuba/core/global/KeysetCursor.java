@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.core.global;
+
+import com.haulmont.bali.util.Preconditions;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.IdProxy;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Position of a page in keyset (seek) pagination mode.
+ * <p>When set to {@link LoadContext.Query#setCursor(KeysetCursor)}, the query is ordered by the sort property (if any)
+ * and then by the primary key, and only the instances following the cursor position are loaded. Unlike
+ * {@link LoadContext.Query#setFirstResult(int)}, the database does not have to skip the preceding rows, so the cost
+ * of loading a page does not depend on its number.
+ * <p>Typical usage:
+ * <pre>
+    LoadContext.Query query = LoadContext.createQuery("select u from sec$User u")
+            .setMaxResults(100)
+            .setCursor(KeysetCursor.first("login", false));
+    List&lt;User&gt; page = dataManager.loadList(LoadContext.create(User.class).setQuery(query));
+    while (page.size() == 100) {
+        query.setCursor(query.getCursor().next(page.get(page.size() - 1)));
+        page = dataManager.loadList(LoadContext.create(User.class).setQuery(query));
+    }
+ * </pre>
+ * <p>The sort property must be a non-null local attribute, and the entity must have a simple primary key.
+ */
+public class KeysetCursor implements Serializable {
+
+    private static final long serialVersionUID = -4287712542316349170L;
+
+    private final String sortProperty;
+    private final boolean desc;
+    private final Object sortValue;
+    private final Object id;
+
+    public KeysetCursor(@Nullable String sortProperty, boolean desc, @Nullable Object sortValue, @Nullable Object id) {
+        this.sortProperty = sortProperty;
+        this.desc = desc;
+        this.sortValue = sortValue;
+        this.id = id instanceof IdProxy ? ((IdProxy) id).getNN() : id;
+    }
+
+    /**
+     * Creates a cursor pointing to the first page.
+     * @param sortProperty  property to sort by, or null to sort by primary key only
+     * @param desc          descending sort order
+     */
+    public static KeysetCursor first(@Nullable String sortProperty, boolean desc) {
+        return new KeysetCursor(sortProperty, desc, null, null);
+    }
+
+    /**
+     * Creates a cursor pointing to the instances following the given one.
+     * @param entity        last instance of the previous page
+     * @param sortProperty  property to sort by, or null to sort by primary key only
+     * @param desc          descending sort order
+     */
+    public static KeysetCursor after(Entity entity, @Nullable String sortProperty, boolean desc) {
+        Preconditions.checkNotNullArgument(entity, "entity is null");
+        Object sortValue = null;
+        if (sortProperty != null) {
+            sortValue = entity.getValueEx(sortProperty);
+            if (sortValue == null) {
+                throw new IllegalArgumentException(
+                        String.format("Value of sort property '%s' is null in %s", sortProperty, entity));
+            }
+        }
+        return new KeysetCursor(sortProperty, desc, sortValue, entity.getId());
+    }
+
+    /**
+     * Creates a cursor with the same sort settings pointing to the instances following the given one.
+     * @param entity last instance of the current page
+     */
+    public KeysetCursor next(Entity entity) {
+        return after(entity, sortProperty, desc);
+    }
+
+    /**
+     * @return property to sort by, or null if the instances are sorted by primary key only
+     */
+    @Nullable
+    public String getSortProperty() {
+        return sortProperty;
+    }
+
+    /**
+     * @return true if the sort order is descending
+     */
+    public boolean isDesc() {
+        return desc;
+    }
+
+    /**
+     * @return value of the sort property of the last instance of the previous page
+     */
+    @Nullable
+    public Object getSortValue() {
+        return sortValue;
+    }
+
+    /**
+     * @return primary key of the last instance of the previous page, or null for the first page
+     */
+    @Nullable
+    public Object getId() {
+        return id;
+    }
+
+    /**
+     * @return true if the cursor points to the first page
+     */
+    public boolean isFirst() {
+        return id == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        KeysetCursor that = (KeysetCursor) o;
+
+        return desc == that.desc
+                && Objects.equals(sortProperty, that.sortProperty)
+                && Objects.equals(sortValue, that.sortValue)
+                && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortProperty, desc, sortValue, id);
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{" +
+                "sortProperty='" + sortProperty + '\'' +
+                ", desc=" + desc +
+                ", sortValue=" + sortValue +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -20,6 +20,7 @@ import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.Entity;
 
+import javax.annotation.Nullable;
 import javax.persistence.TemporalType;
 import java.io.Serializable;
 import java.util.*;
@@ -270,6 +271,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             ctx.getDbHints().putAll(dbHints);
         }
         ctx.loadDynamicAttributes = loadDynamicAttributes;
+        ctx.loadPartialEntities = loadPartialEntities;
         return ctx;
     }
 
@@ -293,6 +295,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
         private int firstResult;
         private int maxResults;
         private boolean cacheable;
+        private KeysetCursor cursor;
 
         /**
          * @param queryString JPQL query string. Only named parameters are supported.
@@ -400,6 +403,25 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             return cacheable;
         }
 
+        /**
+         * Switches the query to keyset pagination mode. The first result setting is ignored in this mode.
+         * @param cursor position of the page to load, or null to use offset pagination
+         * @return this query instance for chaining
+         * @see KeysetCursor
+         */
+        public Query setCursor(@Nullable KeysetCursor cursor) {
+            this.cursor = cursor;
+            return this;
+        }
+
+        /**
+         * @return position of the page to load in keyset pagination mode, or null if offset pagination is used
+         */
+        @Nullable
+        public KeysetCursor getCursor() {
+            return cursor;
+        }
+
         /**
          * Creates a copy of this Query instance.
          */
@@ -409,6 +431,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             query.firstResult = firstResult;
             query.maxResults = maxResults;
             query.cacheable = cacheable;
+            query.cursor = cursor;
             return query;
         }
 
@@ -422,6 +445,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             if (firstResult != query.firstResult) return false;
             if (maxResults != query.maxResults) return false;
             if (!parameters.equals(query.parameters)) return false;
+            if (!Objects.equals(cursor, query.cursor)) return false;
             return queryString.equals(query.queryString);
         }
 
@@ -431,6 +455,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             result = 31 * result + queryString.hashCode();
             result = 31 * result + firstResult;
             result = 31 * result + maxResults;
+            result = 31 * result + (cursor != null ? cursor.hashCode() : 0);
             return result;
         }
 
@@ -440,6 +465,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
                     "queryString='" + queryString + '\'' +
                     ", firstResult=" + firstResult +
                     ", maxResults=" + maxResults +
+                    (cursor != null ? ", cursor=" + cursor : "") +
                     '}';
         }
     }
@@ -22,7 +22,9 @@ import com.haulmont.cuba.core.entity.BaseUuidEntity;
 import com.haulmont.cuba.core.entity.annotation.SystemLevel;
 import com.haulmont.cuba.security.entity.User;
 
+import javax.annotation.Nullable;
 import java.util.Date;
+import java.util.UUID;
 
 /**
  * Describes a pessimistic lock of an object.
@@ -46,6 +48,17 @@ public class LockInfo extends BaseUuidEntity {
         this.user = user;
     }
 
+    /**
+     * INTERNAL. Used to restore an instance received from another cluster node.
+     */
+    public LockInfo(UUID id, @Nullable User user, String entityName, String entityId, Date since) {
+        this.id = id;
+        this.entityName = entityName;
+        this.entityId = entityId;
+        this.since = since;
+        this.user = user;
+    }
+
     /**
      * @return locked object id
      */
@@ -71,7 +84,9 @@ public class LockInfo extends BaseUuidEntity {
     }
 
     /**
-     * @return a user which holds the lock
+     * @return a user which holds the lock. If the lock has been received from another cluster node, the instance
+     * contains only identifier, login and name of the user, unless cluster message codecs are disabled by
+     * {@code cuba.cluster.messageCodecsEnabled}.
      */
     @MetaProperty
     public User getUser() {
@@ -67,16 +67,27 @@ public class QueryParserAstBased implements QueryParser {
         }
     }
 
+    protected QueryTreeCache queryTreeCache;
+
     public QueryParserAstBased(DomainModel model, String query) {
         this.model = model;
         this.query = query;
     }
 
+    public QueryParserAstBased(DomainModel model, String query, QueryTreeCache queryTreeCache) {
+        this(model, query);
+        this.queryTreeCache = queryTreeCache;
+    }
+
     private QueryTreeAnalyzer getQueryAnalyzer() {
         if (queryTreeAnalyzer == null) {
             queryTreeAnalyzer = new QueryTreeAnalyzer();
             try {
-                queryTreeAnalyzer.prepare(model, query);
+                if (queryTreeCache != null) {
+                    queryTreeAnalyzer.prepare(model, queryTreeCache.getTree(query));
+                } else {
+                    queryTreeAnalyzer.prepare(model, query);
+                }
             } catch (RecognitionException e) {
                 throw new RuntimeException("Internal error while init queryTreeAnalyzer", e);
             } catch (JPA2RecognitionException e) {
@@ -18,6 +18,7 @@ package com.haulmont.cuba.core.global;
 
 import com.haulmont.cuba.core.sys.jpql.DomainModel;
 import com.haulmont.cuba.core.sys.jpql.DomainModelBuilder;
+import com.haulmont.cuba.core.sys.jpql.QueryTreeCache;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
@@ -34,6 +35,9 @@ public class QueryTransformerFactory {
 
     protected volatile DomainModel domainModel;
 
+    @Inject
+    protected QueryTreeCache queryTreeCache;
+
     @Inject
     public void setConfiguration(Configuration configuration) {
         useAst = configuration.getConfig(GlobalConfig.class).getUseAstBasedJpqlTransformer();
@@ -49,11 +53,7 @@ public class QueryTransformerFactory {
 
     public QueryTransformer transformer(String query) {
         if (useAst) {
-            if (domainModel == null) {
-                DomainModelBuilder builder = AppBeans.get(DomainModelBuilder.NAME);
-                domainModel = builder.produce();
-            }
-            return AppBeans.getPrototype(QueryTransformer.NAME, domainModel, query);
+            return AppBeans.getPrototype(QueryTransformer.NAME, getDomainModel(), query, queryTreeCache);
         } else {
             return new QueryTransformerRegex(query);
         }
@@ -61,13 +61,20 @@ public class QueryTransformerFactory {
 
     public QueryParser parser(String query) {
         if (useAst) {
-            if (domainModel == null) {
-                DomainModelBuilder builder = AppBeans.get(DomainModelBuilder.NAME);
-                domainModel = builder.produce();
-            }
-            return AppBeans.getPrototype(QueryParser.NAME, domainModel, query);
+            return AppBeans.getPrototype(QueryParser.NAME, getDomainModel(), query, queryTreeCache);
         } else {
             return new QueryParserRegex(query);
         }
     }
+
+    /**
+     * @return domain model used by AST-based transformers and parsers, built on first use
+     */
+    public DomainModel getDomainModel() {
+        if (domainModel == null) {
+            DomainModelBuilder builder = AppBeans.get(DomainModelBuilder.NAME);
+            domainModel = builder.produce();
+        }
+        return domainModel;
+    }
 }
@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.global;
 
 import groovy.lang.Binding;
+import groovy.lang.Script;
 
 import javax.annotation.Nullable;
 import java.util.Map;
@@ -35,6 +36,8 @@ public interface Scripting {
 
     /**
      * Evaluates Groovy expression.
+     * <p>Compiled expressions are cached by their text, so the varying parts of an expression should be passed
+     * in the binding instead of being concatenated into the text.</p>
      * @param text      expression text
      * @param binding   Groovy binding
      * @param policies  policies for script execution {@link ScriptExecutionPolicy}
@@ -61,6 +64,16 @@ public interface Scripting {
      */
     <T> T evaluateGroovy(String text, Map<String, Object> context);
 
+    /**
+     * Compiles Groovy expression to a script class. Instances of the class can be run repeatedly with different
+     * bindings, which is faster than evaluating the expression text each time.
+     * <p>The class is taken from the cache of compiled expressions, but it can be evicted from there,
+     * so the caller should keep it for reuse.</p>
+     * @param text      expression text
+     * @return          compiled script class
+     */
+    Class<? extends Script> compileGroovy(String text);
+
     /**
      * Runs Groovy script.
      * The script must be located as file under <em>conf</em> directory, or as a classpath resource.
@@ -17,6 +17,11 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.haulmont.cuba.core.global.Configuration;
 import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.ScriptExecutionPolicy;
@@ -24,37 +29,36 @@ import com.haulmont.cuba.core.global.Scripting;
 import com.haulmont.cuba.core.sys.javacl.JavaClassLoader;
 import groovy.lang.Binding;
 import groovy.lang.GroovyClassLoader;
-import groovy.lang.GroovyShell;
+import groovy.lang.GroovyCodeSource;
 import groovy.lang.Script;
 import groovy.util.GroovyScriptEngine;
 import groovy.util.ResourceConnector;
 import groovy.util.ResourceException;
 import groovy.util.ScriptException;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
-import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
-import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public abstract class AbstractScripting implements Scripting {
 
-    private final Logger log = LoggerFactory.getLogger(AbstractScripting.class);
-
     private static final Pattern IMPORT_PATTERN = Pattern.compile("\\bimport\\b\\s+");
     private static final Pattern PACKAGE_PATTERN = Pattern.compile("\\bpackage\\b\\s+.+");
     protected JavaClassLoader javaClassLoader;
@@ -65,7 +69,16 @@ public abstract class AbstractScripting implements Scripting {
 
     protected volatile GroovyScriptEngine gse;
     protected volatile CubaGroovyClassLoader gcl;
-    protected GenericKeyedObjectPool<String, Script> pool;
+    protected Cache<String, CompiledExpression> expressionCache;
+
+    protected final AtomicLong expressionCounter = new AtomicLong();
+
+    protected final LongAdder compilationCount = new LongAdder();
+    protected final LongAdder compilationTime = new LongAdder();
+    protected final LongAdder evaluationCount = new LongAdder();
+    protected final LongAdder evaluationTime = new LongAdder();
+    protected final LongAdder cachedBytecodeSize = new LongAdder();
+    protected volatile CacheStats initialCacheStats = new CacheStats(0, 0, 0, 0, 0, 0);
 
     protected GlobalConfig globalConfig;
 
@@ -120,30 +133,23 @@ public abstract class AbstractScripting implements Scripting {
         return gcl;
     }
 
-    private synchronized GenericKeyedObjectPool<String, Script> getPool() {
-        if (pool == null) {
-            GenericKeyedObjectPoolConfig poolConfig = new GenericKeyedObjectPoolConfig();
-            poolConfig.setMaxTotalPerKey(-1);
-            poolConfig.setMaxIdlePerKey(globalConfig.getGroovyEvaluationPoolMaxIdle());
-            pool = new GenericKeyedObjectPool<>(
-                    new BaseKeyedPooledObjectFactory<String, Script>() {
-                        @Override
-                        public Script create(String key) throws Exception {
-                            return createScript(key);
-                        }
-
-                        @Override
-                        public PooledObject<Script> wrap(Script value) {
-                            return new DefaultPooledObject<>(value);
-                        }
-                    },
-                    poolConfig
-            );
+    protected synchronized Cache<String, CompiledExpression> getExpressionCache() {
+        if (expressionCache == null) {
+            expressionCache = CacheBuilder.newBuilder()
+                    .maximumSize(globalConfig.getGroovyEvaluationCacheMaxSize())
+                    .recordStats()
+                    .removalListener((RemovalListener<String, CompiledExpression>) notification ->
+                            cachedBytecodeSize.add(-notification.getValue().getBytecodeSize()))
+                    .build();
         }
-        return pool;
+        return expressionCache;
     }
 
     protected Script createScript(String text) {
+        return compileExpression(text).newScript(new Binding());
+    }
+
+    protected String addImports(String text) {
         StringBuilder sb = new StringBuilder();
         for (String importItem : imports) {
             sb.append("import ").append(importItem).append("\n");
@@ -165,14 +171,50 @@ public abstract class AbstractScripting implements Scripting {
                 result = sb.append(text).toString();
             }
         }
+        return result;
+    }
+
+    /**
+     * Compiles the expression in a separate class loader, so the class can be unloaded when it is evicted
+     * from the cache.
+     */
+    protected CompiledExpression compileExpression(String text) {
+        long start = System.nanoTime();
 
         CompilerConfiguration cc = new CompilerConfiguration();
         cc.setClasspath(groovyClassPath);
         cc.setRecompileGroovySource(true);
-        GroovyShell shell = new GroovyShell(javaClassLoader, new Binding(), cc);
-        //noinspection UnnecessaryLocalVariable
-        Script script = shell.parse(result);
-        return script;
+        ExpressionClassLoader classLoader = new ExpressionClassLoader(cc);
+        GroovyCodeSource codeSource = new GroovyCodeSource(addImports(text),
+                "Script" + expressionCounter.incrementAndGet() + ".groovy", "/groovy/shell");
+        Class<?> scriptClass = classLoader.parseClass(codeSource, false);
+
+        compilationCount.increment();
+        compilationTime.add(System.nanoTime() - start);
+        return new CompiledExpression(scriptClass, classLoader.getBytecodeSize());
+    }
+
+    protected CompiledExpression getCompiledExpression(String text) {
+        String key = normalizeExpression(text);
+        try {
+            return getExpressionCache().get(key, () -> {
+                CompiledExpression compiledExpression = compileExpression(key);
+                cachedBytecodeSize.add(compiledExpression.getBytecodeSize());
+                return compiledExpression;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Error compiling Groovy expression", e.getCause());
+        }
+    }
+
+    /**
+     * Leading and trailing whitespace does not change an expression, so it is not a part of the cache key.
+     */
+    protected String normalizeExpression(String text) {
+        return text.trim();
     }
 
     protected Binding createBinding(Map<String, Object> map) {
@@ -188,33 +230,24 @@ public abstract class AbstractScripting implements Scripting {
     public <T> T evaluateGroovy(String text, Binding binding, ScriptExecutionPolicy... policies) {
         boolean useCompilationCache = policies == null ||
                 !Arrays.asList(policies).contains(ScriptExecutionPolicy.DO_NOT_USE_COMPILE_CACHE);
-        Script script = null;
         Object result;
         try {
-            script = useCompilationCache ? getPool().borrowObject(text) : createScript(text);
-            script.setBinding(binding);
-            result = script.run();
-        } catch (Exception e) {
-            if (script != null && useCompilationCache) {
-                try {
-                    getPool().invalidateObject(text, script);
-                } catch (Exception e1) {
-                    log.warn("Error invalidating object in the pool", e1);
-                }
+            CompiledExpression compiledExpression = useCompilationCache ?
+                    getCompiledExpression(text) : compileExpression(text);
+            Script script = compiledExpression.newScript(binding);
+            long start = System.nanoTime();
+            try {
+                result = script.run();
+            } finally {
+                evaluationCount.increment();
+                evaluationTime.add(System.nanoTime() - start);
             }
+        } catch (Exception e) {
             if (e instanceof RuntimeException)
                 throw ((RuntimeException) e);
             else
                 throw new RuntimeException("Error evaluating Groovy expression", e);
         }
-        if (useCompilationCache) {
-            try {
-                script.setBinding(null); // free memory
-                getPool().returnObject(text, script);
-            } catch (Exception e) {
-                log.warn("Error returning object into the pool", e);
-            }
-        }
         //noinspection unchecked
         return (T) result;
     }
@@ -231,6 +264,73 @@ public abstract class AbstractScripting implements Scripting {
         return (T) evaluateGroovy(text, binding);
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public Class<? extends Script> compileGroovy(String text) {
+        Class<?> scriptClass = getCompiledExpression(text).getScriptClass();
+        if (!Script.class.isAssignableFrom(scriptClass)) {
+            throw new IllegalArgumentException("Groovy text is not a script: " + scriptClass.getName());
+        }
+        return (Class<? extends Script>) scriptClass;
+    }
+
+    /**
+     * @return number of Groovy expressions compiled since start or the last statistics reset
+     */
+    public long getCompilationCount() {
+        return compilationCount.sum();
+    }
+
+    /**
+     * @return total time of compiling Groovy expressions in nanoseconds
+     */
+    public long getCompilationTime() {
+        return compilationTime.sum();
+    }
+
+    /**
+     * @return number of evaluated Groovy expressions
+     */
+    public long getEvaluationCount() {
+        return evaluationCount.sum();
+    }
+
+    /**
+     * @return total time of evaluating Groovy expressions in nanoseconds, excluding compilation
+     */
+    public long getEvaluationTime() {
+        return evaluationTime.sum();
+    }
+
+    /**
+     * @return number of compiled expressions in the cache
+     */
+    public long getExpressionCacheSize() {
+        return getExpressionCache().size();
+    }
+
+    /**
+     * @return hits, misses and evictions of the compiled expressions cache since start or the last statistics reset
+     */
+    public CacheStats getExpressionCacheStats() {
+        return getExpressionCache().stats().minus(initialCacheStats);
+    }
+
+    /**
+     * @return total size in bytes of the bytecode of cached compiled expressions
+     */
+    public long getCachedBytecodeSize() {
+        return cachedBytecodeSize.sum();
+    }
+
+    public void resetStatistics() {
+        compilationCount.reset();
+        compilationTime.reset();
+        evaluationCount.reset();
+        evaluationTime.reset();
+        initialCacheStats = getExpressionCache().stats();
+    }
+
     @Override
     public <T> T runGroovyScript(String name, Binding binding) {
         try {
@@ -301,7 +401,7 @@ public abstract class AbstractScripting implements Scripting {
     public void clearCache() {
         getGroovyClassLoader().clearCache();
         javaClassLoader.clearCache();
-        getPool().clear();
+        getExpressionCache().invalidateAll();
         GroovyScriptEngine gse = getGroovyScriptEngine();
         try {
             Field scriptCacheField = gse.getClass().getDeclaredField("scriptCache");
@@ -492,4 +592,74 @@ public abstract class AbstractScripting implements Scripting {
             return cls;
         }
     }
+
+    /**
+     * Class of a compiled Groovy expression and the size of its bytecode.
+     */
+    protected static class CompiledExpression {
+
+        protected final Class<?> scriptClass;
+        protected final Constructor<?> bindingConstructor;
+        protected final long bytecodeSize;
+
+        public CompiledExpression(Class<?> scriptClass, long bytecodeSize) {
+            this.scriptClass = scriptClass;
+            this.bytecodeSize = bytecodeSize;
+            Constructor<?> constructor = null;
+            if (Script.class.isAssignableFrom(scriptClass)) {
+                try {
+                    constructor = scriptClass.getConstructor(Binding.class);
+                } catch (NoSuchMethodException e) {
+                    // instances are created by InvokerHelper
+                }
+            }
+            this.bindingConstructor = constructor;
+        }
+
+        public Script newScript(Binding binding) {
+            if (bindingConstructor != null) {
+                try {
+                    return (Script) bindingConstructor.newInstance(binding);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException("Error instantiating Script object", e);
+                }
+            }
+            return InvokerHelper.createScript(scriptClass, binding);
+        }
+
+        public Class<?> getScriptClass() {
+            return scriptClass;
+        }
+
+        public long getBytecodeSize() {
+            return bytecodeSize;
+        }
+    }
+
+    /**
+     * Class loader of a single compiled expression. Counts the size of the generated bytecode.
+     */
+    protected class ExpressionClassLoader extends GroovyClassLoader {
+
+        protected long bytecodeSize;
+
+        public ExpressionClassLoader(CompilerConfiguration cc) {
+            super(AbstractScripting.this.javaClassLoader, cc);
+        }
+
+        @Override
+        protected ClassCollector createCollector(CompilationUnit unit, SourceUnit su) {
+            return new ClassCollector(new InnerLoader(this), unit, su) {
+                @Override
+                protected Class createClass(byte[] code, ClassNode classNode) {
+                    bytecodeSize += code.length;
+                    return super.createClass(code, classNode);
+                }
+            };
+        }
+
+        public long getBytecodeSize() {
+            return bytecodeSize;
+        }
+    }
 }
\ No newline at end of file
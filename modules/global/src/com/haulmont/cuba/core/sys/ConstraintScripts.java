@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import com.haulmont.cuba.core.global.Scripting;
+import groovy.lang.Script;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides Groovy scripts of in-memory security constraints and collects evaluation statistics of each script.
+ * <p>Script classes are taken from the cache of compiled expressions of {@link Scripting}, so they are unloaded
+ * when evicted from there or when {@link Scripting#clearCache()} is invoked. This bean keeps only statistics,
+ * at most {@link GlobalConfig#getGroovyEvaluationCacheMaxSize()} entries.</p>
+ */
+@Component(ConstraintScripts.NAME)
+public class ConstraintScripts {
+
+    public static final String NAME = "cuba_ConstraintScripts";
+
+    /**
+     * Name of the binding variable containing the checked entity. Replaces {@code {E}} in constraint scripts.
+     */
+    public static final String ENTITY_VARIABLE = "__entity__";
+
+    @Inject
+    protected Scripting scripting;
+
+    @Inject
+    protected GlobalConfig globalConfig;
+
+    protected Cache<String, CompiledScript> scripts;
+
+    @PostConstruct
+    protected void init() {
+        scripts = CacheBuilder.newBuilder()
+                .maximumSize(globalConfig.getGroovyEvaluationCacheMaxSize())
+                .build();
+    }
+
+    /**
+     * @param groovyScript constraint script as defined in the constraint
+     * @return compiled script
+     */
+    public CompiledScript getCompiledScript(String groovyScript) {
+        CompiledScript compiledScript = scripts.getIfPresent(groovyScript);
+        if (compiledScript == null) {
+            compiledScript = new CompiledScript(groovyScript, groovyScript.replace("{E}", ENTITY_VARIABLE));
+            CompiledScript existing = scripts.asMap().putIfAbsent(groovyScript, compiledScript);
+            if (existing != null) {
+                compiledScript = existing;
+            }
+        }
+        return compiledScript;
+    }
+
+    public Collection<CompiledScript> getCompiledScripts() {
+        return new ArrayList<>(scripts.asMap().values());
+    }
+
+    /**
+     * Discards statistics of all scripts.
+     */
+    public void clear() {
+        scripts.invalidateAll();
+    }
+
+    public void resetStatistics() {
+        for (CompiledScript compiledScript : scripts.asMap().values()) {
+            compiledScript.resetStatistics();
+        }
+    }
+
+    /**
+     * Constraint script with its statistics. Script instances are not thread-safe, so a thread evaluating the
+     * constraint creates its own instance by {@link #newScript()}.
+     */
+    public class CompiledScript {
+
+        protected final String text;
+        protected final String scriptText;
+        protected final LongAdder evaluationCount = new LongAdder();
+        protected final LongAdder evaluationTime = new LongAdder();
+
+        public CompiledScript(String text, String scriptText) {
+            this.text = text;
+            this.scriptText = scriptText;
+        }
+
+        /**
+         * Creates an instance of the script class. The class is not kept here, it is looked up in the cache
+         * of compiled expressions each time, and is compiled again if it has been evicted.
+         */
+        public Script newScript() {
+            Class<? extends Script> scriptClass = scripting.compileGroovy(scriptText);
+            try {
+                return scriptClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException("Unable to instantiate constraint script", e);
+            }
+        }
+
+        /**
+         * @param nanos duration of a single evaluation in nanoseconds
+         */
+        public void addEvaluation(long nanos) {
+            evaluationCount.increment();
+            evaluationTime.add(nanos);
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getEvaluationCount() {
+            return evaluationCount.sum();
+        }
+
+        /**
+         * @return total time of evaluations in nanoseconds
+         */
+        public long getEvaluationTime() {
+            return evaluationTime.sum();
+        }
+
+        protected void resetStatistics() {
+            evaluationCount.reset();
+            evaluationTime.reset();
+        }
+    }
+}
@@ -30,6 +30,8 @@ import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
 import com.haulmont.cuba.security.global.ConstraintData;
 import com.haulmont.cuba.security.global.UserSession;
+import groovy.lang.Binding;
+import groovy.lang.Script;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.groovy.runtime.MethodClosure;
 import org.slf4j.Logger;
@@ -66,6 +68,9 @@ public class SecurityImpl implements Security {
     @Inject
     protected Scripting scripting;
 
+    @Inject
+    protected ConstraintScripts constraintScripts;
+
     @Override
     public boolean isScreenPermitted(String windowAlias) {
         return userSessionSource.getUserSession().isScreenPermitted(windowAlias);
@@ -205,43 +210,32 @@ public class SecurityImpl implements Security {
     }
 
     protected boolean isPermitted(Entity entity, Predicate<ConstraintData> predicate) {
-        List<ConstraintData> constraints = getConstraints(entity.getMetaClass(), predicate);
-        for (ConstraintData constraint : constraints) {
-            if (!isPermitted(entity, constraint)) {
-                return false;
-            }
-        }
-        return true;
+        return createInMemoryConstraintsChecker(predicate).isPermitted(entity);
     }
 
     protected boolean isPermitted(Entity entity, ConstraintData constraint) {
-        String metaClassName = entity.getMetaClass().getName();
-        String groovyScript = constraint.getGroovyScript();
-        if (constraint.getCheckType().memory() && StringUtils.isNotBlank(groovyScript)) {
-            try {
-                Object o = evaluateConstraintScript(entity, groovyScript);
-                if (Boolean.FALSE.equals(o)) {
-                    log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
-                            metaClassName, entity.getId(), constraint.getCheckType());
-                    return false;
-                }
-            } catch (Exception e) {
-                log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
-                        "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
-                return false;
-            }
-        }
-        return true;
+        return createInMemoryConstraintsChecker(c -> true).isPermitted(entity, constraint);
     }
 
     @Override
     public Object evaluateConstraintScript(Entity entity, String groovyScript) {
+        return new ConstraintEvaluator(constraintScripts.getCompiledScript(groovyScript)).evaluate(entity);
+    }
+
+    /**
+     * Creates an object checking entities against in-memory constraints selected by the predicate.
+     * Use one instance to check a number of entities in the current thread.
+     */
+    protected InMemoryConstraintsChecker createInMemoryConstraintsChecker(Predicate<ConstraintData> predicate) {
+        return new InMemoryConstraintsChecker(predicate);
+    }
+
+    protected Map<String, Object> createGroovyConstraintsContext() {
         Map<String, Object> context = new HashMap<>();
-        context.put("__entity__", entity);
         context.put("parse", new MethodClosure(this, "parseValue"));
         context.put("userSession", userSessionSource.getUserSession());
         fillGroovyConstraintsContext(context);
-        return scripting.evaluateGroovy(groovyScript.replace("{E}", "__entity__"), context);
+        return context;
     }
 
     /**
@@ -285,4 +279,100 @@ public class SecurityImpl implements Security {
                     "See the log for details.", clazz, string), null);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks entities against in-memory constraints. Constraints of each entity class are found once, and each
+     * constraint script is evaluated by a single script instance and binding.
+     */
+    protected class InMemoryConstraintsChecker {
+
+        protected final Predicate<ConstraintData> predicate;
+        protected final Map<MetaClass, List<ConstraintData>> constraints = new HashMap<>();
+        protected final Map<String, ConstraintEvaluator> evaluators = new HashMap<>();
+
+        public InMemoryConstraintsChecker(Predicate<ConstraintData> predicate) {
+            this.predicate = predicate;
+        }
+
+        public boolean isPermitted(Entity entity) {
+            List<ConstraintData> entityConstraints = constraints.get(entity.getMetaClass());
+            if (entityConstraints == null) {
+                entityConstraints = getConstraints(entity.getMetaClass(), predicate);
+                constraints.put(entity.getMetaClass(), entityConstraints);
+            }
+            for (ConstraintData constraint : entityConstraints) {
+                if (!isPermitted(entity, constraint)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean isPermitted(Entity entity, ConstraintData constraint) {
+            String metaClassName = entity.getMetaClass().getName();
+            String groovyScript = constraint.getGroovyScript();
+            if (constraint.getCheckType().memory() && StringUtils.isNotBlank(groovyScript)) {
+                try {
+                    Object o = evaluate(entity, groovyScript);
+                    if (Boolean.FALSE.equals(o)) {
+                        log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
+                                metaClassName, entity.getId(), constraint.getCheckType());
+                        return false;
+                    }
+                } catch (Exception e) {
+                    log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
+                            "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        protected Object evaluate(Entity entity, String groovyScript) {
+            ConstraintEvaluator evaluator = evaluators.get(groovyScript);
+            if (evaluator == null) {
+                evaluator = new ConstraintEvaluator(constraintScripts.getCompiledScript(groovyScript));
+                evaluators.put(groovyScript, evaluator);
+            }
+            return evaluator.evaluate(entity);
+        }
+    }
+
+    /**
+     * Evaluates a compiled constraint script for entities one by one using the same script instance.
+     * Each entity gets a fresh binding, so variables assigned by the script for one entity are not visible
+     * when checking the next one.
+     */
+    protected class ConstraintEvaluator {
+
+        protected final ConstraintScripts.CompiledScript compiledScript;
+        protected final Script script;
+        protected final Map<String, Object> context;
+        protected boolean evaluating;
+
+        public ConstraintEvaluator(ConstraintScripts.CompiledScript compiledScript) {
+            this.compiledScript = compiledScript;
+            this.script = compiledScript.newScript();
+            this.context = createGroovyConstraintsContext();
+        }
+
+        public Object evaluate(Entity entity) {
+            if (evaluating) {
+                //the script has caused checking of other entities by the same constraint, e.g. by loading them
+                return new ConstraintEvaluator(compiledScript).evaluate(entity);
+            }
+            evaluating = true;
+            Binding binding = new Binding(new HashMap<>(context));
+            binding.setVariable(ConstraintScripts.ENTITY_VARIABLE, entity);
+            script.setBinding(binding);
+            long start = System.nanoTime();
+            try {
+                return script.run();
+            } finally {
+                compiledScript.addEvaluation(System.nanoTime() - start);
+                script.setBinding(new Binding());
+                evaluating = false;
+            }
+        }
+    }
+}
@@ -48,16 +48,29 @@ public class QueryTreeAnalyzer {
 
     public void prepare(DomainModel model, String query, boolean failOnErrors) throws RecognitionException {
         Preconditions.checkNotNull(query, "query is null");
+        prepare(model, Parser.parse(normalizeQuery(query), failOnErrors));
+    }
+
+    /**
+     * Prepares the analyzer for an already parsed query tree, e.g. a copy obtained from {@link QueryTreeCache}.
+     * The tree is modified by the analyzer and by transformations, so it must not be shared.
+     */
+    public void prepare(DomainModel model, CommonTree tree) {
+        Preconditions.checkNotNull(tree, "tree is null");
         this.model = model;
-        query = query.replace("\n", " ");
-        query = query.replace("\r", " ");
-        query = query.replace("\t", " ");
-        tree = Parser.parse(query, failOnErrors);
+        this.tree = tree;
         TreeVisitor visitor = new TreeVisitor();
         idVarSelector = new IdVarSelector(model);
         visitor.visit(tree, idVarSelector);
     }
 
+    public static String normalizeQuery(String query) {
+        query = query.replace("\n", " ");
+        query = query.replace("\r", " ");
+        query = query.replace("\t", " ");
+        return query;
+    }
+
     public QueryVariableContext getRootQueryVariableContext() {
         return idVarSelector.getContextTree();
     }
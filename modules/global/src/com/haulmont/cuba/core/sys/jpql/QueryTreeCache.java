@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys.jpql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.tree.CommonTree;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of parsed JPQL query trees keyed by query text.
+ * <p>
+ * Cached trees are never given out: {@link #getTree(String)} returns a deep copy which can be freely
+ * analyzed and transformed by {@link QueryTreeAnalyzer} and its subclasses.
+ * <p>
+ * Parsed trees do not depend on the domain model, so the cache doesn't have to be invalidated on model changes.
+ */
+@Component(QueryTreeCache.NAME)
+public class QueryTreeCache {
+
+    public static final String NAME = "cuba_QueryTreeCache";
+
+    protected Cache<String, CommonTree> trees;
+
+    protected AtomicLong parseCount = new AtomicLong();
+    protected AtomicLong parseTimeNanos = new AtomicLong();
+
+    protected int maxSize;
+
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        maxSize = configuration.getConfig(GlobalConfig.class).getJpqlQueryTreeCacheMaxSize();
+        trees = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns a copy of the parsed tree of the query. The query is parsed if the cache doesn't contain its tree yet.
+     *
+     * @param query JPQL query text
+     * @return tree which is not shared with other callers
+     */
+    public CommonTree getTree(String query) throws RecognitionException {
+        String normalizedQuery = QueryTreeAnalyzer.normalizeQuery(query);
+
+        CommonTree tree = trees.getIfPresent(normalizedQuery);
+        if (tree == null) {
+            long start = System.nanoTime();
+            tree = Parser.parse(normalizedQuery, true);
+            parseTimeNanos.addAndGet(System.nanoTime() - start);
+            parseCount.incrementAndGet();
+
+            trees.put(normalizedQuery, tree);
+        }
+        return copyTree(tree);
+    }
+
+    /**
+     * Discards all cached trees and statistics.
+     */
+    public void clear() {
+        trees.invalidateAll();
+        parseCount.set(0);
+        parseTimeNanos.set(0);
+    }
+
+    public long getSize() {
+        return trees.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public CacheStats getStats() {
+        return trees.stats();
+    }
+
+    /**
+     * @return number of queries parsed since startup or the last {@link #clear()}
+     */
+    public long getParseCount() {
+        return parseCount.get();
+    }
+
+    /**
+     * @return average time of parsing a query in microseconds
+     */
+    public long getAverageParseTime() {
+        long count = parseCount.get();
+        return count == 0 ? 0 : parseTimeNanos.get() / count / 1000;
+    }
+
+    /**
+     * Creates a deep copy of the tree. Custom nodes copy their direct children in {@code dupNode()} but plain
+     * {@link CommonTree} nodes do not, so the children are always rebuilt here recursively.
+     */
+    protected CommonTree copyTree(CommonTree node) {
+        CommonTree copy = (CommonTree) node.dupNode();
+        for (int i = copy.getChildCount() - 1; i >= 0; i--) {
+            copy.deleteChild(i);
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            copy.addChild(copyTree((CommonTree) node.getChild(i)));
+        }
+        return copy;
+    }
+}
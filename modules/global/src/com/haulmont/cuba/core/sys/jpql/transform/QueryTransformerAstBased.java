@@ -47,17 +47,27 @@ public class QueryTransformerAstBased implements QueryTransformer {
     private Set<String> addedParams = new HashSet<>();
     private String returnedEntityName;
     private String mainEntityName;
+    private QueryTreeCache queryTreeCache;
 
     public QueryTransformerAstBased(DomainModel model, String query) {
         this.model = model;
         this.query = query;
     }
 
+    public QueryTransformerAstBased(DomainModel model, String query, QueryTreeCache queryTreeCache) {
+        this(model, query);
+        this.queryTreeCache = queryTreeCache;
+    }
+
     private QueryTreeTransformer getQueryTransformer() {
         if (queryTreeTransformer == null) {
             queryTreeTransformer = new QueryTreeTransformer();
             try {
-                queryTreeTransformer.prepare(model, query);
+                if (queryTreeCache != null) {
+                    queryTreeTransformer.prepare(model, queryTreeCache.getTree(query));
+                } else {
+                    queryTreeTransformer.prepare(model, query);
+                }
             } catch (RecognitionException e) {
                 throw new RuntimeException("Internal error while init queryTreeTransformer",e);
             } catch (JPA2RecognitionException e) {
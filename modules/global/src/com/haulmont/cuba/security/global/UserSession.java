@@ -124,6 +124,33 @@ public class UserSession implements Serializable {
         clientInfo = src.clientInfo;
     }
 
+    /**
+     * INTERNAL. Used to restore a session received from another cluster node.
+     * Permissions and attributes are added after creation.
+     */
+    public UserSession(UUID id, User user, @Nullable User substitutedUser, Collection<String> roles,
+                       Collection<RoleType> roleTypes, Locale locale, @Nullable TimeZone timeZone, boolean system,
+                       Map<String, List<ConstraintData>> constraints) {
+        this.id = id;
+        this.user = user;
+        this.substitutedUser = substitutedUser;
+        this.roles.addAll(roles);
+        this.roleTypes.addAll(roleTypes);
+        this.locale = locale;
+        this.timeZone = timeZone;
+        this.system = system;
+
+        //noinspection unchecked
+        permissions = new Map[PermissionType.values().length];
+        for (int i = 0; i < permissions.length; i++) {
+            permissions[i] = new HashMap<>();
+        }
+
+        this.constraints = new HashMap<>(constraints);
+        attributes = new ConcurrentHashMap<>();
+        localAttributes = new ConcurrentHashMap<>();
+    }
+
     private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
         stream.defaultReadObject();
         localAttributes = new ConcurrentHashMap<>();
@@ -178,6 +205,13 @@ public class UserSession implements Serializable {
         return Collections.unmodifiableList(roles);
     }
 
+    /**
+     * INTERNAL
+     */
+    public Collection<RoleType> getRoleTypes() {
+        return Collections.unmodifiableSet(roleTypes);
+    }
+
     /**
      * User locale
      */
@@ -399,6 +433,13 @@ public class UserSession implements Serializable {
         return Collections.unmodifiableList(constraints.getOrDefault(entityName, Collections.emptyList()));
     }
 
+    /**
+     * INTERNAL
+     */
+    public Map<String, List<ConstraintData>> getConstraints() {
+        return Collections.unmodifiableMap(constraints);
+    }
+
     /**
      * INTERNAL
      */
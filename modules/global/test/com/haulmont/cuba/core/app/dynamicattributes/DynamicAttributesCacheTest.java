@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app.dynamicattributes;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.haulmont.cuba.core.entity.Category;
+import com.haulmont.cuba.core.entity.CategoryAttribute;
+import com.haulmont.cuba.core.global.AppBeans;
+import mockit.Mocked;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DynamicAttributesCacheTest {
+
+    @SuppressWarnings("unused")
+    @Mocked
+    protected AppBeans appBeans;
+
+    protected Category userCategory;
+    protected Category groupCategory;
+    protected DynamicAttributesCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        userCategory = createCategory("sec$User", "userAttr");
+        groupCategory = createCategory("sec$Group", "groupAttr");
+
+        Multimap<String, Category> categories = HashMultimap.create();
+        categories.put("sec$User", userCategory);
+        categories.put("sec$Group", groupCategory);
+
+        Map<String, Map<String, CategoryAttribute>> attributes = new LinkedHashMap<>();
+        attributes.put("sec$User", attributesByCode(userCategory));
+        attributes.put("sec$Group", attributesByCode(groupCategory));
+
+        cache = new DynamicAttributesCache(categories, attributes, new Date(1000));
+    }
+
+    @Test
+    public void testChangedCategory() throws Exception {
+        Category changedUserCategory = createCategory("sec$User", "newUserAttr");
+        changedUserCategory.setId(userCategory.getId());
+
+        Multimap<String, Category> changedCategories = HashMultimap.create();
+        changedCategories.put("sec$User", changedUserCategory);
+        DynamicAttributesCache newCache = cache.withChanges(
+                new DynamicAttributesCacheChanges(changedCategories, Collections.emptySet(), new Date(2000)));
+
+        assertEquals(new Date(2000), newCache.getCreationDate());
+        assertEquals(Collections.singleton(changedUserCategory), new HashSet<>(newCache.categoriesCache.get("sec$User")));
+        assertEquals(Collections.singleton("newUserAttr"), newCache.attributesCache.get("sec$User").keySet());
+        assertSame(cache.attributesCache.get("sec$Group"), newCache.attributesCache.get("sec$Group"));
+        //the previous version is not changed
+        assertEquals(Collections.singleton("userAttr"), cache.attributesCache.get("sec$User").keySet());
+    }
+
+    @Test
+    public void testRemovedCategory() throws Exception {
+        DynamicAttributesCache newCache = cache.withChanges(new DynamicAttributesCacheChanges(HashMultimap.create(),
+                Collections.singleton(groupCategory.getId()), new Date(2000)));
+
+        assertFalse(newCache.categoriesCache.containsKey("sec$Group"));
+        assertNull(newCache.attributesCache.get("sec$Group"));
+        assertTrue(newCache.categoriesCache.containsKey("sec$User"));
+    }
+
+    @Test
+    public void testGetChanges() throws Exception {
+        UUID removedCategoryId = UUID.randomUUID();
+        DynamicAttributesCacheChanges changes = cache.getChanges(Arrays.asList(userCategory.getId(), removedCategoryId));
+
+        assertEquals(cache.getCreationDate(), changes.getCreationDate());
+        assertNull(changes.getCache());
+        assertEquals(Collections.singleton(userCategory), new HashSet<>(changes.getChangedCategories().get("sec$User")));
+        assertEquals(Collections.singleton(removedCategoryId), changes.getRemovedCategoryIds());
+    }
+
+    @Test
+    public void testApplyWholeCache() throws Exception {
+        DynamicAttributesCacheChanges changes = new DynamicAttributesCacheChanges(cache);
+        assertSame(cache, changes.applyTo(null));
+    }
+
+    protected Category createCategory(String entityType, String attributeCode) {
+        Category category = new Category();
+        category.setName(entityType);
+        category.setEntityType(entityType);
+
+        CategoryAttribute attribute = new CategoryAttribute();
+        attribute.setCode(attributeCode);
+        attribute.setCategory(category);
+        category.setCategoryAttrs(new ArrayList<>(Collections.singletonList(attribute)));
+        return category;
+    }
+
+    protected Map<String, CategoryAttribute> attributesByCode(Category category) {
+        Map<String, CategoryAttribute> attributes = new LinkedHashMap<>();
+        for (CategoryAttribute attribute : category.getCategoryAttrs()) {
+            attributes.put(attribute.getCode(), attribute);
+        }
+        return attributes;
+    }
+}
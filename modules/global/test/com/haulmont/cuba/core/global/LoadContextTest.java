@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.global;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LoadContextTest {
+
+    @Test
+    public void copyKeepsLoadOptions() throws Exception {
+        LoadContext<?> context = new LoadContext<>();
+        context.setQuery(LoadContext.createQuery("select obj from Object obj").setCursor(KeysetCursor.first("name", true)));
+        context.setSoftDeletion(false);
+        context.setLoadDynamicAttributes(true);
+        context.setLoadPartialEntities(false);
+
+        LoadContext<?> copy = context.copy();
+
+        assertFalse(copy.isSoftDeletion());
+        assertTrue(copy.isLoadDynamicAttributes());
+        assertFalse(copy.isLoadPartialEntities());
+        assertEquals(context.getQuery().getCursor(), copy.getQuery().getCursor());
+        assertNotSame(context.getQuery(), copy.getQuery());
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public class TestDataSupplier implements DataSupplier {
 
@@ -65,6 +66,10 @@ public class TestDataSupplier implements DataSupplier {
         return Collections.emptyList();
     }
 
+    @Override
+    public <E extends Entity> void loadBatches(LoadContext<E> context, int batchSize, Consumer<List<E>> consumer) {
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         return 0;
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.restapi.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.SecurityContext;
+import com.haulmont.cuba.core.sys.UserInvocationContext;
+import com.haulmont.restapi.config.RestApiConfig;
+import com.haulmont.restapi.exception.RestAPIException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes REST API requests asynchronously, releasing the servlet container thread while the middleware is called.
+ * <p>
+ * Each endpoint group (entities, queries, services) has its own bounded thread pool with a bounded queue, so slow
+ * requests of one group cannot exhaust threads of the others or of the container. If the queue of a group is full the
+ * request is rejected with 503 status, and the {@code Retry-After} header is added by the exception handler.
+ * <p>
+ * The {@link #STREAMING} group is used by Spring MVC for writing streaming response bodies, see
+ * {@link #getTaskExecutor(String)}.
+ */
+@Component(RestAsyncExecutor.NAME)
+public class RestAsyncExecutor {
+
+    public static final String NAME = "cuba_RestAsyncExecutor";
+
+    public static final String ENTITIES = "entities";
+    public static final String QUERIES = "queries";
+    public static final String SERVICES = "services";
+    public static final String STREAMING = "streaming";
+
+    private static final Logger log = LoggerFactory.getLogger(RestAsyncExecutor.class);
+
+    @Inject
+    protected RestApiConfig restApiConfig;
+
+    protected final Map<String, EndpointExecutor> executors = new ConcurrentHashMap<>();
+
+    /**
+     * Submits the task to the thread pool of the endpoint group. The security context and the request locale of the
+     * current thread are passed to the task.
+     *
+     * @param endpoint endpoint group name
+     * @param task     task returning the response
+     * @return deferred result that is set when the task completes
+     * @throws RestAPIException with 503 status if the thread pool of the endpoint group is overloaded
+     */
+    public <T> DeferredResult<T> execute(String endpoint, Callable<T> task) {
+        EndpointExecutor executor = executors.computeIfAbsent(endpoint, this::createExecutor);
+
+        long timeoutMs = TimeUnit.SECONDS.toMillis(restApiConfig.getAsyncRequestTimeoutSec());
+        DeferredResult<T> deferredResult = new DeferredResult<>(timeoutMs);
+
+        SecurityContext securityContext = AppContext.getSecurityContext();
+        UUID sessionId = securityContext != null ? securityContext.getSessionId() : null;
+        Locale locale = sessionId != null ? UserInvocationContext.getRequestScopeLocale(sessionId) : null;
+        long submitTime = System.nanoTime();
+
+        Future<?> future;
+        try {
+            future = executor.threadPool.submit(() -> {
+                if (deferredResult.isSetOrExpired()) {
+                    return;
+                }
+                long startTime = System.nanoTime();
+                executor.waitTime.addAndGet(startTime - submitTime);
+
+                AppContext.setSecurityContext(securityContext);
+                if (locale != null) {
+                    UserInvocationContext.setRequestScopeInfo(sessionId, locale, null, null, null);
+                }
+                try {
+                    deferredResult.setResult(task.call());
+                } catch (Exception e) {
+                    executor.failedCount.incrementAndGet();
+                    deferredResult.setErrorResult(e);
+                } finally {
+                    AppContext.setSecurityContext(null);
+                    UserInvocationContext.clearRequestScopeInfo();
+                    executor.onCompleted(System.nanoTime() - startTime);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            executor.rejectedCount.incrementAndGet();
+            log.warn("REST API request to {} rejected, {} requests are waiting in the queue",
+                    endpoint, executor.threadPool.getQueue().size());
+            throw new RestAPIException("Service unavailable", "Server is overloaded, try again later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        deferredResult.onTimeout(() -> {
+            executor.timedOutCount.incrementAndGet();
+            future.cancel(true);
+            deferredResult.setErrorResult(new RestAPIException("Service unavailable",
+                    "Request processing took too long", HttpStatus.SERVICE_UNAVAILABLE));
+        });
+        return deferredResult;
+    }
+
+    /**
+     * Returns a task executor that runs tasks in the thread pool of the endpoint group, for example to be used by
+     * {@code <mvc:async-support>}. Unlike {@link #execute(String, Callable)}, the security context is not passed to
+     * the tasks. A task that does not fit in the queue is rejected with {@link TaskRejectedException}.
+     *
+     * @param endpoint endpoint group name
+     */
+    public AsyncTaskExecutor getTaskExecutor(String endpoint) {
+        return new EndpointTaskExecutor(endpoint);
+    }
+
+    protected EndpointExecutor createExecutor(String endpoint) {
+        int poolSize = restApiConfig.getAsyncThreadPoolSize();
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(restApiConfig.getAsyncQueueCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("RestAPI-" + endpoint + "-%d").setDaemon(true).build());
+        threadPool.allowCoreThreadTimeOut(true);
+        return new EndpointExecutor(threadPool);
+    }
+
+    /**
+     * @return statistics of endpoint groups: pool and queue sizes, numbers of processed requests and their average
+     * waiting and execution times
+     */
+    public String printStatistics() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, EndpointExecutor> entry : new TreeMap<>(executors).entrySet()) {
+            EndpointExecutor executor = entry.getValue();
+            long completed = executor.completedCount.get();
+            sb.append(entry.getKey()).append(":\n")
+                    .append("  active threads: ").append(executor.threadPool.getActiveCount())
+                    .append(", pool size: ").append(executor.threadPool.getPoolSize())
+                    .append(", queue size: ").append(executor.threadPool.getQueue().size()).append('\n')
+                    .append("  completed: ").append(completed)
+                    .append(", failed: ").append(executor.failedCount.get())
+                    .append(", rejected: ").append(executor.rejectedCount.get())
+                    .append(", timed out: ").append(executor.timedOutCount.get()).append('\n')
+                    .append("  avg wait ms: ").append(average(executor.waitTime.get(), completed))
+                    .append(", avg execution ms: ").append(average(executor.executionTime.get(), completed))
+                    .append(", max execution ms: ").append(TimeUnit.NANOSECONDS.toMillis(executor.maxExecutionTime.get()))
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    protected long average(long totalNanos, long count) {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / count);
+    }
+
+    public void resetStatistics() {
+        executors.values().forEach(EndpointExecutor::resetStatistics);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(executor -> executor.threadPool.shutdownNow());
+    }
+
+    protected class EndpointTaskExecutor implements AsyncTaskExecutor {
+        protected final String endpoint;
+
+        protected EndpointTaskExecutor(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            submit(task);
+        }
+
+        @Override
+        public void execute(Runnable task, long startTimeout) {
+            submit(task);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return submit(Executors.callable(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            EndpointExecutor executor = executors.computeIfAbsent(endpoint, RestAsyncExecutor.this::createExecutor);
+            long submitTime = System.nanoTime();
+            try {
+                return executor.threadPool.submit(() -> {
+                    long startTime = System.nanoTime();
+                    executor.waitTime.addAndGet(startTime - submitTime);
+                    try {
+                        return task.call();
+                    } catch (Exception e) {
+                        executor.failedCount.incrementAndGet();
+                        throw e;
+                    } finally {
+                        executor.onCompleted(System.nanoTime() - startTime);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                executor.rejectedCount.incrementAndGet();
+                log.warn("REST API request to {} rejected, {} requests are waiting in the queue",
+                        endpoint, executor.threadPool.getQueue().size());
+                throw new TaskRejectedException("Thread pool of " + endpoint + " REST API requests is overloaded", e);
+            }
+        }
+    }
+
+    protected static class EndpointExecutor {
+        protected final ThreadPoolExecutor threadPool;
+
+        protected final AtomicLong completedCount = new AtomicLong();
+        protected final AtomicLong failedCount = new AtomicLong();
+        protected final AtomicLong rejectedCount = new AtomicLong();
+        protected final AtomicLong timedOutCount = new AtomicLong();
+        protected final AtomicLong waitTime = new AtomicLong();
+        protected final AtomicLong executionTime = new AtomicLong();
+        protected final AtomicLong maxExecutionTime = new AtomicLong();
+
+        public EndpointExecutor(ThreadPoolExecutor threadPool) {
+            this.threadPool = threadPool;
+        }
+
+        public void onCompleted(long nanos) {
+            completedCount.incrementAndGet();
+            executionTime.addAndGet(nanos);
+            maxExecutionTime.accumulateAndGet(nanos, Math::max);
+        }
+
+        public void resetStatistics() {
+            completedCount.set(0);
+            failedCount.set(0);
+            rejectedCount.set(0);
+            timedOutCount.set(0);
+            waitTime.set(0);
+            executionTime.set(0);
+            maxExecutionTime.set(0);
+        }
+    }
+}
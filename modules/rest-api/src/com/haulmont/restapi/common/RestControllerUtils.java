@@ -19,6 +19,8 @@ package com.haulmont.restapi.common;
 import com.google.common.base.Strings;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
+import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
+import com.haulmont.cuba.core.app.serialization.EntitySerializationOption;
 import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
 import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
 import com.haulmont.cuba.core.entity.Entity;
@@ -30,7 +32,9 @@ import com.haulmont.restapi.transform.JsonTransformationDirection;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.OutputStream;
 import java.util.Arrays;
 
 /**
@@ -53,6 +57,9 @@ public class RestControllerUtils {
     @Inject
     protected ViewRepository viewRepository;
 
+    @Inject
+    protected EntitySerializationAPI entitySerializationAPI;
+
     /**
      * Finds metaClass by entityName. Throws a RestAPIException if metaClass not found
      */
@@ -99,6 +106,21 @@ public class RestControllerUtils {
             restJsonTransformations.getTransformer(entityName, modelVersion, direction).transformJson(json);
     }
 
+    /**
+     * Creates a writer that streams entities of the given type to the output stream as a JSON array. Attributes
+     * security and JSON transformations are applied to each written entity.
+     */
+    public RestEntitiesJsonWriter createEntitiesJsonWriter(OutputStream outputStream,
+                                                           String entityName,
+                                                           @Nullable String modelVersion,
+                                                           @Nullable View view,
+                                                           EntitySerializationOption... options) {
+        return new RestEntitiesJsonWriter(this, entitySerializationAPI, outputStream,
+                Strings.isNullOrEmpty(modelVersion) ? null :
+                        restJsonTransformations.getTransformer(entityName, modelVersion, JsonTransformationDirection.TO_VERSION),
+                view, options);
+    }
+
     private class FillingInaccessibleAttributesVisitor implements EntityAttributeVisitor {
 
         @Override
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.restapi.common;
+
+import com.haulmont.cuba.core.app.serialization.EntityJsonArrayWriter;
+import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
+import com.haulmont.cuba.core.app.serialization.EntitySerializationOption;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.View;
+import com.haulmont.restapi.transform.EntityJsonTransformer;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes entities to a response output stream as a JSON array, one by one. Attributes security and the JSON
+ * transformation of the requested model version are applied to each entity separately, so the whole array is never
+ * kept in memory.
+ * <p>
+ * Instances are created by {@link RestControllerUtils#createEntitiesJsonWriter}.
+ */
+public class RestEntitiesJsonWriter implements Closeable {
+
+    protected final RestControllerUtils restControllerUtils;
+    protected final EntitySerializationAPI entitySerialization;
+    protected final EntityJsonTransformer transformer;
+    protected final View view;
+    protected final EntitySerializationOption[] options;
+    protected final Writer writer;
+    protected final EntityJsonArrayWriter arrayWriter;
+    protected boolean empty = true;
+
+    protected RestEntitiesJsonWriter(RestControllerUtils restControllerUtils,
+                                     EntitySerializationAPI entitySerialization,
+                                     OutputStream outputStream,
+                                     @Nullable EntityJsonTransformer transformer,
+                                     @Nullable View view,
+                                     EntitySerializationOption... options) {
+        this.restControllerUtils = restControllerUtils;
+        this.entitySerialization = entitySerialization;
+        this.transformer = transformer;
+        this.view = view;
+        this.options = options;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        // without a transformation entities are serialized straight to the output
+        this.arrayWriter = transformer == null ?
+                entitySerialization.createJsonArrayWriter(writer, view, options) : null;
+    }
+
+    public void write(Entity entity) throws IOException {
+        restControllerUtils.applyAttributesSecurity(entity);
+        if (arrayWriter != null) {
+            arrayWriter.write(entity);
+        } else {
+            writer.write(empty ? '[' : ',');
+            writer.write(transformer.transformJson(entitySerialization.toJson(entity, view, options)));
+        }
+        empty = false;
+    }
+
+    /**
+     * Sends everything written so far to the client.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Completes the JSON array and flushes the output. The output stream is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (arrayWriter != null) {
+            arrayWriter.close();
+        } else {
+            writer.write(empty ? "[]" : "]");
+        }
+        writer.flush();
+    }
+}
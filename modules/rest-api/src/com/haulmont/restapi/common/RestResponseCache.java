@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.restapi.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.UserSessionSource;
+import com.haulmont.cuba.security.entity.PermissionType;
+import com.haulmont.cuba.security.global.UserSession;
+import com.haulmont.restapi.config.RestApiConfig;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * HTTP cache support for REST API responses.
+ * <p>
+ * Responses of metadata and messages endpoints are kept serialized in an LRU cache per request URL, locale and,
+ * for user-specific responses, permissions of the user session. Every response has an ETag computed from its content,
+ * so clients sending {@code If-None-Match} receive 304 without the body. Cached responses expire after
+ * {@link RestApiConfig#getResponseCacheExpirationSec()}, or immediately on {@link #invalidate()}, which is available
+ * through the RestApiResponseCache JMX bean.
+ * <p>
+ * Entity ETags are computed from the whole JSON of an entity, so changes of nested entities and dynamic attributes
+ * change the ETag too. They are used only if enabled by {@link RestApiConfig#getEntityETagsEnabled()}.
+ */
+@Component("cuba_RestResponseCache")
+public class RestResponseCache {
+
+    @Inject
+    protected UserSessionSource userSessionSource;
+
+    protected RestApiConfig restApiConfig;
+
+    protected Cache<String, CachedResponse> responses;
+
+    protected Cache<UUID, String> permissionsFingerprints;
+
+    protected ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    protected static class CachedResponse {
+        protected final String json;
+        protected final String eTag;
+
+        public CachedResponse(String json, String eTag) {
+            this.json = json;
+            this.eTag = eTag;
+        }
+    }
+
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        restApiConfig = configuration.getConfig(RestApiConfig.class);
+        responses = CacheBuilder.newBuilder()
+                .maximumSize(restApiConfig.getResponseCacheMaxSize())
+                .expireAfterWrite(restApiConfig.getResponseCacheExpirationSec(), TimeUnit.SECONDS)
+                .build();
+        permissionsFingerprints = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterAccess(restApiConfig.getResponseCacheExpirationSec(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Returns a response with the JSON produced by the supplier, taking it from the cache if possible. If the request
+     * contains an {@code If-None-Match} header matching the response ETag, an empty 304 response is returned.
+     *
+     * @param request      current request
+     * @param userSpecific whether the response depends on permissions of the current user
+     * @param bodySupplier returns a JSON string or an object to be serialized to JSON
+     */
+    public ResponseEntity<String> getResponse(HttpServletRequest request, boolean userSpecific, Supplier<?> bodySupplier) {
+        CachedResponse response;
+        if (restApiConfig.getResponseCacheEnabled()) {
+            String key = createKey(request, userSpecific);
+            response = responses.getIfPresent(key);
+            if (response == null) {
+                response = createResponse(bodySupplier.get());
+                responses.put(key, response);
+            }
+        } else {
+            response = createResponse(bodySupplier.get());
+        }
+
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (eTagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), response.eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(response.eTag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(response.eTag)
+                .cacheControl(cacheControl)
+                .body(response.json);
+    }
+
+    /**
+     * Removes all cached responses, e.g. after metadata or messages have been reloaded.
+     */
+    public void invalidate() {
+        responses.invalidateAll();
+        permissionsFingerprints.invalidateAll();
+    }
+
+    /**
+     * @return number of cached responses
+     */
+    public long getSize() {
+        return responses.size();
+    }
+
+    /**
+     * Creates an ETag for the JSON representation of an entity. The JSON contains all loaded attributes of the
+     * entity and its references, with attribute security already applied.
+     *
+     * @param json JSON returned to the client
+     * @return ETag or null if entity ETags are disabled
+     */
+    @Nullable
+    public String createEntityETag(String json) {
+        if (!restApiConfig.getEntityETagsEnabled()) {
+            return null;
+        }
+        return createETag(json);
+    }
+
+    /**
+     * @return true if the {@code If-None-Match} header value contains the ETag
+     */
+    public boolean eTagMatches(@Nullable String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String requestETag : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+            if (requestETag.startsWith("W/")) {
+                requestETag = requestETag.substring(2);
+            }
+            if ("*".equals(requestETag) || eTag.equals(requestETag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected CachedResponse createResponse(Object body) {
+        String json;
+        if (body instanceof String) {
+            json = (String) body;
+        } else {
+            try {
+                json = objectMapper.writeValueAsString(body);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Unable to serialize response", e);
+            }
+        }
+        return new CachedResponse(json, createETag(json));
+    }
+
+    protected String createETag(String json) {
+        return "\"" + Hashing.murmur3_128().hashString(json, StandardCharsets.UTF_8).toString() + "\"";
+    }
+
+    protected String createKey(HttpServletRequest request, boolean userSpecific) {
+        StringBuilder sb = new StringBuilder(request.getRequestURI());
+        if (request.getQueryString() != null) {
+            sb.append('?').append(request.getQueryString());
+        }
+        sb.append('|').append(userSessionSource.getLocale());
+        if (userSpecific) {
+            sb.append('|').append(getPermissionsFingerprint());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return hash of roles and permissions of the current user session, the same for users with the same roles
+     */
+    protected String getPermissionsFingerprint() {
+        UserSession userSession = userSessionSource.getUserSession();
+        String fingerprint = permissionsFingerprints.getIfPresent(userSession.getId());
+        if (fingerprint == null) {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            for (String role : new TreeSet<>(userSession.getRoles())) {
+                hasher.putString(role, StandardCharsets.UTF_8);
+            }
+            for (PermissionType type : PermissionType.values()) {
+                hasher.putInt(type.ordinal());
+                for (Map.Entry<String, Integer> entry : new TreeMap<>(userSession.getPermissionsByType(type)).entrySet()) {
+                    hasher.putString(entry.getKey(), StandardCharsets.UTF_8).putInt(entry.getValue());
+                }
+            }
+            fingerprint = hasher.hash().toString();
+            permissionsFingerprints.put(userSession.getId(), fingerprint);
+        }
+        return fingerprint;
+    }
+}
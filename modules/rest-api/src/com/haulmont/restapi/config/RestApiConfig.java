@@ -20,6 +20,8 @@ import com.haulmont.cuba.core.config.Config;
 import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
+import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
+import com.haulmont.cuba.core.config.defaults.DefaultInt;
 
 /**
  * REST-API config.
@@ -34,4 +36,75 @@ public interface RestApiConfig extends Config {
      */
     @Property("cuba.rest.client.id")
     String getRestClientId();
-}
\ No newline at end of file
+
+    /**
+     * @return number of entities loaded from the middleware at once when entities are streamed to the client
+     */
+    @Property("cuba.rest.streamingBatchSize")
+    @DefaultInt(1000)
+    int getStreamingBatchSize();
+
+    /**
+     * @return number of threads processing requests of each endpoint group (entities, queries, services)
+     */
+    @Property("cuba.rest.asyncThreadPoolSize")
+    @DefaultInt(20)
+    int getAsyncThreadPoolSize();
+
+    /**
+     * @return max number of requests of each endpoint group waiting for a free thread. Requests exceeding the limit are
+     * rejected with 503 status
+     */
+    @Property("cuba.rest.asyncQueueCapacity")
+    @DefaultInt(200)
+    int getAsyncQueueCapacity();
+
+    /**
+     * @return time in seconds after which an unfinished request is responded with 503 status. 0 means no timeout
+     */
+    @Property("cuba.rest.asyncRequestTimeoutSec")
+    @DefaultInt(0)
+    int getAsyncRequestTimeoutSec();
+
+    /**
+     * @return value of the Retry-After header of responses with 503 status
+     */
+    @Property("cuba.rest.retryAfterSec")
+    @DefaultInt(5)
+    int getRetryAfterSec();
+
+    /**
+     * @return max number of operations in a single request to the entities batch endpoint
+     */
+    @Property("cuba.rest.maxBatchOperations")
+    @DefaultInt(1000)
+    int getMaxBatchOperations();
+
+    /**
+     * @return whether responses of metadata, messages and permissions endpoints are cached
+     */
+    @Property("cuba.rest.responseCacheEnabled")
+    @DefaultBoolean(true)
+    boolean getResponseCacheEnabled();
+
+    /**
+     * @return max number of cached metadata, messages and permissions responses
+     */
+    @Property("cuba.rest.responseCacheMaxSize")
+    @DefaultInt(1000)
+    int getResponseCacheMaxSize();
+
+    /**
+     * @return time in seconds after which a cached response is built again
+     */
+    @Property("cuba.rest.responseCacheExpirationSec")
+    @DefaultInt(300)
+    int getResponseCacheExpirationSec();
+
+    /**
+     * @return whether responses with entities loaded by id contain an ETag and support conditional requests
+     */
+    @Property("cuba.rest.entityETagsEnabled")
+    @DefaultBoolean(false)
+    boolean getEntityETagsEnabled();
+}
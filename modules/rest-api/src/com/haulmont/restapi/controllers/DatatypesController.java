@@ -16,13 +16,16 @@
 
 package com.haulmont.restapi.controllers;
 
+import com.haulmont.restapi.common.RestResponseCache;
 import com.haulmont.restapi.service.DatatypesControllerManager;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * Controller that is used for getting datatypes information.
@@ -33,8 +36,11 @@ public class DatatypesController {
     @Inject
     protected DatatypesControllerManager datatypesControllerManager;
 
+    @Inject
+    protected RestResponseCache restResponseCache;
+
     @RequestMapping(method = RequestMethod.GET)
-    public String getDatatypes() {
-        return datatypesControllerManager.getDatatypesJson();
+    public ResponseEntity<String> getDatatypes(HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false, () -> datatypesControllerManager.getDatatypesJson());
     }
 }
\ No newline at end of file
@@ -19,8 +19,11 @@ package com.haulmont.restapi.controllers;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
+import com.haulmont.restapi.common.RestAsyncExecutor;
 import com.haulmont.restapi.data.CreatedEntityInfo;
 import com.haulmont.restapi.data.EntitiesSearchResult;
+import com.haulmont.restapi.data.EntitiesStreamResult;
+import com.haulmont.restapi.data.EntityLoadResult;
 import com.haulmont.restapi.service.EntitiesControllerManager;
 import org.apache.commons.lang.BooleanUtils;
 import org.springframework.http.HttpHeaders;
@@ -28,6 +31,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -44,97 +49,178 @@ public class EntitiesController {
     @Inject
     protected EntitiesControllerManager entitiesControllerManager;
 
+    @Inject
+    protected RestAsyncExecutor restAsyncExecutor;
+
     @GetMapping("/{entityName}/{entityId}")
-    public String loadEntity(@PathVariable String entityName,
-                             @PathVariable String entityId,
-                             @RequestParam(required = false) String view,
-                             @RequestParam(required = false) Boolean returnNulls,
-                             @RequestParam(required = false) Boolean dynamicAttributes,
-                             @RequestParam(required = false) String modelVersion) {
-        return entitiesControllerManager.loadEntity(entityName, entityId, view, returnNulls, dynamicAttributes, modelVersion);
+    public DeferredResult<ResponseEntity<String>> loadEntity(@PathVariable String entityName,
+                                                             @PathVariable String entityId,
+                                                             @RequestParam(required = false) String view,
+                                                             @RequestParam(required = false) Boolean returnNulls,
+                                                             @RequestParam(required = false) Boolean dynamicAttributes,
+                                                             @RequestParam(required = false) String modelVersion,
+                                                             HttpServletRequest request) {
+        //the request is not accessed by the worker thread, the response is written from the returned entity
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES, () -> {
+            EntityLoadResult result = entitiesControllerManager.loadEntity(entityName, entityId, view, returnNulls,
+                    dynamicAttributes, modelVersion, ifNoneMatch);
+            ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(
+                    result.isNotModified() ? HttpStatus.NOT_MODIFIED : HttpStatus.OK);
+            if (result.getETag() != null) {
+                responseBuilder.eTag(result.getETag());
+            }
+            return result.isNotModified() ? responseBuilder.<String>build() : responseBuilder.body(result.getJson());
+        });
     }
 
     @GetMapping("/{entityName}")
-    public ResponseEntity<String> loadEntitiesList(@PathVariable String entityName,
-                                                   @RequestParam(required = false) String view,
-                                                   @RequestParam(required = false) Integer limit,
-                                                   @RequestParam(required = false) Integer offset,
-                                                   @RequestParam(required = false) String sort,
-                                                   @RequestParam(required = false) Boolean returnNulls,
-                                                   @RequestParam(required = false) Boolean returnCount,
-                                                   @RequestParam(required = false) Boolean dynamicAttributes,
-                                                   @RequestParam(required = false) String modelVersion) {
-        EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.loadEntitiesList(entityName, view, limit,
-                offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
+    public DeferredResult<ResponseEntity<String>> loadEntitiesList(@PathVariable String entityName,
+                                                                   @RequestParam(required = false) String view,
+                                                                   @RequestParam(required = false) Integer limit,
+                                                                   @RequestParam(required = false) Integer offset,
+                                                                   @RequestParam(required = false) String sort,
+                                                                   @RequestParam(required = false) Boolean returnNulls,
+                                                                   @RequestParam(required = false) Boolean returnCount,
+                                                                   @RequestParam(required = false) Boolean dynamicAttributes,
+                                                                   @RequestParam(required = false) String modelVersion,
+                                                                   @RequestParam(required = false) Boolean keyset,
+                                                                   @RequestParam(required = false) String after) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES, () -> {
+            EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.loadEntitiesList(entityName, view,
+                    limit, offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion, keyset, after);
+            return createSearchResponse(entitiesSearchResult, BooleanUtils.isTrue(returnCount));
+        });
+    }
+
+    @GetMapping("/{entityName}/search")
+    public DeferredResult<ResponseEntity<String>> searchEntitiesListGet(@PathVariable String entityName,
+                                                                        @RequestParam String filter,
+                                                                        @RequestParam(required = false) String view,
+                                                                        @RequestParam(required = false) Integer limit,
+                                                                        @RequestParam(required = false) Integer offset,
+                                                                        @RequestParam(required = false) String sort,
+                                                                        @RequestParam(required = false) Boolean returnNulls,
+                                                                        @RequestParam(required = false) Boolean returnCount,
+                                                                        @RequestParam(required = false) Boolean dynamicAttributes,
+                                                                        @RequestParam(required = false) String modelVersion,
+                                                                        @RequestParam(required = false) Boolean keyset,
+                                                                        @RequestParam(required = false) String after) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES, () -> {
+            EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.searchEntities(entityName, filter,
+                    view, limit, offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion, keyset, after);
+            return createSearchResponse(entitiesSearchResult, BooleanUtils.isTrue(returnCount));
+        });
+    }
+
+    protected ResponseEntity<String> createSearchResponse(EntitiesSearchResult entitiesSearchResult, boolean returnCount) {
         ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
-        if (BooleanUtils.isTrue(returnCount)) {
+        if (returnCount) {
             responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
         }
+        if (entitiesSearchResult.getContinuationToken() != null) {
+            responseBuilder.header("X-Continuation-Token", entitiesSearchResult.getContinuationToken());
+        }
         return responseBuilder.body(entitiesSearchResult.getJson());
     }
 
-    @GetMapping("/{entityName}/search")
-    public ResponseEntity<String> searchEntitiesListGet(@PathVariable String entityName,
-                                                        @RequestParam String filter,
-                                                        @RequestParam(required = false) String view,
-                                                        @RequestParam(required = false) Integer limit,
-                                                        @RequestParam(required = false) Integer offset,
-                                                        @RequestParam(required = false) String sort,
-                                                        @RequestParam(required = false) Boolean returnNulls,
-                                                        @RequestParam(required = false) Boolean returnCount,
-                                                        @RequestParam(required = false) Boolean dynamicAttributes,
-                                                        @RequestParam(required = false) String modelVersion) {
-        EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.searchEntities(entityName, filter,
-                view, limit, offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
+    /**
+     * Streams all entities matching the request in batches, writing each batch to the response as soon as it is
+     * loaded. Entities are ordered by the {@code sort} attribute and the identifier.
+     */
+    @GetMapping(value = "/{entityName}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamEntitiesList(@PathVariable String entityName,
+                                                                    @RequestParam(required = false) String view,
+                                                                    @RequestParam(required = false) Integer limit,
+                                                                    @RequestParam(required = false) String sort,
+                                                                    @RequestParam(required = false) Boolean returnNulls,
+                                                                    @RequestParam(required = false) Boolean returnCount,
+                                                                    @RequestParam(required = false) Boolean dynamicAttributes,
+                                                                    @RequestParam(required = false) String modelVersion) {
+        EntitiesStreamResult streamResult = entitiesControllerManager.streamEntitiesList(entityName, view, limit,
+                sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
+        return createStreamResponse(streamResult, returnCount);
+    }
+
+    @GetMapping(value = "/{entityName}/search", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamSearchEntitiesListGet(@PathVariable String entityName,
+                                                                             @RequestParam String filter,
+                                                                             @RequestParam(required = false) String view,
+                                                                             @RequestParam(required = false) Integer limit,
+                                                                             @RequestParam(required = false) String sort,
+                                                                             @RequestParam(required = false) Boolean returnNulls,
+                                                                             @RequestParam(required = false) Boolean returnCount,
+                                                                             @RequestParam(required = false) Boolean dynamicAttributes,
+                                                                             @RequestParam(required = false) String modelVersion) {
+        EntitiesStreamResult streamResult = entitiesControllerManager.streamSearchEntities(entityName, filter, view,
+                limit, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
+        return createStreamResponse(streamResult, returnCount);
+    }
+
+    protected ResponseEntity<StreamingResponseBody> createStreamResponse(EntitiesStreamResult streamResult,
+                                                                         Boolean returnCount) {
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON_UTF8);
         if (BooleanUtils.isTrue(returnCount)) {
-            responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
+            responseBuilder.header("X-Total-Count", streamResult.getCount().toString());
         }
-        return responseBuilder.body(entitiesSearchResult.getJson());
+        return responseBuilder.body(streamResult.getBody());
     }
 
     @PostMapping("/{entityName}/search")
-    public ResponseEntity<String> searchEntitiesListPost(@PathVariable String entityName,
-                                                         @RequestBody String requestBodyJson) {
-        EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.searchEntities(entityName, requestBodyJson);
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
-        JsonObject requestJsonObject = new JsonParser().parse(requestBodyJson).getAsJsonObject();
-        JsonPrimitive returnCount = requestJsonObject.getAsJsonPrimitive("returnCount");
-        if (returnCount != null && returnCount.getAsBoolean()) {
-            responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
-        }
-        return responseBuilder.body(entitiesSearchResult.getJson());
+    public DeferredResult<ResponseEntity<String>> searchEntitiesListPost(@PathVariable String entityName,
+                                                                         @RequestBody String requestBodyJson) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES, () -> {
+            EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.searchEntities(entityName, requestBodyJson);
+            JsonObject requestJsonObject = new JsonParser().parse(requestBodyJson).getAsJsonObject();
+            JsonPrimitive returnCount = requestJsonObject.getAsJsonPrimitive("returnCount");
+            return createSearchResponse(entitiesSearchResult, returnCount != null && returnCount.getAsBoolean());
+        });
     }
 
     @PostMapping("/{entityName}")
-    public ResponseEntity<String> createEntity(@RequestBody String entityJson,
-                                               @PathVariable String entityName,
-                                               @RequestParam(required = false) String modelVersion,
-                                               HttpServletRequest request) {
-        CreatedEntityInfo entityInfo = entitiesControllerManager.createEntity(entityJson, entityName, modelVersion);
+    public DeferredResult<ResponseEntity<String>> createEntity(@RequestBody String entityJson,
+                                                               @PathVariable String entityName,
+                                                               @RequestParam(required = false) String modelVersion,
+                                                               HttpServletRequest request) {
+        String requestUrl = request.getRequestURL().toString();
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES, () -> {
+            CreatedEntityInfo entityInfo = entitiesControllerManager.createEntity(entityJson, entityName, modelVersion);
 
-        UriComponents uriComponents = UriComponentsBuilder.fromHttpUrl(request.getRequestURL().toString())
-                .path("/{id}")
-                .buildAndExpand(entityInfo.getId().toString());
+            UriComponents uriComponents = UriComponentsBuilder.fromHttpUrl(requestUrl)
+                    .path("/{id}")
+                    .buildAndExpand(entityInfo.getId().toString());
 
-        HttpHeaders httpHeaders = new HttpHeaders();
-        httpHeaders.setLocation(uriComponents.toUri());
-        return new ResponseEntity<>(entityInfo.getJson(), httpHeaders, HttpStatus.CREATED);
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setLocation(uriComponents.toUri());
+            return new ResponseEntity<>(entityInfo.getJson(), httpHeaders, HttpStatus.CREATED);
+        });
+    }
+
+    @PostMapping("/batch")
+    public DeferredResult<String> executeBatch(@RequestBody String batchRequestJson) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES,
+                () -> entitiesControllerManager.executeBatch(batchRequestJson));
     }
 
     @PutMapping("/{entityName}/{entityId}")
-    public String updateEntity(@RequestBody String entityJson,
-                               @PathVariable String entityName,
-                               @PathVariable String entityId,
-                               @RequestParam(required = false) String modelVersion) {
-        CreatedEntityInfo entityInfo = entitiesControllerManager.updateEntity(entityJson, entityName, entityId, modelVersion);
-        return entityInfo.getJson();
+    public DeferredResult<String> updateEntity(@RequestBody String entityJson,
+                                               @PathVariable String entityName,
+                                               @PathVariable String entityId,
+                                               @RequestParam(required = false) String modelVersion) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES, () -> {
+            CreatedEntityInfo entityInfo = entitiesControllerManager.updateEntity(entityJson, entityName, entityId, modelVersion);
+            return entityInfo.getJson();
+        });
     }
 
     @DeleteMapping(path = "/{entityName}/{entityId}")
-    public void deleteEntity(@PathVariable String entityName,
-                             @PathVariable String entityId,
-                             @RequestParam(required = false) String modelVersion) {
-        entitiesControllerManager.deleteEntity(entityName, entityId, modelVersion);
+    public DeferredResult<ResponseEntity<Void>> deleteEntity(@PathVariable String entityName,
+                                                             @PathVariable String entityId,
+                                                             @RequestParam(required = false) String modelVersion) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.ENTITIES, () -> {
+            entitiesControllerManager.deleteEntity(entityName, entityId, modelVersion);
+            return ResponseEntity.ok().<Void>build();
+        });
     }
 }
\ No newline at end of file
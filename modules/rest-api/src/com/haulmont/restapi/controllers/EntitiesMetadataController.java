@@ -16,16 +16,17 @@
 
 package com.haulmont.restapi.controllers;
 
-import com.haulmont.restapi.data.MetaClassInfo;
+import com.haulmont.restapi.common.RestResponseCache;
 import com.haulmont.restapi.service.EntitiesMetadataControllerManager;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
-import java.util.Collection;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * Controller that is used for getting entities metadata. User permissions for entities access aren't taken into account
@@ -37,24 +38,28 @@ public class EntitiesMetadataController {
     @Inject
     protected EntitiesMetadataControllerManager controllerManager;
 
+    @Inject
+    protected RestResponseCache restResponseCache;
+
     @GetMapping("/entities/{entityName}")
-    public MetaClassInfo getMetaClassInfo(@PathVariable String entityName) {
-        return controllerManager.getMetaClassInfo(entityName);
+    public ResponseEntity<String> getMetaClassInfo(@PathVariable String entityName, HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false, () -> controllerManager.getMetaClassInfo(entityName));
     }
 
     @GetMapping("/entities")
-    public Collection<MetaClassInfo> getAllMetaClassesInfo() {
-        return controllerManager.getAllMetaClassesInfo();
+    public ResponseEntity<String> getAllMetaClassesInfo(HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false, () -> controllerManager.getAllMetaClassesInfo());
     }
 
     @GetMapping("/entities/{entityName}/views/{viewName}")
-    public String getView(@PathVariable String entityName,
-                          @PathVariable String viewName) {
-        return controllerManager.getView(entityName, viewName);
+    public ResponseEntity<String> getView(@PathVariable String entityName,
+                                          @PathVariable String viewName,
+                                          HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false, () -> controllerManager.getView(entityName, viewName));
     }
 
     @GetMapping("/entities/{entityName}/views")
-    public String getAllViewsForMetaClass(@PathVariable String entityName) {
-        return controllerManager.getAllViewsForMetaClass(entityName);
+    public ResponseEntity<String> getAllViewsForMetaClass(@PathVariable String entityName, HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false, () -> controllerManager.getAllViewsForMetaClass(entityName));
     }
 }
\ No newline at end of file
@@ -16,16 +16,17 @@
 
 package com.haulmont.restapi.controllers;
 
-import com.haulmont.restapi.data.EnumInfo;
+import com.haulmont.restapi.common.RestResponseCache;
 import com.haulmont.restapi.service.EnumsControllerManager;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
-import java.util.List;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * REST controller that is used for getting an information about enums
@@ -36,13 +37,16 @@ public class EnumsController {
     @Inject
     protected EnumsControllerManager enumsControllerManager;
 
+    @Inject
+    protected RestResponseCache restResponseCache;
+
     @GetMapping
-    public List<EnumInfo> getAllEnumInfos() {
-        return enumsControllerManager.getAllEnumInfos();
+    public ResponseEntity<String> getAllEnumInfos(HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false, () -> enumsControllerManager.getAllEnumInfos());
     }
 
     @GetMapping("/{enumClassName:.+}")
-    public EnumInfo getEnumInfo(@PathVariable String enumClassName) {
-        return enumsControllerManager.getEnumInfo(enumClassName);
+    public ResponseEntity<String> getEnumInfo(@PathVariable String enumClassName, HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false, () -> enumsControllerManager.getEnumInfo(enumClassName));
     }
 }
\ No newline at end of file
@@ -16,15 +16,17 @@
 
 package com.haulmont.restapi.controllers;
 
+import com.haulmont.restapi.common.RestResponseCache;
 import com.haulmont.restapi.service.MessagesControllerManager;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
-import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * Controller that returns localized messages
@@ -36,23 +38,30 @@ public class MessagesController {
     @Inject
     protected MessagesControllerManager messagesControllerManager;
 
+    @Inject
+    protected RestResponseCache restResponseCache;
+
     @GetMapping("/entities/{entityName}")
-    public Map<String, String> getLocalizationForEntity(@PathVariable String entityName) {
-        return messagesControllerManager.getLocalizationForEntity(entityName);
+    public ResponseEntity<String> getLocalizationForEntity(@PathVariable String entityName, HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false,
+                () -> messagesControllerManager.getLocalizationForEntity(entityName));
     }
 
     @GetMapping("/entities")
-    public Map<String, String> getLocalizationForAllEntities() {
-        return messagesControllerManager.getLocalizationForAllEntities();
+    public ResponseEntity<String> getLocalizationForAllEntities(HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false,
+                () -> messagesControllerManager.getLocalizationForAllEntities());
     }
 
     @GetMapping("/enums/{enumClassName:.+}")
-    public Map<String, String> getLocalizationForEnum(@PathVariable String enumClassName) {
-        return messagesControllerManager.getLocalizationForEnum(enumClassName);
+    public ResponseEntity<String> getLocalizationForEnum(@PathVariable String enumClassName, HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false,
+                () -> messagesControllerManager.getLocalizationForEnum(enumClassName));
     }
 
     @GetMapping("/enums")
-    public Map<String, String> getLocalizationForAllEnums() {
-        return messagesControllerManager.getLocalizationForAllEnums();
+    public ResponseEntity<String> getLocalizationForAllEnums(HttpServletRequest request) {
+        return restResponseCache.getResponse(request, false,
+                () -> messagesControllerManager.getLocalizationForAllEnums());
     }
 }
@@ -16,15 +16,16 @@
 
 package com.haulmont.restapi.controllers;
 
-import com.haulmont.restapi.data.PermissionInfo;
+import com.haulmont.restapi.common.RestResponseCache;
 import com.haulmont.restapi.service.PermissionsControllerManager;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
-import java.util.Collection;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * Controller that is used for getting current user permissions
@@ -36,8 +37,11 @@ public class PermissionsController {
     @Inject
     protected PermissionsControllerManager permissionsControllerManager;
 
+    @Inject
+    protected RestResponseCache restResponseCache;
+
     @GetMapping("/v2/permissions")
-    public Collection<PermissionInfo> getPermissions() {
-        return permissionsControllerManager.getPermissionInfos();
+    public ResponseEntity<String> getPermissions(HttpServletRequest request) {
+        return restResponseCache.getResponse(request, true, () -> permissionsControllerManager.getPermissionInfos());
     }
 }
\ No newline at end of file
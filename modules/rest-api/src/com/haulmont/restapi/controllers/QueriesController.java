@@ -16,6 +16,7 @@
 
 package com.haulmont.restapi.controllers;
 
+import com.haulmont.restapi.common.RestAsyncExecutor;
 import com.haulmont.restapi.config.RestQueriesConfiguration;
 import com.haulmont.restapi.service.QueriesControllerManager;
 import org.apache.commons.lang.BooleanUtils;
@@ -23,9 +24,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.inject.Inject;
-import java.text.ParseException;
 import java.util.List;
 import java.util.Map;
 
@@ -39,8 +41,11 @@ public class QueriesController {
     @Inject
     protected QueriesControllerManager queriesControllerManager;
 
+    @Inject
+    protected RestAsyncExecutor restAsyncExecutor;
+
     @GetMapping("/{entityName}/{queryName}")
-    public ResponseEntity<String> executeQueryGet(@PathVariable String entityName,
+    public DeferredResult<ResponseEntity<String>> executeQueryGet(@PathVariable String entityName,
                                @PathVariable String queryName,
                                @RequestParam(required = false) Integer limit,
                                @RequestParam(required = false) Integer offset,
@@ -50,17 +55,19 @@ public class QueriesController {
                                @RequestParam(required = false) Boolean returnCount,
                                @RequestParam(required = false) String modelVersion,
                                @RequestParam Map<String, String> params) {
-        String resultJson = queriesControllerManager.executeQueryGet(entityName, queryName, limit, offset, view, returnNulls, dynamicAttributes, modelVersion, params);
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
-        if (BooleanUtils.isTrue(returnCount)) {
-            String count = queriesControllerManager.getCountGet(entityName, queryName, modelVersion, params);
-            responseBuilder.header("X-Total-Count", count);
-        }
-        return responseBuilder.body(resultJson);
+        return restAsyncExecutor.execute(RestAsyncExecutor.QUERIES, () -> {
+            String resultJson = queriesControllerManager.executeQueryGet(entityName, queryName, limit, offset, view, returnNulls, dynamicAttributes, modelVersion, params);
+            ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
+            if (BooleanUtils.isTrue(returnCount)) {
+                String count = queriesControllerManager.getCountGet(entityName, queryName, modelVersion, params);
+                responseBuilder.header("X-Total-Count", count);
+            }
+            return responseBuilder.body(resultJson);
+        });
     }
 
     @PostMapping("/{entityName}/{queryName}")
-    public ResponseEntity<String> executeQueryPost(@PathVariable String entityName,
+    public DeferredResult<ResponseEntity<String>> executeQueryPost(@PathVariable String entityName,
                                @PathVariable String queryName,
                                @RequestParam(required = false) Integer limit,
                                @RequestParam(required = false) Integer offset,
@@ -70,46 +77,93 @@ public class QueriesController {
                                @RequestParam(required = false) Boolean returnCount,
                                @RequestParam(required = false) String modelVersion,
                                @RequestBody String paramsJson) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.QUERIES, () -> {
+            String resultJson = queriesControllerManager.executeQueryPost(entityName, queryName, limit, offset, view, returnNulls, dynamicAttributes, modelVersion, paramsJson);
+            ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
+            if (BooleanUtils.isTrue(returnCount)) {
+                String count = queriesControllerManager.getCountPost(entityName, queryName, modelVersion, paramsJson);
+                responseBuilder.header("X-Total-Count", count);
+            }
+            return responseBuilder.body(resultJson);
+        });
+    }
+
+    @GetMapping(value = "/{entityName}/{queryName}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamQueryGet(@PathVariable String entityName,
+                                                                @PathVariable String queryName,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) Integer offset,
+                                                                @RequestParam(required = false) String view,
+                                                                @RequestParam(required = false) Boolean returnNulls,
+                                                                @RequestParam(required = false) Boolean dynamicAttributes,
+                                                                @RequestParam(required = false) Boolean returnCount,
+                                                                @RequestParam(required = false) String modelVersion,
+                                                                @RequestParam Map<String, String> params) {
+        StreamingResponseBody body = queriesControllerManager.streamQueryGet(entityName, queryName, limit, offset, view, returnNulls, dynamicAttributes, modelVersion, params);
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON_UTF8);
+        if (BooleanUtils.isTrue(returnCount)) {
+            String count = queriesControllerManager.getCountGet(entityName, queryName, modelVersion, params);
+            responseBuilder.header("X-Total-Count", count);
+        }
+        return responseBuilder.body(body);
+    }
 
-        String resultJson = queriesControllerManager.executeQueryPost(entityName, queryName, limit, offset, view, returnNulls, dynamicAttributes, modelVersion, paramsJson);
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
+    @PostMapping(value = "/{entityName}/{queryName}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamQueryPost(@PathVariable String entityName,
+                                                                 @PathVariable String queryName,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 @RequestParam(required = false) Integer offset,
+                                                                 @RequestParam(required = false) String view,
+                                                                 @RequestParam(required = false) Boolean returnNulls,
+                                                                 @RequestParam(required = false) Boolean dynamicAttributes,
+                                                                 @RequestParam(required = false) Boolean returnCount,
+                                                                 @RequestParam(required = false) String modelVersion,
+                                                                 @RequestBody String paramsJson) {
+        StreamingResponseBody body = queriesControllerManager.streamQueryPost(entityName, queryName, limit, offset, view, returnNulls, dynamicAttributes, modelVersion, paramsJson);
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON_UTF8);
         if (BooleanUtils.isTrue(returnCount)) {
             String count = queriesControllerManager.getCountPost(entityName, queryName, modelVersion, paramsJson);
             responseBuilder.header("X-Total-Count", count);
         }
-        return responseBuilder.body(resultJson);
+        return responseBuilder.body(body);
     }
 
     @GetMapping(value = "/{entityName}/{queryName}/count")
-    public String getCountGet(@PathVariable String entityName,
+    public DeferredResult<String> getCountGet(@PathVariable String entityName,
                               @PathVariable String queryName,
                               @RequestParam(required = false) String modelVersion,
-                              @RequestParam Map<String, String> params) throws ClassNotFoundException, ParseException {
-        return queriesControllerManager.getCountGet(entityName, queryName, modelVersion, params);
+                              @RequestParam Map<String, String> params) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.QUERIES,
+                () -> queriesControllerManager.getCountGet(entityName, queryName, modelVersion, params));
     }
 
     @GetMapping(value = "/{entityName}/{queryName}/count", produces = "text/plain;charset=UTF-8")
-    public String getCountGetText(@PathVariable String entityName,
+    public DeferredResult<String> getCountGetText(@PathVariable String entityName,
                               @PathVariable String queryName,
                               @RequestParam(required = false) String modelVersion,
-                              @RequestParam Map<String, String> params) throws ClassNotFoundException, ParseException {
-        return queriesControllerManager.getCountGet(entityName, queryName, modelVersion, params);
+                              @RequestParam Map<String, String> params) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.QUERIES,
+                () -> queriesControllerManager.getCountGet(entityName, queryName, modelVersion, params));
     }
 
     @PostMapping(value = "/{entityName}/{queryName}/count")
-    public String getCountPost(@PathVariable String entityName,
+    public DeferredResult<String> getCountPost(@PathVariable String entityName,
                            @PathVariable String queryName,
                            @RequestParam(required = false) String modelVersion,
-                           @RequestBody String paramsJson) throws ClassNotFoundException, ParseException {
-        return queriesControllerManager.getCountPost(entityName, queryName, modelVersion, paramsJson);
+                           @RequestBody String paramsJson) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.QUERIES,
+                () -> queriesControllerManager.getCountPost(entityName, queryName, modelVersion, paramsJson));
     }
 
     @PostMapping(value = "/{entityName}/{queryName}/count", produces = "text/plain;charset=UTF-8")
-    public String getCountPostText(@PathVariable String entityName,
+    public DeferredResult<String> getCountPostText(@PathVariable String entityName,
                            @PathVariable String queryName,
                            @RequestParam(required = false) String modelVersion,
-                           @RequestBody String paramsJson) throws ClassNotFoundException, ParseException {
-        return queriesControllerManager.getCountPost(entityName, queryName, modelVersion, paramsJson);
+                           @RequestBody String paramsJson) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.QUERIES,
+                () -> queriesControllerManager.getCountPost(entityName, queryName, modelVersion, paramsJson));
     }
 
     @GetMapping("/{entityName}")
@@ -19,17 +19,21 @@ package com.haulmont.restapi.controllers;
 import com.haulmont.cuba.core.global.validation.CustomValidationException;
 import com.haulmont.cuba.core.global.validation.MethodParametersValidationException;
 import com.haulmont.cuba.core.global.validation.MethodResultValidationException;
+import com.haulmont.restapi.config.RestApiConfig;
 import com.haulmont.restapi.exception.ConstraintViolationInfo;
 import com.haulmont.restapi.exception.ErrorInfo;
 import com.haulmont.restapi.exception.RestAPIException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.inject.Inject;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
@@ -40,6 +44,9 @@ public class RestControllerExceptionHandler {
 
     private final Logger log = LoggerFactory.getLogger(RestControllerExceptionHandler.class);
 
+    @Inject
+    protected RestApiConfig restApiConfig;
+
     protected static final Class[] serializableInvalidValueTypes = new Class[]{
             String.class, Date.class, Number.class, Enum.class, UUID.class
     };
@@ -53,7 +60,21 @@ public class RestControllerExceptionHandler {
             log.error("RestAPIException: {}, {}", e.getMessage(), e.getDetails(), e.getCause());
         }
         ErrorInfo errorInfo = new ErrorInfo(e.getMessage(), e.getDetails());
-        return new ResponseEntity<>(errorInfo, e.getHttpStatus());
+        HttpHeaders headers = new HttpHeaders();
+        if (e.getHttpStatus() == HttpStatus.SERVICE_UNAVAILABLE) {
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(restApiConfig.getRetryAfterSec()));
+        }
+        return new ResponseEntity<>(errorInfo, headers, e.getHttpStatus());
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    @ResponseBody
+    public ResponseEntity<ErrorInfo> handleTaskRejectedException(TaskRejectedException e) {
+        log.warn("REST API streaming request rejected: {}", e.getMessage());
+        ErrorInfo errorInfo = new ErrorInfo("Service unavailable", "Server is overloaded, try again later");
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(restApiConfig.getRetryAfterSec()));
+        return new ResponseEntity<>(errorInfo, headers, HttpStatus.SERVICE_UNAVAILABLE);
     }
 
     @ExceptionHandler(MethodResultValidationException.class)
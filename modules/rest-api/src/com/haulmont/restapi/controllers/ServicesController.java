@@ -16,11 +16,13 @@
 
 package com.haulmont.restapi.controllers;
 
+import com.haulmont.restapi.common.RestAsyncExecutor;
 import com.haulmont.restapi.config.RestServicesConfiguration;
 import com.haulmont.restapi.service.ServicesControllerManager;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.inject.Inject;
 import java.util.Collection;
@@ -36,29 +38,28 @@ public class ServicesController {
     @Inject
     protected ServicesControllerManager servicesControllerManager;
 
+    @Inject
+    protected RestAsyncExecutor restAsyncExecutor;
+
     @PostMapping("/{serviceName}/{methodName}")
-    public ResponseEntity<String> invokeServiceMethodPost(@PathVariable String serviceName,
-                                                          @PathVariable String methodName,
-                                                          @RequestParam(required = false) String modelVersion,
-                                                          @RequestBody(required = false) String paramsJson) {
-        ServicesControllerManager.ServiceCallResult result = servicesControllerManager.invokeServiceMethodPost(serviceName, methodName, paramsJson, modelVersion);
-        HttpStatus status;
-        if (result == null) {
-            status = HttpStatus.NO_CONTENT;
-            result = new ServicesControllerManager.ServiceCallResult("", false);
-        } else {
-            status = HttpStatus.OK;
-        }
-        String contentType = result.isValidJson() ? "application/json;charset=UTF-8" : "text/plain;charset=UTF-8";
-        return ResponseEntity.status(status).header("Content-Type", contentType).body(result.getStringValue());
+    public DeferredResult<ResponseEntity<String>> invokeServiceMethodPost(@PathVariable String serviceName,
+                                                                          @PathVariable String methodName,
+                                                                          @RequestParam(required = false) String modelVersion,
+                                                                          @RequestBody(required = false) String paramsJson) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.SERVICES, () -> createServiceCallResponse(
+                servicesControllerManager.invokeServiceMethodPost(serviceName, methodName, paramsJson, modelVersion)));
     }
 
     @GetMapping("/{serviceName}/{methodName}")
-    public ResponseEntity<String> invokeServiceMethodGet(@PathVariable String serviceName,
-                                                         @PathVariable String methodName,
-                                                         @RequestParam(required = false) String modelVersion,
-                                                         @RequestParam Map<String, String> paramsMap) {
-        ServicesControllerManager.ServiceCallResult result = servicesControllerManager.invokeServiceMethodGet(serviceName, methodName, paramsMap, modelVersion);
+    public DeferredResult<ResponseEntity<String>> invokeServiceMethodGet(@PathVariable String serviceName,
+                                                                         @PathVariable String methodName,
+                                                                         @RequestParam(required = false) String modelVersion,
+                                                                         @RequestParam Map<String, String> paramsMap) {
+        return restAsyncExecutor.execute(RestAsyncExecutor.SERVICES, () -> createServiceCallResponse(
+                servicesControllerManager.invokeServiceMethodGet(serviceName, methodName, paramsMap, modelVersion)));
+    }
+
+    protected ResponseEntity<String> createServiceCallResponse(ServicesControllerManager.ServiceCallResult result) {
         HttpStatus status;
         if (result == null) {
             status = HttpStatus.NO_CONTENT;
@@ -19,12 +19,19 @@ package com.haulmont.restapi.data;
 public class EntitiesSearchResult {
     protected String json;
     protected Long count;
+    protected String continuationToken;
 
     public EntitiesSearchResult(String json, Long count) {
         this.json = json;
         this.count = count;
     }
 
+    public EntitiesSearchResult(String json, Long count, String continuationToken) {
+        this.json = json;
+        this.count = count;
+        this.continuationToken = continuationToken;
+    }
+
     public String getJson() {
         return json;
     }
@@ -32,4 +39,11 @@ public class EntitiesSearchResult {
     public Long getCount() {
         return count;
     }
+
+    /**
+     * @return token for loading the next page in keyset pagination mode, or null if there are no more pages
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
 }
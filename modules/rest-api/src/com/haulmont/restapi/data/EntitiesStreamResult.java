@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.restapi.data;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Result of a request that streams entities to the client. The total count is evaluated before the body is written,
+ * because it is sent in a header.
+ */
+public class EntitiesStreamResult {
+    protected StreamingResponseBody body;
+    protected Long count;
+
+    public EntitiesStreamResult(StreamingResponseBody body, Long count) {
+        this.body = body;
+        this.count = count;
+    }
+
+    public StreamingResponseBody getBody() {
+        return body;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.restapi.data;
+
+import javax.annotation.Nullable;
+
+public class EntityLoadResult {
+    protected String json;
+    protected String eTag;
+
+    public EntityLoadResult(@Nullable String json, @Nullable String eTag) {
+        this.json = json;
+        this.eTag = eTag;
+    }
+
+    /**
+     * @return entity JSON, or null if the client has the same version of the entity
+     */
+    @Nullable
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * @return ETag of the entity, or null if entity ETags are disabled or the entity is not versioned
+     */
+    @Nullable
+    public String getETag() {
+        return eTag;
+    }
+
+    public boolean isNotModified() {
+        return json == null;
+    }
+}
@@ -18,8 +18,15 @@ package com.haulmont.restapi.service;
 
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.common.io.BaseEncoding;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.haulmont.chile.core.datatypes.Datatype;
 import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.client.sys.PersistenceManagerClient;
 import com.haulmont.cuba.core.app.importexport.EntityImportException;
 import com.haulmont.cuba.core.app.importexport.EntityImportExportService;
@@ -29,23 +36,41 @@ import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
 import com.haulmont.cuba.core.app.serialization.EntitySerializationOption;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.global.validation.CustomValidationException;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.SecurityContext;
+import com.haulmont.cuba.core.sys.UserInvocationContext;
+import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.restapi.common.RestControllerUtils;
+import com.haulmont.restapi.common.RestEntitiesJsonWriter;
+import com.haulmont.restapi.common.RestResponseCache;
+import com.haulmont.restapi.config.RestApiConfig;
 import com.haulmont.restapi.data.CreatedEntityInfo;
 import com.haulmont.restapi.data.EntitiesSearchResult;
+import com.haulmont.restapi.data.EntitiesStreamResult;
+import com.haulmont.restapi.data.EntityLoadResult;
 import com.haulmont.restapi.exception.RestAPIException;
 import com.haulmont.restapi.service.filter.RestFilterParseException;
 import com.haulmont.restapi.service.filter.RestFilterParseResult;
 import com.haulmont.restapi.service.filter.RestFilterParser;
 import com.haulmont.restapi.transform.JsonTransformationDirection;
 import org.apache.commons.lang.BooleanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.validation.ConstraintViolationException;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Class that executes business logic required by the {@link com.haulmont.restapi.controllers.EntitiesController}. It
@@ -54,6 +79,15 @@ import java.util.*;
 @Component("cuba_EntitiesControllerManager")
 public class EntitiesControllerManager {
 
+    private static final Logger log = LoggerFactory.getLogger(EntitiesControllerManager.class);
+
+    protected static final String BATCH_MODE_ATOMIC = "atomic";
+    protected static final String BATCH_MODE_BEST_EFFORT = "bestEffort";
+
+    protected static final String BATCH_OP_CREATE = "create";
+    protected static final String BATCH_OP_UPDATE = "update";
+    protected static final String BATCH_OP_DELETE = "delete";
+
     @Inject
     protected DataManager dataManager;
 
@@ -84,12 +118,35 @@ public class EntitiesControllerManager {
     @Inject
     protected RestFilterParser restFilterParser;
 
+    @Inject
+    protected RestApiConfig restApiConfig;
+
+    @Inject
+    protected RestResponseCache restResponseCache;
+
     public String loadEntity(String entityName,
                              String entityId,
                              @Nullable String viewName,
                              @Nullable Boolean returnNulls,
                              @Nullable Boolean dynamicAttributes,
                              @Nullable String modelVersion) {
+        return loadEntity(entityName, entityId, viewName, returnNulls, dynamicAttributes, modelVersion, null).getJson();
+    }
+
+    /**
+     * Loads the entity like {@link #loadEntity(String, String, String, Boolean, Boolean, String)}. If entity ETags are
+     * enabled and the {@code ifNoneMatch} header value of the request matches the ETag of the entity JSON, the result
+     * contains only the ETag and the JSON is not sent to the client.
+     * <p>
+     * The method does not access the HTTP request or response, so it can be called outside of the request thread.
+     */
+    public EntityLoadResult loadEntity(String entityName,
+                             String entityId,
+                             @Nullable String viewName,
+                             @Nullable Boolean returnNulls,
+                             @Nullable Boolean dynamicAttributes,
+                             @Nullable String modelVersion,
+                             @Nullable String ifNoneMatch) {
 
         entityName = restControllerUtils.transformEntityNameIfRequired(entityName, modelVersion, JsonTransformationDirection.FROM_VERSION);
         MetaClass metaClass = restControllerUtils.getMetaClass(entityName);
@@ -117,7 +174,12 @@ public class EntitiesControllerManager {
 
         String json = entitySerializationAPI.toJson(entity, null, serializationOptions.toArray(new EntitySerializationOption[0]));
         json = restControllerUtils.transformJsonIfRequired(entityName, modelVersion, JsonTransformationDirection.TO_VERSION, json);
-        return json;
+
+        String eTag = restResponseCache.createEntityETag(json);
+        if (eTag != null && restResponseCache.eTagMatches(ifNoneMatch, eTag)) {
+            return new EntityLoadResult(null, eTag);
+        }
+        return new EntityLoadResult(json, eTag);
     }
 
     public EntitiesSearchResult loadEntitiesList(String entityName,
@@ -128,16 +190,16 @@ public class EntitiesControllerManager {
                                                  @Nullable Boolean returnNulls,
                                                  @Nullable Boolean returnCount,
                                                  @Nullable Boolean dynamicAttributes,
-                                                 @Nullable String modelVersion) {
+                                                 @Nullable String modelVersion,
+                                                 @Nullable Boolean keyset,
+                                                 @Nullable String after) {
         entityName = restControllerUtils.transformEntityNameIfRequired(entityName, modelVersion, JsonTransformationDirection.FROM_VERSION);
         MetaClass metaClass = restControllerUtils.getMetaClass(entityName);
         checkCanReadEntity(metaClass);
 
         String queryString = "select e from " + entityName + " e";
-        String json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls, dynamicAttributes, modelVersion,
-                metaClass, new HashMap<>());
-
-        json = restControllerUtils.transformJsonIfRequired(entityName, modelVersion, JsonTransformationDirection.TO_VERSION, json);
+        EntitiesSearchResult searchResult = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls,
+                dynamicAttributes, modelVersion, metaClass, new HashMap<>(), keyset, after);
 
         Long count = null;
         if (BooleanUtils.isTrue(returnCount)) {
@@ -145,8 +207,7 @@ public class EntitiesControllerManager {
                     .setQuery(LoadContext.createQuery(queryString));
             count = dataManager.getCount(ctx);
         }
-        return new EntitiesSearchResult(json, count);
-
+        return new EntitiesSearchResult(searchResult.getJson(), count, searchResult.getContinuationToken());
     }
 
     public EntitiesSearchResult searchEntities(String entityName,
@@ -158,7 +219,9 @@ public class EntitiesControllerManager {
                                                @Nullable Boolean returnNulls,
                                                @Nullable Boolean returnCount,
                                                @Nullable Boolean dynamicAttributes,
-                                               @Nullable String modelVersion) {
+                                               @Nullable String modelVersion,
+                                               @Nullable Boolean keyset,
+                                               @Nullable String after) {
         if (filterJson == null) {
             throw new RestAPIException("Cannot parse entities filter", "Entities filter cannot be null", HttpStatus.BAD_REQUEST);
         }
@@ -167,19 +230,14 @@ public class EntitiesControllerManager {
         MetaClass metaClass = restControllerUtils.getMetaClass(entityName);
         checkCanReadEntity(metaClass);
 
-        RestFilterParseResult filterParseResult;
-        try {
-            filterParseResult = restFilterParser.parse(filterJson, metaClass);
-        } catch (RestFilterParseException e) {
-            throw new RestAPIException("Cannot parse entities filter", e.getMessage(), HttpStatus.BAD_REQUEST, e);
-        }
+        RestFilterParseResult filterParseResult = parseFilter(filterJson, metaClass);
 
         String jpqlWhere = filterParseResult.getJpqlWhere().replace("{E}", "e");
         Map<String, Object> queryParameters = filterParseResult.getQueryParameters();
 
         String queryString = "select e from " + entityName + " e where " + jpqlWhere;
-        String json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls,
-                dynamicAttributes, modelVersion, metaClass, queryParameters);
+        EntitiesSearchResult searchResult = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls,
+                dynamicAttributes, modelVersion, metaClass, queryParameters, keyset, after);
         Long count = null;
         if (BooleanUtils.isTrue(returnCount)) {
             LoadContext ctx = LoadContext.create(metaClass.getJavaClass())
@@ -187,7 +245,57 @@ public class EntitiesControllerManager {
             count = dataManager.getCount(ctx);
         }
 
-        return new EntitiesSearchResult(json, count);
+        return new EntitiesSearchResult(searchResult.getJson(), count, searchResult.getContinuationToken());
+    }
+
+    /**
+     * Works like {@link #loadEntitiesList} but returns a body that loads entities in batches and writes them to the
+     * response as they are loaded. Entities are ordered by the {@code sort} attribute and the primary key; offset
+     * based paging is not supported.
+     */
+    public EntitiesStreamResult streamEntitiesList(String entityName,
+                                                   @Nullable String viewName,
+                                                   @Nullable Integer limit,
+                                                   @Nullable String sort,
+                                                   @Nullable Boolean returnNulls,
+                                                   @Nullable Boolean returnCount,
+                                                   @Nullable Boolean dynamicAttributes,
+                                                   @Nullable String modelVersion) {
+        entityName = restControllerUtils.transformEntityNameIfRequired(entityName, modelVersion, JsonTransformationDirection.FROM_VERSION);
+        MetaClass metaClass = restControllerUtils.getMetaClass(entityName);
+        checkCanReadEntity(metaClass);
+
+        String queryString = "select e from " + entityName + " e";
+        return _streamEntitiesList(queryString, new HashMap<>(), viewName, limit, sort, returnNulls, returnCount,
+                dynamicAttributes, modelVersion, metaClass);
+    }
+
+    /**
+     * Works like {@link #searchEntities(String, String, String, Integer, Integer, String, Boolean, Boolean, Boolean,
+     * String, Boolean, String)} but streams the result, see {@link #streamEntitiesList}.
+     */
+    public EntitiesStreamResult streamSearchEntities(String entityName,
+                                                     String filterJson,
+                                                     @Nullable String viewName,
+                                                     @Nullable Integer limit,
+                                                     @Nullable String sort,
+                                                     @Nullable Boolean returnNulls,
+                                                     @Nullable Boolean returnCount,
+                                                     @Nullable Boolean dynamicAttributes,
+                                                     @Nullable String modelVersion) {
+        if (filterJson == null) {
+            throw new RestAPIException("Cannot parse entities filter", "Entities filter cannot be null", HttpStatus.BAD_REQUEST);
+        }
+
+        entityName = restControllerUtils.transformEntityNameIfRequired(entityName, modelVersion, JsonTransformationDirection.FROM_VERSION);
+        MetaClass metaClass = restControllerUtils.getMetaClass(entityName);
+        checkCanReadEntity(metaClass);
+
+        RestFilterParseResult filterParseResult = parseFilter(filterJson, metaClass);
+        String jpqlWhere = filterParseResult.getJpqlWhere().replace("{E}", "e");
+        String queryString = "select e from " + entityName + " e where " + jpqlWhere;
+        return _streamEntitiesList(queryString, filterParseResult.getQueryParameters(), viewName, limit, sort,
+                returnNulls, returnCount, dynamicAttributes, modelVersion, metaClass);
     }
 
     public EntitiesSearchResult searchEntities(String entityName, String searchRequestBody) {
@@ -207,30 +315,44 @@ public class EntitiesControllerManager {
                 searchEntitiesRequest.getReturnNulls(),
                 searchEntitiesRequest.getReturnCount(),
                 searchEntitiesRequest.getDynamicAttributes(),
-                searchEntitiesRequest.getModelVersion()
+                searchEntitiesRequest.getModelVersion(),
+                searchEntitiesRequest.getKeyset(),
+                searchEntitiesRequest.getAfter()
         );
     }
 
-    protected String _loadEntitiesList(String queryString,
-                                       @Nullable String viewName,
-                                       @Nullable Integer limit,
-                                       @Nullable Integer offset,
-                                       @Nullable String sort,
-                                       @Nullable Boolean returnNulls,
-                                       @Nullable Boolean dynamicAttributes,
-                                       @Nullable String modelVersion,
-                                       MetaClass metaClass,
-                                       Map<String, Object> queryParameters) {
+    protected EntitiesSearchResult _loadEntitiesList(String queryString,
+                                                     @Nullable String viewName,
+                                                     @Nullable Integer limit,
+                                                     @Nullable Integer offset,
+                                                     @Nullable String sort,
+                                                     @Nullable Boolean returnNulls,
+                                                     @Nullable Boolean dynamicAttributes,
+                                                     @Nullable String modelVersion,
+                                                     MetaClass metaClass,
+                                                     Map<String, Object> queryParameters,
+                                                     @Nullable Boolean keyset,
+                                                     @Nullable String after) {
         LoadContext<Entity> ctx = new LoadContext<>(metaClass);
-        if (!Strings.isNullOrEmpty(sort)) {
+        KeysetCursor cursor = null;
+        if (!Strings.isNullOrEmpty(after)) {
+            cursor = parseContinuationToken(after, metaClass);
+        } else {
             boolean descSortOrder = false;
-            if (sort.startsWith("-")) {
-                descSortOrder = true;
-                sort = sort.substring(1);
-            } else if (sort.startsWith("+")) {
-                sort = sort.substring(1);
+            if (!Strings.isNullOrEmpty(sort)) {
+                if (sort.startsWith("-")) {
+                    descSortOrder = true;
+                    sort = sort.substring(1);
+                } else if (sort.startsWith("+")) {
+                    sort = sort.substring(1);
+                }
+            }
+            if (BooleanUtils.isTrue(keyset)) {
+                checkKeysetPaginationAllowed(metaClass, Strings.emptyToNull(sort));
+                cursor = KeysetCursor.first(Strings.emptyToNull(sort), descSortOrder);
+            } else if (!Strings.isNullOrEmpty(sort)) {
+                queryString += " order by e." + sort + (descSortOrder ? " desc" : "");
             }
-            queryString += " order by e." + sort + (descSortOrder ? " desc" : "");
         }
         LoadContext.Query query = new LoadContext.Query(queryString);
         if (limit != null) {
@@ -238,7 +360,9 @@ public class EntitiesControllerManager {
         } else {
             query.setMaxResults(persistenceManagerClient.getMaxFetchUI(metaClass.getName()));
         }
-        if (offset != null) {
+        if (cursor != null) {
+            query.setCursor(cursor);
+        } else if (offset != null) {
             query.setFirstResult(offset);
         }
         if (queryParameters != null) {
@@ -255,6 +379,12 @@ public class EntitiesControllerManager {
         ctx.setLoadDynamicAttributes(BooleanUtils.isTrue(dynamicAttributes));
 
         List<Entity> entities = dataManager.loadList(ctx);
+
+        String continuationToken = null;
+        if (cursor != null && !entities.isEmpty() && entities.size() == query.getMaxResults()) {
+            continuationToken = createContinuationToken(cursor.next(entities.get(entities.size() - 1)));
+        }
+
         entities.forEach(entity -> restControllerUtils.applyAttributesSecurity(entity));
 
         List<EntitySerializationOption> serializationOptions = new ArrayList<>();
@@ -263,7 +393,194 @@ public class EntitiesControllerManager {
 
         String json = entitySerializationAPI.toJson(entities, view, serializationOptions.toArray(new EntitySerializationOption[0]));
         json = restControllerUtils.transformJsonIfRequired(metaClass.getName(), modelVersion, JsonTransformationDirection.TO_VERSION, json);
-        return json;
+        return new EntitiesSearchResult(json, null, continuationToken);
+    }
+
+    protected EntitiesStreamResult _streamEntitiesList(String queryString,
+                                                       Map<String, Object> queryParameters,
+                                                       @Nullable String viewName,
+                                                       @Nullable Integer limit,
+                                                       @Nullable String sort,
+                                                       @Nullable Boolean returnNulls,
+                                                       @Nullable Boolean returnCount,
+                                                       @Nullable Boolean dynamicAttributes,
+                                                       @Nullable String modelVersion,
+                                                       MetaClass metaClass) {
+        boolean descSortOrder = false;
+        if (!Strings.isNullOrEmpty(sort)) {
+            if (sort.startsWith("-")) {
+                descSortOrder = true;
+                sort = sort.substring(1);
+            } else if (sort.startsWith("+")) {
+                sort = sort.substring(1);
+            }
+        }
+        String sortProperty = Strings.emptyToNull(sort);
+        // batches are loaded by keyset pagination, so the response is consistent even if the data is being modified
+        checkKeysetPaginationAllowed(metaClass, sortProperty);
+        KeysetCursor firstCursor = KeysetCursor.first(sortProperty, descSortOrder);
+
+        View view = !Strings.isNullOrEmpty(viewName) ? restControllerUtils.getView(metaClass, viewName) : null;
+
+        Long count = null;
+        if (BooleanUtils.isTrue(returnCount)) {
+            LoadContext ctx = LoadContext.create(metaClass.getJavaClass())
+                    .setQuery(LoadContext.createQuery(queryString).setParameters(queryParameters));
+            count = dataManager.getCount(ctx);
+        }
+
+        List<EntitySerializationOption> serializationOptions = new ArrayList<>();
+        serializationOptions.add(EntitySerializationOption.SERIALIZE_INSTANCE_NAME);
+        if (BooleanUtils.isTrue(returnNulls)) serializationOptions.add(EntitySerializationOption.SERIALIZE_NULLS);
+        EntitySerializationOption[] options = serializationOptions.toArray(new EntitySerializationOption[0]);
+
+        int batchSize = restApiConfig.getStreamingBatchSize();
+        boolean loadDynamicAttributes = BooleanUtils.isTrue(dynamicAttributes);
+        //the body is written in another thread
+        SecurityContext securityContext = AppContext.getSecurityContextNN();
+        UUID sessionId = securityContext.getSessionId();
+        Locale locale = sessionId != null ? UserInvocationContext.getRequestScopeLocale(sessionId) : null;
+
+        StreamingResponseBody body = outputStream -> {
+            AppContext.setSecurityContext(securityContext);
+            if (locale != null) {
+                UserInvocationContext.setRequestScopeInfo(sessionId, locale, null, null, null);
+            }
+            try (RestEntitiesJsonWriter writer = restControllerUtils.createEntitiesJsonWriter(outputStream,
+                    metaClass.getName(), modelVersion, view, options)) {
+                KeysetCursor cursor = firstCursor;
+                int remaining = limit != null ? limit : Integer.MAX_VALUE;
+                while (remaining > 0) {
+                    LoadContext<Entity> ctx = new LoadContext<>(metaClass);
+                    LoadContext.Query query = new LoadContext.Query(queryString)
+                            .setParameters(queryParameters)
+                            .setMaxResults(Math.min(batchSize, remaining))
+                            .setCursor(cursor);
+                    ctx.setQuery(query);
+                    ctx.setView(view);
+                    ctx.setLoadDynamicAttributes(loadDynamicAttributes);
+
+                    List<Entity> entities = dataManager.loadList(ctx);
+                    for (Entity entity : entities) {
+                        writer.write(entity);
+                    }
+                    writer.flush();
+
+                    if (entities.size() < query.getMaxResults()) {
+                        break;
+                    }
+                    remaining -= entities.size();
+                    cursor = cursor.next(entities.get(entities.size() - 1));
+                }
+            } finally {
+                AppContext.setSecurityContext(null);
+                UserInvocationContext.clearRequestScopeInfo();
+            }
+        };
+        return new EntitiesStreamResult(body, count);
+    }
+
+    protected RestFilterParseResult parseFilter(String filterJson, MetaClass metaClass) {
+        try {
+            return restFilterParser.parse(filterJson, metaClass);
+        } catch (RestFilterParseException e) {
+            throw new RestAPIException("Cannot parse entities filter", e.getMessage(), HttpStatus.BAD_REQUEST, e);
+        }
+    }
+
+    protected void checkKeysetPaginationAllowed(MetaClass metaClass, @Nullable String sortProperty) {
+        MetaProperty primaryKey = metadata.getTools().getPrimaryKeyProperty(metaClass);
+        if (primaryKey == null || primaryKey.getRange().isClass()) {
+            throw new RestAPIException("Keyset pagination is not supported",
+                    String.format("Entity %s has no simple primary key", metaClass.getName()),
+                    HttpStatus.BAD_REQUEST);
+        }
+        if (sortProperty != null) {
+            MetaProperty metaProperty = metaClass.getProperty(sortProperty);
+            if (metaProperty == null || !metaProperty.getRange().isDatatype()) {
+                throw new RestAPIException("Keyset pagination is not supported",
+                        String.format("Sort property %s is not a datatype attribute of %s", sortProperty, metaClass.getName()),
+                        HttpStatus.BAD_REQUEST);
+            }
+            // rows with null values cannot be positioned by the cursor condition
+            if (!metaProperty.isMandatory()) {
+                throw new RestAPIException("Keyset pagination is not supported",
+                        String.format("Sort property %s of %s is not mandatory", sortProperty, metaClass.getName()),
+                        HttpStatus.BAD_REQUEST);
+            }
+            if (!security.isEntityAttrPermitted(metaClass, sortProperty, EntityAttrAccess.VIEW)) {
+                throw new RestAPIException("Reading forbidden",
+                        String.format("Reading of the %s.%s attribute is forbidden", metaClass.getName(), sortProperty),
+                        HttpStatus.FORBIDDEN);
+            }
+        }
+    }
+
+    /**
+     * Encodes the cursor position into an opaque token which is returned to the client.
+     */
+    protected String createContinuationToken(KeysetCursor cursor) {
+        JsonObject jsonObject = new JsonObject();
+        if (cursor.getSortProperty() != null) {
+            jsonObject.addProperty("sort", cursor.getSortProperty());
+            Object sortValue = cursor.getSortValue();
+            if (sortValue instanceof Date) {
+                jsonObject.addProperty("value", ((Date) sortValue).getTime());
+            } else {
+                jsonObject.addProperty("value", String.valueOf(sortValue));
+            }
+        }
+        jsonObject.addProperty("desc", cursor.isDesc());
+        jsonObject.addProperty("id", String.valueOf(cursor.getId()));
+        return BaseEncoding.base64Url().omitPadding().encode(jsonObject.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected KeysetCursor parseContinuationToken(String token, MetaClass metaClass) {
+        try {
+            String json = new String(BaseEncoding.base64Url().omitPadding().decode(token), StandardCharsets.UTF_8);
+            JsonObject jsonObject = new JsonParser().parse(json).getAsJsonObject();
+
+            String sortProperty = jsonObject.has("sort") ? jsonObject.get("sort").getAsString() : null;
+            checkKeysetPaginationAllowed(metaClass, sortProperty);
+
+            Object sortValue = null;
+            if (sortProperty != null) {
+                Datatype datatype = metaClass.getPropertyNN(sortProperty).getRange().asDatatype();
+                sortValue = parseSortValue(datatype, jsonObject.get("value").getAsString());
+            }
+            boolean desc = jsonObject.get("desc").getAsBoolean();
+            Object id = getIdFromString(jsonObject.get("id").getAsString(), metaClass);
+            return new KeysetCursor(sortProperty, desc, sortValue, id);
+        } catch (RestAPIException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RestAPIException("Invalid continuation token",
+                    String.format("Cannot parse continuation token %s", token),
+                    HttpStatus.BAD_REQUEST,
+                    e);
+        }
+    }
+
+    protected Object parseSortValue(Datatype datatype, String value) throws ParseException {
+        Class javaClass = datatype.getJavaClass();
+        if (Date.class.isAssignableFrom(javaClass)) {
+            return new Date(Long.parseLong(value));
+        } else if (String.class == javaClass) {
+            return value;
+        } else if (Integer.class == javaClass) {
+            return Integer.valueOf(value);
+        } else if (Long.class == javaClass) {
+            return Long.valueOf(value);
+        } else if (Double.class == javaClass) {
+            return Double.valueOf(value);
+        } else if (BigDecimal.class == javaClass) {
+            return new BigDecimal(value);
+        } else if (Boolean.class == javaClass) {
+            return Boolean.valueOf(value);
+        } else if (UUID.class == javaClass) {
+            return UUID.fromString(value);
+        }
+        return datatype.parse(value);
     }
 
     public CreatedEntityInfo createEntity(String entityJson, String entityName, String modelVersion) {
@@ -346,6 +663,313 @@ public class EntitiesControllerManager {
         dataManager.remove(entity);
     }
 
+    /**
+     * Executes create, update and delete operations passed in the batch request. In the "atomic" mode all operations
+     * are committed in a single transaction, and the first invalid operation fails the whole request. In the
+     * "bestEffort" mode valid operations are committed and each failed one is reported in its own result.
+     *
+     * @return a JSON array with a result of each operation
+     */
+    public String executeBatch(String batchRequestJson) {
+        BatchRequestDTO batchRequest;
+        try {
+            batchRequest = new Gson().fromJson(batchRequestJson, BatchRequestDTO.class);
+        } catch (JsonParseException e) {
+            throw new RestAPIException("Cannot parse batch request", e.getMessage(), HttpStatus.BAD_REQUEST, e);
+        }
+        if (batchRequest == null || batchRequest.getOperations() == null || batchRequest.getOperations().isEmpty()) {
+            throw new RestAPIException("Invalid batch request", "Batch request contains no operations", HttpStatus.BAD_REQUEST);
+        }
+        int maxOperations = restApiConfig.getMaxBatchOperations();
+        if (batchRequest.getOperations().size() > maxOperations) {
+            throw new RestAPIException("Invalid batch request",
+                    String.format("Batch request cannot contain more than %d operations", maxOperations),
+                    HttpStatus.BAD_REQUEST);
+        }
+        String mode = batchRequest.getMode();
+        if (mode != null && !BATCH_MODE_ATOMIC.equals(mode) && !BATCH_MODE_BEST_EFFORT.equals(mode)) {
+            throw new RestAPIException("Invalid batch request",
+                    String.format("Batch mode %s is not supported", mode),
+                    HttpStatus.BAD_REQUEST);
+        }
+        boolean atomic = !BATCH_MODE_BEST_EFFORT.equals(mode);
+        String modelVersion = batchRequest.getModelVersion();
+
+        List<BatchOperation> operations = new ArrayList<>();
+        //operations with the same JSON structure share the import view, so the middleware loads their entities together
+        Map<String, EntityImportView> importViews = new HashMap<>();
+        for (BatchOperationDTO operationRequest : batchRequest.getOperations()) {
+            BatchOperation operation = new BatchOperation(operations.size(), operationRequest);
+            operations.add(operation);
+            try {
+                prepareBatchOperation(operation, modelVersion, importViews);
+            } catch (RestAPIException e) {
+                operation.error = e;
+            }
+        }
+        loadBatchEntities(operations);
+
+        List<BatchOperation> validOperations = new ArrayList<>();
+        for (BatchOperation operation : operations) {
+            if (operation.error == null) {
+                validOperations.add(operation);
+            } else if (atomic) {
+                throw new RestAPIException(operation.error.getMessage(),
+                        String.format("Operation %d: %s", operation.index, operation.error.getDetails()),
+                        operation.error.getHttpStatus(),
+                        operation.error);
+            }
+        }
+
+        if (atomic) {
+            try {
+                commitBatchOperations(validOperations);
+            } catch (EntityImportException e) {
+                throw new RestAPIException("Batch commit failed", e.getMessage(), HttpStatus.BAD_REQUEST, e);
+            }
+        } else if (!validOperations.isEmpty()) {
+            try {
+                commitBatchOperations(validOperations);
+            } catch (Exception e) {
+                //a failed operation cannot be found out from the exception, so the operations are committed one by one
+                log.debug("Batch commit failed, committing operations separately", e);
+                for (BatchOperation operation : validOperations) {
+                    try {
+                        commitBatchOperations(Collections.singletonList(operation));
+                    } catch (Exception operationException) {
+                        operation.error = createBatchOperationError(operationException);
+                    }
+                }
+            }
+        }
+
+        JsonArray results = new JsonArray();
+        for (BatchOperation operation : operations) {
+            results.add(createBatchOperationResult(operation, modelVersion));
+        }
+        return results.toString();
+    }
+
+    protected void prepareBatchOperation(BatchOperation operation,
+                                         @Nullable String modelVersion,
+                                         Map<String, EntityImportView> importViews) {
+        BatchOperationDTO request = operation.request;
+        String op = request.getOp();
+        if (!BATCH_OP_CREATE.equals(op) && !BATCH_OP_UPDATE.equals(op) && !BATCH_OP_DELETE.equals(op)) {
+            throw new RestAPIException("Invalid operation",
+                    String.format("Operation %s is not supported", op),
+                    HttpStatus.BAD_REQUEST);
+        }
+        if (Strings.isNullOrEmpty(request.getEntityName())) {
+            throw new RestAPIException("Invalid operation", "Entity name is not specified", HttpStatus.BAD_REQUEST);
+        }
+
+        String transformedEntityName = restControllerUtils.transformEntityNameIfRequired(request.getEntityName(),
+                modelVersion, JsonTransformationDirection.FROM_VERSION);
+        MetaClass metaClass = restControllerUtils.getMetaClass(transformedEntityName);
+        operation.metaClass = metaClass;
+        switch (op) {
+            case BATCH_OP_CREATE:
+                checkCanCreateEntity(metaClass);
+                break;
+            case BATCH_OP_UPDATE:
+                checkCanUpdateEntity(metaClass);
+                break;
+            default:
+                checkCanDeleteEntity(metaClass);
+        }
+
+        if (!BATCH_OP_CREATE.equals(op)) {
+            if (Strings.isNullOrEmpty(request.getId())) {
+                throw new RestAPIException("Invalid operation", "Entity ID is not specified", HttpStatus.BAD_REQUEST);
+            }
+            operation.id = getIdFromString(request.getId(), metaClass);
+        }
+
+        if (!BATCH_OP_DELETE.equals(op)) {
+            if (request.getEntity() == null) {
+                throw new RestAPIException("Invalid operation", "Entity JSON is not specified", HttpStatus.BAD_REQUEST);
+            }
+            String entityJson = restControllerUtils.transformJsonIfRequired(request.getEntityName(), modelVersion,
+                    JsonTransformationDirection.FROM_VERSION, request.getEntity().toString());
+            Entity entity;
+            try {
+                entity = entitySerializationAPI.entityFromJson(entityJson, metaClass);
+            } catch (Exception e) {
+                throw new RestAPIException("Cannot deserialize an entity from JSON", "", HttpStatus.BAD_REQUEST, e);
+            }
+            if (BATCH_OP_UPDATE.equals(op) && entity instanceof BaseGenericIdEntity) {
+                //noinspection unchecked
+                ((BaseGenericIdEntity) entity).setId(operation.id);
+            }
+            operation.entity = entity;
+
+            String importViewKey = metaClass.getName() + getJsonStructure(new JsonParser().parse(entityJson));
+            EntityImportView importView = importViews.get(importViewKey);
+            if (importView == null) {
+                importView = entityImportViewBuilderAPI.buildFromJson(entityJson, metaClass);
+                importViews.put(importViewKey, importView);
+            }
+            operation.importView = importView;
+        }
+    }
+
+    /**
+     * Returns a string describing property names of the JSON element. Elements with the same structure produce the same
+     * import view.
+     */
+    protected String getJsonStructure(JsonElement jsonElement) {
+        if (jsonElement.isJsonNull()) {
+            return "null";
+        } else if (jsonElement.isJsonObject()) {
+            StringBuilder sb = new StringBuilder("{");
+            Map<String, JsonElement> properties = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> entry : jsonElement.getAsJsonObject().entrySet()) {
+                properties.put(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, JsonElement> entry : properties.entrySet()) {
+                sb.append(entry.getKey()).append(':').append(getJsonStructure(entry.getValue())).append(',');
+            }
+            return sb.append('}').toString();
+        } else if (jsonElement.isJsonArray()) {
+            Set<String> elementStructures = new TreeSet<>();
+            for (JsonElement element : jsonElement.getAsJsonArray()) {
+                elementStructures.add(getJsonStructure(element));
+            }
+            return "[" + String.join(",", elementStructures) + "]";
+        }
+        return "";
+    }
+
+    /**
+     * Loads entities of update and delete operations with one query per entity class. Operations referring to
+     * missing entities and repeated operations on the same entity are marked as failed.
+     */
+    protected void loadBatchEntities(List<BatchOperation> operations) {
+        Map<MetaClass, List<BatchOperation>> operationsByMetaClass = new LinkedHashMap<>();
+        for (BatchOperation operation : operations) {
+            if (operation.error == null && operation.id != null) {
+                operationsByMetaClass.computeIfAbsent(operation.metaClass, k -> new ArrayList<>()).add(operation);
+            }
+        }
+
+        for (Map.Entry<MetaClass, List<BatchOperation>> entry : operationsByMetaClass.entrySet()) {
+            MetaClass metaClass = entry.getKey();
+            Map<Object, Entity> loadedEntities = loadEntitiesById(metaClass,
+                    entry.getValue().stream().map(operation -> operation.id).collect(Collectors.toList()));
+            Set<Object> processedIds = new HashSet<>();
+            for (BatchOperation operation : entry.getValue()) {
+                Object id = unwrapId(operation.id);
+                Entity entity = loadedEntities.get(id);
+                if (entity == null) {
+                    operation.error = new RestAPIException("Entity not found",
+                            String.format("Entity %s with id %s not found", metaClass.getName(), operation.request.getId()),
+                            HttpStatus.NOT_FOUND);
+                } else if (!processedIds.add(id)) {
+                    operation.error = new RestAPIException("Invalid operation",
+                            String.format("Entity %s with id %s is modified by another operation of the batch",
+                                    metaClass.getName(), operation.request.getId()),
+                            HttpStatus.BAD_REQUEST);
+                } else {
+                    operation.existingEntity = entity;
+                }
+            }
+        }
+    }
+
+    protected Map<Object, Entity> loadEntitiesById(MetaClass metaClass, List<Object> ids) {
+        Map<Object, Entity> result = new HashMap<>();
+        MetadataTools metadataTools = metadata.getTools();
+        String primaryKeyName = metadataTools.getPrimaryKeyName(metaClass);
+        if (primaryKeyName == null || metadataTools.hasCompositePrimaryKey(metaClass)
+                || !Stores.isMain(metadataTools.getStoreName(metaClass))) {
+            for (Object id : ids) {
+                Entity entity = dataManager.load(new LoadContext<>(metaClass).setId(id));
+                if (entity != null) {
+                    result.put(unwrapId(entity.getId()), entity);
+                }
+            }
+        } else {
+            String queryString = String.format("select e from %s e where e.%s in :ids", metaClass.getName(), primaryKeyName);
+            LoadContext<Entity> loadContext = new LoadContext<>(metaClass)
+                    .setQuery(LoadContext.createQuery(queryString).setParameter("ids", ids));
+            for (Entity entity : dataManager.loadList(loadContext)) {
+                result.put(unwrapId(entity.getId()), entity);
+            }
+        }
+        return result;
+    }
+
+    protected Object unwrapId(Object id) {
+        return id instanceof IdProxy ? ((IdProxy) id).get() : id;
+    }
+
+    protected void commitBatchOperations(List<BatchOperation> operations) {
+        Map<Entity, EntityImportView> entitiesToImport = new LinkedHashMap<>();
+        List<Entity> entitiesToRemove = new ArrayList<>();
+        for (BatchOperation operation : operations) {
+            if (operation.entity != null) {
+                entitiesToImport.put(operation.entity, operation.importView);
+            } else {
+                entitiesToRemove.add(operation.existingEntity);
+            }
+        }
+
+        Map<Entity, Entity> committedEntities = new HashMap<>();
+        for (Entity entity : entityImportExportService.importEntities(entitiesToImport, entitiesToRemove, true)) {
+            committedEntities.put(entity, entity);
+        }
+        for (BatchOperation operation : operations) {
+            if (operation.entity != null) {
+                operation.result = committedEntities.get(operation.entity);
+            }
+        }
+    }
+
+    protected RestAPIException createBatchOperationError(Exception e) {
+        if (e instanceof RestAPIException) {
+            return (RestAPIException) e;
+        } else if (e instanceof EntityImportException || e instanceof CustomValidationException) {
+            return new RestAPIException("Operation failed", e.getMessage(), HttpStatus.BAD_REQUEST, e);
+        } else if (e instanceof ConstraintViolationException) {
+            String details = ((ConstraintViolationException) e).getConstraintViolations().stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .collect(Collectors.joining("; "));
+            return new RestAPIException("Validation failed", details, HttpStatus.BAD_REQUEST, e);
+        }
+        log.error("Batch operation failed", e);
+        return new RestAPIException("Server error", "", HttpStatus.INTERNAL_SERVER_ERROR, e);
+    }
+
+    protected JsonObject createBatchOperationResult(BatchOperation operation, @Nullable String modelVersion) {
+        JsonObject result = new JsonObject();
+        result.addProperty("index", operation.index);
+        result.addProperty("op", operation.request.getOp());
+        result.addProperty("entityName", operation.request.getEntityName());
+        if (operation.error != null) {
+            result.addProperty("status", operation.error.getHttpStatus().value());
+            result.addProperty("error", operation.error.getMessage());
+            result.addProperty("details", operation.error.getDetails());
+            return result;
+        }
+
+        result.addProperty("status", BATCH_OP_CREATE.equals(operation.request.getOp())
+                ? HttpStatus.CREATED.value() : HttpStatus.OK.value());
+        Entity entity = operation.result != null ? operation.result : operation.existingEntity;
+        if (entity == null) {
+            entity = operation.entity;
+        }
+        result.addProperty("id", entity.getId().toString());
+        if (operation.result != null) {
+            restControllerUtils.applyAttributesSecurity(operation.result);
+            String json = entitySerializationAPI.toJson(operation.result);
+            json = restControllerUtils.transformJsonIfRequired(operation.metaClass.getName(), modelVersion,
+                    JsonTransformationDirection.TO_VERSION, json);
+            result.add("entity", new JsonParser().parse(json));
+        }
+        return result;
+    }
+
     private Object getIdFromString(String entityId, MetaClass metaClass) {
         try {
             if (BaseDbGeneratedIdEntity.class.isAssignableFrom(metaClass.getJavaClass())) {
@@ -468,6 +1092,8 @@ public class EntitiesControllerManager {
         protected Boolean returnCount;
         protected Boolean dynamicAttributes;
         protected String modelVersion;
+        protected Boolean keyset;
+        protected String after;
 
         public SearchEntitiesRequestDTO() {
         }
@@ -543,5 +1169,116 @@ public class EntitiesControllerManager {
         public void setModelVersion(String modelVersion) {
             this.modelVersion = modelVersion;
         }
+
+        public Boolean getKeyset() {
+            return keyset;
+        }
+
+        public void setKeyset(Boolean keyset) {
+            this.keyset = keyset;
+        }
+
+        public String getAfter() {
+            return after;
+        }
+
+        public void setAfter(String after) {
+            this.after = after;
+        }
+    }
+
+    protected class BatchRequestDTO {
+        protected String mode;
+        protected String modelVersion;
+        protected List<BatchOperationDTO> operations;
+
+        public BatchRequestDTO() {
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public String getModelVersion() {
+            return modelVersion;
+        }
+
+        public List<BatchOperationDTO> getOperations() {
+            return operations;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+
+        public void setModelVersion(String modelVersion) {
+            this.modelVersion = modelVersion;
+        }
+
+        public void setOperations(List<BatchOperationDTO> operations) {
+            this.operations = operations;
+        }
+    }
+
+    protected class BatchOperationDTO {
+        protected String op;
+        protected String entityName;
+        protected String id;
+        protected JsonObject entity;
+
+        public BatchOperationDTO() {
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public String getEntityName() {
+            return entityName;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public JsonObject getEntity() {
+            return entity;
+        }
+
+        public void setOp(String op) {
+            this.op = op;
+        }
+
+        public void setEntityName(String entityName) {
+            this.entityName = entityName;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public void setEntity(JsonObject entity) {
+            this.entity = entity;
+        }
+    }
+
+    /**
+     * State of a single operation of the batch request.
+     */
+    protected static class BatchOperation {
+        protected final int index;
+        protected final BatchOperationDTO request;
+        protected MetaClass metaClass;
+        protected Object id;
+        protected Entity entity;
+        protected EntityImportView importView;
+        protected Entity existingEntity;
+        protected Entity result;
+        protected RestAPIException error;
+
+        public BatchOperation(int index, BatchOperationDTO request) {
+            this.index = index;
+            this.request = request;
+        }
     }
-}
\ No newline at end of file
+}
@@ -30,8 +30,11 @@ import com.haulmont.cuba.core.global.DataManager;
 import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.Metadata;
 import com.haulmont.cuba.core.global.Security;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.SecurityContext;
 import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.restapi.common.RestControllerUtils;
+import com.haulmont.restapi.common.RestEntitiesJsonWriter;
 import com.haulmont.restapi.common.RestParseUtils;
 import com.haulmont.restapi.config.RestQueriesConfiguration;
 import com.haulmont.restapi.exception.RestAPIException;
@@ -40,6 +43,7 @@ import org.apache.commons.lang.BooleanUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -101,8 +105,73 @@ public class QueriesControllerManager {
     }
 
     protected String _executeQuery(String entityName, String queryName, @Nullable Integer limit, @Nullable Integer offset, @Nullable String viewName, @Nullable Boolean returnNulls, @Nullable Boolean dynamicAttributes, @Nullable String version, Map<String, String> params) {
-        LoadContext<Entity> ctx;
         entityName = restControllerUtils.transformEntityNameIfRequired(entityName, version, JsonTransformationDirection.FROM_VERSION);
+        LoadContext<Entity> ctx = createExecuteQueryLoadContext(entityName, queryName, limit, offset, viewName, dynamicAttributes, params);
+        List<Entity> entities = dataManager.loadList(ctx);
+        entities.forEach(entity -> restControllerUtils.applyAttributesSecurity(entity));
+
+        String json = entitySerializationAPI.toJson(entities, ctx.getView(), getSerializationOptions(returnNulls));
+        json = restControllerUtils.transformJsonIfRequired(entityName, version, JsonTransformationDirection.TO_VERSION, json);
+        return json;
+    }
+
+    /**
+     * Works like {@link #executeQueryGet} but returns a body that executes the query and writes loaded entities to
+     * the response one by one, transforming each of them separately.
+     */
+    public StreamingResponseBody streamQueryGet(String entityName,
+                                                String queryName,
+                                                @Nullable Integer limit,
+                                                @Nullable Integer offset,
+                                                @Nullable String viewName,
+                                                @Nullable Boolean returnNulls,
+                                                @Nullable Boolean dynamicAttributes,
+                                                @Nullable String version,
+                                                Map<String, String> params) {
+        return _streamQuery(entityName, queryName, limit, offset, viewName, returnNulls, dynamicAttributes, version, params);
+    }
+
+    /**
+     * Works like {@link #executeQueryPost} but streams the result, see {@link #streamQueryGet}.
+     */
+    public StreamingResponseBody streamQueryPost(String entityName,
+                                                 String queryName,
+                                                 @Nullable Integer limit,
+                                                 @Nullable Integer offset,
+                                                 @Nullable String viewName,
+                                                 @Nullable Boolean returnNulls,
+                                                 @Nullable Boolean dynamicAttributes,
+                                                 @Nullable String version,
+                                                 String paramsJson) {
+        Map<String, String> paramsMap = restParseUtils.parseParamsJson(paramsJson);
+        return _streamQuery(entityName, queryName, limit, offset, viewName, returnNulls, dynamicAttributes, version, paramsMap);
+    }
+
+    protected StreamingResponseBody _streamQuery(String entityName, String queryName, @Nullable Integer limit, @Nullable Integer offset, @Nullable String viewName, @Nullable Boolean returnNulls, @Nullable Boolean dynamicAttributes, @Nullable String version, Map<String, String> params) {
+        String transformedEntityName = restControllerUtils.transformEntityNameIfRequired(entityName, version, JsonTransformationDirection.FROM_VERSION);
+        LoadContext<Entity> ctx = createExecuteQueryLoadContext(transformedEntityName, queryName, limit, offset, viewName, dynamicAttributes, params);
+        EntitySerializationOption[] options = getSerializationOptions(returnNulls);
+        //the body is written in another thread
+        SecurityContext securityContext = AppContext.getSecurityContextNN();
+
+        return outputStream -> {
+            AppContext.setSecurityContext(securityContext);
+            try {
+                List<Entity> entities = dataManager.loadList(ctx);
+                try (RestEntitiesJsonWriter writer = restControllerUtils.createEntitiesJsonWriter(outputStream,
+                        transformedEntityName, version, ctx.getView(), options)) {
+                    for (Entity entity : entities) {
+                        writer.write(entity);
+                    }
+                }
+            } finally {
+                AppContext.setSecurityContext(null);
+            }
+        };
+    }
+
+    protected LoadContext<Entity> createExecuteQueryLoadContext(String entityName, String queryName, @Nullable Integer limit, @Nullable Integer offset, @Nullable String viewName, @Nullable Boolean dynamicAttributes, Map<String, String> params) {
+        LoadContext<Entity> ctx;
         try {
             ctx = createQueryLoadContext(entityName, queryName, limit, offset, params);
         } catch (ClassNotFoundException | ParseException e) {
@@ -116,16 +185,14 @@ public class QueriesControllerManager {
             restControllerUtils.getView(metaClass, viewName);
             ctx.setView(viewName);
         }
-        List<Entity> entities = dataManager.loadList(ctx);
-        entities.forEach(entity -> restControllerUtils.applyAttributesSecurity(entity));
+        return ctx;
+    }
 
+    protected EntitySerializationOption[] getSerializationOptions(@Nullable Boolean returnNulls) {
         List<EntitySerializationOption> serializationOptions = new ArrayList<>();
         serializationOptions.add(EntitySerializationOption.SERIALIZE_INSTANCE_NAME);
         if (BooleanUtils.isTrue(returnNulls)) serializationOptions.add(EntitySerializationOption.SERIALIZE_NULLS);
-
-        String json = entitySerializationAPI.toJson(entities, ctx.getView(), serializationOptions.toArray(new EntitySerializationOption[0]));
-        json = restControllerUtils.transformJsonIfRequired(entityName, version, JsonTransformationDirection.TO_VERSION, json);
-        return json;
+        return serializationOptions.toArray(new EntitySerializationOption[0]);
     }
 
     public String getCountGet(String entityName,
@@ -26,6 +26,12 @@ import javax.servlet.http.HttpServletResponse;
  * The interceptor is used for cleaning up the thread-local SecurityContext after each request
  */
 public class RestCleanupInterceptor extends HandlerInterceptorAdapter {
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // the response is completed in another thread, the request thread is returned to the container
+        AppContext.setSecurityContext(null);
+    }
+
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
         AppContext.setSecurityContext(null);
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2008-2017 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.restapi.common;
+
+import com.haulmont.cuba.core.config.Config;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.UserSessionSource;
+import com.haulmont.restapi.config.RestApiConfig;
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RestResponseCacheTest {
+
+    private RestResponseCache cache;
+
+    private boolean entityETagsEnabled;
+
+    @Before
+    public void setUp() throws Exception {
+        RestApiConfig restApiConfig = new MockUp<RestApiConfig>() {
+            @Mock
+            boolean getResponseCacheEnabled() {
+                return true;
+            }
+
+            @Mock
+            int getResponseCacheMaxSize() {
+                return 100;
+            }
+
+            @Mock
+            int getResponseCacheExpirationSec() {
+                return 300;
+            }
+
+            @Mock
+            boolean getEntityETagsEnabled() {
+                return entityETagsEnabled;
+            }
+        }.getMockInstance();
+
+        cache = new RestResponseCache();
+        cache.userSessionSource = new MockUp<UserSessionSource>() {
+            @Mock
+            Locale getLocale() {
+                return Locale.ENGLISH;
+            }
+        }.getMockInstance();
+        cache.setConfiguration(new MockUp<Configuration>() {
+            @Mock
+            @SuppressWarnings("unchecked")
+            <T extends Config> T getConfig(Class<T> configClass) {
+                return (T) restApiConfig;
+            }
+        }.getMockInstance());
+    }
+
+    @Test
+    public void testResponseIsCachedUntilInvalidated() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpServletRequest request = createRequest("/rest/v2/metadata/entities", null);
+
+        ResponseEntity<String> response = cache.getResponse(request, false, () -> "[" + calls.incrementAndGet() + "]");
+        assertEquals("[1]", response.getBody());
+        response = cache.getResponse(request, false, () -> "[" + calls.incrementAndGet() + "]");
+        assertEquals("[1]", response.getBody());
+        assertEquals(1, cache.getSize());
+
+        cache.invalidate();
+        assertEquals(0, cache.getSize());
+        response = cache.getResponse(request, false, () -> "[" + calls.incrementAndGet() + "]");
+        assertEquals("[2]", response.getBody());
+    }
+
+    @Test
+    public void testNotModifiedResponse() throws Exception {
+        ResponseEntity<String> response = cache.getResponse(createRequest("/rest/v2/messages/entities", null), false,
+                () -> "{}");
+        String eTag = response.getHeaders().getETag();
+        assertNotNull(eTag);
+
+        response = cache.getResponse(createRequest("/rest/v2/messages/entities", eTag), false, () -> "{}");
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    public void testEntityETagDependsOnWholeJson() throws Exception {
+        assertNull(cache.createEntityETag("{\"id\":\"1\"}"));
+
+        entityETagsEnabled = true;
+        String json = "{\"id\":\"1\",\"version\":1,\"group\":{\"id\":\"2\",\"name\":\"Group\"}}";
+        String nestedChangedJson = "{\"id\":\"1\",\"version\":1,\"group\":{\"id\":\"2\",\"name\":\"Changed\"}}";
+
+        String eTag = cache.createEntityETag(json);
+        assertEquals(eTag, cache.createEntityETag(json));
+        assertNotEquals(eTag, cache.createEntityETag(nestedChangedJson));
+        assertTrue(cache.eTagMatches("W/" + eTag, eTag));
+    }
+
+    private HttpServletRequest createRequest(String uri, String ifNoneMatch) {
+        return new MockUp<HttpServletRequest>() {
+            @Mock
+            String getRequestURI() {
+                return uri;
+            }
+
+            @Mock
+            String getQueryString() {
+                return null;
+            }
+
+            @Mock
+            String getHeader(String name) {
+                return HttpHeaders.IF_NONE_MATCH.equals(name) ? ifNoneMatch : null;
+            }
+        }.getMockInstance();
+    }
+}
@@ -140,6 +140,7 @@ public class SingleAppWebContextLoader extends WebAppContextLoader {
         }
         ServletRegistration.Dynamic cubaRestApiServletReg = servletContext.addServlet("rest_api", cubaRestApiServlet);
         cubaRestApiServletReg.setLoadOnStartup(2);
+        cubaRestApiServletReg.setAsyncSupported(true);
         cubaRestApiServletReg.addMapping("/rest/*");
 
         DelegatingFilterProxy restSpringSecurityFilterChain = new DelegatingFilterProxy();
@@ -148,6 +149,7 @@ public class SingleAppWebContextLoader extends WebAppContextLoader {
 
         FilterRegistration.Dynamic restSpringSecurityFilterChainReg =
                 servletContext.addFilter("restSpringSecurityFilterChain", restSpringSecurityFilterChain);
+        restSpringSecurityFilterChainReg.setAsyncSupported(true);
         restSpringSecurityFilterChainReg.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/rest/*");
     }
 